@@ -0,0 +1,49 @@
+package encryptix.hds.benchmarks;
+
+import encryptix.hds.exception.CryptoInitializationFailed;
+import encryptix.hds.exception.InitializationFailed;
+import encryptix.hds.exception.InvalidResourceFormat;
+import encryptix.hds.exception.ResourceNotFound;
+import encryptix.hds.exception.ResourceReadFailed;
+import encryptix.hds.keymanagement.loader.PrivateKeyLoader;
+import encryptix.hds.keymanagement.loader.PublicKeyLoader;
+import encryptix.hds.resourcemanagement.reader.ClasspathResourceReader;
+import encryptix.hds.resourcemanagement.reader.ResourceReader;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import java.nio.charset.Charset;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Security;
+
+/**
+ * Test keys of hds.keys, same as used by unit tests
+ */
+public final class BenchmarkKeys {
+
+    public static final String PUBLIC_KEY = "eckeys/test/47ed2bea86e8f4f9232f0659c1542818_test_public_key.pem";
+
+    public static final String PRIVATE_KEY = "eckeys/test/47ed2bea86e8f4f9232f0659c1542818_test_private_key_system_encrypted.pem";
+
+    public static final String PRIVATE_KEY_PASSWORD = "testpwd";
+
+    public static final Charset CHARSET = Charset.forName("UTF-8");
+
+    static {
+        // Load EC library
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    private BenchmarkKeys() {
+    }
+
+    public static PublicKey publicKey() throws ResourceNotFound, ResourceReadFailed, InvalidResourceFormat, InitializationFailed {
+        ResourceReader resourceReader = new ClasspathResourceReader();
+        return PublicKeyLoader.readPublicKey(resourceReader.getResource(PUBLIC_KEY));
+    }
+
+    public static PrivateKey privateKey() throws ResourceNotFound, ResourceReadFailed, InvalidResourceFormat, CryptoInitializationFailed, InitializationFailed {
+        ResourceReader resourceReader = new ClasspathResourceReader();
+        return PrivateKeyLoader.readPrivateKey(resourceReader.getResource(PRIVATE_KEY), PRIVATE_KEY_PASSWORD);
+    }
+}
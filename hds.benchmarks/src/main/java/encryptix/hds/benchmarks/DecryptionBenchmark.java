@@ -0,0 +1,104 @@
+package encryptix.hds.benchmarks;
+
+import encryptix.hds.eah.OutputBuffer;
+import encryptix.hds.eah.v1.EAHDecryptionCoreV1;
+import encryptix.hds.eah.v1.EAHEncryptionCoreV1;
+import encryptix.hds.exception.CryptoCoreFailed;
+import encryptix.hds.exception.CryptoInitializationFailed;
+import encryptix.hds.exception.InvalidInputFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.SecretKey;
+import java.security.PublicKey;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EAHv1 decryption, String and byte API, by the cache scenario:
+ * <p/>
+ * L1_HIT - all the rows are of the same block, AES key and IV are reused from L1 cache, that's a table encrypted by a
+ * single task
+ * <p/>
+ * L2_HIT - every next row is of the other block, one of BLOCKS, L1 misses and AES key is taken from L2 cache, that's
+ * a table joined or unioned from few sources
+ * <p/>
+ * MISS - same rows as L2_HIT, but L2 cache has single entry, so every row decrypts ECIES part
+ * <p/>
+ * Run with -prof gc to get allocation rate per row.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DecryptionBenchmark {
+
+    /**
+     * Blocks of L2_HIT and MISS scenarios
+     */
+    public static final int BLOCKS = 16;
+
+    public enum Scenario {
+        L1_HIT, L2_HIT, MISS
+    }
+
+    @Param
+    public Scenario scenario;
+
+    private EAHDecryptionCoreV1 decryptionCore;
+
+    private String[] values;
+    private byte[][] valuesBytes;
+    private int index;
+
+    private final OutputBuffer output = new OutputBuffer();
+
+    @Setup
+    public void setup() throws Exception {
+        String[] plainValues = ValueDistribution.values();
+        PublicKey publicKey = BenchmarkKeys.publicKey();
+
+        // single block per core, blocks are never rotated while encrypting the pool
+        int blocks = this.scenario == Scenario.L1_HIT ? 1 : BLOCKS;
+        EAHEncryptionCoreV1[] encryptionCores = new EAHEncryptionCoreV1[blocks];
+        for (int i = 0; i < blocks; i++) {
+            encryptionCores[i] = new EAHEncryptionCoreV1(publicKey, EAHEncryptionCoreV1.DEFAULT_MAX_BLOCK_SIZE,
+                    EAHEncryptionCoreV1.DEFAULT_MAX_BLOCK_SIZE, TimeUnit.NANOSECONDS.convert(1, TimeUnit.HOURS),
+                    EAHEncryptionCoreV1.DEFAULT_AES_KEY_SIZE);
+        }
+
+        this.values = new String[plainValues.length];
+        this.valuesBytes = new byte[plainValues.length][];
+        for (int i = 0; i < plainValues.length; i++) {
+            this.values[i] = encryptionCores[i % blocks].encrypt(plainValues[i]);
+            this.valuesBytes[i] = this.values[i].getBytes(BenchmarkKeys.CHARSET);
+        }
+
+        int aesKeyCacheSize = this.scenario == Scenario.MISS ? 1 : EAHDecryptionCoreV1.AES_KEY_CACHE_SIZE;
+        this.decryptionCore = new EAHDecryptionCoreV1(BenchmarkKeys.privateKey(),
+                EAHDecryptionCoreV1.AES_KEY_CACHE_POLICY.<String, SecretKey>create(aesKeyCacheSize));
+    }
+
+    @Benchmark
+    public String decryptString() throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        return this.decryptionCore.decrypt(this.values[this.index++ & ValueDistribution.POOL_MASK]);
+    }
+
+    @Benchmark
+    public int decryptBytes() throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        byte[] value = this.valuesBytes[this.index++ & ValueDistribution.POOL_MASK];
+
+        this.output.reset();
+        return this.decryptionCore.decrypt(value, 0, value.length, this.output);
+    }
+}
@@ -0,0 +1,71 @@
+package encryptix.hds.benchmarks;
+
+import encryptix.hds.hash.DigestAlgorithm;
+import encryptix.hds.hash.StreamedDigestGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StreamedDigestGenerator, every DigestAlgorithm, raw and hex digest, String and byte range into reused buffer.
+ * <p/>
+ * Run with -prof gc to get allocation rate per row.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DigestBenchmark {
+
+    @Param
+    public DigestAlgorithm algorithm;
+
+    private StreamedDigestGenerator digestGenerator;
+
+    private byte[] hexBuffer;
+
+    private String[] values;
+    private byte[][] valuesBytes;
+    private int index;
+
+    @Setup
+    public void setup() throws Exception {
+        this.digestGenerator = new StreamedDigestGenerator(this.algorithm);
+        this.hexBuffer = new byte[this.digestGenerator.getHexDigestLength()];
+
+        this.values = ValueDistribution.values();
+        this.valuesBytes = new byte[this.values.length][];
+        for (int i = 0; i < this.values.length; i++) {
+            this.valuesBytes[i] = this.values[i].getBytes(BenchmarkKeys.CHARSET);
+        }
+    }
+
+    @Benchmark
+    public byte[] digest() {
+        return this.digestGenerator.digest(this.valuesBytes[this.index++ & ValueDistribution.POOL_MASK]);
+    }
+
+    @Benchmark
+    public String hexDigestString() {
+        return this.digestGenerator.hexDigest(this.values[this.index++ & ValueDistribution.POOL_MASK]);
+    }
+
+    @Benchmark
+    public byte[] hexDigestBytes() {
+        byte[] value = this.valuesBytes[this.index++ & ValueDistribution.POOL_MASK];
+        this.digestGenerator.hexDigest(value, 0, value.length, this.hexBuffer, 0);
+        return this.hexBuffer;
+    }
+}
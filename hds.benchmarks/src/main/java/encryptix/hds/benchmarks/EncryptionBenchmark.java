@@ -0,0 +1,65 @@
+package encryptix.hds.benchmarks;
+
+import encryptix.hds.eah.OutputBuffer;
+import encryptix.hds.eah.v1.EAHEncryptionCoreV1;
+import encryptix.hds.exception.CryptoCoreFailed;
+import encryptix.hds.exception.CryptoInitializationFailed;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EAHv1 encryption, String and byte API, with default block settings, so ECIES part is regenerated on block rotation
+ * same as in production.
+ * <p/>
+ * Run with -prof gc to get allocation rate per row.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EncryptionBenchmark {
+
+    private EAHEncryptionCoreV1 encryptionCore;
+
+    private String[] values;
+    private byte[][] valuesBytes;
+    private int index;
+
+    private final OutputBuffer output = new OutputBuffer();
+
+    @Setup
+    public void setup() throws Exception {
+        this.encryptionCore = new EAHEncryptionCoreV1(BenchmarkKeys.publicKey());
+
+        this.values = ValueDistribution.values();
+        this.valuesBytes = new byte[this.values.length][];
+        for (int i = 0; i < this.values.length; i++) {
+            this.valuesBytes[i] = this.values[i].getBytes(BenchmarkKeys.CHARSET);
+        }
+    }
+
+    @Benchmark
+    public String encryptString() throws CryptoInitializationFailed, CryptoCoreFailed {
+        return this.encryptionCore.encrypt(this.values[this.index++ & ValueDistribution.POOL_MASK]);
+    }
+
+    @Benchmark
+    public int encryptBytes() throws CryptoInitializationFailed, CryptoCoreFailed {
+        byte[] value = this.valuesBytes[this.index++ & ValueDistribution.POOL_MASK];
+
+        this.output.reset();
+        return this.encryptionCore.encrypt(value, 0, value.length, this.output);
+    }
+}
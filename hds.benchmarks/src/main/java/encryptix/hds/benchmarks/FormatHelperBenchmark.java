@@ -0,0 +1,75 @@
+package encryptix.hds.benchmarks;
+
+import encryptix.hds.eah.OutputBuffer;
+import encryptix.hds.eah.v1.FormatHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EAH base64 codec (FormatHelper), allocating and buffer-based API, over random bytes of realistic value lengths.
+ * <p/>
+ * Run with -prof gc to get allocation rate per row.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FormatHelperBenchmark {
+
+    private byte[][] values;
+    private String[] serializedValues;
+    private byte[][] serializedValuesBytes;
+    private int index;
+
+    private final OutputBuffer output = new OutputBuffer();
+
+    @Setup
+    public void setup() {
+        this.values = ValueDistribution.binaryValues();
+        this.serializedValues = new String[this.values.length];
+        this.serializedValuesBytes = new byte[this.values.length][];
+
+        for (int i = 0; i < this.values.length; i++) {
+            this.serializedValues[i] = FormatHelper.serialize(this.values[i]);
+            this.serializedValuesBytes[i] = this.serializedValues[i].getBytes(FormatHelper.SERIALIZED_CHARSET);
+        }
+    }
+
+    @Benchmark
+    public String serialize() {
+        return FormatHelper.serialize(this.values[this.index++ & ValueDistribution.POOL_MASK]);
+    }
+
+    @Benchmark
+    public int serializeToBuffer() {
+        byte[] value = this.values[this.index++ & ValueDistribution.POOL_MASK];
+
+        this.output.reset();
+        return FormatHelper.serialize(value, 0, value.length, this.output);
+    }
+
+    @Benchmark
+    public byte[] deserialize() {
+        return FormatHelper.deserialize(this.serializedValues[this.index++ & ValueDistribution.POOL_MASK]);
+    }
+
+    @Benchmark
+    public int deserializeToBuffer() {
+        byte[] value = this.serializedValuesBytes[this.index++ & ValueDistribution.POOL_MASK];
+
+        this.output.reset();
+        return FormatHelper.deserialize(value, 0, value.length, this.output);
+    }
+}
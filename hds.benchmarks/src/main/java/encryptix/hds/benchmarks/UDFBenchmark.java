@@ -0,0 +1,259 @@
+package encryptix.hds.benchmarks;
+
+import encryptix.hds.hive.exception.InternalInitException;
+import encryptix.hds.hive.udf.encryption.hybrid.fast.EAHDecryptUDF;
+import encryptix.hds.hive.udf.encryption.hybrid.fast.EAHEncryptUDF;
+import encryptix.hds.hive.udf.encryption.hybrid.fast.EAHRecryptUDF;
+import encryptix.hds.hive.udf.hash.MD2HashUDF;
+import encryptix.hds.hive.udf.hash.MD5HashUDF;
+import encryptix.hds.hive.udf.hash.SHA1HashUDF;
+import encryptix.hds.hive.udf.hash.SHA256HashUDF;
+import encryptix.hds.hive.udf.hash.SHA384HashUDF;
+import encryptix.hds.hive.udf.hash.SHA512HashUDF;
+import encryptix.hds.hive.udf.hash.caseinsensitive.MD2HashCaseInsensitiveUDF;
+import encryptix.hds.hive.udf.hash.caseinsensitive.MD5HashCaseInsensitiveUDF;
+import encryptix.hds.hive.udf.hash.caseinsensitive.SHA1HashCaseInsensitiveUDF;
+import encryptix.hds.hive.udf.hash.caseinsensitive.SHA256HashCaseInsensitiveUDF;
+import encryptix.hds.hive.udf.hash.caseinsensitive.SHA384HashCaseInsensitiveUDF;
+import encryptix.hds.hive.udf.hash.caseinsensitive.SHA512HashCaseInsensitiveUDF;
+import encryptix.hds.hive.udf.hmac.BasicHmacUDF;
+import encryptix.hds.hive.udf.hmac.HmacSHA256UDF;
+import encryptix.hds.hive.udf.hmac.HmacSHA384UDF;
+import encryptix.hds.hive.udf.hmac.HmacSHA512UDF;
+import encryptix.hds.hive.udf.masking.EmailDomainUDF;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.io.Text;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hive UDFs as Hive calls them: initialize() once with the argument inspector, evaluate() per row with DeferredObject.
+ * Score is rows per second, so the difference with core benchmarks (EncryptionBenchmark, DecryptionBenchmark,
+ * DigestBenchmark) is the cost of the Hive wrapper: converters, string helpers, signature checks.
+ * <p/>
+ * Every UDF is measured with writable (Text) and Java String input, Hive passes Text from table scans and String from
+ * some expressions and constants. Encryption and HMAC UDFs use the test keys of hds.keys and default configuration.
+ * <p/>
+ * Run with -prof gc to get allocation rate per row.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class UDFBenchmark {
+
+    public static final String PUBLIC_KEY_SOURCE = "classpath:eckeys/test/3ccd72b3ba0e42f75994614603736f99_test_public_key.pem";
+
+    public static final String PRIVATE_KEY_SOURCE = "classpath:eckeys/test/3ccd72b3ba0e42f75994614603736f99_test_private_key_system_encrypted.pem";
+
+    public static final String PRIVATE_KEY_PASSWORD_SOURCE = "classpath:eckeys/test/3ccd72b3ba0e42f75994614603736f99_test_private_key_system_password.txt";
+
+    public static final String HMAC_KEY_SOURCE = "classpath:hmackeys/test/test_hmac_key.txt";
+
+    public enum UDF {
+        EAH_ENCRYPT(false) {
+            @Override
+            GenericUDF create() {
+                return new EAHEncryptUDF();
+            }
+        },
+        EAH_DECRYPT(true) {
+            @Override
+            GenericUDF create() {
+                return new EAHDecryptUDF();
+            }
+        },
+        EAH_RECRYPT(true) {
+            @Override
+            GenericUDF create() {
+                return new EAHRecryptUDF();
+            }
+        },
+        MD2(false) {
+            @Override
+            GenericUDF create() throws InternalInitException {
+                return new MD2HashUDF();
+            }
+        },
+        MD5(false) {
+            @Override
+            GenericUDF create() throws InternalInitException {
+                return new MD5HashUDF();
+            }
+        },
+        SHA1(false) {
+            @Override
+            GenericUDF create() throws InternalInitException {
+                return new SHA1HashUDF();
+            }
+        },
+        SHA256(false) {
+            @Override
+            GenericUDF create() throws InternalInitException {
+                return new SHA256HashUDF();
+            }
+        },
+        SHA384(false) {
+            @Override
+            GenericUDF create() throws InternalInitException {
+                return new SHA384HashUDF();
+            }
+        },
+        SHA512(false) {
+            @Override
+            GenericUDF create() throws InternalInitException {
+                return new SHA512HashUDF();
+            }
+        },
+        MD2_CI(false) {
+            @Override
+            GenericUDF create() throws InternalInitException {
+                return new MD2HashCaseInsensitiveUDF();
+            }
+        },
+        MD5_CI(false) {
+            @Override
+            GenericUDF create() throws InternalInitException {
+                return new MD5HashCaseInsensitiveUDF();
+            }
+        },
+        SHA1_CI(false) {
+            @Override
+            GenericUDF create() throws InternalInitException {
+                return new SHA1HashCaseInsensitiveUDF();
+            }
+        },
+        SHA256_CI(false) {
+            @Override
+            GenericUDF create() throws InternalInitException {
+                return new SHA256HashCaseInsensitiveUDF();
+            }
+        },
+        SHA384_CI(false) {
+            @Override
+            GenericUDF create() throws InternalInitException {
+                return new SHA384HashCaseInsensitiveUDF();
+            }
+        },
+        SHA512_CI(false) {
+            @Override
+            GenericUDF create() throws InternalInitException {
+                return new SHA512HashCaseInsensitiveUDF();
+            }
+        },
+        HMAC_SHA256(false) {
+            @Override
+            GenericUDF create() {
+                return new HmacSHA256UDF();
+            }
+        },
+        HMAC_SHA384(false) {
+            @Override
+            GenericUDF create() {
+                return new HmacSHA384UDF();
+            }
+        },
+        HMAC_SHA512(false) {
+            @Override
+            GenericUDF create() {
+                return new HmacSHA512UDF();
+            }
+        },
+        EMAIL_DOMAIN(false) {
+            @Override
+            GenericUDF create() {
+                return new EmailDomainUDF();
+            }
+        };
+
+        private final boolean encryptedInput;
+
+        UDF(boolean encryptedInput) {
+            this.encryptedInput = encryptedInput;
+        }
+
+        abstract GenericUDF create() throws InternalInitException;
+    }
+
+    public enum Input {
+        WRITABLE(PrimitiveObjectInspectorFactory.writableStringObjectInspector),
+        JAVA(PrimitiveObjectInspectorFactory.javaStringObjectInspector);
+
+        private final PrimitiveObjectInspector inspector;
+
+        Input(PrimitiveObjectInspector inspector) {
+            this.inspector = inspector;
+        }
+
+        Object wrap(String value) {
+            return this == WRITABLE ? new Text(value) : value;
+        }
+    }
+
+    @Param
+    public UDF udf;
+
+    @Param
+    public Input input;
+
+    private GenericUDF genericUDF;
+
+    private GenericUDF.DeferredObject[][] rows;
+    private int index;
+
+    @Setup
+    public void setup() throws HiveException {
+        System.setProperty(EAHEncryptUDF.PROPERTY_PUBLIC_KEY_SOURCE, PUBLIC_KEY_SOURCE);
+        System.setProperty(EAHDecryptUDF.PROPERTY_PRIVATE_KEY_SOURCE, PRIVATE_KEY_SOURCE);
+        System.setProperty(EAHDecryptUDF.PROPERTY_PRIVATE_KEY_PASSWORD_SOURCE, PRIVATE_KEY_PASSWORD_SOURCE);
+        System.setProperty(BasicHmacUDF.PROPERTY_KEY_SOURCE, HMAC_KEY_SOURCE);
+
+        String[] values = ValueDistribution.values();
+
+        if (this.udf.encryptedInput) {
+            GenericUDF encryptUDF = UDF.EAH_ENCRYPT.create();
+            encryptUDF.initialize(new ObjectInspector[]{PrimitiveObjectInspectorFactory.javaStringObjectInspector});
+
+            for (int i = 0; i < values.length; i++) {
+                values[i] = encryptUDF.evaluate(new GenericUDF.DeferredObject[]{new GenericUDF.DeferredJavaObject(values[i])}).toString();
+            }
+        }
+
+        this.rows = new GenericUDF.DeferredObject[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            this.rows[i] = new GenericUDF.DeferredObject[]{new GenericUDF.DeferredJavaObject(this.input.wrap(values[i]))};
+        }
+
+        this.genericUDF = this.udf.create();
+        this.genericUDF.initialize(new ObjectInspector[]{this.input.inspector});
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        this.genericUDF.close();
+    }
+
+    @Benchmark
+    public Object evaluate() throws HiveException {
+        return this.genericUDF.evaluate(this.rows[this.index++ & ValueDistribution.POOL_MASK]);
+    }
+}
@@ -0,0 +1,101 @@
+package encryptix.hds.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Realistic column values for benchmarks. Typical encrypted columns are short personal data (emails, names, phones,
+ * ids), with a tail of addresses and free text, so benchmarks over fixed-size values hide the per-row overhead.
+ * <p/>
+ * Distribution of the pool:
+ * <p/>
+ * 35% emails, 15-40 chars
+ * 25% names, 3-25 chars
+ * 15% phones and ids, 7-16 digits
+ * 10% non-ASCII names, 3-25 chars
+ * 10% addresses, 30-100 chars
+ * 5% free text, 200-2000 chars
+ * <p/>
+ * Pool is generated by a seeded random, so every run and every fork benchmarks the same values.
+ */
+public final class ValueDistribution {
+
+    /**
+     * Pool size, power of two, so the next value index is a mask, not a division
+     */
+    public static final int POOL_SIZE = 4096;
+
+    /**
+     * Index mask of the pool
+     */
+    public static final int POOL_MASK = POOL_SIZE - 1;
+
+    private static final long SEED = 0x5eedL;
+
+    private static final String ALPHANUMERIC = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    private static final String DIGITS = "0123456789";
+    private static final String TEXT = "abcdefghijklmnopqrstuvwxyz     ,.";
+    // Cyrillic and Latin-1 letters, 2 bytes each in UTF-8
+    private static final String NON_ASCII = "\u0430\u0431\u0432\u0433\u0434\u0435\u0436\u0437\u0438\u043a\u043b\u043c\u043d\u00e9\u00fc\u00f1";
+
+    private ValueDistribution() {
+    }
+
+    /**
+     * @return Pool of POOL_SIZE values
+     */
+    public static String[] values() {
+        Random random = new Random(SEED);
+        String[] values = new String[POOL_SIZE];
+
+        for (int i = 0; i < POOL_SIZE; i++) {
+            values[i] = nextValue(random);
+        }
+
+        return values;
+    }
+
+    /**
+     * @return Pool of POOL_SIZE random byte arrays of the same lengths as UTF-8 of values()
+     */
+    public static byte[][] binaryValues() {
+        Random random = new Random(SEED);
+        String[] values = values();
+        byte[][] binaryValues = new byte[POOL_SIZE][];
+
+        for (int i = 0; i < POOL_SIZE; i++) {
+            binaryValues[i] = new byte[values[i].getBytes(BenchmarkKeys.CHARSET).length];
+            random.nextBytes(binaryValues[i]);
+        }
+
+        return binaryValues;
+    }
+
+    private static String nextValue(Random random) {
+        int bucket = random.nextInt(100);
+
+        if (bucket < 35) {
+            return randomString(random, ALPHANUMERIC, 5, 20) + '@' + randomString(random, ALPHANUMERIC, 5, 15) + ".com";
+        } else if (bucket < 60) {
+            return randomString(random, ALPHANUMERIC, 3, 25);
+        } else if (bucket < 75) {
+            return randomString(random, DIGITS, 7, 16);
+        } else if (bucket < 85) {
+            return randomString(random, NON_ASCII, 3, 25);
+        } else if (bucket < 95) {
+            return randomString(random, TEXT, 30, 100);
+        } else {
+            return randomString(random, TEXT, 200, 2000);
+        }
+    }
+
+    private static String randomString(Random random, String symbols, int minLength, int maxLength) {
+        int length = minLength + random.nextInt(maxLength - minLength + 1);
+        StringBuilder builder = new StringBuilder(length);
+
+        for (int i = 0; i < length; i++) {
+            builder.append(symbols.charAt(random.nextInt(symbols.length())));
+        }
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,26 @@
+package encryptix.hds.eah;
+
+import encryptix.hds.exception.CryptoCoreFailed;
+import encryptix.hds.exception.CryptoInitializationFailed;
+import encryptix.hds.exception.InvalidInputFormat;
+
+/**
+ * Decryption of binary EAH envelope, for BINARY columns
+ */
+public interface EAHBinaryDecryptionCore {
+
+    /**
+     * Decrypt binary EAH envelope with Private Key
+     *
+     * @param value Binary EAH envelope
+     * @param offset Offset of envelope in value
+     * @param length Length of envelope in value
+     * @param output Buffer to append decrypted value to
+     * @return Bytes appended to output
+     *
+     * @throws CryptoInitializationFailed
+     * @throws CryptoCoreFailed
+     * @throws InvalidInputFormat
+     */
+    int decrypt(byte[] value, int offset, int length, OutputBuffer output) throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat;
+}
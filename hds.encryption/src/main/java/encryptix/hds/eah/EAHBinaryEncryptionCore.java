@@ -0,0 +1,24 @@
+package encryptix.hds.eah;
+
+import encryptix.hds.exception.CryptoCoreFailed;
+import encryptix.hds.exception.CryptoInitializationFailed;
+
+/**
+ * Encryption to binary EAH envelope, for BINARY columns. No base64 and no delimiters, see BinaryFormatHelper
+ */
+public interface EAHBinaryEncryptionCore {
+
+    /**
+     * Encrypt bytes to binary EAH envelope with PublicKey
+     *
+     * @param value Bytes to encrypt, usually UTF-8 of the String
+     * @param offset Offset of data in value
+     * @param length Length of data in value
+     * @param output Buffer to append binary EAH envelope to
+     * @return Bytes appended to output
+     *
+     * @throws CryptoInitializationFailed
+     * @throws CryptoCoreFailed
+     */
+    int encrypt(byte[] value, int offset, int length, OutputBuffer output) throws CryptoInitializationFailed, CryptoCoreFailed;
+}
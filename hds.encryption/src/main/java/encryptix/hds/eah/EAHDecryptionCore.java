@@ -17,4 +17,19 @@ public interface EAHDecryptionCore {
      * @throws InvalidInputFormat
      */
     String decrypt(String value) throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat;
+
+    /**
+     * Decrypt AEH format with Private Key, no conversion to String
+     *
+     * @param value UTF-8 bytes of EAH String
+     * @param offset Offset of EAH String in value
+     * @param length Length of EAH String in value
+     * @param output Buffer to append decrypted value to
+     * @return Bytes appended to output
+     *
+     * @throws CryptoInitializationFailed
+     * @throws CryptoCoreFailed
+     * @throws InvalidInputFormat
+     */
+    int decrypt(byte[] value, int offset, int length, OutputBuffer output) throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat;
 }
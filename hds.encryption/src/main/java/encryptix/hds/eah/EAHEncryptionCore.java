@@ -16,4 +16,18 @@ public interface EAHEncryptionCore {
      * @throws CryptoCoreFailed
      */
     String encrypt(String value) throws CryptoInitializationFailed, CryptoCoreFailed;
+
+    /**
+     * Encrypt bytes to EAH format with PublicKey, no conversion to String
+     *
+     * @param value Bytes to encrypt, usually UTF-8 of the String
+     * @param offset Offset of data in value
+     * @param length Length of data in value
+     * @param output Buffer to append EAH format bytes to
+     * @return Bytes appended to output
+     *
+     * @throws CryptoInitializationFailed
+     * @throws CryptoCoreFailed
+     */
+    int encrypt(byte[] value, int offset, int length, OutputBuffer output) throws CryptoInitializationFailed, CryptoCoreFailed;
 }
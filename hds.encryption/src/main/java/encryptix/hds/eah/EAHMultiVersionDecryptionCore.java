@@ -0,0 +1,131 @@
+package encryptix.hds.eah;
+
+import encryptix.hds.eah.cache.KeyCache;
+import encryptix.hds.eah.cache.KeyCacheStatistics;
+import encryptix.hds.eah.v1.EAHDecryptionCoreV1;
+import encryptix.hds.eah.v2.EAHDecryptionCoreV2;
+import encryptix.hds.eah.v3.BlockDictionary;
+import encryptix.hds.eah.v3.EAHDecryptionCoreV3;
+import encryptix.hds.exception.CryptoCoreFailed;
+import encryptix.hds.exception.CryptoInitializationFailed;
+import encryptix.hds.exception.InvalidInputFormat;
+
+import javax.crypto.SecretKey;
+import java.security.PrivateKey;
+
+/**
+ * EAH Decryption Core for all supported format versions, dispatches every value to the core of its version by format
+ * signature, so tables with mixed v1, v2 and v3 values are decrypted transparently. V3 values require block
+ * dictionary, without it they are rejected as wrong format.
+ * <p/>
+ * Version cores share the same L2 cache of AES keys, it's keyed by ECIES part, which is unique for every block of any
+ * version.
+ * <p/>
+ * NOT threadsafe implementation, same as version cores
+ */
+public class EAHMultiVersionDecryptionCore implements EAHDecryptionCore {
+
+    private final EAHDecryptionCoreV1 decryptionCoreV1;
+
+    private final EAHDecryptionCoreV2 decryptionCoreV2;
+
+    // null if there is no block dictionary
+    private final EAHDecryptionCoreV3 decryptionCoreV3;
+
+    public EAHMultiVersionDecryptionCore(PrivateKey privateKey) throws CryptoInitializationFailed {
+        this(privateKey, EAHDecryptionCoreV1.AES_KEY_CACHE_POLICY.<String, SecretKey>create(EAHDecryptionCoreV1.AES_KEY_CACHE_SIZE));
+    }
+
+    /**
+     * @param privateKey Private key for asymmetric part
+     * @param aesKeyCache L2 cache of AES keys, shared by version cores
+     * @throws CryptoInitializationFailed If initialization filed, see root cause
+     */
+    public EAHMultiVersionDecryptionCore(PrivateKey privateKey, KeyCache<String, SecretKey> aesKeyCache) throws CryptoInitializationFailed {
+        this(privateKey, aesKeyCache, null);
+    }
+
+    /**
+     * @param privateKey Private key for asymmetric part
+     * @param aesKeyCache L2 cache of AES keys, shared by version cores
+     * @param blockDictionary Block dictionary for V3 values, may be null
+     * @throws CryptoInitializationFailed If initialization filed, see root cause
+     */
+    public EAHMultiVersionDecryptionCore(PrivateKey privateKey, KeyCache<String, SecretKey> aesKeyCache, BlockDictionary blockDictionary) throws CryptoInitializationFailed {
+        this.decryptionCoreV1 = new EAHDecryptionCoreV1(privateKey, aesKeyCache);
+        this.decryptionCoreV2 = new EAHDecryptionCoreV2(privateKey, aesKeyCache);
+        this.decryptionCoreV3 = blockDictionary == null ? null : new EAHDecryptionCoreV3(privateKey, blockDictionary, aesKeyCache);
+    }
+
+    /**
+     * Checks, is value of supported format version, by signature only
+     *
+     * @param value EAH String
+     * @return true if value has signature of supported version
+     */
+    public static boolean isSupported(String value) {
+        return value.startsWith(encryptix.hds.eah.v1.FormatHelper.FORMAT_SIGNATURE) ||
+                value.startsWith(encryptix.hds.eah.v2.FormatHelper.FORMAT_SIGNATURE) ||
+                value.startsWith(encryptix.hds.eah.v3.FormatHelper.FORMAT_SIGNATURE);
+    }
+
+    /**
+     * Checks, is UTF-8 value of supported format version, by signature only
+     *
+     * @param value UTF-8 bytes of EAH String
+     * @param offset Offset of EAH String in value
+     * @param length Length of EAH String in value
+     * @return true if value has signature of supported version
+     */
+    public static boolean isSupported(byte[] value, int offset, int length) {
+        return encryptix.hds.eah.v1.FormatHelper.hasSignature(value, offset, length) ||
+                encryptix.hds.eah.v2.FormatHelper.hasSignature(value, offset, length) ||
+                encryptix.hds.eah.v3.FormatHelper.hasSignature(value, offset, length);
+    }
+
+    @Override
+    public String decrypt(String value) throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        // v1 first, it's the most of existing data
+        if (value.startsWith(encryptix.hds.eah.v1.FormatHelper.FORMAT_SIGNATURE)) {
+            return this.decryptionCoreV1.decrypt(value);
+        } else if (value.startsWith(encryptix.hds.eah.v2.FormatHelper.FORMAT_SIGNATURE)) {
+            return this.decryptionCoreV2.decrypt(value);
+        } else if (value.startsWith(encryptix.hds.eah.v3.FormatHelper.FORMAT_SIGNATURE)) {
+            return decryptionCoreV3().decrypt(value);
+        }
+
+        throw new InvalidInputFormat("Format signature is not recognized or version is not supported for value " + value);
+    }
+
+    @Override
+    public int decrypt(byte[] value, int offset, int length, OutputBuffer output) throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        if (encryptix.hds.eah.v1.FormatHelper.hasSignature(value, offset, length)) {
+            return this.decryptionCoreV1.decrypt(value, offset, length, output);
+        } else if (encryptix.hds.eah.v2.FormatHelper.hasSignature(value, offset, length)) {
+            return this.decryptionCoreV2.decrypt(value, offset, length, output);
+        } else if (encryptix.hds.eah.v3.FormatHelper.hasSignature(value, offset, length)) {
+            return decryptionCoreV3().decrypt(value, offset, length, output);
+        }
+
+        throw new InvalidInputFormat("Format signature is not recognized or version is not supported for value " + new String(value, offset, length, encryptix.hds.eah.v1.FormatHelper.CONVERSION_CHARSET));
+    }
+
+    /**
+     * @return V3 core
+     * @throws InvalidInputFormat If there is no block dictionary
+     */
+    private EAHDecryptionCoreV3 decryptionCoreV3() throws InvalidInputFormat {
+        if (this.decryptionCoreV3 == null) {
+            throw new InvalidInputFormat("Block dictionary is required for the version " + encryptix.hds.eah.v3.FormatHelper.VERSION + ", but not provided");
+        }
+
+        return this.decryptionCoreV3;
+    }
+
+    /**
+     * @return Hit, miss and eviction counters of the shared L2 cache of AES keys
+     */
+    public KeyCacheStatistics getAesKeyCacheStatistics() {
+        return this.decryptionCoreV1.getAesKeyCacheStatistics();
+    }
+}
@@ -0,0 +1,112 @@
+package encryptix.hds.eah;
+
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer to be reused for every row processed.
+ * <p/>
+ * Crypto cores append output to this buffer instead of creating new arrays and Strings, so caller allocates buffer once
+ * and calls reset() before every row. Internal array is exposed to avoid copies, it's content is valid until the next
+ * reset or write.
+ * <p/>
+ * NOT threadsafe implementation, same as crypto cores
+ */
+public class OutputBuffer extends OutputStream {
+
+    /**
+     * Initial capacity, enough for the most of the EAH values
+     */
+    public static final int DEFAULT_CAPACITY = 512;
+
+    private byte[] data;
+
+    private int length;
+
+    public OutputBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public OutputBuffer(int capacity) {
+        this.data = new byte[capacity];
+    }
+
+    /**
+     * Resets buffer, internal array is kept for reuse
+     */
+    public void reset() {
+        this.length = 0;
+    }
+
+    /**
+     * Returns internal array, valid data is [0, getLength())
+     *
+     * @return internal array
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * Returns length of the valid data
+     *
+     * @return length of the valid data
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Ensures that at least required bytes are available after the valid data, grows internal array if needed.
+     * Use with advance() to write directly to the internal array
+     *
+     * @param required Bytes required
+     * @return internal array, which may be changed by this call
+     */
+    public byte[] ensureFree(int required) {
+        if (this.data.length - this.length < required) {
+            this.data = Arrays.copyOf(this.data, Math.max(this.data.length << 1, this.length + required));
+        }
+        return this.data;
+    }
+
+    /**
+     * Marks bytes, written directly to the internal array after the valid data, as valid
+     *
+     * @param count Bytes written
+     */
+    public void advance(int count) {
+        this.length += count;
+    }
+
+    @Override
+    public void write(int value) {
+        ensureFree(1)[this.length++] = (byte) value;
+    }
+
+    @Override
+    public void write(byte[] source, int offset, int count) {
+        System.arraycopy(source, offset, ensureFree(count), this.length, count);
+        this.length += count;
+    }
+
+    /**
+     * Copies valid data to the new array
+     *
+     * @return copy of the valid data
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(this.data, this.length);
+    }
+
+    /**
+     * Converts valid data to String
+     *
+     * @param charset Charset to use
+     * @return String
+     */
+    public String toString(Charset charset) {
+        return new String(this.data, 0, this.length, charset);
+    }
+}
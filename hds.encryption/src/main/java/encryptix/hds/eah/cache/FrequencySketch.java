@@ -0,0 +1,105 @@
+package encryptix.hds.eah.cache;
+
+import java.util.Arrays;
+
+/**
+ * Count-min sketch of the access frequency, 4 bit counters (stored in bytes) in 4 rows, for TinyLFU admission policy.
+ * <p/>
+ * Frequencies are aged: when number of increments reaches sample size, all counters are halved, so history of the old
+ * blocks is forgotten.
+ * <p/>
+ * NOT threadsafe implementation
+ */
+class FrequencySketch {
+
+    private static final int MAX_FREQUENCY = 15;
+
+    private static final int MIN_WIDTH = 16;
+
+    private static final int SAMPLE_SIZE_FACTOR = 10;
+
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final byte[] counters;
+
+    private final int width;
+
+    private final int sampleSize;
+
+    private int additions;
+
+    FrequencySketch(int capacity) {
+        int rowWidth = MIN_WIDTH;
+        while (rowWidth < capacity) {
+            rowWidth <<= 1;
+        }
+
+        this.width = rowWidth;
+        this.counters = new byte[SEEDS.length * rowWidth];
+        this.sampleSize = SAMPLE_SIZE_FACTOR * Math.max(capacity, MIN_WIDTH);
+    }
+
+    /**
+     * Estimates access frequency of the key
+     *
+     * @param key Key
+     * @return Frequency estimation, 0 to 15
+     */
+    int frequency(Object key) {
+        int hash = key.hashCode();
+        int frequency = MAX_FREQUENCY;
+        for (int row = 0; row < SEEDS.length; row++) {
+            frequency = Math.min(frequency, this.counters[index(hash, row)]);
+        }
+        return frequency;
+    }
+
+    /**
+     * Records access to the key. Conservative update: only the smallest counters are incremented
+     *
+     * @param key Key
+     */
+    void increment(Object key) {
+        int frequency = frequency(key);
+        if (frequency >= MAX_FREQUENCY) {
+            return;
+        }
+
+        int hash = key.hashCode();
+        for (int row = 0; row < SEEDS.length; row++) {
+            int index = index(hash, row);
+            if (this.counters[index] == frequency) {
+                this.counters[index]++;
+            }
+        }
+
+        if (++this.additions >= this.sampleSize) {
+            age();
+        }
+    }
+
+    /**
+     * Halves all counters
+     */
+    private void age() {
+        for (int i = 0; i < this.counters.length; i++) {
+            this.counters[i] >>= 1;
+        }
+        this.additions >>= 1;
+    }
+
+    /**
+     * Clears all counters
+     */
+    void clear() {
+        Arrays.fill(this.counters, (byte) 0);
+        this.additions = 0;
+    }
+
+    private int index(int hash, int row) {
+        int spread = hash * SEEDS[row];
+        spread ^= spread >>> 16;
+        int column = spread & (this.width - 1);
+        return row * this.width + column;
+    }
+}
@@ -0,0 +1,50 @@
+package encryptix.hds.eah.cache;
+
+/**
+ * Bounded cache of the decrypted keys, used as L2 cache of the decryption cores.
+ * <p/>
+ * Implementations define eviction and admission policy, see KeyCachePolicy. Unless stated otherwise, implementations
+ * are NOT threadsafe, same as crypto cores.
+ *
+ * @param <K> Cache key, usually serialized ECIES part
+ * @param <V> Cached key
+ * @see KeyCachePolicy
+ */
+public interface KeyCache<K, V> {
+
+    /**
+     * Looks for the value, records hit or miss
+     *
+     * @param key Cache key
+     * @return Cached value or null if not cached
+     */
+    V get(K key);
+
+    /**
+     * Caches the value. Cache may evict other value or may reject the value given, depends on policy
+     *
+     * @param key Cache key
+     * @param value Value to cache
+     */
+    void put(K key, V value);
+
+    /**
+     * @return Number of values cached
+     */
+    int size();
+
+    /**
+     * @return Maximum number of values cached
+     */
+    int getCapacity();
+
+    /**
+     * Removes all values, statistics is kept
+     */
+    void clear();
+
+    /**
+     * @return Hit, miss and eviction counters
+     */
+    KeyCacheStatistics getStatistics();
+}
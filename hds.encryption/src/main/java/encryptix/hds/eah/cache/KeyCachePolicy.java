@@ -0,0 +1,49 @@
+package encryptix.hds.eah.cache;
+
+import java.util.Locale;
+
+/**
+ * Key cache eviction and admission policies
+ */
+public enum KeyCachePolicy {
+
+    /**
+     * Least recently used, see LRUKeyCache
+     */
+    LRU {
+        @Override
+        public <K, V> KeyCache<K, V> create(int capacity) {
+            return new LRUKeyCache<>(capacity);
+        }
+    },
+
+    /**
+     * Least recently used with TinyLFU admission, scan-resistant, see TinyLFUKeyCache
+     */
+    TINYLFU {
+        @Override
+        public <K, V> KeyCache<K, V> create(int capacity) {
+            return new TinyLFUKeyCache<>(capacity);
+        }
+    };
+
+    /**
+     * Creates key cache with this policy
+     *
+     * @param capacity Maximum number of values cached
+     * @return New key cache
+     * @throws IllegalArgumentException If capacity is not positive
+     */
+    public abstract <K, V> KeyCache<K, V> create(int capacity);
+
+    /**
+     * Finds policy by name, case insensitive
+     *
+     * @param name Policy name, "lru" or "tinylfu"
+     * @return Policy
+     * @throws IllegalArgumentException If policy is unknown
+     */
+    public static KeyCachePolicy fromName(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+    }
+}
@@ -0,0 +1,69 @@
+package encryptix.hds.eah.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Key cache counters. Counters are updated on L1 miss only (once per block), so atomic counters are cheap enough and
+ * the same statistics may be used by threadsafe caches.
+ * <p/>
+ * Threadsafe implementation
+ */
+public class KeyCacheStatistics {
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final AtomicLong rejections = new AtomicLong();
+
+    void recordHit() {
+        this.hits.incrementAndGet();
+    }
+
+    void recordMiss() {
+        this.misses.incrementAndGet();
+    }
+
+    void recordEviction() {
+        this.evictions.incrementAndGet();
+    }
+
+    void recordRejection() {
+        this.rejections.incrementAndGet();
+    }
+
+    /**
+     * @return Lookups of the cached values
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return Lookups of the values not cached
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * @return Cached values, evicted to free space for the new ones
+     */
+    public long getEvictions() {
+        return this.evictions.get();
+    }
+
+    /**
+     * @return New values, not admitted to the cache by admission policy
+     */
+    public long getRejections() {
+        return this.rejections.get();
+    }
+
+    @Override
+    public String toString() {
+        return "hits: " + getHits() + ", misses: " + getMisses() + ", evictions: " + getEvictions() + ", rejections: " + getRejections();
+    }
+}
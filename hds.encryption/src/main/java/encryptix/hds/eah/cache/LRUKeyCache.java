@@ -0,0 +1,78 @@
+package encryptix.hds.eah.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used key cache, evicts the value used the most time ago.
+ * <p/>
+ * Good when data is read block by block. Thrashes when data of more blocks than capacity is read in interleaved order,
+ * use TinyLFUKeyCache then.
+ * <p/>
+ * NOT threadsafe implementation
+ *
+ * @see TinyLFUKeyCache
+ */
+public class LRUKeyCache<K, V> implements KeyCache<K, V> {
+
+    private final int capacity;
+
+    private final KeyCacheStatistics statistics = new KeyCacheStatistics();
+
+    // access order, eldest entry is the least recently used
+    private final Map<K, V> values;
+
+    public LRUKeyCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Key cache capacity must be positive, but it is " + capacity);
+        }
+
+        this.capacity = capacity;
+        this.values = new LinkedHashMap<K, V>(capacity + 1, 1F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() > LRUKeyCache.this.capacity) {
+                    LRUKeyCache.this.statistics.recordEviction();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public V get(K key) {
+        V value = this.values.get(key);
+        if (value == null) {
+            this.statistics.recordMiss();
+        } else {
+            this.statistics.recordHit();
+        }
+        return value;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        this.values.put(key, value);
+    }
+
+    @Override
+    public int size() {
+        return this.values.size();
+    }
+
+    @Override
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    @Override
+    public void clear() {
+        this.values.clear();
+    }
+
+    @Override
+    public KeyCacheStatistics getStatistics() {
+        return this.statistics;
+    }
+}
@@ -0,0 +1,297 @@
+package encryptix.hds.eah.cache;
+
+import encryptix.hds.exception.CryptoInitializationFailed;
+import encryptix.hds.hash.DigestAlgorithm;
+import encryptix.hds.hash.StreamedDigestGenerator;
+
+import javax.crypto.SecretKey;
+import java.security.Key;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * JVM-wide cache of the AES keys, decrypted from ECIES parts, shared by all decryption cores.
+ * <p/>
+ * ECIES decryption is the most expensive operation of the decryption. When JVM is reused (Tez container) or query
+ * decrypts few columns, every core decrypts the same ECIES parts again, so cores may share decrypted keys. Keys are
+ * cached by private key fingerprint plus ECIES part, so cores with different private keys never share entries.
+ * <p/>
+ * Cache is bounded by capacity, entries are evicted in insertion order (FIFO), optionally entries expire after TTL.
+ * Cache is accessed on the core L1 cache miss only (once per block), so it's simple and lock-free rather than smart.
+ * Cores use it through KeyCache view of their private key, see forKey().
+ * <p/>
+ * Threadsafe implementation
+ */
+public final class SharedKeyCache {
+
+    /**
+     * Default capacity, entries
+     */
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    /**
+     * Default TTL, 0 means entries never expire
+     */
+    public static final long DEFAULT_TTL_MILLISECONDS = 0;
+
+    private static final SharedKeyCache INSTANCE = new SharedKeyCache(DEFAULT_CAPACITY, DEFAULT_TTL_MILLISECONDS);
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    // Insertion order, contains every live entry and may contain stale ones (expired, replaced), see evict()
+    private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger insertionOrderSize = new AtomicInteger();
+
+    private final KeyCacheStatistics statistics = new KeyCacheStatistics();
+
+    private volatile int capacity;
+
+    private volatile long ttl;
+
+    public SharedKeyCache(int capacity, long ttlMilliseconds) {
+        configure(capacity, ttlMilliseconds);
+    }
+
+    /**
+     * @return JVM-wide instance
+     */
+    public static SharedKeyCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Updates cache configuration, entries over capacity are evicted immediately
+     *
+     * @param capacity Maximum number of entries, positive
+     * @param ttlMilliseconds Entry lifetime, milliseconds, 0 means entries never expire
+     * @throws IllegalArgumentException If configuration is wrong
+     */
+    public void configure(int capacity, long ttlMilliseconds) throws IllegalArgumentException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Shared key cache capacity must be positive, but it is " + capacity);
+        }
+        if (ttlMilliseconds < 0) {
+            throw new IllegalArgumentException("Shared key cache TTL must not be negative, but it is " + ttlMilliseconds);
+        }
+
+        this.capacity = capacity;
+        this.ttl = TimeUnit.NANOSECONDS.convert(ttlMilliseconds, TimeUnit.MILLISECONDS);
+        evict();
+    }
+
+    /**
+     * Creates fingerprint of the key to separate cache entries of the different keys
+     *
+     * @param key Key, private key of the decryption core
+     * @return Key fingerprint
+     * @throws CryptoInitializationFailed If digest is not available
+     */
+    public static String fingerprint(Key key) throws CryptoInitializationFailed {
+        return new StreamedDigestGenerator(DigestAlgorithm.SHA256).hexDigest(key.getEncoded());
+    }
+
+    /**
+     * Looks for the AES key
+     *
+     * @param keyFingerprint Fingerprint of the private key, see fingerprint()
+     * @param eciesPart Serialized ECIES part
+     * @return AES key or null if not cached
+     */
+    public SecretKey get(String keyFingerprint, String eciesPart) {
+        String cacheKey = cacheKey(keyFingerprint, eciesPart);
+        Entry entry = this.entries.get(cacheKey);
+
+        if (entry == null) {
+            this.statistics.recordMiss();
+            return null;
+        }
+
+        if (this.ttl > 0 && System.nanoTime() - entry.creationTime > this.ttl) {
+            this.entries.remove(cacheKey, entry);
+            this.statistics.recordMiss();
+            return null;
+        }
+
+        this.statistics.recordHit();
+        return entry.key;
+    }
+
+    /**
+     * Caches the AES key
+     *
+     * @param keyFingerprint Fingerprint of the private key, see fingerprint()
+     * @param eciesPart Serialized ECIES part
+     * @param aesKey AES key decrypted from ECIES part
+     */
+    public void put(String keyFingerprint, String eciesPart, SecretKey aesKey) {
+        Entry entry = new Entry(cacheKey(keyFingerprint, eciesPart), aesKey);
+        this.entries.put(entry.cacheKey, entry);
+        this.insertionOrder.add(entry);
+        this.insertionOrderSize.incrementAndGet();
+        evict();
+    }
+
+    /**
+     * @return Number of entries cached, including expired but not evicted yet
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Counts entries of one private key. Iterates all entries, for monitoring and tests
+     *
+     * @param keyFingerprint Fingerprint of the private key, see fingerprint()
+     * @return Number of entries of the private key cached, including expired but not evicted yet
+     */
+    public int size(String keyFingerprint) {
+        String prefix = cacheKey(keyFingerprint, "");
+        int size = 0;
+        for (String cacheKey : this.entries.keySet()) {
+            if (cacheKey.startsWith(prefix)) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return Maximum number of entries
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Removes all entries, statistics is kept
+     */
+    public void clear() {
+        this.entries.clear();
+        this.insertionOrder.clear();
+        this.insertionOrderSize.set(0);
+    }
+
+    /**
+     * Removes entries of one private key, statistics is kept. Entries removed stay in insertion order till evicted or
+     * purged, but don't take capacity
+     *
+     * @param keyFingerprint Fingerprint of the private key, see fingerprint()
+     */
+    public void clear(String keyFingerprint) {
+        String prefix = cacheKey(keyFingerprint, "");
+        Iterator<String> iterator = this.entries.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().startsWith(prefix)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return Hit, miss and eviction counters of all cores
+     */
+    public KeyCacheStatistics getStatistics() {
+        return this.statistics;
+    }
+
+    /**
+     * Returns view of the entries of one private key, to be used by decryption core as L2 cache. View's size() and
+     * clear() affect entries of the private key only, while capacity and statistics are shared by all private keys
+     *
+     * @param keyFingerprint Fingerprint of the private key, see fingerprint()
+     * @return View of the entries of the private key
+     */
+    public KeyCache<String, SecretKey> forKey(final String keyFingerprint) {
+        return new KeyCache<String, SecretKey>() {
+            @Override
+            public SecretKey get(String eciesPart) {
+                return SharedKeyCache.this.get(keyFingerprint, eciesPart);
+            }
+
+            @Override
+            public void put(String eciesPart, SecretKey aesKey) {
+                SharedKeyCache.this.put(keyFingerprint, eciesPart, aesKey);
+            }
+
+            @Override
+            public int size() {
+                return SharedKeyCache.this.size(keyFingerprint);
+            }
+
+            @Override
+            public int getCapacity() {
+                return SharedKeyCache.this.getCapacity();
+            }
+
+            @Override
+            public void clear() {
+                SharedKeyCache.this.clear(keyFingerprint);
+            }
+
+            @Override
+            public KeyCacheStatistics getStatistics() {
+                return SharedKeyCache.this.getStatistics();
+            }
+        };
+    }
+
+    /**
+     * Evicts the oldest live entries while cache is over capacity. Insertion order contains every live entry, so cache
+     * never exceeds capacity. Stale entries of insertion order (expired or replaced) don't count, they are dropped on
+     * the way, and purged once insertion order is twice the capacity, so it stays bounded
+     */
+    private void evict() {
+        while (this.entries.size() > this.capacity) {
+            Entry eldest = this.insertionOrder.poll();
+            if (eldest == null) {
+                return;
+            }
+            this.insertionOrderSize.decrementAndGet();
+            // removes only if entry was not replaced
+            if (this.entries.remove(eldest.cacheKey, eldest)) {
+                this.statistics.recordEviction();
+            }
+        }
+
+        if (this.insertionOrderSize.get() > 2 * this.capacity) {
+            purgeStaleEntries();
+        }
+    }
+
+    /**
+     * Removes entries expired or replaced from insertion order
+     */
+    private void purgeStaleEntries() {
+        Iterator<Entry> iterator = this.insertionOrder.iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (this.entries.get(entry.cacheKey) != entry) {
+                iterator.remove();
+                this.insertionOrderSize.decrementAndGet();
+            }
+        }
+    }
+
+    private static String cacheKey(String keyFingerprint, String eciesPart) {
+        return keyFingerprint + ':' + eciesPart;
+    }
+
+    /**
+     * Cached AES key with creation time
+     */
+    private static final class Entry {
+        private final String cacheKey;
+        private final SecretKey key;
+        private final long creationTime = System.nanoTime();
+
+        private Entry(String cacheKey, SecretKey key) {
+            this.cacheKey = cacheKey;
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package encryptix.hds.eah.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU key cache with TinyLFU admission policy, see https://arxiv.org/abs/1512.00727
+ * <p/>
+ * When cache is full, new value is admitted only if it was accessed more frequently than the least recently used
+ * value, which will be evicted. Otherwise the new value is rejected. Access frequency is estimated by count-min sketch,
+ * so history of the values not cached is kept too.
+ * <p/>
+ * This is scan-resistant: when data of more blocks than capacity is read in interleaved order, LRU cache evicts every
+ * value before it's used again and every row pays for ECIES decryption. With TinyLFU admission the part of the blocks,
+ * which fits to the cache, stays cached.
+ * <p/>
+ * NOT threadsafe implementation
+ *
+ * @see LRUKeyCache
+ */
+public class TinyLFUKeyCache<K, V> implements KeyCache<K, V> {
+
+    private final int capacity;
+
+    private final KeyCacheStatistics statistics = new KeyCacheStatistics();
+
+    private final FrequencySketch sketch;
+
+    // access order, eldest entry is the least recently used
+    private final Map<K, V> values;
+
+    public TinyLFUKeyCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Key cache capacity must be positive, but it is " + capacity);
+        }
+
+        this.capacity = capacity;
+        this.sketch = new FrequencySketch(capacity);
+        this.values = new LinkedHashMap<>(capacity + 1, 1F, true);
+    }
+
+    @Override
+    public V get(K key) {
+        this.sketch.increment(key);
+
+        V value = this.values.get(key);
+        if (value == null) {
+            this.statistics.recordMiss();
+        } else {
+            this.statistics.recordHit();
+        }
+        return value;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        if (this.values.size() < this.capacity || this.values.containsKey(key)) {
+            this.values.put(key, value);
+            return;
+        }
+
+        Iterator<Map.Entry<K, V>> leastRecentlyUsed = this.values.entrySet().iterator();
+        K victim = leastRecentlyUsed.next().getKey();
+
+        if (this.sketch.frequency(key) > this.sketch.frequency(victim)) {
+            leastRecentlyUsed.remove();
+            this.statistics.recordEviction();
+            this.values.put(key, value);
+        } else {
+            this.statistics.recordRejection();
+        }
+    }
+
+    @Override
+    public int size() {
+        return this.values.size();
+    }
+
+    @Override
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    @Override
+    public void clear() {
+        this.values.clear();
+        this.sketch.clear();
+    }
+
+    @Override
+    public KeyCacheStatistics getStatistics() {
+        return this.statistics;
+    }
+}
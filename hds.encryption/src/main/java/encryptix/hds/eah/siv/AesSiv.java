@@ -0,0 +1,192 @@
+package encryptix.hds.eah.siv;
+
+import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.macs.CMac;
+import org.bouncycastle.crypto.params.KeyParameter;
+
+import javax.crypto.AEADBadTagException;
+import java.util.Arrays;
+
+/**
+ * AES-SIV deterministic authenticated encryption, RFC 5297, with single associated data component.
+ * <p/>
+ * Key is K1 || K2, 32, 48 or 64 bytes for AES-128, AES-192 and AES-256 respectively: K1 is CMAC key of S2V, K2 is
+ * CTR key. CMAC and AES are keyed once per instance, there are no key schedules and allocations per value.
+ * <p/>
+ * Output is synthetic IV (16 bytes) and ciphertext of the plaintext length. Same key, associated data and plaintext
+ * give the same output, this is the purpose.
+ * <p/>
+ * NOT threadsafe implementation, 'cause target is a Hive, which uses every instance in a single thread
+ */
+public class AesSiv {
+
+    /**
+     * Synthetic IV size, bytes
+     */
+    public static final int SIV_SIZE = 16;
+
+    private static final int BLOCK_SIZE = 16;
+
+    private final CMac cmac;
+
+    private final AESEngine ctrEngine;
+
+    // Reusable blocks
+    private final byte[] d = new byte[BLOCK_SIZE];
+    private final byte[] block = new byte[BLOCK_SIZE];
+    private final byte[] counter = new byte[BLOCK_SIZE];
+    private final byte[] keyStream = new byte[BLOCK_SIZE];
+    private final byte[] siv = new byte[SIV_SIZE];
+
+    /**
+     * @param key K1 || K2, 32, 48 or 64 bytes
+     * @throws IllegalArgumentException If key size is wrong
+     */
+    public AesSiv(byte[] key) {
+        if (key.length != 32 && key.length != 48 && key.length != 64) {
+            throw new IllegalArgumentException("AES-SIV key must be 32, 48 or 64 bytes, got " + key.length);
+        }
+
+        int half = key.length / 2;
+
+        this.cmac = new CMac(new AESEngine());
+        this.cmac.init(new KeyParameter(key, 0, half));
+
+        this.ctrEngine = new AESEngine();
+        this.ctrEngine.init(true, new KeyParameter(key, half, half));
+    }
+
+    /**
+     * Encrypts value, writes synthetic IV and ciphertext, SIV_SIZE + length bytes
+     *
+     * @param associatedData Associated data, authenticated but not encrypted, may be null
+     * @param value Plaintext
+     * @param offset Plaintext offset
+     * @param length Plaintext length
+     * @param output Output, must not overlap with plaintext
+     * @param outputOffset Output offset
+     * @return Bytes written
+     */
+    public int encrypt(byte[] associatedData, byte[] value, int offset, int length, byte[] output, int outputOffset) {
+        s2v(associatedData, value, offset, length, output, outputOffset);
+        ctr(output, outputOffset, value, offset, length, output, outputOffset + SIV_SIZE);
+        return SIV_SIZE + length;
+    }
+
+    /**
+     * Decrypts and authenticates value, writes plaintext, length - SIV_SIZE bytes
+     *
+     * @param associatedData Associated data, same as on encryption, may be null
+     * @param value Synthetic IV and ciphertext
+     * @param offset Value offset
+     * @param length Value length, at least SIV_SIZE
+     * @param output Output, must not overlap with value
+     * @param outputOffset Output offset
+     * @return Bytes written
+     * @throws AEADBadTagException If value or associated data is modified, or key is wrong
+     */
+    public int decrypt(byte[] associatedData, byte[] value, int offset, int length, byte[] output, int outputOffset) throws AEADBadTagException {
+        if (length < SIV_SIZE) {
+            throw new AEADBadTagException("AES-SIV value is shorter than synthetic IV");
+        }
+
+        int plaintextLength = length - SIV_SIZE;
+        ctr(value, offset, value, offset + SIV_SIZE, plaintextLength, output, outputOffset);
+        s2v(associatedData, output, outputOffset, plaintextLength, this.siv, 0);
+
+        // constant time compare
+        int difference = 0;
+        for (int i = 0; i < SIV_SIZE; i++) {
+            difference |= this.siv[i] ^ value[offset + i];
+        }
+
+        if (difference != 0) {
+            Arrays.fill(output, outputOffset, outputOffset + plaintextLength, (byte) 0);
+            throw new AEADBadTagException("AES-SIV authentication failed");
+        }
+
+        return plaintextLength;
+    }
+
+    /**
+     * S2V of RFC 5297 with single associated data component
+     */
+    private void s2v(byte[] associatedData, byte[] value, int offset, int length, byte[] output, int outputOffset) {
+        // D = CMAC(<zero>)
+        Arrays.fill(this.block, (byte) 0);
+        this.cmac.update(this.block, 0, BLOCK_SIZE);
+        this.cmac.doFinal(this.d, 0);
+
+        // D = dbl(D) xor CMAC(AD)
+        if (associatedData != null) {
+            this.cmac.update(associatedData, 0, associatedData.length);
+            this.cmac.doFinal(this.block, 0);
+            dbl(this.d);
+            xor(this.d, this.block, 0);
+        }
+
+        if (length >= BLOCK_SIZE) {
+            // T = P xorend D
+            int tail = offset + length - BLOCK_SIZE;
+            this.cmac.update(value, offset, length - BLOCK_SIZE);
+            System.arraycopy(value, tail, this.block, 0, BLOCK_SIZE);
+            xor(this.block, this.d, 0);
+        } else {
+            // T = dbl(D) xor pad(P)
+            Arrays.fill(this.block, (byte) 0);
+            System.arraycopy(value, offset, this.block, 0, length);
+            this.block[length] = (byte) 0x80;
+            dbl(this.d);
+            xor(this.block, this.d, 0);
+        }
+
+        this.cmac.update(this.block, 0, BLOCK_SIZE);
+        this.cmac.doFinal(output, outputOffset);
+    }
+
+    /**
+     * AES-CTR with counter of synthetic IV, bits 31 and 63 cleared
+     */
+    private void ctr(byte[] iv, int ivOffset, byte[] value, int offset, int length, byte[] output, int outputOffset) {
+        System.arraycopy(iv, ivOffset, this.counter, 0, BLOCK_SIZE);
+        this.counter[8] &= 0x7f;
+        this.counter[12] &= 0x7f;
+
+        for (int done = 0; done < length; done += BLOCK_SIZE) {
+            this.ctrEngine.processBlock(this.counter, 0, this.keyStream, 0);
+
+            int blockLength = Math.min(BLOCK_SIZE, length - done);
+            for (int i = 0; i < blockLength; i++) {
+                output[outputOffset + done + i] = (byte) (value[offset + done + i] ^ this.keyStream[i]);
+            }
+
+            // 128-bit big-endian increment
+            int position = BLOCK_SIZE - 1;
+            while (position >= 0 && ++this.counter[position] == 0) {
+                position--;
+            }
+        }
+    }
+
+    /**
+     * Doubling in GF(2^128)
+     */
+    private static void dbl(byte[] value) {
+        int carry = 0;
+        for (int i = BLOCK_SIZE - 1; i >= 0; i--) {
+            int b = value[i] & 0xff;
+            value[i] = (byte) (b << 1 | carry);
+            carry = b >>> 7;
+        }
+
+        if (carry != 0) {
+            value[BLOCK_SIZE - 1] ^= (byte) 0x87;
+        }
+    }
+
+    private static void xor(byte[] target, byte[] source, int sourceOffset) {
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            target[i] ^= source[sourceOffset + i];
+        }
+    }
+}
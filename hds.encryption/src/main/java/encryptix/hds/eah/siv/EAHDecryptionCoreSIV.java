@@ -0,0 +1,106 @@
+package encryptix.hds.eah.siv;
+
+import encryptix.hds.eah.EAHDecryptionCore;
+import encryptix.hds.eah.OutputBuffer;
+import encryptix.hds.exception.CryptoCoreFailed;
+import encryptix.hds.exception.CryptoInitializationFailed;
+import encryptix.hds.exception.InvalidInputFormat;
+
+import javax.crypto.AEADBadTagException;
+
+/**
+ * EAH Decryption Core, deterministic format
+ * <p/>
+ * NOT threadsafe implementation, 'cause target is a Hive, which uses every instance in a single thread
+ *
+ * @see EAHEncryptionCoreSIV
+ */
+public class EAHDecryptionCoreSIV implements EAHDecryptionCore {
+
+    private final AesSiv aesSiv;
+
+    // Reusable buffers for deserialized encrypted data and String output
+    private final OutputBuffer encryptedDataBuffer = new OutputBuffer();
+    private final OutputBuffer stringOutputBuffer = new OutputBuffer();
+
+    /**
+     * @param key AES-SIV key, 32, 48 or 64 bytes
+     * @throws CryptoInitializationFailed If key is wrong
+     */
+    public EAHDecryptionCoreSIV(byte[] key) throws CryptoInitializationFailed {
+        try {
+            this.aesSiv = new AesSiv(key);
+        } catch (IllegalArgumentException e) {
+            throw new CryptoInitializationFailed("Failed to initialize AES-SIV", e);
+        }
+    }
+
+    /**
+     * Checks, is value of deterministic format, by signature only
+     *
+     * @param value EAH String
+     * @return true if value has signature of deterministic format
+     */
+    public static boolean isSupported(String value) {
+        return value.startsWith(FormatHelper.FORMAT_SIGNATURE + FormatHelper.SERIALIZED_BLOCK_DELIMITER);
+    }
+
+    /**
+     * Decrypt deterministic format
+     *
+     * @param value EAH String
+     * @return decrypted value
+     *
+     * @throws CryptoCoreFailed
+     * @throws InvalidInputFormat
+     */
+    @Override
+    public String decrypt(String value) throws CryptoCoreFailed, InvalidInputFormat {
+        byte[] valueBytes = value.getBytes(FormatHelper.CONVERSION_CHARSET);
+
+        this.stringOutputBuffer.reset();
+        decrypt(valueBytes, 0, valueBytes.length, this.stringOutputBuffer);
+
+        return this.stringOutputBuffer.toString(FormatHelper.CONVERSION_CHARSET);
+    }
+
+    /**
+     * Decrypt deterministic format, no conversion to String
+     *
+     * @param value UTF-8 bytes of EAH String
+     * @param offset Offset of EAH String in value
+     * @param length Length of EAH String in value
+     * @param output Buffer to append decrypted value to
+     * @return Bytes appended to output
+     *
+     * @throws CryptoCoreFailed
+     * @throws InvalidInputFormat
+     */
+    @Override
+    public int decrypt(byte[] value, int offset, int length, OutputBuffer output) throws CryptoCoreFailed, InvalidInputFormat {
+        if (!FormatHelper.hasSignature(value, offset, length)) {
+            throw new InvalidInputFormat("Format signature is not of deterministic format in value " + new String(value, offset, length, FormatHelper.CONVERSION_CHARSET));
+        }
+
+        this.encryptedDataBuffer.reset();
+        try {
+            FormatHelper.deserialize(value, offset + FormatHelper.PREFIX_BYTES.length, length - FormatHelper.PREFIX_BYTES.length, this.encryptedDataBuffer);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidInputFormat("EAH deterministic format is wrong, failed to deserialize value " + new String(value, offset, length, FormatHelper.CONVERSION_CHARSET), e);
+        }
+
+        int encryptedLength = this.encryptedDataBuffer.getLength();
+        if (encryptedLength < AesSiv.SIV_SIZE) {
+            throw new InvalidInputFormat("EAH deterministic format is wrong, value is too short " + new String(value, offset, length, FormatHelper.CONVERSION_CHARSET));
+        }
+
+        try {
+            int decryptedLength = this.aesSiv.decrypt(FormatHelper.PREFIX_BYTES, this.encryptedDataBuffer.getData(), 0, encryptedLength,
+                    output.ensureFree(encryptedLength - AesSiv.SIV_SIZE), output.getLength());
+            output.advance(decryptedLength);
+            return decryptedLength;
+        } catch (AEADBadTagException e) {
+            throw new CryptoCoreFailed("Decryption failed, value is modified or key is wrong, value " + new String(value, offset, length, FormatHelper.CONVERSION_CHARSET), e);
+        }
+    }
+}
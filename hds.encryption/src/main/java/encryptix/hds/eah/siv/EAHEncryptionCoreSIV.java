@@ -0,0 +1,84 @@
+package encryptix.hds.eah.siv;
+
+import encryptix.hds.eah.EAHEncryptionCore;
+import encryptix.hds.eah.OutputBuffer;
+import encryptix.hds.exception.CryptoInitializationFailed;
+
+/**
+ * EAH Encryption Core, deterministic format
+ * <p/>
+ * Randomized formats (EAHv1, v2, v3) give different ciphertexts for equal values, so join or group by encrypted column
+ * requires decryption of both sides. This format is deterministic: same key and value give the same ciphertext, so
+ * equality joins and GROUP BY run on ciphertext directly. Price is that equal values are visible as equal, so use it
+ * for join keys only, with a key per column, see FormatHelper.deriveColumnKey().
+ * <p/>
+ * Crypto schema is AES-SIV (RFC 5297) with symmetric key, prefix of the value is authenticated as associated data.
+ * There is no asymmetric part, so encryption side must have the key as well as decryption side.
+ * <p/>
+ * OUTPUT FORMAT:
+ * <p/>
+ * format_identifier:format_version:siv_part
+ * <p/>
+ * format_version is "d1"
+ * siv_part is base64-encoded 16 bytes synthetic IV and AES-CTR ciphertext of the value length
+ * <p/>
+ * NOT threadsafe implementation, 'cause target is a Hive, which uses every instance in a single thread
+ *
+ * @see EAHDecryptionCoreSIV
+ */
+public class EAHEncryptionCoreSIV implements EAHEncryptionCore {
+
+    private final AesSiv aesSiv;
+
+    // Reusable buffers for encrypted data and String output
+    private final OutputBuffer encryptedDataBuffer = new OutputBuffer();
+    private final OutputBuffer stringOutputBuffer = new OutputBuffer();
+
+    /**
+     * @param key AES-SIV key, 32, 48 or 64 bytes
+     * @throws CryptoInitializationFailed If key is wrong
+     */
+    public EAHEncryptionCoreSIV(byte[] key) throws CryptoInitializationFailed {
+        try {
+            this.aesSiv = new AesSiv(key);
+        } catch (IllegalArgumentException e) {
+            throw new CryptoInitializationFailed("Failed to initialize AES-SIV", e);
+        }
+    }
+
+    /**
+     * Encrypt string to deterministic format
+     *
+     * @param value Value to encrypt
+     * @return EAH deterministic format string
+     */
+    @Override
+    public String encrypt(String value) {
+        byte[] valueBytes = value.getBytes(FormatHelper.CONVERSION_CHARSET);
+
+        this.stringOutputBuffer.reset();
+        encrypt(valueBytes, 0, valueBytes.length, this.stringOutputBuffer);
+
+        return this.stringOutputBuffer.toString(FormatHelper.SERIALIZED_CHARSET);
+    }
+
+    /**
+     * Encrypt bytes to deterministic format, no conversion to String
+     *
+     * @param value Bytes to encrypt, usually UTF-8 of the String
+     * @param offset Offset of data in value
+     * @param length Length of data in value
+     * @param output Buffer to append EAH deterministic format bytes to
+     * @return Bytes appended to output
+     */
+    @Override
+    public int encrypt(byte[] value, int offset, int length, OutputBuffer output) {
+        this.encryptedDataBuffer.reset();
+        int encryptedLength = this.aesSiv.encrypt(FormatHelper.PREFIX_BYTES, value, offset, length,
+                this.encryptedDataBuffer.ensureFree(AesSiv.SIV_SIZE + length), 0);
+        this.encryptedDataBuffer.advance(encryptedLength);
+
+        output.write(FormatHelper.PREFIX_BYTES, 0, FormatHelper.PREFIX_BYTES.length);
+        return FormatHelper.PREFIX_BYTES.length + FormatHelper.serialize(this.encryptedDataBuffer.getData(), 0, encryptedLength, output);
+    }
+}
@@ -0,0 +1,104 @@
+package encryptix.hds.eah.siv;
+
+import encryptix.hds.eah.EAHFormatHelper;
+import encryptix.hds.eah.OutputBuffer;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+
+/**
+ * EAH deterministic format helper. Delimiters, charsets and base64 codec are the same as for EAHv1
+ */
+public class FormatHelper {
+    /**
+     * Output format version, 'd' is for deterministic, so randomized format cores never take it for their own
+     */
+    public static final String VERSION = "d1";
+
+    /**
+     * Output format delimiter
+     */
+    public static final String SERIALIZED_BLOCK_DELIMITER = encryptix.hds.eah.v1.FormatHelper.SERIALIZED_BLOCK_DELIMITER;
+
+    /**
+     * Format signature for quick check with String.startWith
+     */
+    public static final String FORMAT_SIGNATURE = EAHFormatHelper.IDENTIFIER_PREFIX + SERIALIZED_BLOCK_DELIMITER + VERSION;
+
+    /**
+     * Conversion String<->byte[] charset, same as for EAHv1
+     */
+    public static final Charset CONVERSION_CHARSET = encryptix.hds.eah.v1.FormatHelper.CONVERSION_CHARSET;
+
+    /**
+     * Serialized parts (signature, version, base64 and delimiters) are ASCII
+     */
+    public static final Charset SERIALIZED_CHARSET = encryptix.hds.eah.v1.FormatHelper.SERIALIZED_CHARSET;
+
+    /**
+     * Column key derivation MAC, gives 64 bytes, AES-256-SIV key
+     */
+    public static final String COLUMN_KEY_DERIVATION_ALGORITHM = "HmacSHA512";
+
+    /**
+     * Serialized prefix, signature with trailing delimiter. Authenticated as associated data
+     */
+    static final byte[] PREFIX_BYTES = (FORMAT_SIGNATURE + SERIALIZED_BLOCK_DELIMITER).getBytes(SERIALIZED_CHARSET);
+
+    /**
+     * Derives AES-SIV key of the column (or any other context) from the master key, so every column has its own key
+     * and equal values of different columns have different ciphertexts
+     *
+     * @param masterKey Master key
+     * @param column Column name or other context, may be empty
+     * @return AES-256-SIV key
+     * @throws GeneralSecurityException If derivation algorithm is not available
+     */
+    public static byte[] deriveColumnKey(byte[] masterKey, String column) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(COLUMN_KEY_DERIVATION_ALGORITHM);
+        mac.init(new SecretKeySpec(masterKey, COLUMN_KEY_DERIVATION_ALGORITHM));
+        mac.update(PREFIX_BYTES);
+        return mac.doFinal(column.getBytes(CONVERSION_CHARSET));
+    }
+
+    /**
+     * Serializer, see EAHv1 FormatHelper
+     *
+     * @param value Value to serialize
+     * @param offset Value offset
+     * @param length Value length
+     * @param output Buffer to append serialized value to
+     * @return Bytes appended
+     */
+    public static int serialize(byte[] value, int offset, int length, OutputBuffer output) {
+        return encryptix.hds.eah.v1.FormatHelper.serialize(value, offset, length, output);
+    }
+
+    /**
+     * Deserializer, see EAHv1 FormatHelper
+     *
+     * @param value Value to deserialize, ASCII bytes
+     * @param offset Value offset
+     * @param length Value length
+     * @param output Buffer to append deserialized value to
+     * @return Bytes appended
+     * @throws IllegalArgumentException
+     */
+    public static int deserialize(byte[] value, int offset, int length, OutputBuffer output) throws IllegalArgumentException {
+        return encryptix.hds.eah.v1.FormatHelper.deserialize(value, offset, length, output);
+    }
+
+    /**
+     * Checks, is UTF-8 value starts with signature and delimiter of deterministic format
+     *
+     * @param value UTF-8 bytes
+     * @param offset Value offset
+     * @param length Value length
+     * @return true if signature matches
+     */
+    public static boolean hasSignature(byte[] value, int offset, int length) {
+        return encryptix.hds.eah.v1.FormatHelper.hasSignature(PREFIX_BYTES, value, offset, length);
+    }
+}
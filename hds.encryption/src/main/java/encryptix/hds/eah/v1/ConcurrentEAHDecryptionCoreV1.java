@@ -0,0 +1,95 @@
+package encryptix.hds.eah.v1;
+
+import encryptix.hds.eah.EAHDecryptionCore;
+import encryptix.hds.eah.OutputBuffer;
+import encryptix.hds.eah.cache.KeyCache;
+import encryptix.hds.eah.cache.KeyCacheStatistics;
+import encryptix.hds.eah.cache.SharedKeyCache;
+import encryptix.hds.exception.CryptoCoreFailed;
+import encryptix.hds.exception.CryptoInitializationFailed;
+import encryptix.hds.exception.InvalidInputFormat;
+
+import javax.crypto.SecretKey;
+import java.security.PrivateKey;
+
+/**
+ * EAH Decryption Core, V1 format, threadsafe implementation for multi-threaded engines and services.
+ * <p/>
+ * Every thread has its own EAHDecryptionCoreV1 (ciphers, L1 cache and buffers are not threadsafe), created on the
+ * first call. All of them share the private key and threadsafe L2 cache of AES keys, so ECIES part of a block is
+ * decrypted about once for all threads instead of once per thread.
+ * <p/>
+ * Threadsafe implementation. Per-thread core lives as long as the facade and thread.
+ *
+ * @see EAHDecryptionCoreV1
+ */
+public class ConcurrentEAHDecryptionCoreV1 implements EAHDecryptionCore {
+
+    private final PrivateKey privateKey;
+
+    private final KeyCache<String, SecretKey> aesKeyCache;
+
+    private final ThreadLocal<EAHDecryptionCoreV1> threadCore = new ThreadLocal<>();
+
+    /**
+     * Creates facade with its own shared cache of AES_KEY_CACHE_SIZE entries
+     *
+     * @param privateKey Private key for asymmetric part
+     * @throws CryptoInitializationFailed If initialization failed, see root cause
+     */
+    public ConcurrentEAHDecryptionCoreV1(PrivateKey privateKey) throws CryptoInitializationFailed {
+        this(privateKey, new SharedKeyCache(EAHDecryptionCoreV1.AES_KEY_CACHE_SIZE, SharedKeyCache.DEFAULT_TTL_MILLISECONDS));
+    }
+
+    /**
+     * @param privateKey Private key for asymmetric part
+     * @param sharedKeyCache Threadsafe cache of AES keys, may be JVM-wide SharedKeyCache.getInstance()
+     * @throws CryptoInitializationFailed If initialization failed, see root cause
+     */
+    public ConcurrentEAHDecryptionCoreV1(PrivateKey privateKey, SharedKeyCache sharedKeyCache) throws CryptoInitializationFailed {
+        this.privateKey = privateKey;
+        this.aesKeyCache = sharedKeyCache.forKey(SharedKeyCache.fingerprint(privateKey));
+
+        // fail fast on wrong key, core of this thread will be reused
+        this.threadCore.set(new EAHDecryptionCoreV1(privateKey, this.aesKeyCache));
+    }
+
+    @Override
+    public String decrypt(String value) throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        return getThreadCore().decrypt(value);
+    }
+
+    /**
+     * Decrypt AEHv1 format with Private Key, no conversion to String
+     *
+     * @param value UTF-8 bytes of EAH String
+     * @param offset Offset of EAH String in value
+     * @param length Length of EAH String in value
+     * @param output Buffer to append decrypted value to, owned by the calling thread
+     * @return Bytes appended to output
+     *
+     * @throws CryptoInitializationFailed
+     * @throws CryptoCoreFailed
+     * @throws InvalidInputFormat
+     */
+    @Override
+    public int decrypt(byte[] value, int offset, int length, OutputBuffer output) throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        return getThreadCore().decrypt(value, offset, length, output);
+    }
+
+    /**
+     * @return Hit, miss and eviction counters of the shared cache of AES keys
+     */
+    public KeyCacheStatistics getAesKeyCacheStatistics() {
+        return this.aesKeyCache.getStatistics();
+    }
+
+    private EAHDecryptionCoreV1 getThreadCore() throws CryptoInitializationFailed {
+        EAHDecryptionCoreV1 core = this.threadCore.get();
+        if (core == null) {
+            core = new EAHDecryptionCoreV1(this.privateKey, this.aesKeyCache);
+            this.threadCore.set(core);
+        }
+        return core;
+    }
+}
@@ -0,0 +1,186 @@
+package encryptix.hds.eah.v1;
+
+import encryptix.hds.eah.EAHEncryptionCore;
+import encryptix.hds.eah.OutputBuffer;
+import encryptix.hds.exception.CryptoCoreFailed;
+import encryptix.hds.exception.CryptoInitializationFailed;
+
+import javax.crypto.Cipher;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * EAH Encryption Core, V1 format, threadsafe implementation for multi-threaded engines and services.
+ * <p/>
+ * Same format and block rules as EAHEncryptionCoreV1, but block (AES key, IV and ECIES part) is shared by all threads,
+ * so ECIES part is computed once per block for the whole JVM instead of once per thread. Ciphers are not threadsafe,
+ * so every thread has its own AES cipher, re-initialized with shared block key and IV on block change (cheap).
+ * <p/>
+ * Block rotation is done under lock by the thread which finds block expired, other threads continue with the current
+ * block until the new one is published. Row counters are shared, so block size limits are approximate under load.
+ * <p/>
+ * Threadsafe implementation. Per-thread state lives as long as the core and thread.
+ *
+ * @see EAHEncryptionCoreV1
+ */
+public class ConcurrentEAHEncryptionCoreV1 implements EAHEncryptionCore {
+
+    private final int minBlockSize;
+
+    private final int maxBlockSize;
+
+    private final long maxBlockLifetime;
+
+    private final EncryptionBlockGenerator blockGenerator;
+
+    private final Object rotationLock = new Object();
+
+    private volatile SharedBlock currentBlock;
+
+    private final ThreadLocal<ThreadState> threadState = new ThreadLocal<ThreadState>() {
+        @Override
+        protected ThreadState initialValue() {
+            return new ThreadState();
+        }
+    };
+
+    public ConcurrentEAHEncryptionCoreV1(PublicKey publicKey) throws CryptoInitializationFailed {
+        this(publicKey, EAHEncryptionCoreV1.DEFAULT_MIN_BLOCK_SIZE, EAHEncryptionCoreV1.DEFAULT_MAX_BLOCK_SIZE,
+                EAHEncryptionCoreV1.DEFAULT_MAX_BLOCK_LIFETIME, EAHEncryptionCoreV1.DEFAULT_AES_KEY_SIZE, false);
+    }
+
+    /**
+     * @param publicKey Public key for asymmetric part
+     * @param minBlockSize Minimum block size, rows
+     * @param maxBlockSize Maximum block size, rows
+     * @param maxBlockLifetime Maximum block lifetime, nanoseconds
+     * @param aesKeySize AES key size, 128, 192 or 256
+     * @param blockPregenerationEnabled Prepare the next block in background, so block rotation will not stall the row
+     * @throws CryptoInitializationFailed If initialization failed, see root cause
+     */
+    public ConcurrentEAHEncryptionCoreV1(PublicKey publicKey, int minBlockSize, int maxBlockSize, long maxBlockLifetime, int aesKeySize, boolean blockPregenerationEnabled) throws CryptoInitializationFailed {
+        this.minBlockSize = minBlockSize;
+        this.maxBlockSize = maxBlockSize;
+        this.maxBlockLifetime = maxBlockLifetime;
+
+        try {
+            // threads init their own ciphers, blocks have none
+            this.blockGenerator = new EncryptionBlockGenerator(publicKey, aesKeySize, blockPregenerationEnabled, false);
+        } catch (GeneralSecurityException e) {
+            throw new CryptoInitializationFailed("Failed to initialize crypto core", e);
+        }
+
+        this.currentBlock = new SharedBlock(this.blockGenerator.next());
+    }
+
+    /**
+     * Encrypt string to EAHv1 format with PublicKey
+     *
+     * @param value Value to encrypt
+     * @return EAHv1 format string
+     * @throws CryptoInitializationFailed
+     * @throws CryptoCoreFailed
+     */
+    @Override
+    public String encrypt(String value) throws CryptoInitializationFailed, CryptoCoreFailed {
+        SharedBlock block = acquireBlock();
+        return EAHEncryptionCoreV1.encryptRow(this.threadState.get().cipherFor(block), block.block.getPrefix(), value);
+    }
+
+    /**
+     * Encrypt bytes to EAHv1 format with PublicKey, no conversion to String
+     *
+     * @param value Bytes to encrypt, usually UTF-8 of the String
+     * @param offset Offset of data in value
+     * @param length Length of data in value
+     * @param output Buffer to append EAHv1 format bytes to, owned by the calling thread
+     * @return Bytes appended to output
+     * @throws CryptoInitializationFailed
+     * @throws CryptoCoreFailed
+     */
+    @Override
+    public int encrypt(byte[] value, int offset, int length, OutputBuffer output) throws CryptoInitializationFailed, CryptoCoreFailed {
+        SharedBlock block = acquireBlock();
+        ThreadState state = this.threadState.get();
+        return EAHEncryptionCoreV1.encryptRow(state.cipherFor(block), block.block.getPrefixBytes(), value, offset, length, state.encryptedDataBuffer, output);
+    }
+
+    /**
+     * Counts row in the current block, rotates block if it's expired
+     *
+     * @return Block to encrypt row with
+     * @throws CryptoInitializationFailed If block rotation failed
+     */
+    private SharedBlock acquireBlock() throws CryptoInitializationFailed {
+        SharedBlock block = this.currentBlock;
+        int rowsProcessed = block.rowsProcessed.getAndIncrement();
+
+        if (isExpired(block, rowsProcessed)) {
+            synchronized (this.rotationLock) {
+                // other thread may already rotate it
+                if (this.currentBlock == block) {
+                    this.currentBlock = new SharedBlock(this.blockGenerator.next());
+                }
+                block = this.currentBlock;
+            }
+            block.rowsProcessed.getAndIncrement();
+        }
+
+        return block;
+    }
+
+    @SuppressWarnings("PMD.UselessParentheses") // same rules as EAHEncryptionCoreV1.isReinitRequired()
+    private boolean isExpired(SharedBlock block, int rowsProcessed) {
+        return
+                rowsProcessed >= this.maxBlockSize || // max block size reached
+                        (
+                                rowsProcessed >= this.minBlockSize && // min block size reached AND
+                                        (System.nanoTime() - block.creationTime > this.maxBlockLifetime) // lifetime timeout reached
+                        );
+    }
+
+    /**
+     * Block shared by threads with shared statistic
+     */
+    private static final class SharedBlock {
+        private final EncryptionBlock block;
+        private final AtomicInteger rowsProcessed = new AtomicInteger();
+        private final long creationTime = System.nanoTime();
+
+        private SharedBlock(EncryptionBlock block) {
+            this.block = block;
+        }
+    }
+
+    /**
+     * Per-thread cipher and buffer
+     */
+    private static final class ThreadState {
+        private final OutputBuffer encryptedDataBuffer = new OutputBuffer();
+        private Cipher aesEncryptCypher;
+        private SharedBlock cipherBlock;
+
+        /**
+         * Returns thread cipher, initialized with key and IV of the block given
+         *
+         * @param block Block to encrypt row with
+         * @return Thread cipher
+         * @throws CryptoInitializationFailed If cipher initialization failed
+         */
+        private Cipher cipherFor(SharedBlock block) throws CryptoInitializationFailed {
+            if (this.cipherBlock != block) {
+                try {
+                    if (this.aesEncryptCypher == null) {
+                        this.aesEncryptCypher = Cipher.getInstance(EAHEncryptionCoreV1.AES_CIPHER_TYPE);
+                    }
+                    this.aesEncryptCypher.init(Cipher.ENCRYPT_MODE, block.block.getAesKey(), block.block.getAesIV());
+                } catch (GeneralSecurityException e) {
+                    throw new CryptoInitializationFailed("Failed to initialize thread cipher", e);
+                }
+                this.cipherBlock = block;
+            }
+            return this.aesEncryptCypher;
+        }
+    }
+}
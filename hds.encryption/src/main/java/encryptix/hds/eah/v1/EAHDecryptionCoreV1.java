@@ -1,19 +1,24 @@
 package encryptix.hds.eah.v1;
 
 import encryptix.hds.eah.EAHDecryptionCore;
+import encryptix.hds.eah.OutputBuffer;
+import encryptix.hds.eah.cache.KeyCache;
+import encryptix.hds.eah.cache.KeyCachePolicy;
+import encryptix.hds.eah.cache.KeyCacheStatistics;
+import encryptix.hds.eah.cache.SharedKeyCache;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.SecretKey;
+import javax.crypto.ShortBufferException;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.PrivateKey;
 import java.security.SecureRandom;
-import java.util.LinkedHashMap;
-import java.util.Map;
 
 import encryptix.hds.exception.CryptoCoreFailed;
 import encryptix.hds.exception.CryptoInitializationFailed;
@@ -24,7 +29,6 @@ import encryptix.hds.exception.InvalidInputFormat;
  *
  * @see EAHEncryptionCoreV1
 */
-//@edu.umd.cs.findbugs.annotations.SuppressFBWarnings(value = "SIC_INNER_SHOULD_BE_STATIC_ANON", justification = "Will be replaced later with LRU cache")
 public class EAHDecryptionCoreV1 implements EAHDecryptionCore {
 
     /**
@@ -32,6 +36,11 @@ public class EAHDecryptionCoreV1 implements EAHDecryptionCore {
      */
     public static final int AES_KEY_CACHE_SIZE = 1000;
 
+    /**
+     * Policy of the L2 cache for AES keys
+     */
+    public static final KeyCachePolicy AES_KEY_CACHE_POLICY = KeyCachePolicy.LRU;
+
     /*
       Crypto engines
      */
@@ -47,16 +56,43 @@ public class EAHDecryptionCoreV1 implements EAHDecryptionCore {
     private String lastAesIVString = null;
     private IvParameterSpec lastAesIV = null;
 
-    // Level 2 Cache of AES keys
-    // TODO Back or replace with true LRU cache
-    private Map<String, SecretKey> aesKeyCacheL2 = new LinkedHashMap<String, SecretKey>(AES_KEY_CACHE_SIZE + 1, 1F, true) {
-        public boolean removeEldestEntry(Map.Entry eldest) {
-            return size() > AES_KEY_CACHE_SIZE;
-        }
-    };
+    // Reusable buffers for deserialized encrypted data and decrypted data
+    private final OutputBuffer encryptedDataBuffer = new OutputBuffer();
+    private final OutputBuffer decryptedDataBuffer = new OutputBuffer();
+
+    // Level 2 Cache of AES keys, core-owned or view of the JVM-wide cache
+    private final KeyCache<String, SecretKey> aesKeyCacheL2;
 
     public EAHDecryptionCoreV1(PrivateKey privateKey) throws CryptoInitializationFailed {
+        this(privateKey, AES_KEY_CACHE_POLICY.<String, SecretKey>create(AES_KEY_CACHE_SIZE));
+    }
+
+    /**
+     * @param privateKey Private key for asymmetric part
+     * @param sharedKeyCache JVM-wide AES keys cache to use instead of the core L2 cache, null for the core L2 cache
+     * @throws CryptoInitializationFailed If initialization filed, see root cause
+     */
+    public EAHDecryptionCoreV1(PrivateKey privateKey, SharedKeyCache sharedKeyCache) throws CryptoInitializationFailed {
+        this(privateKey, sharedKeyCache == null ?
+                AES_KEY_CACHE_POLICY.<String, SecretKey>create(AES_KEY_CACHE_SIZE) :
+                sharedKeyCache.forKey(SharedKeyCache.fingerprint(privateKey)));
+    }
+
+    /**
+     * @param privateKey Private key for asymmetric part
+     * @param aesKeyCache L2 cache of AES keys, see KeyCachePolicy
+     * @throws CryptoInitializationFailed If initialization filed, see root cause
+     */
+    public EAHDecryptionCoreV1(PrivateKey privateKey, KeyCache<String, SecretKey> aesKeyCache) throws CryptoInitializationFailed {
         initCore(privateKey);
+        this.aesKeyCacheL2 = aesKeyCache;
+    }
+
+    /**
+     * @return Hit, miss and eviction counters of the L2 cache of AES keys
+     */
+    public KeyCacheStatistics getAesKeyCacheStatistics() {
+        return this.aesKeyCacheL2.getStatistics();
     }
 
     /**
@@ -99,17 +135,24 @@ public class EAHDecryptionCoreV1 implements EAHDecryptionCore {
 
         try {
             /*
-              We need to be extremely quick, see
-              http://programmers.stackexchange.com/questions/221997/quickest-way-to-split-a-delimited-string-in-java
-              Nevertheless, at least in Java 7, split by single char will fallback to indexOf
+              We need to be extremely quick. split() allocates an array and five substrings for every row, while ECIES
+              part and IV are shared by the whole block and usually hit L1 cache. So we just find delimiters with
+              indexOf, compare ECIES and IV regions with cached values in place and create substrings on cache miss only
              */
-            String[] blocks = value.split(FormatHelper.SERIALIZED_BLOCK_DELIMITER);
-
             // for V1 message format is IDENTIFIER_PREFIX : VERSION : ECIESPart : aesIV : encrypted data
             // for V1 we need to parse ECIESPart [2], aesIV [3], encrypted data [4]
             // We will NOT check prefix or version (@see FormatHelper.FORMAT_SIGNATURE) due to time, if it decrypted - ok.
             // Top layer is responsible for this, @see EAHDecrypteUDF
-            if (blocks.length != 5) {
+            int versionStart = value.indexOf(FormatHelper.SERIALIZED_BLOCK_DELIMITER_CHAR) + 1;
+            int eciesPartStart = versionStart > 0 ? value.indexOf(FormatHelper.SERIALIZED_BLOCK_DELIMITER_CHAR, versionStart) + 1 : 0;
+            int aesIVStart = eciesPartStart > 0 ? value.indexOf(FormatHelper.SERIALIZED_BLOCK_DELIMITER_CHAR, eciesPartStart) + 1 : 0;
+            int encryptedDataStart = aesIVStart > 0 ? value.indexOf(FormatHelper.SERIALIZED_BLOCK_DELIMITER_CHAR, aesIVStart) + 1 : 0;
+            // trailing delimiters are ignored, split() dropped them
+            int encryptedDataEnd = FormatHelper.endOfBlocks(value);
+
+            // exactly 5 blocks and non-empty encrypted data, same as split() gave us before
+            if (encryptedDataStart == 0 || encryptedDataStart >= encryptedDataEnd ||
+                    value.lastIndexOf(FormatHelper.SERIALIZED_BLOCK_DELIMITER_CHAR, encryptedDataEnd - 1) >= encryptedDataStart) {
                 throw new InvalidInputFormat("Encrypted message is wrong, no enough blocks (5 expected) for the version 1 in value " + value);
             }
 
@@ -118,26 +161,108 @@ public class EAHDecryptionCoreV1 implements EAHDecryptionCore {
               with more than 200K TpS , so every microsecond is important and every memory byte
 
               So, we just have to keep in mind simple format schema
-              signatureString = block[0]
-              formatVersionString = block[1]
-              eciesPartString = blocks[2];
-              aesIVString = blocks[3];
-              encryptedDataString = blocks[4];
+              signature = [0, versionStart - 1)
+              formatVersion = [versionStart, eciesPartStart - 1)
+              eciesPart = [eciesPartStart, aesIVStart - 1)
+              aesIV = [aesIVStart, encryptedDataStart - 1)
+              encryptedData = [encryptedDataStart, encryptedDataEnd)
             */
-            return new String(decrypt(blocks[2], blocks[3], blocks[4]), FormatHelper.CONVERSION_CHARSET);
-        } catch (BadPaddingException e) {
-            throw new CryptoCoreFailed("Crypto core failed on decryption due to wrong padding, value " + value, e);
-        } catch (IllegalBlockSizeException e) {
-            throw new CryptoCoreFailed("Crypto core failed on decryption due to wrong block size, value " + value, e);
-        } catch (InvalidAlgorithmParameterException e) {
-            throw new CryptoCoreFailed("Crypto core failed on decryption due to wrong algorithm parameter, value " + value, e);
-        } catch (InvalidKeyException e) {
-            throw new CryptoCoreFailed("Crypto core failed on decryption due to wrong decription key, value " + value, e);
+            if (!isRegionCached(this.lastEciesPartString, value, eciesPartStart, aesIVStart - 1)) {
+                updateAesKey(value.substring(eciesPartStart, aesIVStart - 1));
+            }
+
+            if (!isRegionCached(this.lastAesIVString, value, aesIVStart, encryptedDataStart - 1)) {
+                updateAesIV(value.substring(aesIVStart, encryptedDataStart - 1));
+            }
+
+            // Deserialize in place, no substring
+            this.encryptedDataBuffer.reset();
+            FormatHelper.deserialize(value, encryptedDataStart, encryptedDataEnd - encryptedDataStart, this.encryptedDataBuffer);
+
+            this.decryptedDataBuffer.reset();
+            decryptData(this.encryptedDataBuffer, this.decryptedDataBuffer);
+            return this.decryptedDataBuffer.toString(FormatHelper.CONVERSION_CHARSET);
+        } catch (GeneralSecurityException e) {
+            throw decryptionFailed(e, value);
         } catch (IllegalArgumentException e) {
             throw new InvalidInputFormat("EAH v1 format is wrong, failed to deserialize value" + value, e);
         }
     }
 
+    /**
+     * Decrypt AEHv1 format with Private Key, no conversion to String. Same caching logic as for String, ECIES and IV
+     * regions are compared with cached values in place and converted to String on cache miss only
+     *
+     * @param value UTF-8 bytes of EAH String
+     * @param offset Offset of EAH String in value
+     * @param length Length of EAH String in value
+     * @param output Buffer to append decrypted value to
+     * @return Bytes appended to output
+     *
+     * @throws CryptoInitializationFailed
+     * @throws CryptoCoreFailed
+     * @throws InvalidInputFormat
+     */
+    @Override
+    public int decrypt(byte[] value, int offset, int length, OutputBuffer output) throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+
+        // trailing delimiters are ignored, same as for String
+        int end = FormatHelper.endOfBlocks(value, offset, offset + length);
+
+        try {
+            // Same schema as for String, see decrypt(String)
+            int versionStart = FormatHelper.indexOfDelimiter(value, offset, end) + 1;
+            int eciesPartStart = versionStart > 0 ? FormatHelper.indexOfDelimiter(value, versionStart, end) + 1 : 0;
+            int aesIVStart = eciesPartStart > 0 ? FormatHelper.indexOfDelimiter(value, eciesPartStart, end) + 1 : 0;
+            int encryptedDataStart = aesIVStart > 0 ? FormatHelper.indexOfDelimiter(value, aesIVStart, end) + 1 : 0;
+
+            if (encryptedDataStart == 0 || encryptedDataStart == end ||
+                    FormatHelper.indexOfDelimiter(value, encryptedDataStart, end) >= 0) {
+                throw new InvalidInputFormat("Encrypted message is wrong, no enough blocks (5 expected) for the version 1 in value " + new String(value, offset, length, FormatHelper.CONVERSION_CHARSET));
+            }
+
+            if (!isRegionCached(this.lastEciesPartString, value, eciesPartStart, aesIVStart - 1)) {
+                updateAesKey(new String(value, eciesPartStart, aesIVStart - 1 - eciesPartStart, FormatHelper.SERIALIZED_CHARSET));
+            }
+
+            if (!isRegionCached(this.lastAesIVString, value, aesIVStart, encryptedDataStart - 1)) {
+                updateAesIV(new String(value, aesIVStart, encryptedDataStart - 1 - aesIVStart, FormatHelper.SERIALIZED_CHARSET));
+            }
+
+            this.encryptedDataBuffer.reset();
+            FormatHelper.deserialize(value, encryptedDataStart, end - encryptedDataStart, this.encryptedDataBuffer);
+
+            return decryptData(this.encryptedDataBuffer, output);
+        } catch (GeneralSecurityException e) {
+            throw decryptionFailed(e, new String(value, offset, length, FormatHelper.CONVERSION_CHARSET));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidInputFormat("EAH v1 format is wrong, failed to deserialize value" + new String(value, offset, length, FormatHelper.CONVERSION_CHARSET), e);
+        }
+    }
+
+    /**
+     * Maps crypto engine failure to crypto core failure with a readable reason
+     *
+     * @param cause Crypto engine failure
+     * @param value Value failed
+     * @return Crypto core failure
+     */
+    private static CryptoCoreFailed decryptionFailed(GeneralSecurityException cause, String value) {
+        String reason;
+        if (cause instanceof BadPaddingException) {
+            reason = "wrong padding";
+        } else if (cause instanceof IllegalBlockSizeException) {
+            reason = "wrong block size";
+        } else if (cause instanceof InvalidAlgorithmParameterException) {
+            reason = "wrong algorithm parameter";
+        } else if (cause instanceof InvalidKeyException) {
+            reason = "wrong decription key";
+        } else {
+            reason = "internal error";
+        }
+        return new CryptoCoreFailed("Crypto core failed on decryption due to " + reason + ", value " + value, cause);
+    }
+
     /**
      * Deserialize and de-crypt EAH message.
      * The reason why we have no method with byte[] parameters is that we are deserializing ESIES and IV data only if
@@ -161,41 +286,105 @@ public class EAHDecryptionCoreV1 implements EAHDecryptionCore {
 
         // Hey, I have a special stree^W cache magic for you
 
-        // Check, is IV changed
-        boolean isIVChanged = !aesIVString.equals(this.lastAesIVString);
         // Check is ECIES part changed. We can't rely on IV 'cause IV can have collisions and be same for different blocks
-        boolean isECIESChanged = !eciesPartString.equals(this.lastEciesPartString);
-
-        // Time to update ECIES
-        if (isECIESChanged) {
-            // let's look in L2 Cache
-            SecretKey aesKey = aesKeyCacheL2.get(eciesPartString);
-            // if L2 miss - decrypt and update L2
-            if (aesKey == null) {
-                // decrypt
-                // Deserialize only here
-                byte[] aesKeyBytes = this.eciesDecryptCypher.doFinal(FormatHelper.deserialize(eciesPartString));
-                // create key
-                aesKey = new SecretKeySpec(aesKeyBytes, 0, aesKeyBytes.length, "AES");
-
-                // Well, let's update L2 cache
-                aesKeyCacheL2.put(eciesPartString, aesKey);
-            }
+        if (!eciesPartString.equals(this.lastEciesPartString)) {
+            updateAesKey(eciesPartString);
+        }
+
+        // Check, is IV changed
+        if (!aesIVString.equals(this.lastAesIVString)) {
+            updateAesIV(aesIVString);
+        }
+
+        return decryptData(FormatHelper.deserialize(encryptedDataString));
+    }
+
+    /**
+     * Checks, is region of the source equal to the cached value. No allocations here, this is a hot path
+     *
+     * @param cachedValue Cached value, may be null
+     * @param source Source string
+     * @param start Region start, inclusive
+     * @param end Region end, exclusive
+     * @return true if region is equal to the cached value
+     */
+    private static boolean isRegionCached(String cachedValue, String source, int start, int end) {
+        int length = end - start;
+        return cachedValue != null && cachedValue.length() == length && source.regionMatches(start, cachedValue, 0, length);
+    }
 
-            // now update L1 cache
-            this.lastAesKey = aesKey;
-            this.lastEciesPartString = eciesPartString;
+    /**
+     * Checks, is ASCII region of the source bytes equal to the cached value. No allocations here, this is a hot path
+     *
+     * @param cachedValue Cached value, may be null
+     * @param source Source bytes
+     * @param start Region start, inclusive
+     * @param end Region end, exclusive
+     * @return true if region is equal to the cached value
+     */
+    private static boolean isRegionCached(String cachedValue, byte[] source, int start, int end) {
+        if (cachedValue == null || cachedValue.length() != end - start) {
+            return false;
         }
 
-        // Time to update IV cache
-        if (isIVChanged) {
-            // Update L1 cache
+        for (int i = start; i < end; i++) {
+            if (source[i] != cachedValue.charAt(i - start)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Updates L1 cache of AES key with ECIES part given, L2 cache is checked first and ECIES is decrypted on L2 miss only
+     *
+     * @param eciesPartString ECIES part of the schema
+     * @throws BadPaddingException
+     * @throws IllegalBlockSizeException
+     */
+    private void updateAesKey(String eciesPartString) throws BadPaddingException, IllegalBlockSizeException {
+        // let's look in L2 Cache
+        SecretKey aesKey = this.aesKeyCacheL2.get(eciesPartString);
+        // if L2 miss - decrypt and update L2
+        if (aesKey == null) {
+            // decrypt
             // Deserialize only here
-            this.lastAesIV = new IvParameterSpec(FormatHelper.deserialize(aesIVString));
-            this.lastAesIVString = aesIVString;
+            byte[] aesKeyBytes = this.eciesDecryptCypher.doFinal(FormatHelper.deserialize(eciesPartString));
+            // create key
+            aesKey = new SecretKeySpec(aesKeyBytes, 0, aesKeyBytes.length, "AES");
+
+            // Well, let's update L2 cache
+            this.aesKeyCacheL2.put(eciesPartString, aesKey);
         }
 
+        // now update L1 cache
+        this.lastAesKey = aesKey;
+        this.lastEciesPartString = eciesPartString;
+    }
+
+    /**
+     * Updates L1 cache of AES IV
+     *
+     * @param aesIVString AES IV part
+     */
+    private void updateAesIV(String aesIVString) {
+        // Deserialize only here
+        this.lastAesIV = new IvParameterSpec(FormatHelper.deserialize(aesIVString));
+        this.lastAesIVString = aesIVString;
+    }
 
+    /**
+     * Decrypts data with AES key and IV from L1 cache
+     *
+     * @param encryptedData AES encrypted data
+     * @return Decrypted data
+     * @throws BadPaddingException
+     * @throws IllegalBlockSizeException
+     * @throws InvalidAlgorithmParameterException
+     * @throws InvalidKeyException
+     */
+    private byte[] decryptData(byte[] encryptedData) throws BadPaddingException, IllegalBlockSizeException, InvalidAlgorithmParameterException, InvalidKeyException {
         // DEFECT FOUND IN JAVA AES. We MUST re-init Cypher on every decryption, 'cause if previous cryptotext padding
         // was damaged in the padding zone, this will left AES Cipher in wrong state and next Cypher, first block, will
         // be decrypted incorrectly.
@@ -207,6 +396,29 @@ public class EAHDecryptionCoreV1 implements EAHDecryptionCore {
         */
         this.aesDecryptCypher.init(Cipher.DECRYPT_MODE, this.lastAesKey, this.lastAesIV);
 
-        return this.aesDecryptCypher.doFinal(FormatHelper.deserialize(encryptedDataString));
+        return this.aesDecryptCypher.doFinal(encryptedData);
+    }
+
+    /**
+     * Decrypts data with AES key and IV from L1 cache to the output buffer
+     *
+     * @param encryptedData AES encrypted data
+     * @param output Buffer to append decrypted data to
+     * @return Bytes appended
+     * @throws BadPaddingException
+     * @throws IllegalBlockSizeException
+     * @throws InvalidAlgorithmParameterException
+     * @throws InvalidKeyException
+     * @throws ShortBufferException
+     */
+    private int decryptData(OutputBuffer encryptedData, OutputBuffer output) throws BadPaddingException, IllegalBlockSizeException, InvalidAlgorithmParameterException, InvalidKeyException, ShortBufferException {
+        // Same defect as for decryptData(byte[]), re-init on every decryption
+        this.aesDecryptCypher.init(Cipher.DECRYPT_MODE, this.lastAesKey, this.lastAesIV);
+
+        byte[] outputData = output.ensureFree(this.aesDecryptCypher.getOutputSize(encryptedData.getLength()));
+        int decryptedLength = this.aesDecryptCypher.doFinal(encryptedData.getData(), 0, encryptedData.getLength(), outputData, output.getLength());
+        output.advance(decryptedLength);
+
+        return decryptedLength;
     }
 }
@@ -2,13 +2,14 @@
 package encryptix.hds.eah.v1;
 
 import encryptix.hds.eah.EAHEncryptionCore;
+import encryptix.hds.eah.OutputBuffer;
 import encryptix.hds.exception.CryptoCoreFailed;
 import encryptix.hds.exception.CryptoInitializationFailed;
 
 import javax.crypto.*;
-import javax.crypto.spec.IvParameterSpec;
 import java.io.UnsupportedEncodingException;
-import java.security.*;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
 import java.util.concurrent.TimeUnit;
 
 // TODO: Randomize IV, use java.util.concurrent.ThreadLocalRandom and SecureRandom as a seed for performance
@@ -110,29 +111,46 @@ public class EAHEncryptionCoreV1 implements EAHEncryptionCore {
       Crypto engines
      */
     private Cipher aesEncryptCypher;
-    private Cipher eciesEncryptCypher;
-    private KeyGenerator aesKeyGenerator;
+    private EncryptionBlockGenerator blockGenerator;
 
     /*
      Block cache
      */
     // Block prefix
     private String blockPrefix;
+    // Block prefix bytes for byte-oriented encryption
+    private byte[] blockPrefixBytes;
     // Block creation time
     private long blockECIESPartCreationTime;
     // Block statistic
     private int blockRowsProcessed;
 
+    // Reusable buffer for encrypted data, byte-oriented encryption only
+    private final OutputBuffer encryptedDataBuffer = new OutputBuffer();
+
     public EAHEncryptionCoreV1(PublicKey publicKey) throws CryptoInitializationFailed {
-        initCore(publicKey);
+        this(publicKey, DEFAULT_MIN_BLOCK_SIZE, DEFAULT_MAX_BLOCK_SIZE, DEFAULT_MAX_BLOCK_LIFETIME, DEFAULT_AES_KEY_SIZE);
     }
 
     public EAHEncryptionCoreV1(PublicKey publicKey, int minBlockSize, int maxBlockSize, long maxBlockLifetime, int aesKeySize) throws CryptoInitializationFailed {
-        this(publicKey);
+        this(publicKey, minBlockSize, maxBlockSize, maxBlockLifetime, aesKeySize, false);
+    }
+
+    /**
+     * @param publicKey Public key for asymmetric part
+     * @param minBlockSize Minimum block size, rows
+     * @param maxBlockSize Maximum block size, rows
+     * @param maxBlockLifetime Maximum block lifetime, nanoseconds
+     * @param aesKeySize AES key size, 128, 192 or 256
+     * @param blockPregenerationEnabled Prepare the next block in background, so block rotation will not stall the row
+     * @throws CryptoInitializationFailed If initialization failed, see root cause
+     */
+    public EAHEncryptionCoreV1(PublicKey publicKey, int minBlockSize, int maxBlockSize, long maxBlockLifetime, int aesKeySize, boolean blockPregenerationEnabled) throws CryptoInitializationFailed {
         this.maxBlockSize = maxBlockSize;
         this.minBlockSize = minBlockSize;
         this.maxBlockLifetime = maxBlockLifetime;
         this.aesKeySize = aesKeySize;
+        initCore(publicKey, blockPregenerationEnabled);
     }
 
     @SuppressWarnings("PMD.UselessParentheses") // minus variables for speed, plus ( ) for readability
@@ -150,84 +168,38 @@ public class EAHEncryptionCoreV1 implements EAHEncryptionCore {
      * Init crypto core
      *
      * @param publicKey Public key for asymmetric part
+     * @param blockPregenerationEnabled Prepare the next block in background
      * @throws CryptoInitializationFailed If initialization filed, see root cause
      */
-//    @edu.umd.cs.findbugs.annotations.SuppressFBWarnings(value = "REC_CATCH_EXCEPTION", justification = "Exception detail hide")
-    private void initCore(PublicKey publicKey) throws CryptoInitializationFailed {
+    private void initCore(PublicKey publicKey, boolean blockPregenerationEnabled) throws CryptoInitializationFailed {
         try {
-            /*
-             * Init ECC part
-             */
-            // Get ECIES Cipher
-            this.eciesEncryptCypher = Cipher.getInstance("ECIES");
-            // Init ECIES Cipher
-            this.eciesEncryptCypher.init(Cipher.ENCRYPT_MODE, publicKey, new SecureRandom());
-            // Init AES key generator
-            this.aesKeyGenerator = KeyGenerator.getInstance("AES");
-            this.aesKeyGenerator.init(this.aesKeySize);
-            // Generate AES key and store
-            SecretKey secretAesKey = this.aesKeyGenerator.generateKey();
-            byte[] aesKey = secretAesKey.getEncoded();
-            // Encrypt it and store ECIES serialized part
-            byte[] blockECIESPart = this.eciesEncryptCypher.doFinal(aesKey);
-
-            /*
-             * Init AES part
-             */
-            // Init initialization vector for CBC
-            byte[] aesIV = new byte[16];
-            (new SecureRandom()).nextBytes(aesIV);
-            IvParameterSpec ivParameterSpec = new IvParameterSpec(aesIV);
-            // Get AES cipher
-            this.aesEncryptCypher = Cipher.getInstance(AES_CIPHER_TYPE);
-            // Init AES cipher with existing key and IV
-            this.aesEncryptCypher.init(Cipher.ENCRYPT_MODE, secretAesKey, ivParameterSpec);
-
-            // Create block prefix
-            this.blockPrefix = FormatHelper.serializeBlockPrefix(blockECIESPart, aesIV);
-
-        } catch (Exception e) {
+            this.blockGenerator = new EncryptionBlockGenerator(publicKey, this.aesKeySize, blockPregenerationEnabled);
+        } catch (GeneralSecurityException e) {
             throw new CryptoInitializationFailed("Failed to initialize crypto core", e);
         }
 
-        this.blockRowsProcessed = 0;
-        this.blockECIESPartCreationTime = System.nanoTime();
+        startBlock(this.blockGenerator.next());
     }
 
     /**
-     * Re-init crypto core when block expired
+     * Re-init crypto core when block expired. With block pre-generation enabled this is just a swap to the block
+     * prepared in background
      *
      * @throws CryptoInitializationFailed On re-init failed, see root cause
      */
-//    @edu.umd.cs.findbugs.annotations.SuppressFBWarnings(value = "REC_CATCH_EXCEPTION", justification = "Exception detail hide")
     private void reInitCore() throws CryptoInitializationFailed {
-        try {
+        startBlock(this.blockGenerator.next());
+    }
 
-            /*
-             * Re init ECC part
-             */
-            // Generate AES key and store
-            SecretKey secretAesKey = aesKeyGenerator.generateKey();
-            byte[] aesKey = secretAesKey.getEncoded();
-            // Encrypt it and store ECIES serialized part
-            byte[] blockECIESPart = this.eciesEncryptCypher.doFinal(aesKey);
-
-            /*
-             * Init AES part
-             */
-            // Init initialization vector for CBC
-            byte[] aesIV = new byte[16];
-            (new SecureRandom()).nextBytes(aesIV);
-            IvParameterSpec ivParameterSpec = new IvParameterSpec(aesIV);
-            // Init AES cipher with existing key and IV
-            this.aesEncryptCypher.init(Cipher.ENCRYPT_MODE, secretAesKey, ivParameterSpec);
-
-            // Create block prefix
-            this.blockPrefix = FormatHelper.serializeBlockPrefix(blockECIESPart, aesIV);
-
-        } catch (Exception e) {
-            throw new CryptoInitializationFailed("Failed to re-initialize crypto core", e);
-        }
+    /**
+     * Starts new block, block usage time and statistic are started from now
+     *
+     * @param block Block to start
+     */
+    private void startBlock(EncryptionBlock block) {
+        this.aesEncryptCypher = block.getAesEncryptCypher();
+        this.blockPrefixBytes = block.getPrefixBytes();
+        this.blockPrefix = block.getPrefix();
 
         this.blockRowsProcessed = 0;
         this.blockECIESPartCreationTime = System.nanoTime();
@@ -250,9 +222,46 @@ public class EAHEncryptionCoreV1 implements EAHEncryptionCore {
 
         this.blockRowsProcessed++;
 
+        return encryptRow(this.aesEncryptCypher, this.blockPrefix, value);
+    }
+
+    /**
+     * Encrypt bytes to EAHv1 format with PublicKey, no conversion to String. Output is block prefix bytes and
+     * serialized encrypted data, appended to the output buffer
+     *
+     * @param value Bytes to encrypt, usually UTF-8 of the String
+     * @param offset Offset of data in value
+     * @param length Length of data in value
+     * @param output Buffer to append EAHv1 format bytes to
+     * @return Bytes appended to output
+     * @throws CryptoInitializationFailed
+     * @throws CryptoCoreFailed
+     */
+    @Override
+    public int encrypt(byte[] value, int offset, int length, OutputBuffer output) throws CryptoInitializationFailed, CryptoCoreFailed {
+        // check that encryption core is fresh
+        if (isReinitRequired()) {
+            reInitCore();
+        }
+
+        this.blockRowsProcessed++;
+
+        return encryptRow(this.aesEncryptCypher, this.blockPrefixBytes, value, offset, length, this.encryptedDataBuffer, output);
+    }
+
+    /**
+     * Encrypts row to EAHv1 format with block cipher and prefix given. Shared by single-threaded and concurrent cores
+     *
+     * @param aesEncryptCypher AES cipher, initialized with block key and IV
+     * @param blockPrefix Serialized block prefix
+     * @param value Value to encrypt
+     * @return EAHv1 format string
+     * @throws CryptoCoreFailed
+     */
+    static String encryptRow(Cipher aesEncryptCypher, String blockPrefix, String value) throws CryptoCoreFailed {
         try {
-            return this.blockPrefix + FormatHelper.serialize(
-                    this.aesEncryptCypher.doFinal(
+            return blockPrefix + FormatHelper.serialize(
+                    aesEncryptCypher.doFinal(
                             FormatHelper.stringToBytes(value)
                     )
             );
@@ -265,4 +274,39 @@ public class EAHEncryptionCoreV1 implements EAHEncryptionCore {
         }
     }
 
+    /**
+     * Encrypts row bytes to EAHv1 format with block cipher and prefix given. Shared by single-threaded and concurrent
+     * cores
+     *
+     * @param aesEncryptCypher AES cipher, initialized with block key and IV
+     * @param blockPrefixBytes Serialized block prefix bytes
+     * @param value Bytes to encrypt
+     * @param offset Offset of data in value
+     * @param length Length of data in value
+     * @param encryptedDataBuffer Reusable buffer for encrypted data
+     * @param output Buffer to append EAHv1 format bytes to
+     * @return Bytes appended to output
+     * @throws CryptoCoreFailed
+     */
+    static int encryptRow(Cipher aesEncryptCypher, byte[] blockPrefixBytes, byte[] value, int offset, int length,
+                          OutputBuffer encryptedDataBuffer, OutputBuffer output) throws CryptoCoreFailed {
+        try {
+            encryptedDataBuffer.reset();
+            byte[] encryptedData = encryptedDataBuffer.ensureFree(aesEncryptCypher.getOutputSize(length));
+            encryptedDataBuffer.advance(aesEncryptCypher.doFinal(value, offset, length, encryptedData, 0));
+        } catch (ShortBufferException e) {
+            throw new CryptoCoreFailed("Crypto core failed on encryption due to short output buffer", e);
+        } catch (BadPaddingException e) {
+            throw new CryptoCoreFailed("Crypto core failed on encryption due to wrong padding", e);
+        } catch (IllegalBlockSizeException e) {
+            throw new CryptoCoreFailed("Crypto core failed on encryption due to wrong block size", e);
+        }
+
+        int outputStart = output.getLength();
+        output.write(blockPrefixBytes, 0, blockPrefixBytes.length);
+        FormatHelper.serialize(encryptedDataBuffer.getData(), 0, encryptedDataBuffer.getLength(), output);
+
+        return output.getLength() - outputStart;
+    }
+
 }
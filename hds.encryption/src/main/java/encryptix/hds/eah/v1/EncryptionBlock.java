@@ -0,0 +1,71 @@
+package encryptix.hds.eah.v1;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+
+/**
+ * EAHv1 encryption block, everything required to encrypt rows of the block: AES cipher, already initialized with
+ * block AES key and IV, and serialized block prefix with ECIES part and IV.
+ * <p/>
+ * Block is prepared by EncryptionBlockGenerator, so block rotation in the core is just a reference swap. Key, IV and
+ * prefix are immutable and may be shared by threads, cipher is not, so blocks shared by threads have no cipher
+ *
+ * @see EncryptionBlockGenerator
+ */
+class EncryptionBlock {
+
+    private final SecretKey aesKey;
+
+    private final IvParameterSpec aesIV;
+
+    private final Cipher aesEncryptCypher;
+
+    private final String prefix;
+
+    private final byte[] prefixBytes;
+
+    EncryptionBlock(SecretKey aesKey, IvParameterSpec aesIV, Cipher aesEncryptCypher, byte[] prefixBytes) {
+        this.aesKey = aesKey;
+        this.aesIV = aesIV;
+        this.aesEncryptCypher = aesEncryptCypher;
+        this.prefixBytes = prefixBytes;
+        this.prefix = new String(prefixBytes, FormatHelper.SERIALIZED_CHARSET);
+    }
+
+    /**
+     * @return Block AES key, to init ciphers of other threads
+     */
+    SecretKey getAesKey() {
+        return aesKey;
+    }
+
+    /**
+     * @return Block AES IV, to init ciphers of other threads
+     */
+    IvParameterSpec getAesIV() {
+        return aesIV;
+    }
+
+    /**
+     * @return AES cipher, initialized with block key and IV, null for blocks shared by threads. NOT threadsafe, owned
+     * by a single core
+     */
+    Cipher getAesEncryptCypher() {
+        return aesEncryptCypher;
+    }
+
+    /**
+     * @return Serialized block prefix
+     */
+    String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @return Serialized block prefix, ASCII bytes
+     */
+    byte[] getPrefixBytes() {
+        return prefixBytes;
+    }
+}
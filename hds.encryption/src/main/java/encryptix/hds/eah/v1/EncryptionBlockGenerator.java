@@ -0,0 +1,172 @@
+package encryptix.hds.eah.v1;
+
+import encryptix.hds.exception.CryptoInitializationFailed;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * EAHv1 encryption block generator.
+ * <p/>
+ * Block generation is expensive: AES key generation, ECIES encryption of the key and IV generation. Inline generation
+ * stalls the row which triggers block rotation for few milliseconds, so generator may prepare the next block in
+ * background, on the small JVM-wide pool of daemon threads, while current block is in use.
+ * <p/>
+ * Only one block is generated at a time per generator, so ECIES cipher and key generator are never used concurrently.
+ * <p/>
+ * NOT threadsafe implementation, same as crypto cores. Background generation is the only concurrent part, concurrent
+ * cores call next() under their own lock.
+ */
+class EncryptionBlockGenerator {
+
+    /**
+     * Size of the JVM-wide pool for background block generation. Block generation takes few milliseconds per 500ms
+     * block lifetime, so pool is small
+     */
+    public static final int PREGENERATION_POOL_SIZE = Math.min(2, Runtime.getRuntime().availableProcessors());
+
+    private static final ExecutorService PREGENERATION_EXECUTOR = Executors.newFixedThreadPool(PREGENERATION_POOL_SIZE, new ThreadFactory() {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "eah-block-pregeneration-" + threadNumber.incrementAndGet());
+            // never block JVM (Hive task) shutdown
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /*
+      Crypto engines
+     */
+    private final Cipher eciesEncryptCypher;
+    private final KeyGenerator aesKeyGenerator;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    private final boolean pregenerationEnabled;
+
+    private final boolean cipherRequired;
+
+    // Next block, generated in background. Null if pre-generation disabled or failed
+    private Future<EncryptionBlock> nextBlock;
+
+    /**
+     * @param publicKey Public key for asymmetric part
+     * @param aesKeySize AES key size, 128, 192 or 256
+     * @param pregenerationEnabled Prepare the next block in background
+     * @throws GeneralSecurityException If crypto engines initialization failed
+     */
+    EncryptionBlockGenerator(PublicKey publicKey, int aesKeySize, boolean pregenerationEnabled) throws GeneralSecurityException {
+        this(publicKey, aesKeySize, pregenerationEnabled, true);
+    }
+
+    /**
+     * @param publicKey Public key for asymmetric part
+     * @param aesKeySize AES key size, 128, 192 or 256
+     * @param pregenerationEnabled Prepare the next block in background
+     * @param cipherRequired Init AES cipher of the block. Blocks shared by threads have no cipher, every thread inits
+     *                       its own with block key and IV
+     * @throws GeneralSecurityException If crypto engines initialization failed
+     */
+    EncryptionBlockGenerator(PublicKey publicKey, int aesKeySize, boolean pregenerationEnabled, boolean cipherRequired) throws GeneralSecurityException {
+        // Get ECIES Cipher
+        this.eciesEncryptCypher = Cipher.getInstance("ECIES");
+        // Init ECIES Cipher
+        this.eciesEncryptCypher.init(Cipher.ENCRYPT_MODE, publicKey, this.secureRandom);
+        // Init AES key generator
+        this.aesKeyGenerator = KeyGenerator.getInstance("AES");
+        this.aesKeyGenerator.init(aesKeySize, this.secureRandom);
+
+        this.pregenerationEnabled = pregenerationEnabled;
+        this.cipherRequired = cipherRequired;
+    }
+
+    /**
+     * Returns the next block. With pre-generation enabled this is the block generated in background (if generation
+     * is still in progress, waits for it) and generation of the following block is started. If background generation
+     * failed, block is generated inline, so transient failure doesn't fail the row
+     *
+     * @return New block
+     * @throws CryptoInitializationFailed If block generation failed
+     */
+    EncryptionBlock next() throws CryptoInitializationFailed {
+        EncryptionBlock block;
+
+        try {
+            if (this.nextBlock == null) {
+                block = generate();
+            } else {
+                Future<EncryptionBlock> pending = this.nextBlock;
+                // failed generation will not be awaited again
+                this.nextBlock = null;
+                try {
+                    block = pending.get();
+                } catch (ExecutionException e) {
+                    block = generate();
+                }
+            }
+        } catch (GeneralSecurityException e) {
+            throw new CryptoInitializationFailed("Failed to generate encryption block", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CryptoInitializationFailed("Interrupted while waiting for encryption block generation", e);
+        }
+
+        if (this.pregenerationEnabled) {
+            this.nextBlock = PREGENERATION_EXECUTOR.submit(new Callable<EncryptionBlock>() {
+                @Override
+                public EncryptionBlock call() throws GeneralSecurityException {
+                    return generate();
+                }
+            });
+        }
+
+        return block;
+    }
+
+    /**
+     * Generates block: AES key, ECIES part, IV, initialized AES cipher (if required) and serialized prefix
+     *
+     * @return New block
+     * @throws GeneralSecurityException If generation failed
+     */
+    // package-private for tests
+    synchronized EncryptionBlock generate() throws GeneralSecurityException {
+        /*
+         * ECC part
+         */
+        // Generate AES key
+        SecretKey secretAesKey = this.aesKeyGenerator.generateKey();
+        // Encrypt it and store ECIES serialized part
+        byte[] blockECIESPart = this.eciesEncryptCypher.doFinal(secretAesKey.getEncoded());
+
+        /*
+         * AES part
+         */
+        // Init initialization vector for CBC
+        byte[] aesIV = new byte[16];
+        this.secureRandom.nextBytes(aesIV);
+        IvParameterSpec ivParameterSpec = new IvParameterSpec(aesIV);
+        // Get AES cipher and init it with block key and IV
+        Cipher aesEncryptCypher = null;
+        if (this.cipherRequired) {
+            aesEncryptCypher = Cipher.getInstance(EAHEncryptionCoreV1.AES_CIPHER_TYPE);
+            aesEncryptCypher.init(Cipher.ENCRYPT_MODE, secretAesKey, ivParameterSpec);
+        }
+
+        return new EncryptionBlock(secretAesKey, ivParameterSpec, aesEncryptCypher, FormatHelper.serializeBlockPrefixBytes(blockECIESPart, aesIV));
+    }
+}
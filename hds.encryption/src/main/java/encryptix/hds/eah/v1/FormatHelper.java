@@ -2,10 +2,11 @@
 package encryptix.hds.eah.v1;
 
 import encryptix.hds.eah.EAHFormatHelper;
+import encryptix.hds.eah.OutputBuffer;
 
-import javax.xml.bind.DatatypeConverter;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 
 /**
  * EAHv1 format helper
@@ -21,6 +22,11 @@ public class FormatHelper {
      */
     public static final String SERIALIZED_BLOCK_DELIMITER = ":";
 
+    /**
+     * Output format delimiter as char, for indexOf-based parsing
+     */
+    public static final char SERIALIZED_BLOCK_DELIMITER_CHAR = ':';
+
     /**
      * EAHv1 signature for quick check with String.startWith
      */
@@ -36,6 +42,38 @@ public class FormatHelper {
      */
     public static final Charset CONVERSION_CHARSET = Charset.forName(CONVERSION_CHARSET_NAME);
 
+    /**
+     * Serialized parts (signature, version, base64 blocks and delimiters) are ASCII
+     */
+    public static final Charset SERIALIZED_CHARSET = Charset.forName("US-ASCII");
+
+    /**
+     * EAHv1 signature bytes for quick check of UTF-8 input
+     */
+    private static final byte[] FORMAT_SIGNATURE_BYTES = FORMAT_SIGNATURE.getBytes(CONVERSION_CHARSET);
+
+    /**
+     * Base64 padding symbol
+     */
+    private static final byte PADDING = '=';
+
+    /**
+     * Base64 alphabet, 6 bit value -> ASCII symbol
+     */
+    private static final byte[] ENCODING_TABLE = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(SERIALIZED_CHARSET);
+
+    /**
+     * Reverse base64 alphabet, ASCII symbol -> 6 bit value or -1 for symbols out of alphabet
+     */
+    private static final byte[] DECODING_TABLE = new byte[256];
+
+    static {
+        Arrays.fill(DECODING_TABLE, (byte) -1);
+        for (int i = 0; i < ENCODING_TABLE.length; i++) {
+            DECODING_TABLE[ENCODING_TABLE[i]] = (byte) i;
+        }
+    }
+
 
     /**
      * Creates serialized EAH block prefix
@@ -45,10 +83,42 @@ public class FormatHelper {
      * @return Serialized block
      */
     public static String serializeBlockPrefix(byte[] blockECIESPart, byte[] aesIV) {
-        return EAHFormatHelper.IDENTIFIER_PREFIX + SERIALIZED_BLOCK_DELIMITER +
-                VERSION + SERIALIZED_BLOCK_DELIMITER +
-                serialize(blockECIESPart) + SERIALIZED_BLOCK_DELIMITER +
-                serialize(aesIV) + SERIALIZED_BLOCK_DELIMITER;
+        return new String(serializeBlockPrefixBytes(blockECIESPart, aesIV), SERIALIZED_CHARSET);
+    }
+
+    /**
+     * Creates serialized EAH block prefix as ASCII bytes, ready to be copied to the output as is
+     *
+     * @param blockECIESPart Block ECIES part
+     * @param aesIV Block AES IV for block-wide IV
+     * @return Serialized block
+     */
+    public static byte[] serializeBlockPrefixBytes(byte[] blockECIESPart, byte[] aesIV) {
+        return serializeBlockPrefixBytes(FORMAT_SIGNATURE_BYTES, blockECIESPart, aesIV);
+    }
+
+    /**
+     * Creates serialized block prefix of any EAH version as ASCII bytes: signature, ECIES part and block parameters
+     * (IV for v1, nonce salt for v2), delimited and terminated by delimiter
+     *
+     * @param signatureBytes Format signature bytes, identifier and version
+     * @param blockECIESPart Block ECIES part
+     * @param blockParameters Block-wide parameters of symmetric encryption
+     * @return Serialized block
+     */
+    public static byte[] serializeBlockPrefixBytes(byte[] signatureBytes, byte[] blockECIESPart, byte[] blockParameters) {
+        int signatureLength = signatureBytes.length;
+        byte[] prefix = new byte[signatureLength + 3 + serializedLength(blockECIESPart.length) + serializedLength(blockParameters.length)];
+
+        System.arraycopy(signatureBytes, 0, prefix, 0, signatureLength);
+        int position = signatureLength;
+        prefix[position++] = SERIALIZED_BLOCK_DELIMITER_CHAR;
+        position += serialize(blockECIESPart, 0, blockECIESPart.length, prefix, position);
+        prefix[position++] = SERIALIZED_BLOCK_DELIMITER_CHAR;
+        position += serialize(blockParameters, 0, blockParameters.length, prefix, position);
+        prefix[position] = SERIALIZED_BLOCK_DELIMITER_CHAR;
+
+        return prefix;
     }
 
     /**
@@ -58,7 +128,71 @@ public class FormatHelper {
      * @return EAH format serialized value
      */
     public static String serialize(byte[] value) {
-        return DatatypeConverter.printBase64Binary(value);
+        byte[] serialized = new byte[serializedLength(value.length)];
+        serialize(value, 0, value.length, serialized, 0);
+        return new String(serialized, SERIALIZED_CHARSET);
+    }
+
+    /**
+     * Serializer for bytes, appends result to the output buffer. Must be fast and produce compact output
+     *
+     * @param value Value to serialize
+     * @param offset Value offset
+     * @param length Value length
+     * @param output Buffer to append serialized value to
+     * @return Bytes appended
+     */
+    public static int serialize(byte[] value, int offset, int length, OutputBuffer output) {
+        int written = serialize(value, offset, length, output.ensureFree(serializedLength(length)), output.getLength());
+        output.advance(written);
+        return written;
+    }
+
+    /**
+     * Serializer for bytes, writes result to the output array, which must have serializedLength(length) bytes available
+     *
+     * @param value Value to serialize
+     * @param offset Value offset
+     * @param length Value length
+     * @param output Array to write serialized value to
+     * @param outputOffset Output offset
+     * @return Bytes written
+     */
+    public static int serialize(byte[] value, int offset, int length, byte[] output, int outputOffset) {
+        int remainder = length % 3;
+        int fullEnd = offset + length - remainder;
+        int position = outputOffset;
+        int i = offset;
+
+        // 3 bytes -> 4 symbols
+        for (; i < fullEnd; i += 3) {
+            int bits = (value[i] & 0xFF) << 16 | (value[i + 1] & 0xFF) << 8 | value[i + 2] & 0xFF;
+            output[position++] = ENCODING_TABLE[bits >>> 18];
+            output[position++] = ENCODING_TABLE[(bits >>> 12) & 0x3F];
+            output[position++] = ENCODING_TABLE[(bits >>> 6) & 0x3F];
+            output[position++] = ENCODING_TABLE[bits & 0x3F];
+        }
+
+        // tail, padded
+        if (remainder > 0) {
+            int bits = (value[i] & 0xFF) << 16 | (remainder == 2 ? (value[i + 1] & 0xFF) << 8 : 0);
+            output[position++] = ENCODING_TABLE[bits >>> 18];
+            output[position++] = ENCODING_TABLE[(bits >>> 12) & 0x3F];
+            output[position++] = remainder == 2 ? ENCODING_TABLE[(bits >>> 6) & 0x3F] : PADDING;
+            output[position++] = PADDING;
+        }
+
+        return position - outputOffset;
+    }
+
+    /**
+     * Returns length of the serialized value
+     *
+     * @param length Value length
+     * @return Serialized value length
+     */
+    public static int serializedLength(int length) {
+        return (length + 2) / 3 * 4;
     }
 
     /**
@@ -69,7 +203,29 @@ public class FormatHelper {
      * @throws IllegalArgumentException
      */
     public static byte[] deserialize(String value) throws IllegalArgumentException {
-        return DatatypeConverter.parseBase64Binary(value);
+        int length = value.length();
+        int significant = significantLength(length, length > 0 && value.charAt(length - 1) == PADDING, length > 1 && value.charAt(length - 2) == PADDING);
+        byte[] output = new byte[deserializedLength(significant)];
+        deserializeSignificant(value, 0, significant, output, 0);
+        return output;
+    }
+
+    /**
+     * Deserializer for the String region, appends result to the output buffer. No substring required
+     *
+     * @param value Serialized value
+     * @param offset Value offset
+     * @param length Value length
+     * @param output Buffer to append deserialized value to
+     * @return Bytes appended
+     * @throws IllegalArgumentException
+     */
+    public static int deserialize(String value, int offset, int length, OutputBuffer output) throws IllegalArgumentException {
+        int end = offset + length;
+        int significant = significantLength(length, length > 0 && value.charAt(end - 1) == PADDING, length > 1 && value.charAt(end - 2) == PADDING);
+        int written = deserializeSignificant(value, offset, significant, output.ensureFree(deserializedLength(significant)), output.getLength());
+        output.advance(written);
+        return written;
     }
 
     /**
@@ -83,4 +239,225 @@ public class FormatHelper {
         return value.getBytes(CONVERSION_CHARSET);
     }
 
+    /**
+     * Checks, is UTF-8 value starts with EAHv1 signature, same as String.startsWith(FORMAT_SIGNATURE)
+     *
+     * @param value UTF-8 bytes
+     * @param offset Value offset
+     * @param length Value length
+     * @return true if value starts with signature
+     */
+    public static boolean hasSignature(byte[] value, int offset, int length) {
+        return hasSignature(FORMAT_SIGNATURE_BYTES, value, offset, length);
+    }
+
+    /**
+     * Checks, is UTF-8 value starts with signature given, same as String.startsWith(signature)
+     *
+     * @param signatureBytes Format signature bytes
+     * @param value UTF-8 bytes
+     * @param offset Value offset
+     * @param length Value length
+     * @return true if value starts with signature
+     */
+    public static boolean hasSignature(byte[] signatureBytes, byte[] value, int offset, int length) {
+        if (length < signatureBytes.length) {
+            return false;
+        }
+
+        for (int i = 0; i < signatureBytes.length; i++) {
+            if (value[offset + i] != signatureBytes[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Finds end of the last block, trailing delimiters excluded. split() drops trailing empty blocks, so they were
+     * never counted as blocks
+     *
+     * @param value Serialized value
+     * @return End index of the last block, exclusive
+     */
+    public static int endOfBlocks(String value) {
+        int end = value.length();
+        while (end > 0 && value.charAt(end - 1) == SERIALIZED_BLOCK_DELIMITER_CHAR) {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Finds end of the last block in UTF-8 value, trailing delimiters excluded, same as endOfBlocks(String)
+     *
+     * @param value UTF-8 bytes
+     * @param from Start index, inclusive
+     * @param to End index, exclusive
+     * @return End index of the last block, exclusive
+     */
+    public static int endOfBlocks(byte[] value, int from, int to) {
+        int end = to;
+        while (end > from && value[end - 1] == SERIALIZED_BLOCK_DELIMITER_CHAR) {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Finds next delimiter in UTF-8 value. Delimiter is ASCII, so it can't be a part of multibyte character
+     *
+     * @param value UTF-8 bytes
+     * @param from Start index, inclusive
+     * @param to End index, exclusive
+     * @return delimiter index or -1 if not found
+     */
+    public static int indexOfDelimiter(byte[] value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (value[i] == SERIALIZED_BLOCK_DELIMITER_CHAR) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Deserializer for bytes, appends result to the output buffer. Must be fast
+     *
+     * @param value Serialized value
+     * @param offset Value offset
+     * @param length Value length
+     * @param output Buffer to append deserialized value to
+     * @return Bytes appended
+     * @throws IllegalArgumentException
+     */
+    public static int deserialize(byte[] value, int offset, int length, OutputBuffer output) throws IllegalArgumentException {
+        int end = offset + length;
+        int significant = significantLength(length, length > 0 && value[end - 1] == PADDING, length > 1 && value[end - 2] == PADDING);
+        int written = deserializeSignificant(value, offset, significant, output.ensureFree(deserializedLength(significant)), output.getLength());
+        output.advance(written);
+        return written;
+    }
+
+    /**
+     * Returns length of the serialized value without padding, checks length of the serialized value.
+     * Unpadded values are accepted too
+     *
+     * @param length Serialized value length
+     * @param lastIsPadding Is last symbol a padding
+     * @param beforeLastIsPadding Is symbol before last a padding
+     * @return Length without padding
+     * @throws IllegalArgumentException
+     */
+    private static int significantLength(int length, boolean lastIsPadding, boolean beforeLastIsPadding) throws IllegalArgumentException {
+        int significant = length;
+        if (lastIsPadding) {
+            if ((length & 3) != 0) {
+                throw new IllegalArgumentException("Padded base64 value length must be multiple of 4, but it is " + length);
+            }
+            significant -= beforeLastIsPadding ? 2 : 1;
+        }
+
+        if ((significant & 3) == 1) {
+            throw new IllegalArgumentException("Wrong base64 value length " + length);
+        }
+
+        return significant;
+    }
+
+    /**
+     * Returns length of the deserialized value
+     *
+     * @param significantLength Serialized value length without padding
+     * @return Deserialized value length
+     */
+    private static int deserializedLength(int significantLength) {
+        return significantLength / 4 * 3 + ((significantLength & 3) == 0 ? 0 : (significantLength & 3) - 1);
+    }
+
+    /**
+     * Returns 6 bit value of the base64 symbol or negative value for symbols out of alphabet
+     *
+     * @param symbol Base64 symbol
+     * @return 6 bit value or negative value
+     */
+    private static int decodeSymbol(int symbol) {
+        return symbol > 0xFF ? -1 : DECODING_TABLE[symbol];
+    }
+
+    /**
+     * Writes 4 symbols (24 bits) or less to the output, validates symbols, all at once.
+     * Absent symbols are 0, significant is count of the real symbols (2, 3 or 4)
+     *
+     * @return Bytes written
+     * @throws IllegalArgumentException
+     */
+    private static int writeQuantum(int a, int b, int c, int d, int significant, byte[] output, int outputOffset) throws IllegalArgumentException {
+        // one check for all symbols, -1 gives negative OR
+        if ((a | b | c | d) < 0) {
+            throw new IllegalArgumentException("Base64 value contains symbol out of alphabet");
+        }
+
+        int bits = a << 18 | b << 12 | c << 6 | d;
+        output[outputOffset] = (byte) (bits >>> 16);
+        if (significant > 2) {
+            output[outputOffset + 1] = (byte) (bits >>> 8);
+        }
+        if (significant > 3) {
+            output[outputOffset + 2] = (byte) bits;
+        }
+        return significant - 1;
+    }
+
+    /**
+     * Deserializes value without padding
+     *
+     * @return Bytes written
+     * @throws IllegalArgumentException
+     */
+    private static int deserializeSignificant(byte[] value, int offset, int length, byte[] output, int outputOffset) throws IllegalArgumentException {
+        int end = offset + length;
+        int fullEnd = end - (length & 3);
+        int position = outputOffset;
+        int i = offset;
+
+        for (; i < fullEnd; i += 4) {
+            position += writeQuantum(DECODING_TABLE[value[i] & 0xFF], DECODING_TABLE[value[i + 1] & 0xFF],
+                    DECODING_TABLE[value[i + 2] & 0xFF], DECODING_TABLE[value[i + 3] & 0xFF], 4, output, position);
+        }
+
+        if (i < end) {
+            position += writeQuantum(DECODING_TABLE[value[i] & 0xFF], DECODING_TABLE[value[i + 1] & 0xFF],
+                    end - i > 2 ? DECODING_TABLE[value[i + 2] & 0xFF] : 0, 0, end - i, output, position);
+        }
+
+        return position - outputOffset;
+    }
+
+    /**
+     * Deserializes String region without padding
+     *
+     * @return Bytes written
+     * @throws IllegalArgumentException
+     */
+    private static int deserializeSignificant(String value, int offset, int length, byte[] output, int outputOffset) throws IllegalArgumentException {
+        int end = offset + length;
+        int fullEnd = end - (length & 3);
+        int position = outputOffset;
+        int i = offset;
+
+        for (; i < fullEnd; i += 4) {
+            position += writeQuantum(decodeSymbol(value.charAt(i)), decodeSymbol(value.charAt(i + 1)),
+                    decodeSymbol(value.charAt(i + 2)), decodeSymbol(value.charAt(i + 3)), 4, output, position);
+        }
+
+        if (i < end) {
+            position += writeQuantum(decodeSymbol(value.charAt(i)), decodeSymbol(value.charAt(i + 1)),
+                    end - i > 2 ? decodeSymbol(value.charAt(i + 2)) : 0, 0, end - i, output, position);
+        }
+
+        return position - outputOffset;
+    }
+
 }
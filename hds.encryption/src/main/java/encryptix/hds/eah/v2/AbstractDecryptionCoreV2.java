@@ -0,0 +1,132 @@
+package encryptix.hds.eah.v2;
+
+import encryptix.hds.eah.OutputBuffer;
+import encryptix.hds.eah.cache.KeyCache;
+import encryptix.hds.eah.cache.KeyCacheStatistics;
+import encryptix.hds.exception.CryptoCoreFailed;
+import encryptix.hds.exception.CryptoInitializationFailed;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+
+/**
+ * AES key resolution and AES-GCM row decryption of EAHv2, shared by text and binary envelopes and by EAHv3. Envelopes
+ * differ only in parsing and L1 cache of the block prefix.
+ * <p/>
+ * AES keys are cached in L2 cache by serialized (base64) ECIES part for both envelopes, so L2 cache may be shared by
+ * all cores of all versions.
+ * <p/>
+ * NOT threadsafe implementation
+ *
+ * @see EAHDecryptionCoreV2
+ * @see EAHBinaryDecryptionCoreV2
+ */
+public abstract class AbstractDecryptionCoreV2 {
+
+    /*
+      Crypto engines
+     */
+    private transient Cipher aesDecryptCypher;
+    private transient Cipher eciesDecryptCypher;
+
+    //  Level 1 Cache, key and nonce salt of the last block followed by row counter
+    private SecretKey lastAesKey = null;
+    private final byte[] nonce = new byte[FormatHelper.NONCE_SIZE];
+
+    // Level 2 Cache of AES keys, core-owned or shared
+    private final KeyCache<String, SecretKey> aesKeyCacheL2;
+
+    /**
+     * @param privateKey Private key for asymmetric part
+     * @param aesKeyCache L2 cache of AES keys, may be shared with other cores
+     * @throws CryptoInitializationFailed If initialization filed, see root cause
+     */
+    protected AbstractDecryptionCoreV2(PrivateKey privateKey, KeyCache<String, SecretKey> aesKeyCache) throws CryptoInitializationFailed {
+        try {
+            this.eciesDecryptCypher = Cipher.getInstance("ECIES");
+            this.eciesDecryptCypher.init(Cipher.DECRYPT_MODE, privateKey, new SecureRandom());
+            this.aesDecryptCypher = Cipher.getInstance(EAHEncryptionCoreV2.AES_CIPHER_TYPE);
+        } catch (GeneralSecurityException e) {
+            throw new CryptoInitializationFailed("Failed to initialize crypto core", e);
+        }
+        this.aesKeyCacheL2 = aesKeyCache;
+    }
+
+    /**
+     * @return Hit, miss and eviction counters of the L2 cache of AES keys
+     */
+    public KeyCacheStatistics getAesKeyCacheStatistics() {
+        return this.aesKeyCacheL2.getStatistics();
+    }
+
+    /**
+     * Updates L1 cache with the new block: AES key from L2 cache or ECIES part, and nonce salt
+     *
+     * @param eciesPartString Serialized ECIES part, L2 cache key
+     * @param eciesPart Deserialized ECIES part, null to deserialize on L2 miss
+     * @param nonceSalt Source of nonce salt
+     * @param nonceSaltOffset Nonce salt offset in source
+     * @throws GeneralSecurityException On ECIES failure
+     */
+    protected final void updateBlock(String eciesPartString, byte[] eciesPart, byte[] nonceSalt, int nonceSaltOffset) throws GeneralSecurityException {
+        SecretKey aesKey = this.aesKeyCacheL2.get(eciesPartString);
+        if (aesKey == null) {
+            byte[] aesKeyBytes = this.eciesDecryptCypher.doFinal(eciesPart == null ? FormatHelper.deserialize(eciesPartString) : eciesPart);
+            aesKey = new SecretKeySpec(aesKeyBytes, 0, aesKeyBytes.length, "AES");
+            this.aesKeyCacheL2.put(eciesPartString, aesKey);
+        }
+
+        System.arraycopy(nonceSalt, nonceSaltOffset, this.nonce, 0, FormatHelper.NONCE_SALT_SIZE);
+        this.lastAesKey = aesKey;
+    }
+
+    /**
+     * Decrypts row counter and data with AES key and nonce salt from L1 cache
+     *
+     * @param aad Source of block prefix
+     * @param aadOffset Block prefix offset
+     * @param aadLength Block prefix length
+     * @param encryptedData Source of row counter and encrypted data
+     * @param encryptedDataOffset Row counter offset
+     * @param encryptedDataLength Length of row counter and encrypted data
+     * @param output Buffer to append decrypted data to
+     * @return Bytes appended
+     * @throws GeneralSecurityException On failed authentication
+     */
+    protected final int decryptData(byte[] aad, int aadOffset, int aadLength, byte[] encryptedData, int encryptedDataOffset, int encryptedDataLength, OutputBuffer output) throws GeneralSecurityException {
+        int encryptedLength = encryptedDataLength - FormatHelper.ROW_COUNTER_SIZE;
+        if (encryptedLength < FormatHelper.TAG_SIZE / 8) {
+            throw new IllegalArgumentException("Encrypted data is too short");
+        }
+
+        System.arraycopy(encryptedData, encryptedDataOffset, this.nonce, FormatHelper.NONCE_SALT_SIZE, FormatHelper.ROW_COUNTER_SIZE);
+
+        this.aesDecryptCypher.init(Cipher.DECRYPT_MODE, this.lastAesKey, new GCMParameterSpec(FormatHelper.TAG_SIZE, this.nonce));
+        this.aesDecryptCypher.updateAAD(aad, aadOffset, aadLength);
+
+        byte[] outputData = output.ensureFree(this.aesDecryptCypher.getOutputSize(encryptedLength));
+        int decryptedLength = this.aesDecryptCypher.doFinal(encryptedData, encryptedDataOffset + FormatHelper.ROW_COUNTER_SIZE, encryptedLength, outputData, output.getLength());
+        output.advance(decryptedLength);
+
+        return decryptedLength;
+    }
+
+    /**
+     * Maps crypto engine failure to crypto core failure. Failed tag check is a BadPaddingException, so UDF fallback
+     * on wrong key works for both versions
+     *
+     * @param cause Crypto engine failure
+     * @param value Value failed
+     * @return Crypto core failure
+     */
+    protected static CryptoCoreFailed decryptionFailed(GeneralSecurityException cause, String value) {
+        String reason = cause instanceof AEADBadTagException ? "failed authentication (wrong key or damaged value)" : "internal error";
+        return new CryptoCoreFailed("Crypto core failed on decryption due to " + reason + ", value " + value, cause);
+    }
+}
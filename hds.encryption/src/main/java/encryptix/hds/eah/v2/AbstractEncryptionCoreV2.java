@@ -0,0 +1,177 @@
+package encryptix.hds.eah.v2;
+
+import encryptix.hds.eah.OutputBuffer;
+import encryptix.hds.exception.CryptoCoreFailed;
+import encryptix.hds.exception.CryptoInitializationFailed;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+
+/**
+ * Block management and AES-GCM row encryption of EAHv2, shared by text and binary envelopes and by EAHv3. Envelopes
+ * differ only in block prefix serialization and row data serialization.
+ * <p/>
+ * NOT threadsafe implementation
+ *
+ * @see EAHEncryptionCoreV2
+ * @see EAHBinaryEncryptionCoreV2
+ */
+public abstract class AbstractEncryptionCoreV2 {
+
+    private final int maxBlockSize;
+
+    private final int minBlockSize;
+
+    private final long maxBlockLifetime;
+
+    /*
+      Crypto engines
+     */
+    private Cipher aesEncryptCypher;
+    private Cipher eciesEncryptCypher;
+    private KeyGenerator aesKeyGenerator;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    /*
+     Block cache
+     */
+    // Block AES key
+    private SecretKey blockAesKey;
+    // Block nonce salt followed by row counter, counter part is updated for every row
+    private final byte[] nonce = new byte[FormatHelper.NONCE_SIZE];
+    // Serialized block prefix, AAD of every row
+    private byte[] blockPrefixBytes;
+    // Block creation time
+    private long blockCreationTime;
+    // Block statistic, also a row counter for nonce
+    private int blockRowsProcessed;
+
+    // Reusable buffer for row counter and encrypted data
+    private final OutputBuffer encryptedDataBuffer = new OutputBuffer();
+
+    /**
+     * @param publicKey Public key for asymmetric part
+     * @param minBlockSize Minimum block size, rows
+     * @param maxBlockSize Maximum block size, rows
+     * @param maxBlockLifetime Maximum block lifetime, nanoseconds
+     * @param aesKeySize AES key size, 128, 192 or 256
+     * @throws CryptoInitializationFailed If initialization failed, see root cause
+     */
+    protected AbstractEncryptionCoreV2(PublicKey publicKey, int minBlockSize, int maxBlockSize, long maxBlockLifetime, int aesKeySize) throws CryptoInitializationFailed {
+        this.minBlockSize = minBlockSize;
+        this.maxBlockSize = maxBlockSize;
+        this.maxBlockLifetime = maxBlockLifetime;
+
+        try {
+            this.eciesEncryptCypher = Cipher.getInstance("ECIES");
+            this.eciesEncryptCypher.init(Cipher.ENCRYPT_MODE, publicKey, this.secureRandom);
+            this.aesKeyGenerator = KeyGenerator.getInstance("AES");
+            this.aesKeyGenerator.init(aesKeySize, this.secureRandom);
+            this.aesEncryptCypher = Cipher.getInstance(EAHEncryptionCoreV2.AES_CIPHER_TYPE);
+        } catch (GeneralSecurityException e) {
+            throw new CryptoInitializationFailed("Failed to initialize crypto core", e);
+        }
+    }
+
+    /**
+     * Serializes block prefix of the envelope
+     *
+     * @param blockECIESPart Block ECIES part
+     * @param nonceSalt Block-wide random part of the GCM nonce
+     * @return Serialized block prefix
+     * @throws CryptoInitializationFailed If block can't be registered
+     */
+    protected abstract byte[] serializeBlockPrefix(byte[] blockECIESPart, byte[] nonceSalt) throws CryptoInitializationFailed;
+
+    /**
+     * Serializes row counter and encrypted data to the output, after block prefix
+     *
+     * @param encryptedData Row counter and encrypted data
+     * @param length Length of encrypted data
+     * @param output Buffer to append to
+     */
+    protected abstract void serializeEncryptedData(byte[] encryptedData, int length, OutputBuffer output);
+
+    @SuppressWarnings("PMD.UselessParentheses") // same rules as EAHEncryptionCoreV1.isReinitRequired()
+    private boolean isReinitRequired() {
+        return
+                this.blockPrefixBytes == null || // not initialized
+                        blockRowsProcessed >= this.maxBlockSize || // max block size reached
+                        (
+                                blockRowsProcessed >= this.minBlockSize && // min block size reached AND
+                                        (System.nanoTime() - this.blockCreationTime > this.maxBlockLifetime) // lifetime timeout reached
+                        );
+    }
+
+    /**
+     * Starts new block: AES key, ECIES part, nonce salt and serialized prefix. Envelopes start the first block in
+     * constructor to fail fast on wrong key
+     *
+     * @throws CryptoInitializationFailed If block generation failed
+     */
+    protected final void startBlock() throws CryptoInitializationFailed {
+        SecretKey aesKey = this.aesKeyGenerator.generateKey();
+        byte[] blockECIESPart;
+        try {
+            blockECIESPart = this.eciesEncryptCypher.doFinal(aesKey.getEncoded());
+        } catch (GeneralSecurityException e) {
+            throw new CryptoInitializationFailed("Failed to generate encryption block", e);
+        }
+
+        byte[] nonceSalt = new byte[FormatHelper.NONCE_SALT_SIZE];
+        this.secureRandom.nextBytes(nonceSalt);
+        System.arraycopy(nonceSalt, 0, this.nonce, 0, FormatHelper.NONCE_SALT_SIZE);
+
+        this.blockAesKey = aesKey;
+        this.blockPrefixBytes = serializeBlockPrefix(blockECIESPart, nonceSalt);
+
+        this.blockRowsProcessed = 0;
+        this.blockCreationTime = System.nanoTime();
+    }
+
+    /**
+     * Encrypts row: block prefix and serialized row counter with encrypted data are appended to the output
+     *
+     * @param value Bytes to encrypt
+     * @param offset Offset of data in value
+     * @param length Length of data in value
+     * @param output Buffer to append envelope to
+     * @return Bytes appended to output
+     * @throws CryptoInitializationFailed
+     * @throws CryptoCoreFailed
+     */
+    protected final int encryptRow(byte[] value, int offset, int length, OutputBuffer output) throws CryptoInitializationFailed, CryptoCoreFailed {
+        // check that encryption core is fresh
+        if (isReinitRequired()) {
+            startBlock();
+        }
+
+        int rowCounter = this.blockRowsProcessed++;
+        FormatHelper.writeRowCounter(rowCounter, this.nonce, FormatHelper.NONCE_SALT_SIZE);
+
+        this.encryptedDataBuffer.reset();
+        try {
+            // new nonce for every row, init is required by GCM anyway. AES key schedule is reused by the provider
+            this.aesEncryptCypher.init(Cipher.ENCRYPT_MODE, this.blockAesKey, new GCMParameterSpec(FormatHelper.TAG_SIZE, this.nonce));
+            this.aesEncryptCypher.updateAAD(this.blockPrefixBytes);
+
+            byte[] encryptedData = this.encryptedDataBuffer.ensureFree(FormatHelper.ROW_COUNTER_SIZE + this.aesEncryptCypher.getOutputSize(length));
+            FormatHelper.writeRowCounter(rowCounter, encryptedData, 0);
+            this.encryptedDataBuffer.advance(FormatHelper.ROW_COUNTER_SIZE +
+                    this.aesEncryptCypher.doFinal(value, offset, length, encryptedData, FormatHelper.ROW_COUNTER_SIZE));
+        } catch (GeneralSecurityException e) {
+            throw new CryptoCoreFailed("Crypto core failed on encryption", e);
+        }
+
+        int outputStart = output.getLength();
+        output.write(this.blockPrefixBytes, 0, this.blockPrefixBytes.length);
+        serializeEncryptedData(this.encryptedDataBuffer.getData(), this.encryptedDataBuffer.getLength(), output);
+
+        return output.getLength() - outputStart;
+    }
+}
@@ -0,0 +1,101 @@
+package encryptix.hds.eah.v2;
+
+/**
+ * Binary EAHv2 envelope helper, for BINARY columns.
+ * <p/>
+ * Same crypto schema as text EAHv2 (see EAHEncryptionCoreV2), but parts are stored as is, no base64 and no delimiters:
+ * <p/>
+ * version (1 byte) | ECIES part length (2 bytes, big-endian) | ECIES part | nonce salt (8 bytes) | row counter (4 bytes) | AES-GCM ciphertext and tag
+ * <p/>
+ * Everything before row counter is a block header, it's the same for all rows of the block and it's authenticated as
+ * AAD. Binary envelope never starts with text signature symbol, so both envelopes may be told apart by the first byte.
+ */
+public class BinaryFormatHelper {
+
+    /**
+     * Envelope version, first byte of every value
+     */
+    public static final byte VERSION = (byte) FormatHelper.VERSION;
+
+    /**
+     * Size of the ECIES part length field, bytes
+     */
+    public static final int ECIES_PART_LENGTH_SIZE = 2;
+
+    /**
+     * Maximum ECIES part size, limited by length field
+     */
+    public static final int MAX_ECIES_PART_SIZE = 0xFFFF;
+
+    /**
+     * Block header size without ECIES part
+     */
+    public static final int HEADER_OVERHEAD = 1 + ECIES_PART_LENGTH_SIZE + FormatHelper.NONCE_SALT_SIZE;
+
+    /**
+     * Creates block header
+     *
+     * @param blockECIESPart Block ECIES part
+     * @param nonceSalt Block-wide random part of the GCM nonce
+     * @return Block header
+     */
+    public static byte[] serializeBlockHeader(byte[] blockECIESPart, byte[] nonceSalt) {
+        if (blockECIESPart.length > MAX_ECIES_PART_SIZE) {
+            throw new IllegalArgumentException("ECIES part is too long for binary envelope, " + blockECIESPart.length + " bytes");
+        }
+
+        byte[] header = new byte[HEADER_OVERHEAD + blockECIESPart.length];
+        header[0] = VERSION;
+        header[1] = (byte) (blockECIESPart.length >>> 8);
+        header[2] = (byte) blockECIESPart.length;
+        System.arraycopy(blockECIESPart, 0, header, 1 + ECIES_PART_LENGTH_SIZE, blockECIESPart.length);
+        System.arraycopy(nonceSalt, 0, header, 1 + ECIES_PART_LENGTH_SIZE + blockECIESPart.length, FormatHelper.NONCE_SALT_SIZE);
+
+        return header;
+    }
+
+    /**
+     * Checks, is value a binary EAHv2 envelope, by version byte only
+     *
+     * @param value Value
+     * @param offset Value offset
+     * @param length Value length
+     * @return true if value starts with version byte
+     */
+    public static boolean hasSignature(byte[] value, int offset, int length) {
+        return length > 0 && value[offset] == VERSION;
+    }
+
+    /**
+     * Returns ECIES part length of the envelope
+     *
+     * @param value Envelope
+     * @param offset Envelope offset
+     * @return ECIES part length
+     */
+    public static int eciesPartLength(byte[] value, int offset) {
+        return (value[offset + 1] & 0xFF) << 8 | value[offset + 2] & 0xFF;
+    }
+
+    /**
+     * Returns block header length of the envelope, checks that envelope is long enough for header, row counter and tag
+     *
+     * @param value Envelope
+     * @param offset Envelope offset
+     * @param length Envelope length
+     * @return Block header length
+     * @throws IllegalArgumentException If envelope is truncated
+     */
+    public static int headerLength(byte[] value, int offset, int length) throws IllegalArgumentException {
+        if (length < HEADER_OVERHEAD) {
+            throw new IllegalArgumentException("Binary envelope is too short, " + length + " bytes");
+        }
+
+        int headerLength = HEADER_OVERHEAD + eciesPartLength(value, offset);
+        if (length < headerLength + FormatHelper.ROW_COUNTER_SIZE + FormatHelper.TAG_SIZE / 8) {
+            throw new IllegalArgumentException("Binary envelope is truncated, " + length + " bytes");
+        }
+
+        return headerLength;
+    }
+}
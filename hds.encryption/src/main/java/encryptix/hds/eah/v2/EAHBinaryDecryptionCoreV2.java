@@ -0,0 +1,119 @@
+package encryptix.hds.eah.v2;
+
+import encryptix.hds.eah.EAHBinaryDecryptionCore;
+import encryptix.hds.eah.OutputBuffer;
+import encryptix.hds.eah.cache.KeyCache;
+import encryptix.hds.eah.v1.EAHDecryptionCoreV1;
+import encryptix.hds.exception.CryptoCoreFailed;
+import encryptix.hds.exception.CryptoInitializationFailed;
+import encryptix.hds.exception.InvalidInputFormat;
+
+import javax.crypto.SecretKey;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.util.Arrays;
+
+/**
+ * EAH Decryption Core, binary V2 envelope
+ * <p/>
+ * Block header is cached as a whole in L1 cache, so for the rows of the same block there is one region compare per
+ * row and data is decrypted directly from the input, no deserialization. AES keys are cached in L2 cache by base64 of
+ * ECIES part, same as for text envelopes, so L2 cache may be shared with text cores.
+ * <p/>
+ * NOT threadsafe implementation, 'cause target is a Hive, which uses every instance in a single thread
+ *
+ * @see EAHBinaryEncryptionCoreV2
+ * @see BinaryFormatHelper
+ */
+public class EAHBinaryDecryptionCoreV2 extends AbstractDecryptionCoreV2 implements EAHBinaryDecryptionCore {
+
+    //  Level 1 Cache, whole block header
+    private byte[] lastBlockHeader = null;
+
+    public EAHBinaryDecryptionCoreV2(PrivateKey privateKey) throws CryptoInitializationFailed {
+        this(privateKey, EAHDecryptionCoreV1.AES_KEY_CACHE_POLICY.<String, SecretKey>create(EAHDecryptionCoreV1.AES_KEY_CACHE_SIZE));
+    }
+
+    /**
+     * @param privateKey Private key for asymmetric part
+     * @param aesKeyCache L2 cache of AES keys, may be shared with text cores
+     * @throws CryptoInitializationFailed If initialization filed, see root cause
+     */
+    public EAHBinaryDecryptionCoreV2(PrivateKey privateKey, KeyCache<String, SecretKey> aesKeyCache) throws CryptoInitializationFailed {
+        super(privateKey, aesKeyCache);
+    }
+
+    /**
+     * Decrypt binary EAHv2 envelope with Private Key
+     *
+     * @param value Binary EAHv2 envelope
+     * @param offset Offset of envelope in value
+     * @param length Length of envelope in value
+     * @param output Buffer to append decrypted value to
+     * @return Bytes appended to output
+     *
+     * @throws CryptoInitializationFailed
+     * @throws CryptoCoreFailed
+     * @throws InvalidInputFormat
+     */
+    @Override
+    public int decrypt(byte[] value, int offset, int length, OutputBuffer output) throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        if (!BinaryFormatHelper.hasSignature(value, offset, length)) {
+            throw new InvalidInputFormat("Binary envelope is wrong, version " + BinaryFormatHelper.VERSION + " expected");
+        }
+
+        try {
+            int headerLength = BinaryFormatHelper.headerLength(value, offset, length);
+
+            if (!isHeaderCached(value, offset, headerLength)) {
+                updateHeader(value, offset, headerLength);
+            }
+
+            return decryptData(value, offset, headerLength, value, offset + headerLength, length - headerLength, output);
+        } catch (GeneralSecurityException e) {
+            throw decryptionFailed(e, "of " + length + " bytes");
+        } catch (IllegalArgumentException e) {
+            throw new InvalidInputFormat("Binary EAH v2 envelope is wrong, failed to parse value of " + length + " bytes", e);
+        }
+    }
+
+    /**
+     * Checks, is block header of the source bytes equal to the cached one. No allocations here, this is a hot path
+     *
+     * @param value Source bytes
+     * @param offset Header start, inclusive
+     * @param headerLength Header length
+     * @return true if header is cached
+     */
+    private boolean isHeaderCached(byte[] value, int offset, int headerLength) {
+        byte[] cached = this.lastBlockHeader;
+        if (cached == null || cached.length != headerLength) {
+            return false;
+        }
+
+        for (int i = 0; i < cached.length; i++) {
+            if (value[offset + i] != cached[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Updates L1 cache with the new block header: AES key (from L2 cache or ECIES part) and nonce salt
+     *
+     * @param value Source bytes
+     * @param offset Header start, inclusive
+     * @param headerLength Header length
+     * @throws GeneralSecurityException On ECIES failure
+     */
+    private void updateHeader(byte[] value, int offset, int headerLength) throws GeneralSecurityException {
+        int eciesPartStart = offset + 1 + BinaryFormatHelper.ECIES_PART_LENGTH_SIZE;
+        int eciesPartEnd = eciesPartStart + BinaryFormatHelper.eciesPartLength(value, offset);
+        byte[] eciesPart = Arrays.copyOfRange(value, eciesPartStart, eciesPartEnd);
+
+        updateBlock(FormatHelper.serialize(eciesPart), eciesPart, value, eciesPartEnd);
+        this.lastBlockHeader = Arrays.copyOfRange(value, offset, offset + headerLength);
+    }
+}
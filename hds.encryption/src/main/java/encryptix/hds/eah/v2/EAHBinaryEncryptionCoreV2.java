@@ -0,0 +1,64 @@
+package encryptix.hds.eah.v2;
+
+import encryptix.hds.eah.EAHBinaryEncryptionCore;
+import encryptix.hds.eah.OutputBuffer;
+import encryptix.hds.eah.v1.EAHEncryptionCoreV1;
+import encryptix.hds.exception.CryptoCoreFailed;
+import encryptix.hds.exception.CryptoInitializationFailed;
+
+import java.security.PublicKey;
+
+/**
+ * EAH Encryption Core, binary V2 envelope. Same crypto schema and block rules as EAHEncryptionCoreV2, output is about
+ * 3/4 of the text one and is not expanded by base64, see BinaryFormatHelper
+ * <p/>
+ * NOT threadsafe implementation, 'cause target is a Hive, which uses every instance in a single thread
+ *
+ * @see EAHEncryptionCoreV2
+ */
+public class EAHBinaryEncryptionCoreV2 extends AbstractEncryptionCoreV2 implements EAHBinaryEncryptionCore {
+
+    public EAHBinaryEncryptionCoreV2(PublicKey publicKey) throws CryptoInitializationFailed {
+        this(publicKey, EAHEncryptionCoreV1.DEFAULT_MIN_BLOCK_SIZE, EAHEncryptionCoreV1.DEFAULT_MAX_BLOCK_SIZE,
+                EAHEncryptionCoreV1.DEFAULT_MAX_BLOCK_LIFETIME, EAHEncryptionCoreV1.DEFAULT_AES_KEY_SIZE);
+    }
+
+    /**
+     * @param publicKey Public key for asymmetric part
+     * @param minBlockSize Minimum block size, rows
+     * @param maxBlockSize Maximum block size, rows
+     * @param maxBlockLifetime Maximum block lifetime, nanoseconds
+     * @param aesKeySize AES key size, 128, 192 or 256
+     * @throws CryptoInitializationFailed If initialization failed, see root cause
+     */
+    public EAHBinaryEncryptionCoreV2(PublicKey publicKey, int minBlockSize, int maxBlockSize, long maxBlockLifetime, int aesKeySize) throws CryptoInitializationFailed {
+        super(publicKey, minBlockSize, maxBlockSize, maxBlockLifetime, aesKeySize);
+        startBlock();
+    }
+
+    @Override
+    protected byte[] serializeBlockPrefix(byte[] blockECIESPart, byte[] nonceSalt) {
+        return BinaryFormatHelper.serializeBlockHeader(blockECIESPart, nonceSalt);
+    }
+
+    @Override
+    protected void serializeEncryptedData(byte[] encryptedData, int length, OutputBuffer output) {
+        output.write(encryptedData, 0, length);
+    }
+
+    /**
+     * Encrypt bytes to binary EAHv2 envelope with PublicKey
+     *
+     * @param value Bytes to encrypt, usually UTF-8 of the String
+     * @param offset Offset of data in value
+     * @param length Length of data in value
+     * @param output Buffer to append binary envelope to
+     * @return Bytes appended to output
+     * @throws CryptoInitializationFailed
+     * @throws CryptoCoreFailed
+     */
+    @Override
+    public int encrypt(byte[] value, int offset, int length, OutputBuffer output) throws CryptoInitializationFailed, CryptoCoreFailed {
+        return encryptRow(value, offset, length, output);
+    }
+}
@@ -0,0 +1,190 @@
+package encryptix.hds.eah.v2;
+
+import encryptix.hds.eah.EAHDecryptionCore;
+import encryptix.hds.eah.OutputBuffer;
+import encryptix.hds.eah.cache.KeyCache;
+import encryptix.hds.eah.v1.EAHDecryptionCoreV1;
+import encryptix.hds.exception.CryptoCoreFailed;
+import encryptix.hds.exception.CryptoInitializationFailed;
+import encryptix.hds.exception.InvalidInputFormat;
+
+import javax.crypto.SecretKey;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+
+/**
+ * EAH Decryption Core, V2 format
+ * <p/>
+ * Block prefix (signature, ECIES part and nonce salt) is cached as a whole in L1 cache, so for the rows of the same
+ * block there is one region compare per row. AES keys are cached in L2 cache by ECIES part, same as for EAHv1, so
+ * L2 cache may be shared with EAHv1 core.
+ * <p/>
+ * Cipher is initialized for every row with the row nonce, this is how GCM works, but there is no workaround for
+ * damaged padding like in EAHv1: GCM has no padding and failed tag check doesn't affect the next row.
+ *
+ * @see EAHEncryptionCoreV2
+ */
+public class EAHDecryptionCoreV2 extends AbstractDecryptionCoreV2 implements EAHDecryptionCore {
+
+    //  Level 1 Cache, whole block prefix with trailing delimiter
+    private String lastBlockPrefixString = null;
+    private byte[] lastBlockPrefixBytes = null;
+
+    // Reusable buffers for deserialized encrypted data and decrypted data
+    private final OutputBuffer encryptedDataBuffer = new OutputBuffer();
+    private final OutputBuffer decryptedDataBuffer = new OutputBuffer();
+    private final OutputBuffer blockPartBuffer = new OutputBuffer(FormatHelper.NONCE_SALT_SIZE);
+
+    public EAHDecryptionCoreV2(PrivateKey privateKey) throws CryptoInitializationFailed {
+        this(privateKey, EAHDecryptionCoreV1.AES_KEY_CACHE_POLICY.<String, SecretKey>create(EAHDecryptionCoreV1.AES_KEY_CACHE_SIZE));
+    }
+
+    /**
+     * @param privateKey Private key for asymmetric part
+     * @param aesKeyCache L2 cache of AES keys, may be shared with EAHv1 core
+     * @throws CryptoInitializationFailed If initialization filed, see root cause
+     */
+    public EAHDecryptionCoreV2(PrivateKey privateKey, KeyCache<String, SecretKey> aesKeyCache) throws CryptoInitializationFailed {
+        super(privateKey, aesKeyCache);
+    }
+
+    /**
+     * Decrypt AEHv2 format with Private Key
+     *
+     * @param value EAH String
+     * @return decrypted value
+     *
+     * @throws CryptoInitializationFailed
+     * @throws CryptoCoreFailed
+     * @throws InvalidInputFormat
+     */
+    @Override
+    public String decrypt(String value) throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        try {
+            // message format is IDENTIFIER_PREFIX : VERSION : ECIESPart : nonceSalt : counter and encrypted data
+            int versionStart = value.indexOf(FormatHelper.SERIALIZED_BLOCK_DELIMITER_CHAR) + 1;
+            int eciesPartStart = versionStart > 0 ? value.indexOf(FormatHelper.SERIALIZED_BLOCK_DELIMITER_CHAR, versionStart) + 1 : 0;
+            int nonceSaltStart = eciesPartStart > 0 ? value.indexOf(FormatHelper.SERIALIZED_BLOCK_DELIMITER_CHAR, eciesPartStart) + 1 : 0;
+            int encryptedDataStart = nonceSaltStart > 0 ? value.indexOf(FormatHelper.SERIALIZED_BLOCK_DELIMITER_CHAR, nonceSaltStart) + 1 : 0;
+
+            if (encryptedDataStart == 0 || encryptedDataStart == value.length() ||
+                    value.indexOf(FormatHelper.SERIALIZED_BLOCK_DELIMITER_CHAR, encryptedDataStart) >= 0) {
+                throw new InvalidInputFormat("Encrypted message is wrong, no enough blocks (5 expected) for the version 2 in value " + value);
+            }
+
+            if (!isPrefixCached(value, encryptedDataStart)) {
+                updatePrefix(value.substring(0, encryptedDataStart), eciesPartStart, nonceSaltStart);
+            }
+
+            this.encryptedDataBuffer.reset();
+            FormatHelper.deserialize(value, encryptedDataStart, value.length() - encryptedDataStart, this.encryptedDataBuffer);
+
+            this.decryptedDataBuffer.reset();
+            decryptData(this.lastBlockPrefixBytes, 0, this.lastBlockPrefixBytes.length,
+                    this.encryptedDataBuffer.getData(), 0, this.encryptedDataBuffer.getLength(), this.decryptedDataBuffer);
+            return this.decryptedDataBuffer.toString(FormatHelper.CONVERSION_CHARSET);
+        } catch (GeneralSecurityException e) {
+            throw decryptionFailed(e, value);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidInputFormat("EAH v2 format is wrong, failed to deserialize value " + value, e);
+        }
+    }
+
+    /**
+     * Decrypt AEHv2 format with Private Key, no conversion to String. Block prefix of the input is used as AAD as is
+     *
+     * @param value UTF-8 bytes of EAH String
+     * @param offset Offset of EAH String in value
+     * @param length Length of EAH String in value
+     * @param output Buffer to append decrypted value to
+     * @return Bytes appended to output
+     *
+     * @throws CryptoInitializationFailed
+     * @throws CryptoCoreFailed
+     * @throws InvalidInputFormat
+     */
+    @Override
+    public int decrypt(byte[] value, int offset, int length, OutputBuffer output) throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        int end = offset + length;
+
+        try {
+            int versionStart = FormatHelper.indexOfDelimiter(value, offset, end) + 1;
+            int eciesPartStart = versionStart > 0 ? FormatHelper.indexOfDelimiter(value, versionStart, end) + 1 : 0;
+            int nonceSaltStart = eciesPartStart > 0 ? FormatHelper.indexOfDelimiter(value, eciesPartStart, end) + 1 : 0;
+            int encryptedDataStart = nonceSaltStart > 0 ? FormatHelper.indexOfDelimiter(value, nonceSaltStart, end) + 1 : 0;
+
+            if (encryptedDataStart == 0 || encryptedDataStart == end ||
+                    FormatHelper.indexOfDelimiter(value, encryptedDataStart, end) >= 0) {
+                throw new InvalidInputFormat("Encrypted message is wrong, no enough blocks (5 expected) for the version 2 in value " + new String(value, offset, length, FormatHelper.CONVERSION_CHARSET));
+            }
+
+            if (!isPrefixCached(value, offset, encryptedDataStart)) {
+                updatePrefix(new String(value, offset, encryptedDataStart - offset, FormatHelper.SERIALIZED_CHARSET), eciesPartStart - offset, nonceSaltStart - offset);
+            }
+
+            this.encryptedDataBuffer.reset();
+            FormatHelper.deserialize(value, encryptedDataStart, end - encryptedDataStart, this.encryptedDataBuffer);
+
+            return decryptData(value, offset, encryptedDataStart - offset,
+                    this.encryptedDataBuffer.getData(), 0, this.encryptedDataBuffer.getLength(), output);
+        } catch (GeneralSecurityException e) {
+            throw decryptionFailed(e, new String(value, offset, length, FormatHelper.CONVERSION_CHARSET));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidInputFormat("EAH v2 format is wrong, failed to deserialize value " + new String(value, offset, length, FormatHelper.CONVERSION_CHARSET), e);
+        }
+    }
+
+    /**
+     * Checks, is block prefix of the value equal to the cached one. No allocations here, this is a hot path
+     *
+     * @param value Source string
+     * @param prefixEnd Prefix end, exclusive
+     * @return true if prefix is cached
+     */
+    private boolean isPrefixCached(String value, int prefixEnd) {
+        return this.lastBlockPrefixString != null && this.lastBlockPrefixString.length() == prefixEnd &&
+                value.regionMatches(0, this.lastBlockPrefixString, 0, prefixEnd);
+    }
+
+    /**
+     * Checks, is block prefix of the source bytes equal to the cached one. No allocations here, this is a hot path
+     *
+     * @param value Source bytes
+     * @param offset Prefix start, inclusive
+     * @param prefixEnd Prefix end, exclusive
+     * @return true if prefix is cached
+     */
+    private boolean isPrefixCached(byte[] value, int offset, int prefixEnd) {
+        byte[] cached = this.lastBlockPrefixBytes;
+        if (cached == null || cached.length != prefixEnd - offset) {
+            return false;
+        }
+
+        for (int i = 0; i < cached.length; i++) {
+            if (value[offset + i] != cached[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Updates L1 cache with the new block prefix: AES key (from L2 cache or ECIES part) and nonce salt
+     *
+     * @param blockPrefix Block prefix, with trailing delimiter
+     * @param eciesPartStart ECIES part start in the prefix
+     * @param nonceSaltStart Nonce salt start in the prefix
+     * @throws GeneralSecurityException On ECIES failure
+     */
+    private void updatePrefix(String blockPrefix, int eciesPartStart, int nonceSaltStart) throws GeneralSecurityException {
+        this.blockPartBuffer.reset();
+        if (FormatHelper.deserialize(blockPrefix, nonceSaltStart, blockPrefix.length() - 1 - nonceSaltStart, this.blockPartBuffer) != FormatHelper.NONCE_SALT_SIZE) {
+            throw new IllegalArgumentException("Wrong nonce salt size");
+        }
+
+        updateBlock(blockPrefix.substring(eciesPartStart, nonceSaltStart - 1), null, this.blockPartBuffer.getData(), 0);
+        this.lastBlockPrefixBytes = blockPrefix.getBytes(FormatHelper.SERIALIZED_CHARSET);
+        this.lastBlockPrefixString = blockPrefix;
+    }
+}
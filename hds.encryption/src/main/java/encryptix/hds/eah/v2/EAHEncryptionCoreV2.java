@@ -0,0 +1,106 @@
+package encryptix.hds.eah.v2;
+
+import encryptix.hds.eah.EAHEncryptionCore;
+import encryptix.hds.eah.OutputBuffer;
+import encryptix.hds.eah.v1.EAHEncryptionCoreV1;
+import encryptix.hds.exception.CryptoCoreFailed;
+import encryptix.hds.exception.CryptoInitializationFailed;
+
+import java.security.PublicKey;
+
+/**
+ * EAH Encryption Core, V2 format
+ * <p/>
+ * Same hybrid schema and block rules as EAHv1 (see EAHEncryptionCoreV1): AES key of the block is encrypted with ECIES
+ * once per block, rows are encrypted with AES. Differences are in the symmetric part:
+ * <ul>
+ * <li>AES/GCM/NoPadding instead of AES/CBC/PKCS5Padding, so rows are authenticated and have no padding overhead
+ * (ciphertext is plaintext length plus 16 bytes tag)</li>
+ * <li>Every row has its own 96 bit nonce: block-wide random salt from the block prefix and row counter, stored in front
+ * of the row ciphertext. AES key is random per block, so nonce is never re-used with the same key</li>
+ * <li>Serialized block prefix is authenticated as AAD, so ECIES part and salt can't be swapped between blocks</li>
+ * </ul>
+ * <p/>
+ * OUTPUT FORMAT:
+ * <p/>
+ * format_identifier:format_version:asymmetric_encryption_part:nonce_salt:symmetric_encryption_part
+ * <p/>
+ * nonce_salt is base64-encoded 8 random bytes, shared for block
+ * symmetric_encryption_part is base64-encoded 4 bytes row counter, AES-GCM ciphertext and tag
+ * <p/>
+ * NOT threadsafe implementation, 'cause target is a Hive, which uses every instance in a single thread
+ *
+ * @see EAHEncryptionCoreV1
+ */
+public class EAHEncryptionCoreV2 extends AbstractEncryptionCoreV2 implements EAHEncryptionCore {
+
+    /**
+     * AES Cipher definition, authenticated mode
+     */
+    public static final String AES_CIPHER_TYPE = "AES/GCM/NoPadding";
+
+    // Reusable buffer for String output
+    private final OutputBuffer stringOutputBuffer = new OutputBuffer();
+
+    public EAHEncryptionCoreV2(PublicKey publicKey) throws CryptoInitializationFailed {
+        this(publicKey, EAHEncryptionCoreV1.DEFAULT_MIN_BLOCK_SIZE, EAHEncryptionCoreV1.DEFAULT_MAX_BLOCK_SIZE,
+                EAHEncryptionCoreV1.DEFAULT_MAX_BLOCK_LIFETIME, EAHEncryptionCoreV1.DEFAULT_AES_KEY_SIZE);
+    }
+
+    /**
+     * @param publicKey Public key for asymmetric part
+     * @param minBlockSize Minimum block size, rows
+     * @param maxBlockSize Maximum block size, rows
+     * @param maxBlockLifetime Maximum block lifetime, nanoseconds
+     * @param aesKeySize AES key size, 128, 192 or 256
+     * @throws CryptoInitializationFailed If initialization failed, see root cause
+     */
+    public EAHEncryptionCoreV2(PublicKey publicKey, int minBlockSize, int maxBlockSize, long maxBlockLifetime, int aesKeySize) throws CryptoInitializationFailed {
+        super(publicKey, minBlockSize, maxBlockSize, maxBlockLifetime, aesKeySize);
+        startBlock();
+    }
+
+    @Override
+    protected byte[] serializeBlockPrefix(byte[] blockECIESPart, byte[] nonceSalt) {
+        return FormatHelper.serializeBlockPrefixBytes(blockECIESPart, nonceSalt);
+    }
+
+    @Override
+    protected void serializeEncryptedData(byte[] encryptedData, int length, OutputBuffer output) {
+        FormatHelper.serialize(encryptedData, 0, length, output);
+    }
+
+    /**
+     * Encrypt string to EAHv2 format with PublicKey
+     *
+     * @param value Value to encrypt
+     * @return EAHv2 format string
+     * @throws CryptoInitializationFailed
+     * @throws CryptoCoreFailed
+     */
+    @Override
+    public String encrypt(String value) throws CryptoInitializationFailed, CryptoCoreFailed {
+        byte[] valueBytes = value.getBytes(FormatHelper.CONVERSION_CHARSET);
+
+        this.stringOutputBuffer.reset();
+        encryptRow(valueBytes, 0, valueBytes.length, this.stringOutputBuffer);
+
+        return this.stringOutputBuffer.toString(FormatHelper.SERIALIZED_CHARSET);
+    }
+
+    /**
+     * Encrypt bytes to EAHv2 format with PublicKey, no conversion to String
+     *
+     * @param value Bytes to encrypt, usually UTF-8 of the String
+     * @param offset Offset of data in value
+     * @param length Length of data in value
+     * @param output Buffer to append EAHv2 format bytes to
+     * @return Bytes appended to output
+     * @throws CryptoInitializationFailed
+     * @throws CryptoCoreFailed
+     */
+    @Override
+    public int encrypt(byte[] value, int offset, int length, OutputBuffer output) throws CryptoInitializationFailed, CryptoCoreFailed {
+        return encryptRow(value, offset, length, output);
+    }
+}
@@ -0,0 +1,177 @@
+package encryptix.hds.eah.v2;
+
+import encryptix.hds.eah.EAHFormatHelper;
+import encryptix.hds.eah.OutputBuffer;
+
+import java.nio.charset.Charset;
+
+/**
+ * EAHv2 format helper. Delimiters, charsets and base64 codec are the same as for EAHv1
+ */
+public class FormatHelper {
+    /**
+     * Output format version
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * Output format delimiter
+     */
+    public static final String SERIALIZED_BLOCK_DELIMITER = encryptix.hds.eah.v1.FormatHelper.SERIALIZED_BLOCK_DELIMITER;
+
+    /**
+     * Output format delimiter as char, for indexOf-based parsing
+     */
+    public static final char SERIALIZED_BLOCK_DELIMITER_CHAR = encryptix.hds.eah.v1.FormatHelper.SERIALIZED_BLOCK_DELIMITER_CHAR;
+
+    /**
+     * EAHv2 signature for quick check with String.startWith
+     */
+    public static final String FORMAT_SIGNATURE = EAHFormatHelper.IDENTIFIER_PREFIX + SERIALIZED_BLOCK_DELIMITER + VERSION;
+
+    /**
+     * Conversion String<->byte[] charset, same as for EAHv1
+     */
+    public static final Charset CONVERSION_CHARSET = encryptix.hds.eah.v1.FormatHelper.CONVERSION_CHARSET;
+
+    /**
+     * Serialized parts (signature, version, base64 blocks and delimiters) are ASCII
+     */
+    public static final Charset SERIALIZED_CHARSET = encryptix.hds.eah.v1.FormatHelper.SERIALIZED_CHARSET;
+
+    /**
+     * Block-wide random part of the GCM nonce, bytes. Stored in the block prefix
+     */
+    public static final int NONCE_SALT_SIZE = 8;
+
+    /**
+     * Row counter part of the GCM nonce, bytes. Stored in front of the row ciphertext
+     */
+    public static final int ROW_COUNTER_SIZE = 4;
+
+    /**
+     * GCM nonce size, bytes. 96 bits is the recommended size, no GHASH over the nonce required
+     */
+    public static final int NONCE_SIZE = NONCE_SALT_SIZE + ROW_COUNTER_SIZE;
+
+    /**
+     * GCM authentication tag size, bits
+     */
+    public static final int TAG_SIZE = 128;
+
+    /**
+     * EAHv2 signature bytes for quick check of UTF-8 input
+     */
+    private static final byte[] FORMAT_SIGNATURE_BYTES = FORMAT_SIGNATURE.getBytes(CONVERSION_CHARSET);
+
+    /**
+     * Creates serialized EAHv2 block prefix as ASCII bytes. Prefix is authenticated as AAD of every row of the block
+     *
+     * @param blockECIESPart Block ECIES part
+     * @param nonceSalt Block-wide random part of the GCM nonce
+     * @return Serialized block
+     */
+    public static byte[] serializeBlockPrefixBytes(byte[] blockECIESPart, byte[] nonceSalt) {
+        return encryptix.hds.eah.v1.FormatHelper.serializeBlockPrefixBytes(FORMAT_SIGNATURE_BYTES, blockECIESPart, nonceSalt);
+    }
+
+    /**
+     * Writes row counter to the array, big-endian
+     *
+     * @param rowCounter Row counter
+     * @param output Array to write to
+     * @param offset Output offset
+     */
+    public static void writeRowCounter(int rowCounter, byte[] output, int offset) {
+        output[offset] = (byte) (rowCounter >>> 24);
+        output[offset + 1] = (byte) (rowCounter >>> 16);
+        output[offset + 2] = (byte) (rowCounter >>> 8);
+        output[offset + 3] = (byte) rowCounter;
+    }
+
+    /**
+     * Serializer, see EAHv1 FormatHelper
+     *
+     * @param value Value to serialize
+     * @param offset Value offset
+     * @param length Value length
+     * @param output Buffer to append serialized value to
+     * @return Bytes appended
+     */
+    public static int serialize(byte[] value, int offset, int length, OutputBuffer output) {
+        return encryptix.hds.eah.v1.FormatHelper.serialize(value, offset, length, output);
+    }
+
+    /**
+     * Serializer, see EAHv1 FormatHelper
+     *
+     * @param value Value to serialize
+     * @return Serialized value
+     */
+    public static String serialize(byte[] value) {
+        return encryptix.hds.eah.v1.FormatHelper.serialize(value);
+    }
+
+    /**
+     * Deserializer, see EAHv1 FormatHelper
+     *
+     * @param value Value to deserialize
+     * @return Deserialized value
+     * @throws IllegalArgumentException
+     */
+    public static byte[] deserialize(String value) throws IllegalArgumentException {
+        return encryptix.hds.eah.v1.FormatHelper.deserialize(value);
+    }
+
+    /**
+     * Deserializer for the String region, see EAHv1 FormatHelper
+     *
+     * @param value Serialized value
+     * @param offset Value offset
+     * @param length Value length
+     * @param output Buffer to append deserialized value to
+     * @return Bytes appended
+     * @throws IllegalArgumentException
+     */
+    public static int deserialize(String value, int offset, int length, OutputBuffer output) throws IllegalArgumentException {
+        return encryptix.hds.eah.v1.FormatHelper.deserialize(value, offset, length, output);
+    }
+
+    /**
+     * Deserializer for bytes, see EAHv1 FormatHelper
+     *
+     * @param value Serialized value
+     * @param offset Value offset
+     * @param length Value length
+     * @param output Buffer to append deserialized value to
+     * @return Bytes appended
+     * @throws IllegalArgumentException
+     */
+    public static int deserialize(byte[] value, int offset, int length, OutputBuffer output) throws IllegalArgumentException {
+        return encryptix.hds.eah.v1.FormatHelper.deserialize(value, offset, length, output);
+    }
+
+    /**
+     * Checks, is UTF-8 value starts with EAHv2 signature, same as String.startsWith(FORMAT_SIGNATURE)
+     *
+     * @param value UTF-8 bytes
+     * @param offset Value offset
+     * @param length Value length
+     * @return true if value starts with signature
+     */
+    public static boolean hasSignature(byte[] value, int offset, int length) {
+        return encryptix.hds.eah.v1.FormatHelper.hasSignature(FORMAT_SIGNATURE_BYTES, value, offset, length);
+    }
+
+    /**
+     * Finds next delimiter in UTF-8 value, see EAHv1 FormatHelper
+     *
+     * @param value UTF-8 bytes
+     * @param from Start index, inclusive
+     * @param to End index, exclusive
+     * @return delimiter index or -1 if not found
+     */
+    public static int indexOfDelimiter(byte[] value, int from, int to) {
+        return encryptix.hds.eah.v1.FormatHelper.indexOfDelimiter(value, from, to);
+    }
+}
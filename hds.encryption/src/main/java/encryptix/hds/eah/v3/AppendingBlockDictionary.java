@@ -0,0 +1,57 @@
+package encryptix.hds.eah.v3;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Block dictionary of the encryption side: new blocks are appended to the dictionary file and synced at once, see
+ * sync(), before any row of the block is written. Blocks are rare (one per DEFAULT_MAX_BLOCK_SIZE rows at most), sync
+ * per block costs nothing.
+ * <p/>
+ * Blocks are known in memory too, so values encrypted in the same JVM may be decrypted with this dictionary.
+ */
+public class AppendingBlockDictionary extends InMemoryBlockDictionary {
+
+    private final Writer dictionaryWriter;
+
+    /**
+     * @param dictionaryWriter Dictionary file to append blocks to, see InMemoryBlockDictionary for format
+     */
+    public AppendingBlockDictionary(Writer dictionaryWriter) {
+        this.dictionaryWriter = dictionaryWriter;
+    }
+
+    @Override
+    public void put(String blockId, String blockDescriptor) throws IOException {
+        synchronized (this.dictionaryWriter) {
+            if (get(blockId) == null) {
+                this.dictionaryWriter.write(serializeEntry(blockId, blockDescriptor));
+                this.dictionaryWriter.flush();
+                sync();
+                super.put(blockId, blockDescriptor);
+            }
+        }
+    }
+
+    /**
+     * Makes appended entries durable and visible to readers, called after every new block with writer flushed. Flush
+     * of the writer is enough for local files, file systems with client-side buffering (HDFS) must override it, so
+     * rows of the block can be decrypted even if the writing task dies before close
+     *
+     * @throws IOException If sync failed
+     */
+    protected void sync() throws IOException {
+        // writer is flushed already
+    }
+
+    /**
+     * Closes dictionary file
+     *
+     * @throws IOException If close failed
+     */
+    public void close() throws IOException {
+        synchronized (this.dictionaryWriter) {
+            this.dictionaryWriter.close();
+        }
+    }
+}
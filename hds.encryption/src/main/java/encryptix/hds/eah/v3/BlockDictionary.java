@@ -0,0 +1,29 @@
+package encryptix.hds.eah.v3;
+
+import java.io.IOException;
+
+/**
+ * Dictionary of EAHv3 blocks: block id to serialized block descriptor (ECIES part and nonce salt), see FormatHelper.
+ * Rows carry the block id only, so the dictionary must be available on decryption.
+ * <p/>
+ * Implementations must be threadsafe, the same dictionary may be shared by the cores of few UDF instances
+ */
+public interface BlockDictionary {
+
+    /**
+     * Finds block descriptor
+     *
+     * @param blockId Serialized block id
+     * @return Serialized block descriptor or null if block is not known
+     */
+    String get(String blockId);
+
+    /**
+     * Registers block, called by encryption core once per block
+     *
+     * @param blockId Serialized block id
+     * @param blockDescriptor Serialized block descriptor
+     * @throws IOException If block can't be stored
+     */
+    void put(String blockId, String blockDescriptor) throws IOException;
+}
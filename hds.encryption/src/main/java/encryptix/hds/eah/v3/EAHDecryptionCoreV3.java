@@ -0,0 +1,210 @@
+package encryptix.hds.eah.v3;
+
+import encryptix.hds.eah.EAHDecryptionCore;
+import encryptix.hds.eah.OutputBuffer;
+import encryptix.hds.eah.cache.KeyCache;
+import encryptix.hds.eah.v1.EAHDecryptionCoreV1;
+import encryptix.hds.eah.v2.AbstractDecryptionCoreV2;
+import encryptix.hds.exception.CryptoCoreFailed;
+import encryptix.hds.exception.CryptoInitializationFailed;
+import encryptix.hds.exception.InvalidInputFormat;
+
+import javax.crypto.SecretKey;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+
+/**
+ * EAH Decryption Core, V3 format
+ * <p/>
+ * Block prefix (signature and block id) is cached as a whole in L1 cache, same as for EAHv2. On L1 miss block id is
+ * resolved to ECIES part and nonce salt by the block dictionary, and ECIES part is resolved to AES key by L2 cache,
+ * keyed by ECIES part same as for EAHv1 and EAHv2, so L2 cache may be shared with other version cores.
+ * <p/>
+ * Block id of the dictionary entry is checked against the entry itself, so wrong dictionary is reported as wrong format
+ * instead of failed authentication.
+ * <p/>
+ * NOT threadsafe implementation, 'cause target is a Hive, which uses every instance in a single thread
+ *
+ * @see EAHEncryptionCoreV3
+ */
+public class EAHDecryptionCoreV3 extends AbstractDecryptionCoreV2 implements EAHDecryptionCore {
+
+    private final BlockDictionary blockDictionary;
+
+    private final MessageDigest blockIdDigest;
+
+    //  Level 1 Cache, whole block prefix with trailing delimiter
+    private String lastBlockPrefixString = null;
+    private byte[] lastBlockPrefixBytes = null;
+
+    // Reusable buffers for deserialized encrypted data and decrypted data
+    private final OutputBuffer encryptedDataBuffer = new OutputBuffer();
+    private final OutputBuffer decryptedDataBuffer = new OutputBuffer();
+
+    public EAHDecryptionCoreV3(PrivateKey privateKey, BlockDictionary blockDictionary) throws CryptoInitializationFailed {
+        this(privateKey, blockDictionary, EAHDecryptionCoreV1.AES_KEY_CACHE_POLICY.<String, SecretKey>create(EAHDecryptionCoreV1.AES_KEY_CACHE_SIZE));
+    }
+
+    /**
+     * @param privateKey Private key for asymmetric part
+     * @param blockDictionary Dictionary of blocks
+     * @param aesKeyCache L2 cache of AES keys, may be shared with other version cores
+     * @throws CryptoInitializationFailed If initialization filed, see root cause
+     */
+    public EAHDecryptionCoreV3(PrivateKey privateKey, BlockDictionary blockDictionary, KeyCache<String, SecretKey> aesKeyCache) throws CryptoInitializationFailed {
+        super(privateKey, aesKeyCache);
+        this.blockDictionary = blockDictionary;
+
+        try {
+            this.blockIdDigest = MessageDigest.getInstance(FormatHelper.BLOCK_ID_DIGEST);
+        } catch (NoSuchAlgorithmException e) {
+            throw new CryptoInitializationFailed("Failed to initialize block id digest", e);
+        }
+    }
+
+    /**
+     * Decrypt AEHv3 format with Private Key
+     *
+     * @param value EAH String
+     * @return decrypted value
+     *
+     * @throws CryptoInitializationFailed
+     * @throws CryptoCoreFailed
+     * @throws InvalidInputFormat
+     */
+    @Override
+    public String decrypt(String value) throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        try {
+            // message format is IDENTIFIER_PREFIX : VERSION : blockId : counter and encrypted data
+            int versionStart = value.indexOf(FormatHelper.SERIALIZED_BLOCK_DELIMITER_CHAR) + 1;
+            int blockIdStart = versionStart > 0 ? value.indexOf(FormatHelper.SERIALIZED_BLOCK_DELIMITER_CHAR, versionStart) + 1 : 0;
+            int encryptedDataStart = blockIdStart > 0 ? value.indexOf(FormatHelper.SERIALIZED_BLOCK_DELIMITER_CHAR, blockIdStart) + 1 : 0;
+
+            if (encryptedDataStart == 0 || encryptedDataStart == value.length() ||
+                    value.indexOf(FormatHelper.SERIALIZED_BLOCK_DELIMITER_CHAR, encryptedDataStart) >= 0) {
+                throw new InvalidInputFormat("Encrypted message is wrong, no enough blocks (4 expected) for the version 3 in value " + value);
+            }
+
+            if (this.lastBlockPrefixString == null || this.lastBlockPrefixString.length() != encryptedDataStart ||
+                    !value.regionMatches(0, this.lastBlockPrefixString, 0, encryptedDataStart)) {
+                updatePrefix(value.substring(0, encryptedDataStart), blockIdStart);
+            }
+
+            this.encryptedDataBuffer.reset();
+            FormatHelper.deserialize(value, encryptedDataStart, value.length() - encryptedDataStart, this.encryptedDataBuffer);
+
+            this.decryptedDataBuffer.reset();
+            decryptData(this.lastBlockPrefixBytes, 0, this.lastBlockPrefixBytes.length,
+                    this.encryptedDataBuffer.getData(), 0, this.encryptedDataBuffer.getLength(), this.decryptedDataBuffer);
+            return this.decryptedDataBuffer.toString(FormatHelper.CONVERSION_CHARSET);
+        } catch (GeneralSecurityException e) {
+            throw decryptionFailed(e, value);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidInputFormat("EAH v3 format is wrong, failed to deserialize value " + value, e);
+        }
+    }
+
+    /**
+     * Decrypt AEHv3 format with Private Key, no conversion to String. Block prefix of the input is used as AAD as is
+     *
+     * @param value UTF-8 bytes of EAH String
+     * @param offset Offset of EAH String in value
+     * @param length Length of EAH String in value
+     * @param output Buffer to append decrypted value to
+     * @return Bytes appended to output
+     *
+     * @throws CryptoInitializationFailed
+     * @throws CryptoCoreFailed
+     * @throws InvalidInputFormat
+     */
+    @Override
+    public int decrypt(byte[] value, int offset, int length, OutputBuffer output) throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        int end = offset + length;
+
+        try {
+            int versionStart = FormatHelper.indexOfDelimiter(value, offset, end) + 1;
+            int blockIdStart = versionStart > 0 ? FormatHelper.indexOfDelimiter(value, versionStart, end) + 1 : 0;
+            int encryptedDataStart = blockIdStart > 0 ? FormatHelper.indexOfDelimiter(value, blockIdStart, end) + 1 : 0;
+
+            if (encryptedDataStart == 0 || encryptedDataStart == end ||
+                    FormatHelper.indexOfDelimiter(value, encryptedDataStart, end) >= 0) {
+                throw new InvalidInputFormat("Encrypted message is wrong, no enough blocks (4 expected) for the version 3 in value " + new String(value, offset, length, FormatHelper.CONVERSION_CHARSET));
+            }
+
+            if (!isPrefixCached(value, offset, encryptedDataStart)) {
+                updatePrefix(new String(value, offset, encryptedDataStart - offset, FormatHelper.SERIALIZED_CHARSET), blockIdStart - offset);
+            }
+
+            this.encryptedDataBuffer.reset();
+            FormatHelper.deserialize(value, encryptedDataStart, end - encryptedDataStart, this.encryptedDataBuffer);
+
+            return decryptData(value, offset, encryptedDataStart - offset,
+                    this.encryptedDataBuffer.getData(), 0, this.encryptedDataBuffer.getLength(), output);
+        } catch (GeneralSecurityException e) {
+            throw decryptionFailed(e, new String(value, offset, length, FormatHelper.CONVERSION_CHARSET));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidInputFormat("EAH v3 format is wrong, failed to deserialize value " + new String(value, offset, length, FormatHelper.CONVERSION_CHARSET), e);
+        }
+    }
+
+    /**
+     * Checks, is block prefix of the source bytes equal to the cached one. No allocations here, this is a hot path
+     *
+     * @param value Source bytes
+     * @param offset Prefix start, inclusive
+     * @param prefixEnd Prefix end, exclusive
+     * @return true if prefix is cached
+     */
+    private boolean isPrefixCached(byte[] value, int offset, int prefixEnd) {
+        byte[] cached = this.lastBlockPrefixBytes;
+        if (cached == null || cached.length != prefixEnd - offset) {
+            return false;
+        }
+
+        for (int i = 0; i < cached.length; i++) {
+            if (value[offset + i] != cached[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Updates L1 cache with the new block prefix: block descriptor from the dictionary, AES key (from L2 cache or
+     * ECIES part) and nonce salt
+     *
+     * @param blockPrefix Block prefix, with trailing delimiter
+     * @param blockIdStart Block id start in the prefix
+     * @throws GeneralSecurityException On ECIES failure
+     * @throws InvalidInputFormat If block is not found in dictionary or dictionary entry is wrong
+     */
+    private void updatePrefix(String blockPrefix, int blockIdStart) throws GeneralSecurityException, InvalidInputFormat {
+        String blockId = blockPrefix.substring(blockIdStart, blockPrefix.length() - 1);
+
+        String blockDescriptor = this.blockDictionary.get(blockId);
+        if (blockDescriptor == null) {
+            throw new InvalidInputFormat("Block " + blockId + " is not found in block dictionary");
+        }
+
+        int nonceSaltStart = blockDescriptor.indexOf(FormatHelper.SERIALIZED_BLOCK_DELIMITER_CHAR) + 1;
+        if (nonceSaltStart == 0) {
+            throw new InvalidInputFormat("Block dictionary entry of block " + blockId + " is wrong, 2 blocks expected");
+        }
+
+        String eciesPartString = blockDescriptor.substring(0, nonceSaltStart - 1);
+        byte[] eciesPart = FormatHelper.deserialize(eciesPartString);
+        byte[] nonceSalt = FormatHelper.deserialize(blockDescriptor.substring(nonceSaltStart));
+
+        if (nonceSalt.length != FormatHelper.NONCE_SALT_SIZE ||
+                !blockId.equals(FormatHelper.blockId(this.blockIdDigest, eciesPart, nonceSalt))) {
+            throw new InvalidInputFormat("Block dictionary entry of block " + blockId + " doesn't match block id");
+        }
+
+        updateBlock(eciesPartString, eciesPart, nonceSalt, 0);
+        this.lastBlockPrefixBytes = blockPrefix.getBytes(FormatHelper.SERIALIZED_CHARSET);
+        this.lastBlockPrefixString = blockPrefix;
+    }
+}
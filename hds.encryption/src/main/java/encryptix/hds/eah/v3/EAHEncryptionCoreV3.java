@@ -0,0 +1,124 @@
+package encryptix.hds.eah.v3;
+
+import encryptix.hds.eah.EAHEncryptionCore;
+import encryptix.hds.eah.OutputBuffer;
+import encryptix.hds.eah.v1.EAHEncryptionCoreV1;
+import encryptix.hds.eah.v2.AbstractEncryptionCoreV2;
+import encryptix.hds.exception.CryptoCoreFailed;
+import encryptix.hds.exception.CryptoInitializationFailed;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+
+/**
+ * EAH Encryption Core, V3 format
+ * <p/>
+ * Same crypto schema and block rules as EAHv2 (see EAHEncryptionCoreV2), but rows don't carry ECIES part and nonce
+ * salt of the block, it's about 200 bytes of the every row of EAHv2. Rows carry a short block id, the block itself is
+ * registered in the block dictionary once per block, dictionary is stored aside of the table.
+ * <p/>
+ * Block id is a truncated digest of ECIES part and nonce salt, serialized block prefix with block id is authenticated
+ * as AAD, so row can't be moved to the other block.
+ * <p/>
+ * OUTPUT FORMAT:
+ * <p/>
+ * format_identifier:format_version:block_id:symmetric_encryption_part
+ * <p/>
+ * block_id is base64-encoded 12 bytes, see FormatHelper.blockId()
+ * symmetric_encryption_part is base64-encoded 4 bytes row counter, AES-GCM ciphertext and tag, same as EAHv2
+ * <p/>
+ * NOT threadsafe implementation, 'cause target is a Hive, which uses every instance in a single thread
+ *
+ * @see EAHDecryptionCoreV3
+ * @see BlockDictionary
+ */
+public class EAHEncryptionCoreV3 extends AbstractEncryptionCoreV2 implements EAHEncryptionCore {
+
+    private final BlockDictionary blockDictionary;
+
+    private final MessageDigest blockIdDigest;
+
+    // Reusable buffer for String output
+    private final OutputBuffer stringOutputBuffer = new OutputBuffer();
+
+    public EAHEncryptionCoreV3(PublicKey publicKey, BlockDictionary blockDictionary) throws CryptoInitializationFailed {
+        this(publicKey, blockDictionary, EAHEncryptionCoreV1.DEFAULT_MIN_BLOCK_SIZE, EAHEncryptionCoreV1.DEFAULT_MAX_BLOCK_SIZE,
+                EAHEncryptionCoreV1.DEFAULT_MAX_BLOCK_LIFETIME, EAHEncryptionCoreV1.DEFAULT_AES_KEY_SIZE);
+    }
+
+    /**
+     * @param publicKey Public key for asymmetric part
+     * @param blockDictionary Dictionary to register new blocks in
+     * @param minBlockSize Minimum block size, rows
+     * @param maxBlockSize Maximum block size, rows
+     * @param maxBlockLifetime Maximum block lifetime, nanoseconds
+     * @param aesKeySize AES key size, 128, 192 or 256
+     * @throws CryptoInitializationFailed If initialization failed, see root cause
+     */
+    public EAHEncryptionCoreV3(PublicKey publicKey, BlockDictionary blockDictionary, int minBlockSize, int maxBlockSize, long maxBlockLifetime, int aesKeySize) throws CryptoInitializationFailed {
+        super(publicKey, minBlockSize, maxBlockSize, maxBlockLifetime, aesKeySize);
+        this.blockDictionary = blockDictionary;
+
+        try {
+            this.blockIdDigest = MessageDigest.getInstance(FormatHelper.BLOCK_ID_DIGEST);
+        } catch (NoSuchAlgorithmException e) {
+            throw new CryptoInitializationFailed("Failed to initialize block id digest", e);
+        }
+
+        startBlock();
+    }
+
+    @Override
+    protected byte[] serializeBlockPrefix(byte[] blockECIESPart, byte[] nonceSalt) throws CryptoInitializationFailed {
+        String blockId = FormatHelper.blockId(this.blockIdDigest, blockECIESPart, nonceSalt);
+
+        try {
+            this.blockDictionary.put(blockId, FormatHelper.serializeBlockDescriptor(blockECIESPart, nonceSalt));
+        } catch (IOException e) {
+            throw new CryptoInitializationFailed("Failed to register block " + blockId + " in block dictionary", e);
+        }
+
+        return FormatHelper.serializeBlockPrefixBytes(blockId);
+    }
+
+    @Override
+    protected void serializeEncryptedData(byte[] encryptedData, int length, OutputBuffer output) {
+        FormatHelper.serialize(encryptedData, 0, length, output);
+    }
+
+    /**
+     * Encrypt string to EAHv3 format with PublicKey
+     *
+     * @param value Value to encrypt
+     * @return EAHv3 format string
+     * @throws CryptoInitializationFailed
+     * @throws CryptoCoreFailed
+     */
+    @Override
+    public String encrypt(String value) throws CryptoInitializationFailed, CryptoCoreFailed {
+        byte[] valueBytes = value.getBytes(FormatHelper.CONVERSION_CHARSET);
+
+        this.stringOutputBuffer.reset();
+        encryptRow(valueBytes, 0, valueBytes.length, this.stringOutputBuffer);
+
+        return this.stringOutputBuffer.toString(FormatHelper.SERIALIZED_CHARSET);
+    }
+
+    /**
+     * Encrypt bytes to EAHv3 format with PublicKey, no conversion to String
+     *
+     * @param value Bytes to encrypt, usually UTF-8 of the String
+     * @param offset Offset of data in value
+     * @param length Length of data in value
+     * @param output Buffer to append EAHv3 format bytes to
+     * @return Bytes appended to output
+     * @throws CryptoInitializationFailed
+     * @throws CryptoCoreFailed
+     */
+    @Override
+    public int encrypt(byte[] value, int offset, int length, OutputBuffer output) throws CryptoInitializationFailed, CryptoCoreFailed {
+        return encryptRow(value, offset, length, output);
+    }
+}
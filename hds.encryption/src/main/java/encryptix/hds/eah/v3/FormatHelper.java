@@ -0,0 +1,184 @@
+package encryptix.hds.eah.v3;
+
+import encryptix.hds.eah.EAHFormatHelper;
+import encryptix.hds.eah.OutputBuffer;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * EAHv3 format helper. Crypto schema, delimiters, charsets and base64 codec are the same as for EAHv2
+ */
+public class FormatHelper {
+    /**
+     * Output format version
+     */
+    public static final int VERSION = 3;
+
+    /**
+     * Output format delimiter
+     */
+    public static final String SERIALIZED_BLOCK_DELIMITER = encryptix.hds.eah.v2.FormatHelper.SERIALIZED_BLOCK_DELIMITER;
+
+    /**
+     * Output format delimiter as char, for indexOf-based parsing
+     */
+    public static final char SERIALIZED_BLOCK_DELIMITER_CHAR = encryptix.hds.eah.v2.FormatHelper.SERIALIZED_BLOCK_DELIMITER_CHAR;
+
+    /**
+     * EAHv3 signature for quick check with String.startWith
+     */
+    public static final String FORMAT_SIGNATURE = EAHFormatHelper.IDENTIFIER_PREFIX + SERIALIZED_BLOCK_DELIMITER + VERSION;
+
+    /**
+     * Conversion String<->byte[] charset, same as for EAHv2
+     */
+    public static final Charset CONVERSION_CHARSET = encryptix.hds.eah.v2.FormatHelper.CONVERSION_CHARSET;
+
+    /**
+     * Serialized parts (signature, version, base64 blocks and delimiters) are ASCII
+     */
+    public static final Charset SERIALIZED_CHARSET = encryptix.hds.eah.v2.FormatHelper.SERIALIZED_CHARSET;
+
+    /**
+     * Block-wide random part of the GCM nonce, bytes. Stored in the block dictionary
+     */
+    public static final int NONCE_SALT_SIZE = encryptix.hds.eah.v2.FormatHelper.NONCE_SALT_SIZE;
+
+    /**
+     * Block id size, bytes. Truncated SHA-256 of the block descriptor, 16 base64 symbols without padding
+     */
+    public static final int BLOCK_ID_SIZE = 12;
+
+    /**
+     * Digest algorithm of the block id
+     */
+    public static final String BLOCK_ID_DIGEST = "SHA-256";
+
+    /**
+     * EAHv3 signature bytes for quick check of UTF-8 input
+     */
+    private static final byte[] FORMAT_SIGNATURE_BYTES = FORMAT_SIGNATURE.getBytes(CONVERSION_CHARSET);
+
+    /**
+     * Creates block id: truncated digest of ECIES part and nonce salt, so the id can't be re-used for other block
+     *
+     * @param digest Block id digest, reset after use
+     * @param blockECIESPart Block ECIES part
+     * @param nonceSalt Block-wide random part of the GCM nonce
+     * @return Serialized block id
+     */
+    public static String blockId(MessageDigest digest, byte[] blockECIESPart, byte[] nonceSalt) {
+        digest.update(blockECIESPart);
+        digest.update(nonceSalt);
+        return serialize(Arrays.copyOf(digest.digest(), BLOCK_ID_SIZE));
+    }
+
+    /**
+     * Creates serialized block descriptor, the dictionary value of the block id
+     *
+     * @param blockECIESPart Block ECIES part
+     * @param nonceSalt Block-wide random part of the GCM nonce
+     * @return Serialized block descriptor, base64 of ECIES part and nonce salt
+     */
+    public static String serializeBlockDescriptor(byte[] blockECIESPart, byte[] nonceSalt) {
+        return serialize(blockECIESPart) + SERIALIZED_BLOCK_DELIMITER + serialize(nonceSalt);
+    }
+
+    /**
+     * Creates serialized EAHv3 block prefix as ASCII bytes. Prefix is authenticated as AAD of every row of the block
+     *
+     * @param blockId Serialized block id
+     * @return Serialized block prefix
+     */
+    public static byte[] serializeBlockPrefixBytes(String blockId) {
+        return (FORMAT_SIGNATURE + SERIALIZED_BLOCK_DELIMITER + blockId + SERIALIZED_BLOCK_DELIMITER).getBytes(SERIALIZED_CHARSET);
+    }
+
+    /**
+     * Serializer, see EAHv1 FormatHelper
+     *
+     * @param value Value to serialize
+     * @return Serialized value
+     */
+    public static String serialize(byte[] value) {
+        return encryptix.hds.eah.v2.FormatHelper.serialize(value);
+    }
+
+    /**
+     * Serializer, see EAHv1 FormatHelper
+     *
+     * @param value Value to serialize
+     * @param offset Value offset
+     * @param length Value length
+     * @param output Buffer to append serialized value to
+     * @return Bytes appended
+     */
+    public static int serialize(byte[] value, int offset, int length, OutputBuffer output) {
+        return encryptix.hds.eah.v2.FormatHelper.serialize(value, offset, length, output);
+    }
+
+    /**
+     * Deserializer, see EAHv1 FormatHelper
+     *
+     * @param value Value to deserialize
+     * @return Deserialized value
+     * @throws IllegalArgumentException
+     */
+    public static byte[] deserialize(String value) throws IllegalArgumentException {
+        return encryptix.hds.eah.v2.FormatHelper.deserialize(value);
+    }
+
+    /**
+     * Deserializer, see EAHv1 FormatHelper
+     *
+     * @param value Value to deserialize
+     * @param offset Value offset
+     * @param length Value length
+     * @param output Buffer to append deserialized value to
+     * @return Bytes appended
+     * @throws IllegalArgumentException
+     */
+    public static int deserialize(String value, int offset, int length, OutputBuffer output) throws IllegalArgumentException {
+        return encryptix.hds.eah.v2.FormatHelper.deserialize(value, offset, length, output);
+    }
+
+    /**
+     * Deserializer, see EAHv1 FormatHelper
+     *
+     * @param value Value to deserialize, ASCII bytes
+     * @param offset Value offset
+     * @param length Value length
+     * @param output Buffer to append deserialized value to
+     * @return Bytes appended
+     * @throws IllegalArgumentException
+     */
+    public static int deserialize(byte[] value, int offset, int length, OutputBuffer output) throws IllegalArgumentException {
+        return encryptix.hds.eah.v2.FormatHelper.deserialize(value, offset, length, output);
+    }
+
+    /**
+     * Checks, is UTF-8 value starts with EAHv3 signature and delimiter
+     *
+     * @param value UTF-8 bytes
+     * @param offset Value offset
+     * @param length Value length
+     * @return true if signature matches
+     */
+    public static boolean hasSignature(byte[] value, int offset, int length) {
+        return encryptix.hds.eah.v1.FormatHelper.hasSignature(FORMAT_SIGNATURE_BYTES, value, offset, length);
+    }
+
+    /**
+     * Finds next delimiter in UTF-8 value, see EAHv1 FormatHelper
+     *
+     * @param value UTF-8 bytes
+     * @param from Start index, inclusive
+     * @param to End index, exclusive
+     * @return delimiter index or -1 if not found
+     */
+    public static int indexOfDelimiter(byte[] value, int from, int to) {
+        return encryptix.hds.eah.v2.FormatHelper.indexOfDelimiter(value, from, to);
+    }
+}
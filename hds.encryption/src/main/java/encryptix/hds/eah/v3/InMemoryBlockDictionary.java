@@ -0,0 +1,76 @@
+package encryptix.hds.eah.v3;
+
+import encryptix.hds.exception.InvalidResourceFormat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Block dictionary in memory, filled from dictionary files on decryption.
+ * <p/>
+ * DICTIONARY FILE FORMAT, one block per line:
+ * <p/>
+ * block_id:asymmetric_encryption_part:nonce_salt
+ * <p/>
+ * Files written by few encryption tasks may be read one by one into the same dictionary or simply concatenated.
+ */
+public class InMemoryBlockDictionary implements BlockDictionary {
+
+    private final ConcurrentMap<String, String> blocks = new ConcurrentHashMap<>();
+
+    @Override
+    public String get(String blockId) {
+        return this.blocks.get(blockId);
+    }
+
+    @Override
+    public void put(String blockId, String blockDescriptor) throws IOException {
+        this.blocks.put(blockId, blockDescriptor);
+    }
+
+    /**
+     * @return Number of blocks known
+     */
+    public int size() {
+        return this.blocks.size();
+    }
+
+    /**
+     * Reads dictionary file, blocks are added to the known ones. Reader is closed
+     *
+     * @param dictionaryReader Dictionary file
+     * @throws IOException If read failed
+     * @throws InvalidResourceFormat If line is not a dictionary entry
+     */
+    public void read(Reader dictionaryReader) throws IOException, InvalidResourceFormat {
+        try (BufferedReader reader = new BufferedReader(dictionaryReader)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+
+                int descriptorStart = line.indexOf(FormatHelper.SERIALIZED_BLOCK_DELIMITER_CHAR) + 1;
+                if (descriptorStart == 0 || line.indexOf(FormatHelper.SERIALIZED_BLOCK_DELIMITER_CHAR, descriptorStart) < 0) {
+                    throw new InvalidResourceFormat("Block dictionary entry is wrong, 3 blocks expected in line " + line);
+                }
+
+                this.blocks.put(line.substring(0, descriptorStart - 1), line.substring(descriptorStart));
+            }
+        }
+    }
+
+    /**
+     * Serializes dictionary entry as a line of dictionary file
+     *
+     * @param blockId Serialized block id
+     * @param blockDescriptor Serialized block descriptor
+     * @return Dictionary file line, with line separator
+     */
+    public static String serializeEntry(String blockId, String blockDescriptor) {
+        return blockId + FormatHelper.SERIALIZED_BLOCK_DELIMITER + blockDescriptor + '\n';
+    }
+}
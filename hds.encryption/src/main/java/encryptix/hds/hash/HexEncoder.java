@@ -0,0 +1,49 @@
+package encryptix.hds.hash;
+
+/**
+ * Lowercase hex encoder to the caller's buffer, no allocations. Same output as BouncyCastle Hex.encode
+ */
+public final class HexEncoder {
+
+    // lowercase hex digits lookup table
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private HexEncoder() {
+    }
+
+    /**
+     * @param input Bytes to encode
+     * @param offset Input offset
+     * @param length Input length
+     * @param output Buffer to write ASCII hex to, at least 2 * length bytes from outputOffset
+     * @param outputOffset Output offset
+     * @return Bytes written
+     */
+    public static int encode(byte[] input, int offset, int length, byte[] output, int outputOffset) {
+        int position = outputOffset;
+        for (int i = offset; i < offset + length; i++) {
+            output[position++] = (byte) HEX_DIGITS[(input[i] >> 4) & 0x0f];
+            output[position++] = (byte) HEX_DIGITS[input[i] & 0x0f];
+        }
+
+        return position - outputOffset;
+    }
+
+    /**
+     * @param input Bytes to encode
+     * @param offset Input offset
+     * @param length Input length
+     * @param output Buffer to write hex to, at least 2 * length chars from outputOffset
+     * @param outputOffset Output offset
+     * @return Chars written
+     */
+    public static int encode(byte[] input, int offset, int length, char[] output, int outputOffset) {
+        int position = outputOffset;
+        for (int i = offset; i < offset + length; i++) {
+            output[position++] = HEX_DIGITS[(input[i] >> 4) & 0x0f];
+            output[position++] = HEX_DIGITS[input[i] & 0x0f];
+        }
+
+        return position - outputOffset;
+    }
+}
@@ -0,0 +1,20 @@
+package encryptix.hds.hash;
+
+/**
+ * Available HMAC algorithms, since out target JVM is Java 7, we are following
+ * https://docs.oracle.com/javase/7/docs/technotes/guides/security/StandardNames.html#Mac
+ */
+public enum HmacAlgorithm {
+
+    HMAC_SHA256("HmacSHA256"), HMAC_SHA384("HmacSHA384"), HMAC_SHA512("HmacSHA512");
+
+    private String algorithmName;
+
+    HmacAlgorithm(String algorithmName) {
+        this.algorithmName = algorithmName;
+    }
+
+    public String getAlgorithmName() {
+        return algorithmName;
+    }
+}
@@ -1,15 +1,18 @@
 package encryptix.hds.hash;
 
 import encryptix.hds.exception.CryptoInitializationFailed;
-import org.bouncycastle.util.encoders.Hex;
 
 import java.nio.charset.Charset;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
 /**
  * This is simple digest generator which is NOT THREAD-SAFE,but reuses MessageDigest object, so fast enough
  * Good for single-thread processing of massive data
+ * <p/>
+ * Byte range methods hash a part of the caller's array and write digest or its lowercase hex to the caller's buffer,
+ * so there are no allocations per value.
  */
 public class StreamedDigestGenerator {
     // few nanoseconds on lookup
@@ -17,23 +20,105 @@ public class StreamedDigestGenerator {
 
     MessageDigest digest;
 
+    // Reusable buffer for digest of the hex methods
+    private final byte[] digestBuffer;
+
     public StreamedDigestGenerator(DigestAlgorithm digestAlgorithm) throws CryptoInitializationFailed {
         try {
             this.digest = MessageDigest.getInstance(digestAlgorithm.getAlgorithmName());
         } catch (NoSuchAlgorithmException e) {
             throw new CryptoInitializationFailed("Digest algorithm "+digestAlgorithm.getAlgorithmName()+" is not supported");
         }
+        this.digestBuffer = new byte[this.digest.getDigestLength()];
+    }
+
+    /**
+     * @return Digest length, bytes
+     */
+    public int getDigestLength() {
+        return this.digestBuffer.length;
+    }
+
+    /**
+     * @return Hex digest length, chars or bytes
+     */
+    public int getHexDigestLength() {
+        return this.digestBuffer.length * 2;
     }
 
     public byte[] digest(byte[] input) {
         return this.digest.digest(input);
     }
 
+    /**
+     * Digest of the byte range
+     *
+     * @param input Input bytes
+     * @param offset Input offset
+     * @param length Input length
+     * @param output Buffer to write digest to, at least getDigestLength() bytes from outputOffset
+     * @param outputOffset Output offset
+     * @return Bytes written
+     * @throws IllegalArgumentException If output buffer is too small
+     */
+    public int digest(byte[] input, int offset, int length, byte[] output, int outputOffset) {
+        this.digest.update(input, offset, length);
+        try {
+            return this.digest.digest(output, outputOffset, output.length - outputOffset);
+        } catch (DigestException e) {
+            throw new IllegalArgumentException("Output buffer is too small for digest " + this.digest.getAlgorithm(), e);
+        }
+    }
+
+    /**
+     * Lowercase hex digest of the byte range as ASCII bytes
+     *
+     * @param input Input bytes
+     * @param offset Input offset
+     * @param length Input length
+     * @param output Buffer to write hex digest to, at least getHexDigestLength() bytes from outputOffset
+     * @param outputOffset Output offset
+     * @return Bytes written
+     * @throws IllegalArgumentException If output buffer is too small
+     */
+    public int hexDigest(byte[] input, int offset, int length, byte[] output, int outputOffset) {
+        checkHexOutput(output.length, outputOffset);
+        digest(input, offset, length, this.digestBuffer, 0);
+
+        return HexEncoder.encode(this.digestBuffer, 0, this.digestBuffer.length, output, outputOffset);
+    }
+
+    /**
+     * Lowercase hex digest of the byte range as chars
+     *
+     * @param input Input bytes
+     * @param offset Input offset
+     * @param length Input length
+     * @param output Buffer to write hex digest to, at least getHexDigestLength() chars from outputOffset
+     * @param outputOffset Output offset
+     * @return Chars written
+     * @throws IllegalArgumentException If output buffer is too small
+     */
+    public int hexDigest(byte[] input, int offset, int length, char[] output, int outputOffset) {
+        checkHexOutput(output.length, outputOffset);
+        digest(input, offset, length, this.digestBuffer, 0);
+
+        return HexEncoder.encode(this.digestBuffer, 0, this.digestBuffer.length, output, outputOffset);
+    }
+
     public String hexDigest(byte[] input) {
-        return new String(Hex.encode(this.digest(input)), defaultCharset);
+        char[] hex = new char[getHexDigestLength()];
+        hexDigest(input, 0, input.length, hex, 0);
+        return new String(hex);
     }
 
     public String hexDigest(String input) {
         return hexDigest(input.getBytes(defaultCharset));
     }
+
+    private void checkHexOutput(int outputLength, int outputOffset) {
+        if (outputLength - outputOffset < getHexDigestLength()) {
+            throw new IllegalArgumentException("Output buffer is too small for hex digest " + this.digest.getAlgorithm());
+        }
+    }
 }
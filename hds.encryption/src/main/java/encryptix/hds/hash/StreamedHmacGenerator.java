@@ -0,0 +1,134 @@
+package encryptix.hds.hash;
+
+import encryptix.hds.exception.CryptoInitializationFailed;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.Charset;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Keyed digest (HMAC) generator, same approach as StreamedDigestGenerator: NOT THREAD-SAFE, but reuses Mac object
+ * initialized with the key once, so fast enough. Good for single-thread processing of massive data
+ * <p/>
+ * Unlike plain digest, HMAC of low-entropy values (phone numbers, ids) can't be reversed by brute force without the
+ * key, so it's good for pseudonymized join keys.
+ */
+public class StreamedHmacGenerator {
+
+    static Charset defaultCharset = StreamedDigestGenerator.defaultCharset;
+
+    private final Mac mac;
+
+    // Reusable buffer for MAC of the hex methods
+    private final byte[] macBuffer;
+
+    /**
+     * @param hmacAlgorithm HMAC algorithm
+     * @param key Secret key
+     * @throws CryptoInitializationFailed If algorithm is not supported or key is wrong
+     */
+    public StreamedHmacGenerator(HmacAlgorithm hmacAlgorithm, byte[] key) throws CryptoInitializationFailed {
+        try {
+            this.mac = Mac.getInstance(hmacAlgorithm.getAlgorithmName());
+            this.mac.init(new SecretKeySpec(key, hmacAlgorithm.getAlgorithmName()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new CryptoInitializationFailed("HMAC algorithm " + hmacAlgorithm.getAlgorithmName() + " is not supported", e);
+        } catch (InvalidKeyException | IllegalArgumentException e) {
+            throw new CryptoInitializationFailed("HMAC key is wrong for algorithm " + hmacAlgorithm.getAlgorithmName(), e);
+        }
+        this.macBuffer = new byte[this.mac.getMacLength()];
+    }
+
+    /**
+     * @return MAC length, bytes
+     */
+    public int getMacLength() {
+        return this.macBuffer.length;
+    }
+
+    /**
+     * @return Hex MAC length, chars or bytes
+     */
+    public int getHexMacLength() {
+        return this.macBuffer.length * 2;
+    }
+
+    /**
+     * MAC of the byte range
+     *
+     * @param input Input bytes
+     * @param offset Input offset
+     * @param length Input length
+     * @param output Buffer to write MAC to, at least getMacLength() bytes from outputOffset
+     * @param outputOffset Output offset
+     * @return Bytes written
+     * @throws IllegalArgumentException If output buffer is too small
+     */
+    public int mac(byte[] input, int offset, int length, byte[] output, int outputOffset) {
+        if (output.length - outputOffset < getMacLength()) {
+            throw new IllegalArgumentException("Output buffer is too small for MAC " + this.mac.getAlgorithm());
+        }
+
+        this.mac.update(input, offset, length);
+        try {
+            this.mac.doFinal(output, outputOffset);
+        } catch (ShortBufferException e) {
+            throw new IllegalArgumentException("Output buffer is too small for MAC " + this.mac.getAlgorithm(), e);
+        }
+
+        return getMacLength();
+    }
+
+    /**
+     * Lowercase hex MAC of the byte range as ASCII bytes
+     *
+     * @param input Input bytes
+     * @param offset Input offset
+     * @param length Input length
+     * @param output Buffer to write hex MAC to, at least getHexMacLength() bytes from outputOffset
+     * @param outputOffset Output offset
+     * @return Bytes written
+     * @throws IllegalArgumentException If output buffer is too small
+     */
+    public int hexMac(byte[] input, int offset, int length, byte[] output, int outputOffset) {
+        checkHexOutput(output.length, outputOffset);
+        mac(input, offset, length, this.macBuffer, 0);
+        return HexEncoder.encode(this.macBuffer, 0, this.macBuffer.length, output, outputOffset);
+    }
+
+    /**
+     * Lowercase hex MAC of the byte range as chars
+     *
+     * @param input Input bytes
+     * @param offset Input offset
+     * @param length Input length
+     * @param output Buffer to write hex MAC to, at least getHexMacLength() chars from outputOffset
+     * @param outputOffset Output offset
+     * @return Chars written
+     * @throws IllegalArgumentException If output buffer is too small
+     */
+    public int hexMac(byte[] input, int offset, int length, char[] output, int outputOffset) {
+        checkHexOutput(output.length, outputOffset);
+        mac(input, offset, length, this.macBuffer, 0);
+        return HexEncoder.encode(this.macBuffer, 0, this.macBuffer.length, output, outputOffset);
+    }
+
+    public String hexMac(byte[] input) {
+        char[] hex = new char[getHexMacLength()];
+        hexMac(input, 0, input.length, hex, 0);
+        return new String(hex);
+    }
+
+    public String hexMac(String input) {
+        return hexMac(input.getBytes(defaultCharset));
+    }
+
+    private void checkHexOutput(int outputLength, int outputOffset) {
+        if (outputLength - outputOffset < getHexMacLength()) {
+            throw new IllegalArgumentException("Output buffer is too small for hex MAC " + this.mac.getAlgorithm());
+        }
+    }
+}
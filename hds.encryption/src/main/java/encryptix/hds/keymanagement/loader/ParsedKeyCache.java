@@ -0,0 +1,335 @@
+package encryptix.hds.keymanagement.loader;
+
+import encryptix.hds.exception.CryptoInitializationFailed;
+import encryptix.hds.exception.InvalidResourceFormat;
+import encryptix.hds.exception.ResourceNotFound;
+import encryptix.hds.exception.ResourceReadFailed;
+import encryptix.hds.hash.DigestAlgorithm;
+import encryptix.hds.hash.StreamedDigestGenerator;
+import encryptix.hds.resourcemanagement.loader.StringLoader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.security.Key;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JVM-wide cache of the parsed public and private keys, shared by all UDF instances.
+ * <p/>
+ * Every UDF initialization opens the key source and parses PEM, encrypted private keys are PBE-decrypted also. With
+ * many UDF instances per JVM (Tez container) and few initializations per instance it's the main part of the startup.
+ * <p/>
+ * Source configured may be the list of sources, so cache has two levels. Source configured is resolved to the source
+ * actually read, and keys are cached by it and fingerprint of its content (and password for private keys), so lists
+ * resolved to the same source share the key, and changed source or password is parsed again and never served from
+ * cache. Resolution of the source configured and password fingerprint are kept for revalidation interval: source
+ * (password source also) is not even opened within it, and is resolved and read again after it, so replaced key or
+ * source of the higher priority appeared is picked up. Password itself is never kept. Interval is a parameter of the
+ * lookup, not of the cache, so callers with different intervals share entries without affecting each other.
+ * <p/>
+ * Concurrent misses of the same source may parse it twice, last one wins. Keys which failed to parse are not cached.
+ * <p/>
+ * Threadsafe implementation
+ */
+public final class ParsedKeyCache {
+
+    /**
+     * Default revalidation interval, 5 minutes, container lifetime order: task JVM reads key and password sources once
+     * per interval, whatever the number of UDF initializations. Replaced key is picked up by the long-living JVMs
+     * (HiveServer2) within the interval, 0 means sources are read on every lookup
+     */
+    public static final long DEFAULT_REVALIDATION_INTERVAL_MILLISECONDS = 5 * 60 * 1000L;
+
+    private static final ParsedKeyCache INSTANCE = new ParsedKeyCache();
+
+    // Cache key prefixes, so public key, private key and password of the same source name never share entries
+    private static final String PUBLIC_KEY_PREFIX = "public:";
+    private static final String PRIVATE_KEY_PREFIX = "private:";
+    private static final String PASSWORD_PREFIX = "password:";
+
+    // Source configured to the source read, password source configured to the password fingerprint
+    private final ConcurrentMap<String, Resolution> resolutions = new ConcurrentHashMap<>();
+
+    // Parsed keys by the source read
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Opens the key or password source
+     */
+    public interface KeySource {
+        /**
+         * Opens the source, the first one found, if source configured is the list
+         *
+         * @return Source opened or null, if source is not found
+         */
+        OpenedSource open();
+    }
+
+    /**
+     * Reader of the source opened with the name of the source actually read
+     */
+    public static final class OpenedSource {
+        private final String name;
+        private final Reader reader;
+
+        /**
+         * @param name Name of the source read, the same for all lists resolved to it
+         * @param reader Reader of the source
+         */
+        public OpenedSource(String name, Reader reader) {
+            this.name = name;
+            this.reader = reader;
+        }
+    }
+
+    /**
+     * @return JVM-wide instance
+     */
+    public static ParsedKeyCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Reads public key from the source or cache, see PublicKeyLoader
+     *
+     * @param sourceName Source name configured, resource path usually
+     * @param source Source of the PEM
+     * @param revalidationIntervalMilliseconds Interval the source is not re-checked after, milliseconds, 0 means source is checked on every lookup
+     * @return Public key
+     * @throws ResourceNotFound Source is not found
+     * @throws ResourceReadFailed Source can't be read
+     * @throws InvalidResourceFormat Source can't be parsed to Public Key
+     * @throws CryptoInitializationFailed If fingerprint digest is not available
+     * @throws IllegalArgumentException If revalidation interval is negative
+     */
+    public PublicKey readPublicKey(String sourceName, KeySource source, long revalidationIntervalMilliseconds) throws ResourceNotFound, ResourceReadFailed, InvalidResourceFormat, CryptoInitializationFailed {
+        Entry entry = getResolvedEntry(PUBLIC_KEY_PREFIX + sourceName, PUBLIC_KEY_PREFIX, revalidationIntervalMilliseconds);
+        if (entry != null) {
+            this.hits.incrementAndGet();
+            return (PublicKey) entry.key;
+        }
+
+        OpenedSource openedSource = openKeySource(sourceName, source);
+        String content = readContent(openedSource.reader, "Key source " + sourceName);
+        String fingerprint = fingerprint(content, null);
+        String entryKey = PUBLIC_KEY_PREFIX + openedSource.name;
+
+        PublicKey publicKey = (PublicKey) revalidate(entryKey, fingerprint);
+        if (publicKey == null) {
+            publicKey = PublicKeyLoader.readPublicKey(new StringReader(content));
+            this.entries.put(entryKey, new Entry(publicKey, fingerprint, null));
+        }
+
+        this.resolutions.put(PUBLIC_KEY_PREFIX + sourceName, new Resolution(openedSource.name));
+        return publicKey;
+    }
+
+    /**
+     * Reads private key from the source or cache, see PrivateKeyLoader
+     *
+     * @param sourceName Source name configured, resource path usually
+     * @param source Source of the PEM
+     * @param passwordSourceName Password source name configured, null if key is not encrypted
+     * @param passwordSource Source of the password to decrypt private key, password is null, if source is not found
+     * @param revalidationIntervalMilliseconds Interval the sources are not re-checked after, milliseconds, 0 means sources are checked on every lookup
+     * @return Private key
+     * @throws ResourceNotFound Source is not found
+     * @throws ResourceReadFailed Source or password source can't be read
+     * @throws InvalidResourceFormat Source can't be parsed to Private Key
+     * @throws CryptoInitializationFailed If key is encrypted and password wrong
+     * @throws IllegalArgumentException If revalidation interval is negative
+     */
+    public PrivateKey readPrivateKey(String sourceName, KeySource source, String passwordSourceName, KeySource passwordSource, long revalidationIntervalMilliseconds) throws ResourceNotFound, ResourceReadFailed, InvalidResourceFormat, CryptoInitializationFailed {
+        // password source name is hashed, as it may be the password itself (text: source)
+        String passwordKey = passwordSourceName == null ? null : PASSWORD_PREFIX + fingerprint(passwordSourceName, null);
+
+        Entry entry = getResolvedEntry(PRIVATE_KEY_PREFIX + sourceName, PRIVATE_KEY_PREFIX, revalidationIntervalMilliseconds);
+        if (entry != null && entry.passwordFingerprint.equals(getResolvedPasswordFingerprint(passwordKey, revalidationIntervalMilliseconds))) {
+            this.hits.incrementAndGet();
+            return (PrivateKey) entry.key;
+        }
+
+        String password = passwordKey == null ? null : readPassword(passwordSource);
+        String passwordFingerprint = fingerprint(password == null ? "" : password, null);
+
+        OpenedSource openedSource = openKeySource(sourceName, source);
+        String content = readContent(openedSource.reader, "Key source " + sourceName);
+        String fingerprint = fingerprint(content, passwordFingerprint);
+        String entryKey = PRIVATE_KEY_PREFIX + openedSource.name;
+
+        PrivateKey privateKey = (PrivateKey) revalidate(entryKey, fingerprint);
+        if (privateKey == null) {
+            privateKey = PrivateKeyLoader.readPrivateKey(new StringReader(content), password);
+            this.entries.put(entryKey, new Entry(privateKey, fingerprint, passwordFingerprint));
+        }
+
+        this.resolutions.put(PRIVATE_KEY_PREFIX + sourceName, new Resolution(openedSource.name));
+        if (passwordKey != null) {
+            this.resolutions.put(passwordKey, new Resolution(passwordFingerprint));
+        }
+        return privateKey;
+    }
+
+    /**
+     * @return Number of keys cached
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Removes all entries, counters are kept
+     */
+    public void clear() {
+        this.resolutions.clear();
+        this.entries.clear();
+    }
+
+    /**
+     * @return Lookups served without parsing
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return Lookups parsed the source
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * Finds entry of the source configured resolved within revalidation interval
+     *
+     * @param resolutionKey Cache key of the source configured
+     * @param prefix Cache key prefix of the entry
+     * @param revalidationIntervalMilliseconds Revalidation interval of the lookup, milliseconds
+     * @return Entry or null, if source must be read
+     * @throws IllegalArgumentException If revalidation interval is negative
+     */
+    private Entry getResolvedEntry(String resolutionKey, String prefix, long revalidationIntervalMilliseconds) throws IllegalArgumentException {
+        Resolution resolution = this.resolutions.get(resolutionKey);
+        return isValid(resolution, revalidationIntervalMilliseconds) ? this.entries.get(prefix + resolution.value) : null;
+    }
+
+    /**
+     * Finds password fingerprint of the password source configured read within revalidation interval
+     *
+     * @param passwordKey Cache key of the password source configured, null if there is no password
+     * @param revalidationIntervalMilliseconds Revalidation interval of the lookup, milliseconds
+     * @return Password fingerprint or null, if password must be read
+     * @throws CryptoInitializationFailed If fingerprint digest is not available
+     */
+    private String getResolvedPasswordFingerprint(String passwordKey, long revalidationIntervalMilliseconds) throws CryptoInitializationFailed {
+        if (passwordKey == null) {
+            return fingerprint("", null);
+        }
+
+        Resolution resolution = this.resolutions.get(passwordKey);
+        return isValid(resolution, revalidationIntervalMilliseconds) ? resolution.value : null;
+    }
+
+    /**
+     * Checks, can resolution be used without source read
+     *
+     * @param resolution Resolution or null
+     * @param revalidationIntervalMilliseconds Revalidation interval of the lookup, milliseconds
+     * @return true if resolution is younger than revalidation interval
+     * @throws IllegalArgumentException If revalidation interval is negative
+     */
+    private static boolean isValid(Resolution resolution, long revalidationIntervalMilliseconds) throws IllegalArgumentException {
+        if (revalidationIntervalMilliseconds < 0) {
+            throw new IllegalArgumentException("Parsed key cache revalidation interval must not be negative, but it is " + revalidationIntervalMilliseconds);
+        }
+
+        return resolution != null && revalidationIntervalMilliseconds > 0
+                && System.nanoTime() - resolution.validationTime <= TimeUnit.NANOSECONDS.convert(revalidationIntervalMilliseconds, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Checks cached entry against the source content fingerprint
+     *
+     * @param entryKey Cache key of the entry
+     * @param fingerprint Fingerprint of the current source content
+     * @return Cached key or null, if source must be parsed
+     */
+    private Key revalidate(String entryKey, String fingerprint) {
+        Entry entry = this.entries.get(entryKey);
+        if (entry == null || !entry.fingerprint.equals(fingerprint)) {
+            this.misses.incrementAndGet();
+            return null;
+        }
+
+        this.hits.incrementAndGet();
+        return entry.key;
+    }
+
+    private static OpenedSource openKeySource(String sourceName, KeySource source) throws ResourceNotFound {
+        OpenedSource openedSource = source.open();
+        if (openedSource == null) {
+            throw new ResourceNotFound("Key source " + sourceName + " is not found");
+        }
+        return openedSource;
+    }
+
+    /**
+     * @param passwordSource Password source
+     * @return Password or null, if source is not found
+     * @throws ResourceReadFailed If source can't be read
+     */
+    private static String readPassword(KeySource passwordSource) throws ResourceReadFailed {
+        OpenedSource openedSource = passwordSource.open();
+        // source name is not reported, as it may be the password itself
+        return openedSource == null ? null : readContent(openedSource.reader, "Password source");
+    }
+
+    private static String readContent(Reader reader, String description) throws ResourceReadFailed {
+        try (Reader sourceReader = reader) {
+            return StringLoader.readString(sourceReader);
+        } catch (IOException e) {
+            throw new ResourceReadFailed(description + " found, but can't be read", e);
+        }
+    }
+
+    private static String fingerprint(String content, String passwordFingerprint) throws CryptoInitializationFailed {
+        return new StreamedDigestGenerator(DigestAlgorithm.SHA256).hexDigest(passwordFingerprint == null ? content : content + '\n' + passwordFingerprint);
+    }
+
+    /**
+     * Source read or password fingerprint of the source configured with time of the last read
+     */
+    private static final class Resolution {
+        private final String value;
+        private final long validationTime = System.nanoTime();
+
+        private Resolution(String value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * Parsed key with source content fingerprint and password fingerprint, private keys only
+     */
+    private static final class Entry {
+        private final Key key;
+        private final String fingerprint;
+        private final String passwordFingerprint;
+
+        private Entry(Key key, String fingerprint, String passwordFingerprint) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+            this.passwordFingerprint = passwordFingerprint;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package encryptix.hds.keymanagement.loader;
+
+import encryptix.hds.exception.InvalidResourceFormat;
+import encryptix.hds.exception.ResourceNotFound;
+import encryptix.hds.exception.ResourceReadFailed;
+import encryptix.hds.resourcemanagement.loader.StringLoader;
+import org.bouncycastle.util.encoders.Base64;
+import org.bouncycastle.util.encoders.DecoderException;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Secret (symmetric) key loader from the source. Source contains base64-encoded key, leading and trailing whitespaces
+ * are ignored, e.g. output of "openssl rand -base64 32"
+ */
+public class SecretKeyLoader {
+
+    /**
+     * Minimum key size, bytes. Shorter keys are rejected as weak
+     */
+    public static final int MIN_KEY_SIZE = 16;
+
+    /**
+     * Reads secret key from the source
+     *
+     * @param source Key source
+     * @return Key bytes
+     * @throws ResourceNotFound Null source provided
+     * @throws ResourceReadFailed Source can't be read
+     * @throws InvalidResourceFormat Source is not base64 or key is too short
+     */
+    public static byte[] readSecretKey(Reader source) throws ResourceNotFound, ResourceReadFailed, InvalidResourceFormat {
+
+        if (source == null) {
+            throw new ResourceNotFound("Secret key source is empty");
+        }
+
+        // Read content
+        String encodedKey;
+        try (Reader keyReader = source) {
+            encodedKey = StringLoader.readString(keyReader).trim();
+        } catch (IOException e) {
+            throw new ResourceReadFailed("Secret key source found, but can't be read", e);
+        }
+
+        // Parse content
+        byte[] key;
+        try {
+            key = Base64.decode(encodedKey);
+        } catch (DecoderException e) {
+            throw new InvalidResourceFormat("Secret key source read, but can't be decoded from base64", e);
+        }
+
+        if (key.length < MIN_KEY_SIZE) {
+            throw new InvalidResourceFormat("Secret key is too short, " + key.length + " bytes, at least " + MIN_KEY_SIZE + " bytes expected");
+        }
+
+        return key;
+    }
+}
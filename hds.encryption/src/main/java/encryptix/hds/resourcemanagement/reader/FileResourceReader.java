@@ -0,0 +1,67 @@
+package encryptix.hds.resourcemanagement.reader;
+
+import encryptix.hds.exception.ResourceNotFound;
+import encryptix.hds.exception.ResourceReadFailed;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Reads resource from local filesystem, default charset is "ISO-8859-1"
+ * <p/>
+ * Resource is read as a whole with NIO and file is closed immediately, resources are small (keys, passwords).
+ */
+public class FileResourceReader extends ResourceReader {
+
+    private final Path baseDirectory;
+
+    /**
+     * Init, relative paths are resolved against working directory
+     */
+    public FileResourceReader() {
+        this(Paths.get(""));
+    }
+
+    /**
+     * Init, relative paths are resolved against base directory
+     *
+     * @param baseDirectory Base directory of relative paths
+     */
+    public FileResourceReader(Path baseDirectory) {
+        this.baseDirectory = baseDirectory;
+    }
+
+    /**
+     * Reads resource, default charset is "ISO-8859-1"
+     *
+     * @param resource File path, absolute or relative to the base directory
+     * @return Reader
+     * @throws ResourceNotFound If file is not found or is not a regular file
+     * @throws ResourceReadFailed If file can't be read
+     */
+    @Override
+    public Reader getResource(String resource) throws ResourceNotFound, ResourceReadFailed {
+        Path file = this.baseDirectory.resolve(resource);
+
+        if (!Files.isRegularFile(file)) {
+            throw new ResourceNotFound("File '" + file + "' wasn't found");
+        }
+
+        byte[] content;
+        try {
+            content = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            throw new ResourceNotFound("File '" + file + "' wasn't found", e);
+        } catch (IOException e) {
+            throw new ResourceReadFailed("File '" + file + "' found, but can't be read", e);
+        }
+
+        return new InputStreamReader(new ByteArrayInputStream(content), conversionCharset);
+    }
+}
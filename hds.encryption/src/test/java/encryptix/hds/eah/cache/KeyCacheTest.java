@@ -0,0 +1,98 @@
+package encryptix.hds.eah.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KeyCacheTest {
+
+    /**
+     * Reads keys 0..keyCount-1 cyclically, as a scan of interleaved blocks does, puts key on miss
+     */
+    private static void cyclicScan(KeyCache<String, Integer> cache, int keyCount, int rounds) {
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < keyCount; i++) {
+                String key = "ecies" + i;
+                if (cache.get(key) == null) {
+                    cache.put(key, i);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void lruTest() {
+        KeyCache<String, Integer> cache = KeyCachePolicy.LRU.create(2);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        // "a" is used, so "b" is the least recently used
+        Assert.assertEquals(Integer.valueOf(1), cache.get("a"));
+        cache.put("c", 3);
+
+        Assert.assertNull(cache.get("b"));
+        Assert.assertEquals(Integer.valueOf(1), cache.get("a"));
+        Assert.assertEquals(Integer.valueOf(3), cache.get("c"));
+        Assert.assertEquals(2, cache.size());
+
+        Assert.assertEquals(3, cache.getStatistics().getHits());
+        Assert.assertEquals(1, cache.getStatistics().getMisses());
+        Assert.assertEquals(1, cache.getStatistics().getEvictions());
+    }
+
+    @Test
+    public void lruThrashingTest() {
+        KeyCache<String, Integer> cache = KeyCachePolicy.LRU.create(100);
+        cyclicScan(cache, 150, 10);
+
+        // every value is evicted before it's used again
+        Assert.assertEquals(0, cache.getStatistics().getHits());
+    }
+
+    @Test
+    public void tinyLFUScanResistanceTest() {
+        KeyCache<String, Integer> cache = KeyCachePolicy.TINYLFU.create(100);
+        cyclicScan(cache, 150, 10);
+
+        // most of the values admitted on the first round stay cached, frequency is an estimation, so not all of them
+        Assert.assertTrue(cache.getStatistics().getHits() >= 100 * 9 * 3 / 4);
+        Assert.assertTrue(cache.getStatistics().getRejections() > 0);
+        Assert.assertEquals(100, cache.size());
+    }
+
+    @Test
+    public void tinyLFUAdmissionTest() {
+        KeyCache<String, Integer> cache = KeyCachePolicy.TINYLFU.create(2);
+        cache.get("a");
+        cache.put("a", 1);
+        cache.get("b");
+        cache.put("b", 2);
+
+        // accessed once, same as the least recently used "a", rejected
+        Assert.assertNull(cache.get("c"));
+        cache.put("c", 3);
+        Assert.assertNull(cache.get("c"));
+        Assert.assertEquals(1, cache.getStatistics().getRejections());
+
+        // accessed more often than the least recently used, admitted
+        Assert.assertNull(cache.get("c"));
+        cache.put("c", 3);
+        Assert.assertEquals(Integer.valueOf(3), cache.get("c"));
+        Assert.assertEquals(1, cache.getStatistics().getEvictions());
+        Assert.assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void policyNameTest() {
+        Assert.assertEquals(KeyCachePolicy.TINYLFU, KeyCachePolicy.fromName(" TinyLfu "));
+        Assert.assertEquals(KeyCachePolicy.LRU, KeyCachePolicy.fromName("lru"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongPolicyNameTest() {
+        KeyCachePolicy.fromName("fifo");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongCapacityTest() {
+        KeyCachePolicy.TINYLFU.create(0);
+    }
+}
@@ -0,0 +1,132 @@
+package encryptix.hds.eah.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+public class SharedKeyCacheTest {
+
+    private static SecretKey key(int value) {
+        return new SecretKeySpec(new byte[]{(byte) value, 1, 2, 3}, "AES");
+    }
+
+    @Test
+    public void happyPathTest() {
+        SharedKeyCache cache = new SharedKeyCache(10, 0);
+        cache.put("fingerprint", "ecies", key(1));
+
+        Assert.assertEquals(key(1), cache.get("fingerprint", "ecies"));
+        Assert.assertNull(cache.get("fingerprint", "other"));
+        // different private key must not see the entry
+        Assert.assertNull(cache.get("other", "ecies"));
+    }
+
+    @Test
+    public void capacityTest() {
+        SharedKeyCache cache = new SharedKeyCache(10, 0);
+        for (int i = 0; i < 25; i++) {
+            cache.put("fingerprint", "ecies" + i, key(i));
+            Assert.assertTrue(cache.size() <= 10);
+        }
+
+        // the oldest are evicted first
+        Assert.assertNull(cache.get("fingerprint", "ecies14"));
+        for (int i = 15; i < 25; i++) {
+            Assert.assertEquals(key(i), cache.get("fingerprint", "ecies" + i));
+        }
+
+        // shrinking evicts immediately
+        cache.configure(5, 0);
+        Assert.assertEquals(5, cache.size());
+        Assert.assertEquals(key(24), cache.get("fingerprint", "ecies24"));
+    }
+
+    @Test
+    public void replaceTest() {
+        SharedKeyCache cache = new SharedKeyCache(2, 0);
+        cache.put("fingerprint", "ecies", key(1));
+        cache.put("fingerprint", "ecies", key(2));
+        cache.put("fingerprint", "other", key(3));
+
+        // replaced entry is not evicted by its predecessor in insertion order
+        Assert.assertEquals(key(2), cache.get("fingerprint", "ecies"));
+        Assert.assertEquals(key(3), cache.get("fingerprint", "other"));
+    }
+
+    @Test
+    public void clearTest() {
+        SharedKeyCache cache = new SharedKeyCache(3, 0);
+        for (int i = 0; i < 3; i++) {
+            cache.put("fingerprint", "ecies" + i, key(i));
+        }
+        cache.clear();
+
+        // entries cleared don't take capacity
+        for (int i = 0; i < 3; i++) {
+            cache.put("fingerprint", "new" + i, key(i));
+        }
+        Assert.assertEquals(3, cache.size());
+        Assert.assertEquals(0, cache.getStatistics().getEvictions());
+    }
+
+    @Test
+    public void staleEntriesTest() {
+        SharedKeyCache cache = new SharedKeyCache(3, 0);
+
+        // replaced entries don't take capacity
+        for (int i = 0; i < 10; i++) {
+            cache.put("fingerprint", "replaced", key(i));
+        }
+        cache.put("fingerprint", "first", key(1));
+        cache.put("fingerprint", "second", key(2));
+        Assert.assertEquals(3, cache.size());
+        Assert.assertEquals(key(9), cache.get("fingerprint", "replaced"));
+        Assert.assertEquals(0, cache.getStatistics().getEvictions());
+
+        // the oldest live entry is evicted
+        cache.put("fingerprint", "third", key(3));
+        Assert.assertNull(cache.get("fingerprint", "replaced"));
+        Assert.assertEquals(key(1), cache.get("fingerprint", "first"));
+        Assert.assertEquals(1, cache.getStatistics().getEvictions());
+    }
+
+    @Test
+    public void keyViewTest() {
+        SharedKeyCache cache = new SharedKeyCache(10, 0);
+        KeyCache<String, SecretKey> view = cache.forKey("fingerprint");
+        KeyCache<String, SecretKey> otherView = cache.forKey("other");
+
+        view.put("ecies1", key(1));
+        view.put("ecies2", key(2));
+        otherView.put("ecies1", key(3));
+        Assert.assertEquals(2, view.size());
+        Assert.assertEquals(1, otherView.size());
+        Assert.assertEquals(3, cache.size());
+
+        // clear of the view removes entries of its private key only
+        view.clear();
+        Assert.assertEquals(0, view.size());
+        Assert.assertNull(view.get("ecies1"));
+        Assert.assertEquals(key(3), otherView.get("ecies1"));
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void ttlTest() throws InterruptedException {
+        SharedKeyCache cache = new SharedKeyCache(10, 20);
+        cache.put("fingerprint", "ecies", key(1));
+        Assert.assertEquals(key(1), cache.get("fingerprint", "ecies"));
+
+        Thread.sleep(30);
+
+        Assert.assertNull(cache.get("fingerprint", "ecies"));
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongCapacityTest() {
+        new SharedKeyCache(0, 0);
+    }
+}
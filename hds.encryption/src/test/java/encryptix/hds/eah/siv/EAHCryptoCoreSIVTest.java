@@ -0,0 +1,141 @@
+package encryptix.hds.eah.siv;
+
+import encryptix.hds.eah.EAHMultiVersionDecryptionCore;
+import encryptix.hds.eah.OutputBuffer;
+import encryptix.hds.exception.CryptoCoreFailed;
+import encryptix.hds.exception.CryptoInitializationFailed;
+import encryptix.hds.exception.InvalidInputFormat;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.commons.lang3.RandomUtils;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.crypto.AEADBadTagException;
+import java.security.GeneralSecurityException;
+
+/**
+ * Test for AES-SIV and EAH deterministic Crypto Engine
+ */
+public class EAHCryptoCoreSIVTest {
+
+    static final byte[] RFC_KEY = Hex.decode("fffefdfcfbfaf9f8f7f6f5f4f3f2f1f0f0f1f2f3f4f5f6f7f8f9fafbfcfdfeff");
+
+    static final byte[] RFC_AD = Hex.decode("101112131415161718191a1b1c1d1e1f2021222324252627");
+
+    static final byte[] MASTER_KEY = Hex.decode("000102030405060708090a0b0c0d0e0f101112131415161718191a1b1c1d1e1f");
+
+    static void assertSivVector(byte[] key, byte[] associatedData, byte[] plaintext, String expected) throws AEADBadTagException {
+        AesSiv aesSiv = new AesSiv(key);
+
+        byte[] encrypted = new byte[AesSiv.SIV_SIZE + plaintext.length];
+        Assert.assertEquals(encrypted.length, aesSiv.encrypt(associatedData, plaintext, 0, plaintext.length, encrypted, 0));
+        Assert.assertEquals(expected, Hex.toHexString(encrypted));
+
+        byte[] decrypted = new byte[plaintext.length];
+        Assert.assertEquals(plaintext.length, aesSiv.decrypt(associatedData, encrypted, 0, encrypted.length, decrypted, 0));
+        Assert.assertArrayEquals(plaintext, decrypted);
+    }
+
+    /**
+     * RFC 5297 A.1, shorter than block, and other lengths cross-checked with OpenSSL AES-SIV
+     */
+    @Test
+    public void aesSivVectorsTest() throws AEADBadTagException {
+        assertSivVector(RFC_KEY, RFC_AD, Hex.decode("112233445566778899aabbccddee"),
+                "85632d07c6e8f37f950acd320a2ecc9340c02b9690c4dc04daef7f6afe5c");
+
+        byte[] block = new byte[16];
+        byte[] blocks = new byte[40];
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = (byte) i;
+            if (i < block.length) {
+                block[i] = (byte) i;
+            }
+        }
+
+        assertSivVector(RFC_KEY, RFC_AD, block,
+                "9892bd33bd55f7e955dbd2cbeab4a927388d7c017340b270c47028855ffd0d4f");
+        assertSivVector(RFC_KEY, RFC_AD, blocks,
+                "eed9742cc0b02a268b6a9ddd6fa017fa72cb1ce3a6987f10b82c445868d8d231d109c26c656bcf4d3ab4c77eb6c28e3c463aaae719391224");
+    }
+
+    @Test(expected = AEADBadTagException.class)
+    public void aesSivModifiedTest() throws AEADBadTagException {
+        AesSiv aesSiv = new AesSiv(RFC_KEY);
+        byte[] encrypted = new byte[AesSiv.SIV_SIZE + 3];
+        aesSiv.encrypt(RFC_AD, new byte[]{1, 2, 3}, 0, 3, encrypted, 0);
+
+        encrypted[AesSiv.SIV_SIZE] ^= 1;
+        aesSiv.decrypt(RFC_AD, encrypted, 0, encrypted.length, new byte[3], 0);
+    }
+
+    /**
+     * Column key is HMAC-SHA512 of the master key, cross-checked with python hmac module
+     */
+    @Test
+    public void columnKeyTest() throws GeneralSecurityException {
+        Assert.assertEquals("cf0ab49a21090aad78988ef33e3a05d4738d554ab014256b4d13eaa07bf754f3193595011d7bfbcdc716acf5ed0c99a0521ca8b38b744e1ee4fc20af7ad93f4e",
+                Hex.toHexString(FormatHelper.deriveColumnKey(MASTER_KEY, "customer_id")));
+    }
+
+    /**
+     * Equal values give equal ciphertexts, String and bytes, other columns give other ciphertexts
+     */
+    @Test
+    public void deterministicTest() throws GeneralSecurityException, CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        byte[] columnKey = FormatHelper.deriveColumnKey(MASTER_KEY, "customer_id");
+        EAHEncryptionCoreSIV encryptionCore = new EAHEncryptionCoreSIV(columnKey);
+        EAHEncryptionCoreSIV otherEncryptionCore = new EAHEncryptionCoreSIV(columnKey);
+        EAHEncryptionCoreSIV otherColumnEncryptionCore = new EAHEncryptionCoreSIV(FormatHelper.deriveColumnKey(MASTER_KEY, "order_id"));
+        EAHDecryptionCoreSIV decryptionCore = new EAHDecryptionCoreSIV(columnKey);
+
+        OutputBuffer bytesBuffer = new OutputBuffer();
+        OutputBuffer decryptedBuffer = new OutputBuffer();
+
+        for (int i = 0; i < 1000; i++) {
+            String message = RandomStringUtils.random(RandomUtils.nextInt(0, 300), 0, 0x3000, false, false);
+            String encrypted = encryptionCore.encrypt(message);
+
+            Assert.assertTrue(encrypted.startsWith(FormatHelper.FORMAT_SIGNATURE + FormatHelper.SERIALIZED_BLOCK_DELIMITER));
+            Assert.assertTrue(EAHDecryptionCoreSIV.isSupported(encrypted));
+            Assert.assertFalse(EAHMultiVersionDecryptionCore.isSupported(encrypted));
+
+            Assert.assertEquals(encrypted, encryptionCore.encrypt(message));
+            Assert.assertEquals(encrypted, otherEncryptionCore.encrypt(message));
+            Assert.assertNotEquals(encrypted, otherColumnEncryptionCore.encrypt(message));
+
+            byte[] messageBytes = message.getBytes(FormatHelper.CONVERSION_CHARSET);
+            bytesBuffer.reset();
+            encryptionCore.encrypt(messageBytes, 0, messageBytes.length, bytesBuffer);
+            Assert.assertEquals(encrypted, bytesBuffer.toString(FormatHelper.SERIALIZED_CHARSET));
+
+            Assert.assertEquals(message, decryptionCore.decrypt(encrypted));
+
+            decryptedBuffer.reset();
+            decryptionCore.decrypt(bytesBuffer.getData(), 0, bytesBuffer.getLength(), decryptedBuffer);
+            Assert.assertEquals(message, decryptedBuffer.toString(FormatHelper.CONVERSION_CHARSET));
+        }
+    }
+
+    @Test(expected = CryptoCoreFailed.class)
+    public void wrongKeyTest() throws GeneralSecurityException, CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        String encrypted = new EAHEncryptionCoreSIV(FormatHelper.deriveColumnKey(MASTER_KEY, "customer_id")).encrypt("value");
+        new EAHDecryptionCoreSIV(FormatHelper.deriveColumnKey(MASTER_KEY, "order_id")).decrypt(encrypted);
+    }
+
+    @Test(expected = InvalidInputFormat.class)
+    public void wrongFormatTest() throws GeneralSecurityException, CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        new EAHDecryptionCoreSIV(FormatHelper.deriveColumnKey(MASTER_KEY, "")).decrypt("eah:1:something");
+    }
+
+    @Test(expected = InvalidInputFormat.class)
+    public void tooShortTest() throws GeneralSecurityException, CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        new EAHDecryptionCoreSIV(FormatHelper.deriveColumnKey(MASTER_KEY, "")).decrypt(FormatHelper.FORMAT_SIGNATURE + ":AAAA");
+    }
+
+    @Test(expected = CryptoInitializationFailed.class)
+    public void wrongKeySizeTest() throws CryptoInitializationFailed {
+        new EAHEncryptionCoreSIV(new byte[20]);
+    }
+}
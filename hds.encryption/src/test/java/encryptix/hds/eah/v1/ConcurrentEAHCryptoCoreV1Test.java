@@ -0,0 +1,107 @@
+package encryptix.hds.eah.v1;
+
+import encryptix.hds.eah.OutputBuffer;
+import encryptix.hds.exception.*;
+import encryptix.hds.keymanagement.loader.PrivateKeyLoader;
+import encryptix.hds.keymanagement.loader.PublicKeyLoader;
+import encryptix.hds.resourcemanagement.reader.ClasspathResourceReader;
+import encryptix.hds.resourcemanagement.reader.ResourceReader;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.commons.lang3.RandomUtils;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrent cores, used by few threads at once
+ */
+public class ConcurrentEAHCryptoCoreV1Test {
+
+    static final int THREADS = 8;
+
+    static PublicKey publicKey;
+    static PrivateKey privateKey;
+
+    @BeforeClass
+    public static void initialize() throws InvalidResourceFormat, ResourceReadFailed, ResourceNotFound, CryptoInitializationFailed, InitializationFailed {
+
+        // Load EC library
+        Security.addProvider(new BouncyCastleProvider());
+
+        ResourceReader resourceReader = new ClasspathResourceReader();
+        publicKey = PublicKeyLoader.readPublicKey(resourceReader.getResource("eckeys/test/47ed2bea86e8f4f9232f0659c1542818_test_public_key.pem"));
+        privateKey = PrivateKeyLoader.readPrivateKey(resourceReader.getResource("eckeys/test/47ed2bea86e8f4f9232f0659c1542818_test_private_key_system_encrypted.pem"), "testpwd");
+    }
+
+    /**
+     * Encrypt-decrypt by few threads, String and bytes, result must be decryptable by single-threaded core too
+     */
+    @Test
+    public void concurrentStabilityTest() throws Exception {
+        final int testCount = 2000;
+
+        final ConcurrentEAHEncryptionCoreV1 encryptionCore = new ConcurrentEAHEncryptionCoreV1(publicKey, 10, 500, TimeUnit.NANOSECONDS.convert(20000, TimeUnit.MILLISECONDS), 256, true);
+        final ConcurrentEAHDecryptionCoreV1 decryptionCore = new ConcurrentEAHDecryptionCoreV1(privateKey);
+        final EAHDecryptionCoreV1 checkCore = new EAHDecryptionCoreV1(privateKey);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<List<String>>> results = new ArrayList<>();
+
+        for (int thread = 0; thread < THREADS; thread++) {
+            results.add(executor.submit(new Callable<List<String>>() {
+                @Override
+                public List<String> call() throws Exception {
+                    List<String> encryptedMessages = new ArrayList<>(testCount);
+                    OutputBuffer encrypted = new OutputBuffer();
+                    OutputBuffer decrypted = new OutputBuffer();
+
+                    for (int i = 0; i < testCount; i++) {
+                        String message = RandomStringUtils.randomAlphanumeric(RandomUtils.nextInt(1, 200));
+
+                        String encryptedMessage = encryptionCore.encrypt(message);
+                        Assert.assertEquals(message, decryptionCore.decrypt(encryptedMessage));
+                        encryptedMessages.add(encryptedMessage);
+
+                        byte[] messageBytes = message.getBytes(FormatHelper.CONVERSION_CHARSET);
+                        encrypted.reset();
+                        encryptionCore.encrypt(messageBytes, 0, messageBytes.length, encrypted);
+                        decrypted.reset();
+                        decryptionCore.decrypt(encrypted.getData(), 0, encrypted.getLength(), decrypted);
+                        Assert.assertEquals(message, decrypted.toString(FormatHelper.CONVERSION_CHARSET));
+                    }
+                    return encryptedMessages;
+                }
+            }));
+        }
+
+        Set<String> blocks = new HashSet<>();
+        for (Future<List<String>> result : results) {
+            for (String encryptedMessage : result.get()) {
+                blocks.add(encryptedMessage.substring(0, encryptedMessage.lastIndexOf(':')));
+                Assert.assertNotNull(checkCore.decrypt(encryptedMessage));
+            }
+        }
+        executor.shutdown();
+
+        // blocks are shared by threads, 2 rows per iteration and max 500 rows per block
+        Assert.assertTrue(blocks.size() <= THREADS * testCount * 2 / 500 + THREADS);
+        Assert.assertTrue(blocks.size() > 1);
+        // every thread decrypts ECIES part of the block only if it's not cached yet
+        Assert.assertTrue(decryptionCore.getAesKeyCacheStatistics().getMisses() <= blocks.size() * THREADS);
+        Assert.assertTrue(decryptionCore.getAesKeyCacheStatistics().getHits() > 0);
+    }
+}
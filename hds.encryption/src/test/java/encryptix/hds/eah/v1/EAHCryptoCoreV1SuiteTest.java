@@ -1,5 +1,6 @@
 package encryptix.hds.eah.v1;
 
+import encryptix.hds.eah.OutputBuffer;
 import encryptix.hds.exception.*;
 import encryptix.hds.keymanagement.loader.PrivateKeyLoader;
 import encryptix.hds.keymanagement.loader.PublicKeyLoader;
@@ -79,6 +80,54 @@ public class EAHCryptoCoreV1SuiteTest {
         }
     }
 
+    /**
+     * Encrypt-decrypt test with random value and short blocks, pre-generated in background
+     */
+    @Test
+    public void blockPregenerationStabilityTest() throws CryptoCoreFailed, CryptoInitializationFailed, InvalidInputFormat {
+
+        final int testCount = 200;
+
+        EAHEncryptionCoreV1 encryptionCore = new EAHEncryptionCoreV1(publicKey, 1, 10, EAHEncryptionCoreV1.DEFAULT_MAX_BLOCK_LIFETIME, EAHEncryptionCoreV1.DEFAULT_AES_KEY_SIZE, true);
+
+        for (int i = 0; i < testCount; i++) {
+            String message = RandomStringUtils.randomAlphanumeric(RandomUtils.nextInt(30, 500));
+
+            Assert.assertEquals(
+                    message,
+                    defaultDecryptionCore.decrypt(encryptionCore.encrypt(message))
+            );
+        }
+    }
+
+    /**
+     * Encrypt-decrypt test with random non-ASCII values, byte-oriented encryption and decryption to the reused buffers
+     */
+    @Test
+    public void bytesDecryptionStabilityTest() throws CryptoCoreFailed, CryptoInitializationFailed, InvalidInputFormat {
+
+        final int testCount = 1000;
+
+        OutputBuffer encryptedMessage = new OutputBuffer();
+        OutputBuffer output = new OutputBuffer();
+
+        for (int i = 0; i < testCount; i++) {
+            String message = RandomStringUtils.random(RandomUtils.nextInt(1, 500));
+            byte[] messageBytes = message.getBytes(FormatHelper.CONVERSION_CHARSET);
+
+            encryptedMessage.reset();
+            defaultEncryptionCore.encrypt(messageBytes, 0, messageBytes.length, encryptedMessage);
+
+            output.reset();
+            defaultDecryptionCore.decrypt(encryptedMessage.getData(), 0, encryptedMessage.getLength(), output);
+
+            Assert.assertEquals(
+                    new String(message.getBytes(FormatHelper.CONVERSION_CHARSET), FormatHelper.CONVERSION_CHARSET),
+                    output.toString(FormatHelper.CONVERSION_CHARSET)
+            );
+        }
+    }
+
     /**
      * Randomized stability test, large block of random data
      */
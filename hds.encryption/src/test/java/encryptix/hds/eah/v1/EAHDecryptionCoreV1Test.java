@@ -4,6 +4,8 @@ import encryptix.hds.exception.*;
 import encryptix.hds.keymanagement.loader.PrivateKeyLoader;
 import encryptix.hds.resourcemanagement.reader.ClasspathResourceReader;
 import encryptix.hds.resourcemanagement.reader.ResourceReader;
+import encryptix.hds.eah.OutputBuffer;
+import encryptix.hds.eah.cache.SharedKeyCache;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -50,4 +52,103 @@ public class EAHDecryptionCoreV1Test {
         );
     }
 
+    /**
+     * Message with missing blocks must be rejected as wrong format
+     */
+    @Test(expected = InvalidInputFormat.class)
+    public void notEnoughBlocksTest() throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        defaultDecryptionCore.decrypt("eah:1:BABdJIKX4kT2egMMiATLX9R3UGrccu8IyoTwvPGZKyKXU7vdcrysS+GMsvUcSFFsHWqZr5jcv2UAb6YXWMlprg8iA3vxnt7RxwAKNR8JEQh14KfLxYLRHUMtB1fBelHDYAVQJq3lBwWpxVylb1vK0VLO1pS3U+kI0sivKKb7wAQodChGZaNsjEhKnCtw6JQ0v9J/FwTfpiQFgJxy4oxRqeJqty5vGtMUQgja6cqX1cCV2Wj6Vg/TZyryCgop+y2PCmBabtE=:Uh90Z2UZS92xbB1x4y/3BQ==");
+    }
+
+    /**
+     * Message with extra blocks must be rejected as wrong format
+     */
+    @Test(expected = InvalidInputFormat.class)
+    public void tooManyBlocksTest() throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        defaultDecryptionCore.decrypt("eah:1:BABdJIKX4kT2egMMiATLX9R3UGrccu8IyoTwvPGZKyKXU7vdcrysS+GMsvUcSFFsHWqZr5jcv2UAb6YXWMlprg8iA3vxnt7RxwAKNR8JEQh14KfLxYLRHUMtB1fBelHDYAVQJq3lBwWpxVylb1vK0VLO1pS3U+kI0sivKKb7wAQodChGZaNsjEhKnCtw6JQ0v9J/FwTfpiQFgJxy4oxRqeJqty5vGtMUQgja6cqX1cCV2Wj6Vg/TZyryCgop+y2PCmBabtE=:Uh90Z2UZS92xbB1x4y/3BQ==:V8J4W2t4aDbmwZup1MeFzEIKovb2A9ffWo/JNfcytVFq2GO8ydLgbFfL1KVoQo3HgPOzMNnyuc0AO26Cd+1d3MfH/J9d6bGlVKppyq3X3CM=:AAAA");
+    }
+
+    /**
+     * Trailing delimiters are not blocks, split() used before dropped them
+     */
+    @Test
+    public void trailingDelimitersTest() throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        Assert.assertEquals(
+                "tes27345yfv8237y4t8f2374yrf82374yrf82g374yrf82374yf5r8g237y4g5ftme",
+                defaultDecryptionCore.decrypt("eah:1:BABdJIKX4kT2egMMiATLX9R3UGrccu8IyoTwvPGZKyKXU7vdcrysS+GMsvUcSFFsHWqZr5jcv2UAb6YXWMlprg8iA3vxnt7RxwAKNR8JEQh14KfLxYLRHUMtB1fBelHDYAVQJq3lBwWpxVylb1vK0VLO1pS3U+kI0sivKKb7wAQodChGZaNsjEhKnCtw6JQ0v9J/FwTfpiQFgJxy4oxRqeJqty5vGtMUQgja6cqX1cCV2Wj6Vg/TZyryCgop+y2PCmBabtE=:Uh90Z2UZS92xbB1x4y/3BQ==:V8J4W2t4aDbmwZup1MeFzEIKovb2A9ffWo/JNfcytVFq2GO8ydLgbFfL1KVoQo3HgPOzMNnyuc0AO26Cd+1d3MfH/J9d6bGlVKppyq3X3CM=::")
+        );
+
+        byte[] input = "eah:1:BABdJIKX4kT2egMMiATLX9R3UGrccu8IyoTwvPGZKyKXU7vdcrysS+GMsvUcSFFsHWqZr5jcv2UAb6YXWMlprg8iA3vxnt7RxwAKNR8JEQh14KfLxYLRHUMtB1fBelHDYAVQJq3lBwWpxVylb1vK0VLO1pS3U+kI0sivKKb7wAQodChGZaNsjEhKnCtw6JQ0v9J/FwTfpiQFgJxy4oxRqeJqty5vGtMUQgja6cqX1cCV2Wj6Vg/TZyryCgop+y2PCmBabtE=:Uh90Z2UZS92xbB1x4y/3BQ==:V8J4W2t4aDbmwZup1MeFzEIKovb2A9ffWo/JNfcytVFq2GO8ydLgbFfL1KVoQo3HgPOzMNnyuc0AO26Cd+1d3MfH/J9d6bGlVKppyq3X3CM=:".getBytes(FormatHelper.CONVERSION_CHARSET);
+        OutputBuffer output = new OutputBuffer();
+        defaultDecryptionCore.decrypt(input, 0, input.length, output);
+        Assert.assertEquals("tes27345yfv8237y4t8f2374yrf82374yrf82g374yrf82374yf5r8g237y4g5ftme", output.toString(FormatHelper.CONVERSION_CHARSET));
+    }
+
+    /**
+     * Message with missing encrypted data followed by trailing delimiters must be rejected as wrong format
+     */
+    @Test(expected = InvalidInputFormat.class)
+    public void emptyDataTrailingDelimitersTest() throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        defaultDecryptionCore.decrypt("eah:1:BABdJIKX4kT2egMMiATLX9R3UGrccu8IyoTwvPGZ:Uh90Z2UZS92xbB1x4y/3BQ==:::");
+    }
+
+    /**
+     * Same message decrypted few times in a row must hit L1 cache and produce the same result
+     */
+    @Test
+    public void cachedBlockTest() throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(
+                    "tes27345yfv8237y4t8f2374yrf82374yrf82g374yrf82374yf5r8g237y4g5ftme",
+                    defaultDecryptionCore.decrypt("eah:1:BABdJIKX4kT2egMMiATLX9R3UGrccu8IyoTwvPGZKyKXU7vdcrysS+GMsvUcSFFsHWqZr5jcv2UAb6YXWMlprg8iA3vxnt7RxwAKNR8JEQh14KfLxYLRHUMtB1fBelHDYAVQJq3lBwWpxVylb1vK0VLO1pS3U+kI0sivKKb7wAQodChGZaNsjEhKnCtw6JQ0v9J/FwTfpiQFgJxy4oxRqeJqty5vGtMUQgja6cqX1cCV2Wj6Vg/TZyryCgop+y2PCmBabtE=:Uh90Z2UZS92xbB1x4y/3BQ==:V8J4W2t4aDbmwZup1MeFzEIKovb2A9ffWo/JNfcytVFq2GO8ydLgbFfL1KVoQo3HgPOzMNnyuc0AO26Cd+1d3MfH/J9d6bGlVKppyq3X3CM=")
+            );
+        }
+    }
+
+    /**
+     * Simple test to decrypt static EAHv1 message from bytes with offset, output appended to the buffer
+     */
+    @Test
+    public void bytesHappyPassTest() throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        byte[] input = ("__eah:1:BABdJIKX4kT2egMMiATLX9R3UGrccu8IyoTwvPGZKyKXU7vdcrysS+GMsvUcSFFsHWqZr5jcv2UAb6YXWMlprg8iA3vxnt7RxwAKNR8JEQh14KfLxYLRHUMtB1fBelHDYAVQJq3lBwWpxVylb1vK0VLO1pS3U+kI0sivKKb7wAQodChGZaNsjEhKnCtw6JQ0v9J/FwTfpiQFgJxy4oxRqeJqty5vGtMUQgja6cqX1cCV2Wj6Vg/TZyryCgop+y2PCmBabtE=:Uh90Z2UZS92xbB1x4y/3BQ==:V8J4W2t4aDbmwZup1MeFzEIKovb2A9ffWo/JNfcytVFq2GO8ydLgbFfL1KVoQo3HgPOzMNnyuc0AO26Cd+1d3MfH/J9d6bGlVKppyq3X3CM=__").getBytes(FormatHelper.CONVERSION_CHARSET);
+
+        OutputBuffer output = new OutputBuffer(4);
+        output.write('>');
+
+        int decryptedLength = defaultDecryptionCore.decrypt(input, 2, input.length - 4, output);
+
+        Assert.assertEquals(">tes27345yfv8237y4t8f2374yrf82374yrf82g374yrf82374yf5r8g237y4g5ftme", output.toString(FormatHelper.CONVERSION_CHARSET));
+        Assert.assertEquals(output.getLength() - 1, decryptedLength);
+    }
+
+    /**
+     * Message bytes with missing blocks must be rejected as wrong format
+     */
+    @Test(expected = InvalidInputFormat.class)
+    public void bytesNotEnoughBlocksTest() throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        byte[] input = "eah:1:BABdJIKX4kT2egMMiATLX9R3UGrccu8IyoTwvPGZ:Uh90Z2UZS92xbB1x4y/3BQ==:".getBytes(FormatHelper.CONVERSION_CHARSET);
+        defaultDecryptionCore.decrypt(input, 0, input.length, new OutputBuffer());
+    }
+
+    /**
+     * Cores with shared key cache decrypt ECIES part once per JVM
+     */
+    @Test
+    public void sharedKeyCacheTest() throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        SharedKeyCache sharedKeyCache = SharedKeyCache.getInstance();
+        sharedKeyCache.clear();
+
+        EAHDecryptionCoreV1 firstCore = new EAHDecryptionCoreV1(privateKey, sharedKeyCache);
+        EAHDecryptionCoreV1 secondCore = new EAHDecryptionCoreV1(privateKey, sharedKeyCache);
+        String value = "eah:1:BABdJIKX4kT2egMMiATLX9R3UGrccu8IyoTwvPGZKyKXU7vdcrysS+GMsvUcSFFsHWqZr5jcv2UAb6YXWMlprg8iA3vxnt7RxwAKNR8JEQh14KfLxYLRHUMtB1fBelHDYAVQJq3lBwWpxVylb1vK0VLO1pS3U+kI0sivKKb7wAQodChGZaNsjEhKnCtw6JQ0v9J/FwTfpiQFgJxy4oxRqeJqty5vGtMUQgja6cqX1cCV2Wj6Vg/TZyryCgop+y2PCmBabtE=:Uh90Z2UZS92xbB1x4y/3BQ==:V8J4W2t4aDbmwZup1MeFzEIKovb2A9ffWo/JNfcytVFq2GO8ydLgbFfL1KVoQo3HgPOzMNnyuc0AO26Cd+1d3MfH/J9d6bGlVKppyq3X3CM=";
+
+        Assert.assertEquals("tes27345yfv8237y4t8f2374yrf82374yrf82g374yrf82374yf5r8g237y4g5ftme", firstCore.decrypt(value));
+        Assert.assertEquals(1, sharedKeyCache.size());
+
+        Assert.assertEquals("tes27345yfv8237y4t8f2374yrf82374yrf82g374yrf82374yf5r8g237y4g5ftme", secondCore.decrypt(value));
+        Assert.assertEquals(1, sharedKeyCache.size());
+
+        sharedKeyCache.clear();
+    }
+
 }
@@ -1,6 +1,7 @@
 
 package encryptix.hds.eah.v1;
 
+import encryptix.hds.eah.OutputBuffer;
 import encryptix.hds.exception.*;
 import encryptix.hds.keymanagement.loader.PublicKeyLoader;
 import encryptix.hds.resourcemanagement.reader.ClasspathResourceReader;
@@ -13,7 +14,9 @@ import org.junit.Test;
 
 import java.security.PublicKey;
 import java.security.Security;
+import java.util.HashSet;
 import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 public class EAHEncryptionCoreV1Test {
@@ -150,5 +153,44 @@ public class EAHEncryptionCoreV1Test {
         }
     }
 
+    /**
+     * Check, that byte-oriented encryption gives the same output as String encryption within the block
+     */
+    @Test
+    public void bytesEncryptionTest() throws CryptoInitializationFailed, CryptoCoreFailed {
+        EAHEncryptionCoreV1 encryptionCore = new EAHEncryptionCoreV1(publicKey, 10, 20, TimeUnit.NANOSECONDS.convert(20000, TimeUnit.MILLISECONDS), 256);
+
+        byte[] input = ("__" + message + "__").getBytes(FormatHelper.CONVERSION_CHARSET);
+        OutputBuffer output = new OutputBuffer(8);
+        output.write('>');
+
+        String encryptedMessage = encryptionCore.encrypt(message);
+        int encryptedLength = encryptionCore.encrypt(input, 2, input.length - 4, output);
+
+        Assert.assertEquals(">" + encryptedMessage, output.toString(FormatHelper.CONVERSION_CHARSET));
+        Assert.assertEquals(output.getLength() - 1, encryptedLength);
+    }
+
+    /**
+     * Check that block stable changing on long run on max limit with blocks pre-generated in background, every block is new
+     */
+    @Test
+    public void blockPregenerationSequenceTest() throws CryptoInitializationFailed, CryptoCoreFailed {
+        EAHEncryptionCoreV1 encryptionCore = new EAHEncryptionCoreV1(publicKey, 10, 20, TimeUnit.NANOSECONDS.convert(20000, TimeUnit.MILLISECONDS), 256, true);
+
+        Set<String> blocks = new HashSet<>();
+        String oldEncryptedMessage = encryptionCore.encrypt(message);
+        blocks.add(oldEncryptedMessage);
+
+        for (int i = 1; i < 200; i++) {
+            String newEncryptedMessage = encryptionCore.encrypt(message);
+            if (i % 20 == 0) {
+                Assert.assertTrue(blocks.add(newEncryptedMessage));
+            } else {
+                Assert.assertEquals(oldEncryptedMessage, newEncryptedMessage);
+            }
+            oldEncryptedMessage = newEncryptedMessage;
+        }
+    }
 
 }
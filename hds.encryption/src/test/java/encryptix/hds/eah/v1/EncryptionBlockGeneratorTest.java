@@ -0,0 +1,73 @@
+package encryptix.hds.eah.v1;
+
+import encryptix.hds.keymanagement.loader.PublicKeyLoader;
+import encryptix.hds.resourcemanagement.reader.ClasspathResourceReader;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.Security;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class EncryptionBlockGeneratorTest {
+
+    static PublicKey publicKey;
+
+    @BeforeClass
+    public static void initialize() throws Exception {
+        // Load EC library
+        Security.addProvider(new BouncyCastleProvider());
+
+        publicKey = PublicKeyLoader.readPublicKey(new ClasspathResourceReader().getResource("eckeys/test/47ed2bea86e8f4f9232f0659c1542818_test_public_key.pem"));
+    }
+
+    /**
+     * Generator, which fails the first background generation
+     */
+    static class FailingGenerator extends EncryptionBlockGenerator {
+        final AtomicInteger backgroundFailures = new AtomicInteger();
+
+        FailingGenerator() throws GeneralSecurityException {
+            super(publicKey, EAHEncryptionCoreV1.DEFAULT_AES_KEY_SIZE, true);
+        }
+
+        @Override
+        synchronized EncryptionBlock generate() throws GeneralSecurityException {
+            if (Thread.currentThread().getName().startsWith("eah-block-pregeneration-") && this.backgroundFailures.getAndIncrement() == 0) {
+                throw new GeneralSecurityException("Transient failure");
+            }
+            return super.generate();
+        }
+    }
+
+    @Test
+    public void backgroundFailureTest() throws Exception {
+        FailingGenerator generator = new FailingGenerator();
+
+        EncryptionBlock first = generator.next();
+        // background generation failed, block is generated inline
+        EncryptionBlock second = generator.next();
+        Assert.assertNotNull(second);
+        Assert.assertNotSame(first, second);
+        Assert.assertTrue(generator.backgroundFailures.get() >= 1);
+
+        // pre-generation goes on
+        Assert.assertNotNull(generator.next());
+        Assert.assertTrue(generator.backgroundFailures.get() >= 2);
+    }
+
+    @Test
+    public void sharedBlockTest() throws Exception {
+        Assert.assertNotNull(new EncryptionBlockGenerator(publicKey, EAHEncryptionCoreV1.DEFAULT_AES_KEY_SIZE, false).next().getAesEncryptCypher());
+
+        // blocks shared by threads have key, IV and prefix only
+        EncryptionBlock block = new EncryptionBlockGenerator(publicKey, EAHEncryptionCoreV1.DEFAULT_AES_KEY_SIZE, false, false).next();
+        Assert.assertNull(block.getAesEncryptCypher());
+        Assert.assertNotNull(block.getAesKey());
+        Assert.assertNotNull(block.getAesIV());
+        Assert.assertTrue(block.getPrefix().startsWith(FormatHelper.FORMAT_SIGNATURE));
+    }
+}
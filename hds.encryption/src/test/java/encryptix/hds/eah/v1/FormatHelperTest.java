@@ -0,0 +1,86 @@
+package encryptix.hds.eah.v1;
+
+import encryptix.hds.eah.OutputBuffer;
+import org.bouncycastle.util.encoders.Base64;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class FormatHelperTest {
+
+    @Test
+    public void serializationTest() {
+        Random random = new Random();
+        OutputBuffer serialized = new OutputBuffer(4);
+        OutputBuffer deserialized = new OutputBuffer(4);
+
+        for (int length = 0; length < 200; length++) {
+            byte[] value = new byte[length + 3];
+            random.nextBytes(value);
+            byte[] expectedValue = Arrays.copyOfRange(value, 3, value.length);
+            String expected = Base64.toBase64String(expectedValue);
+
+            Assert.assertEquals(expected, FormatHelper.serialize(expectedValue));
+            Assert.assertArrayEquals(expectedValue, FormatHelper.deserialize(expected));
+
+            // ranges and buffers
+            serialized.reset();
+            serialized.write('x');
+            Assert.assertEquals(expected.length(), FormatHelper.serialize(value, 3, length, serialized));
+            Assert.assertEquals("x" + expected, serialized.toString(FormatHelper.SERIALIZED_CHARSET));
+
+            deserialized.reset();
+            Assert.assertEquals(length, FormatHelper.deserialize(serialized.getData(), 1, serialized.getLength() - 1, deserialized));
+            Assert.assertArrayEquals(expectedValue, deserialized.toByteArray());
+
+            deserialized.reset();
+            Assert.assertEquals(length, FormatHelper.deserialize("x" + expected + "x", 1, expected.length(), deserialized));
+            Assert.assertArrayEquals(expectedValue, deserialized.toByteArray());
+        }
+    }
+
+    @Test
+    public void unpaddedTest() {
+        Assert.assertArrayEquals("ab".getBytes(FormatHelper.SERIALIZED_CHARSET), FormatHelper.deserialize("YWI"));
+        Assert.assertArrayEquals("a".getBytes(FormatHelper.SERIALIZED_CHARSET), FormatHelper.deserialize("YQ"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongSymbolTest() {
+        FormatHelper.deserialize("YW*i");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongUnicodeSymbolTest() {
+        FormatHelper.deserialize("YW\u0141i");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongBytesSymbolTest() {
+        byte[] value = {'Y', 'W', (byte) 0xC5, 'i'};
+        FormatHelper.deserialize(value, 0, value.length, new OutputBuffer());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongLengthTest() {
+        FormatHelper.deserialize("YWJjZ");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongPaddingTest() {
+        FormatHelper.deserialize("YWI=YQ=");
+    }
+
+    @Test
+    public void blockPrefixTest() {
+        byte[] ecies = {1, 2, 3, 4, 5};
+        byte[] iv = {6, 7, 8};
+
+        String prefix = FormatHelper.FORMAT_SIGNATURE + ":" + Base64.toBase64String(ecies) + ":" + Base64.toBase64String(iv) + ":";
+
+        Assert.assertEquals(prefix, FormatHelper.serializeBlockPrefix(ecies, iv));
+        Assert.assertArrayEquals(prefix.getBytes(FormatHelper.SERIALIZED_CHARSET), FormatHelper.serializeBlockPrefixBytes(ecies, iv));
+    }
+}
@@ -0,0 +1,236 @@
+package encryptix.hds.eah.v2;
+
+import encryptix.hds.eah.EAHMultiVersionDecryptionCore;
+import encryptix.hds.eah.OutputBuffer;
+import encryptix.hds.eah.v1.EAHEncryptionCoreV1;
+import encryptix.hds.exception.*;
+import encryptix.hds.keymanagement.loader.PrivateKeyLoader;
+import encryptix.hds.keymanagement.loader.PublicKeyLoader;
+import encryptix.hds.resourcemanagement.reader.ClasspathResourceReader;
+import encryptix.hds.resourcemanagement.reader.ResourceReader;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.commons.lang3.RandomUtils;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.crypto.BadPaddingException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Security;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Combined test for EAHv2 Crypto Engine and multi-version decryption
+ */
+public class EAHCryptoCoreV2Test {
+
+    static PublicKey publicKey;
+    static PrivateKey privateKey;
+
+    @BeforeClass
+    public static void initialize() throws InvalidResourceFormat, ResourceReadFailed, ResourceNotFound, CryptoInitializationFailed, InitializationFailed {
+
+        // Load EC library
+        Security.addProvider(new BouncyCastleProvider());
+
+        ResourceReader resourceReader = new ClasspathResourceReader();
+        publicKey = PublicKeyLoader.readPublicKey(resourceReader.getResource("eckeys/test/47ed2bea86e8f4f9232f0659c1542818_test_public_key.pem"));
+        privateKey = PrivateKeyLoader.readPrivateKey(resourceReader.getResource("eckeys/test/47ed2bea86e8f4f9232f0659c1542818_test_private_key_system_encrypted.pem"), "testpwd");
+    }
+
+    /**
+     * Encrypt-decrypt with random values, String and bytes, few blocks
+     */
+    @Test
+    public void stabilityTest() throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        EAHEncryptionCoreV2 encryptionCore = new EAHEncryptionCoreV2(publicKey, 10, 100, TimeUnit.NANOSECONDS.convert(20000, TimeUnit.MILLISECONDS), 256);
+        EAHDecryptionCoreV2 decryptionCore = new EAHDecryptionCoreV2(privateKey);
+
+        OutputBuffer encrypted = new OutputBuffer();
+        OutputBuffer decrypted = new OutputBuffer();
+
+        for (int i = 0; i < 1000; i++) {
+            String message = RandomStringUtils.random(RandomUtils.nextInt(0, 300), 0, 0x3000, false, false);
+
+            String encryptedMessage = encryptionCore.encrypt(message);
+            Assert.assertTrue(encryptedMessage.startsWith(FormatHelper.FORMAT_SIGNATURE + FormatHelper.SERIALIZED_BLOCK_DELIMITER));
+            Assert.assertEquals(message, decryptionCore.decrypt(encryptedMessage));
+
+            byte[] messageBytes = message.getBytes(FormatHelper.CONVERSION_CHARSET);
+            encrypted.reset();
+            encryptionCore.encrypt(messageBytes, 0, messageBytes.length, encrypted);
+            decrypted.reset();
+            decryptionCore.decrypt(encrypted.getData(), 0, encrypted.getLength(), decrypted);
+            Assert.assertEquals(message, decrypted.toString(FormatHelper.CONVERSION_CHARSET));
+        }
+
+        // 2000 rows, 100 rows per block, ECIES part decrypted once per block
+        Assert.assertEquals(20, decryptionCore.getAesKeyCacheStatistics().getMisses());
+    }
+
+    /**
+     * Same value is encrypted differently in the same block, row nonce is not re-used
+     */
+    @Test
+    public void uniqueNonceTest() throws CryptoInitializationFailed, CryptoCoreFailed {
+        EAHEncryptionCoreV2 encryptionCore = new EAHEncryptionCoreV2(publicKey);
+
+        String first = encryptionCore.encrypt("value");
+        String second = encryptionCore.encrypt("value");
+
+        Assert.assertEquals(first.substring(0, first.lastIndexOf(':')), second.substring(0, second.lastIndexOf(':')));
+        Assert.assertNotEquals(first, second);
+    }
+
+    /**
+     * Damaged row must fail authentication, next row must be decrypted correctly
+     */
+    @Test
+    public void damagedRowTest() throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        EAHEncryptionCoreV2 encryptionCore = new EAHEncryptionCoreV2(publicKey);
+        EAHDecryptionCoreV2 decryptionCore = new EAHDecryptionCoreV2(privateKey);
+
+        String encrypted = encryptionCore.encrypt("some value to damage");
+        int dataStart = encrypted.lastIndexOf(':') + 1;
+        char damaged = encrypted.charAt(dataStart + 8) == 'A' ? 'B' : 'A';
+
+        try {
+            decryptionCore.decrypt(encrypted.substring(0, dataStart + 8) + damaged + encrypted.substring(dataStart + 9));
+            Assert.fail("Damaged row decrypted");
+        } catch (CryptoCoreFailed e) {
+            Assert.assertTrue(e.getCause() instanceof BadPaddingException);
+        }
+
+        Assert.assertEquals("next value", decryptionCore.decrypt(encryptionCore.encrypt("next value")));
+    }
+
+    /**
+     * Row moved to other block prefix must fail authentication, prefix is AAD
+     */
+    @Test(expected = CryptoCoreFailed.class)
+    public void swappedPrefixTest() throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        EAHEncryptionCoreV2 encryptionCore = new EAHEncryptionCoreV2(publicKey);
+        EAHDecryptionCoreV2 decryptionCore = new EAHDecryptionCoreV2(privateKey);
+
+        String encrypted = encryptionCore.encrypt("value");
+        String[] parts = encrypted.split(":");
+        // same key, other salt
+        String otherSalt = parts[3].charAt(0) == 'A' ? 'B' + parts[3].substring(1) : 'A' + parts[3].substring(1);
+
+        decryptionCore.decrypt(parts[0] + ':' + parts[1] + ':' + parts[2] + ':' + otherSalt + ':' + parts[4]);
+    }
+
+    /**
+     * Message with missing blocks must be rejected as wrong format
+     */
+    @Test(expected = InvalidInputFormat.class)
+    public void notEnoughBlocksTest() throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        String encrypted = new EAHEncryptionCoreV2(publicKey).encrypt("value");
+        new EAHDecryptionCoreV2(privateKey).decrypt(encrypted.substring(0, encrypted.lastIndexOf(':')));
+    }
+
+    /**
+     * Mixed v1 and v2 values are decrypted by multi-version core
+     */
+    @Test
+    public void mixedVersionsTest() throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        EAHEncryptionCoreV1 encryptionCoreV1 = new EAHEncryptionCoreV1(publicKey);
+        EAHEncryptionCoreV2 encryptionCoreV2 = new EAHEncryptionCoreV2(publicKey);
+        EAHMultiVersionDecryptionCore decryptionCore = new EAHMultiVersionDecryptionCore(privateKey);
+
+        OutputBuffer encrypted = new OutputBuffer();
+        OutputBuffer decrypted = new OutputBuffer();
+
+        for (int i = 0; i < 100; i++) {
+            String message = RandomStringUtils.randomAlphanumeric(RandomUtils.nextInt(1, 100));
+            String encryptedMessage = i % 2 == 0 ? encryptionCoreV1.encrypt(message) : encryptionCoreV2.encrypt(message);
+
+            Assert.assertTrue(EAHMultiVersionDecryptionCore.isSupported(encryptedMessage));
+            Assert.assertEquals(message, decryptionCore.decrypt(encryptedMessage));
+
+            byte[] encryptedBytes = encryptedMessage.getBytes(FormatHelper.CONVERSION_CHARSET);
+            encrypted.reset();
+            encrypted.write(encryptedBytes, 0, encryptedBytes.length);
+            decrypted.reset();
+            decryptionCore.decrypt(encrypted.getData(), 0, encrypted.getLength(), decrypted);
+            Assert.assertEquals(message, decrypted.toString(FormatHelper.CONVERSION_CHARSET));
+        }
+
+        // one block per version
+        Assert.assertEquals(2, decryptionCore.getAesKeyCacheStatistics().getMisses());
+    }
+
+    /**
+     * Encrypt-decrypt binary envelope with random values, few blocks, binary envelope is shorter than text one
+     */
+    @Test
+    public void binaryEnvelopeTest() throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        EAHBinaryEncryptionCoreV2 encryptionCore = new EAHBinaryEncryptionCoreV2(publicKey, 10, 100, TimeUnit.NANOSECONDS.convert(20000, TimeUnit.MILLISECONDS), 256);
+        EAHEncryptionCoreV2 textEncryptionCore = new EAHEncryptionCoreV2(publicKey);
+        EAHBinaryDecryptionCoreV2 decryptionCore = new EAHBinaryDecryptionCoreV2(privateKey);
+
+        OutputBuffer encrypted = new OutputBuffer();
+        OutputBuffer decrypted = new OutputBuffer();
+
+        for (int i = 0; i < 1000; i++) {
+            String message = RandomStringUtils.random(RandomUtils.nextInt(0, 300), 0, 0x3000, false, false);
+            byte[] messageBytes = message.getBytes(FormatHelper.CONVERSION_CHARSET);
+
+            encrypted.reset();
+            int encryptedLength = encryptionCore.encrypt(messageBytes, 0, messageBytes.length, encrypted);
+            Assert.assertTrue(BinaryFormatHelper.hasSignature(encrypted.getData(), 0, encryptedLength));
+            Assert.assertTrue(encryptedLength < textEncryptionCore.encrypt(message).length());
+
+            decrypted.reset();
+            decryptionCore.decrypt(encrypted.getData(), 0, encryptedLength, decrypted);
+            Assert.assertEquals(message, decrypted.toString(FormatHelper.CONVERSION_CHARSET));
+        }
+
+        // 1000 rows, 100 rows per block, ECIES part decrypted once per block
+        Assert.assertEquals(10, decryptionCore.getAesKeyCacheStatistics().getMisses());
+    }
+
+    /**
+     * Damaged and truncated binary envelopes must be rejected
+     */
+    @Test
+    public void binaryEnvelopeDamagedTest() throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        EAHBinaryEncryptionCoreV2 encryptionCore = new EAHBinaryEncryptionCoreV2(publicKey);
+        EAHBinaryDecryptionCoreV2 decryptionCore = new EAHBinaryDecryptionCoreV2(privateKey);
+
+        OutputBuffer encrypted = new OutputBuffer();
+        int encryptedLength = encryptionCore.encrypt(new byte[]{1, 2, 3}, 0, 3, encrypted);
+        byte[] damaged = Arrays.copyOf(encrypted.getData(), encryptedLength);
+        damaged[encryptedLength - 1] ^= 1;
+
+        try {
+            decryptionCore.decrypt(damaged, 0, damaged.length, new OutputBuffer());
+            Assert.fail("Damaged row decrypted");
+        } catch (CryptoCoreFailed e) {
+            Assert.assertTrue(e.getCause() instanceof BadPaddingException);
+        }
+
+        try {
+            decryptionCore.decrypt(encrypted.getData(), 0, encryptedLength - 17, new OutputBuffer());
+            Assert.fail("Truncated row decrypted");
+        } catch (InvalidInputFormat e) {
+            // expected
+        }
+
+        OutputBuffer decrypted = new OutputBuffer();
+        decryptionCore.decrypt(encrypted.getData(), 0, encryptedLength, decrypted);
+        Assert.assertArrayEquals(new byte[]{1, 2, 3}, Arrays.copyOf(decrypted.getData(), decrypted.getLength()));
+    }
+
+    /**
+     * Unknown version must be rejected as wrong format
+     */
+    @Test(expected = InvalidInputFormat.class)
+    public void unsupportedVersionTest() throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        Assert.assertFalse(EAHMultiVersionDecryptionCore.isSupported("eah:9:AAAA:AAAA:AAAA"));
+        new EAHMultiVersionDecryptionCore(privateKey).decrypt("eah:9:AAAA:AAAA:AAAA");
+    }
+}
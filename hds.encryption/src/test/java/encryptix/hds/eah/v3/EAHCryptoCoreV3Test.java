@@ -0,0 +1,151 @@
+package encryptix.hds.eah.v3;
+
+import encryptix.hds.eah.EAHMultiVersionDecryptionCore;
+import encryptix.hds.eah.OutputBuffer;
+import encryptix.hds.eah.cache.KeyCachePolicy;
+import encryptix.hds.eah.v2.EAHEncryptionCoreV2;
+import encryptix.hds.exception.*;
+import encryptix.hds.keymanagement.loader.PrivateKeyLoader;
+import encryptix.hds.keymanagement.loader.PublicKeyLoader;
+import encryptix.hds.resourcemanagement.reader.ClasspathResourceReader;
+import encryptix.hds.resourcemanagement.reader.ResourceReader;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.commons.lang3.RandomUtils;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Security;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test for EAHv3 Crypto Engine and block dictionary
+ */
+public class EAHCryptoCoreV3Test {
+
+    static PublicKey publicKey;
+    static PrivateKey privateKey;
+
+    @BeforeClass
+    public static void initialize() throws InvalidResourceFormat, ResourceReadFailed, ResourceNotFound, CryptoInitializationFailed, InitializationFailed {
+
+        // Load EC library
+        Security.addProvider(new BouncyCastleProvider());
+
+        ResourceReader resourceReader = new ClasspathResourceReader();
+        publicKey = PublicKeyLoader.readPublicKey(resourceReader.getResource("eckeys/test/47ed2bea86e8f4f9232f0659c1542818_test_public_key.pem"));
+        privateKey = PrivateKeyLoader.readPrivateKey(resourceReader.getResource("eckeys/test/47ed2bea86e8f4f9232f0659c1542818_test_private_key_system_encrypted.pem"), "testpwd");
+    }
+
+    /**
+     * Encrypt with dictionary file written, decrypt with dictionary file read, String and bytes, few blocks
+     */
+    @Test
+    public void stabilityTest() throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat, IOException, InvalidResourceFormat {
+        StringWriter dictionaryFile = new StringWriter();
+        EAHEncryptionCoreV3 encryptionCore = new EAHEncryptionCoreV3(publicKey, new AppendingBlockDictionary(dictionaryFile),
+                10, 100, TimeUnit.NANOSECONDS.convert(20000, TimeUnit.MILLISECONDS), 256);
+
+        String[] messages = new String[1000];
+        String[] encryptedMessages = new String[messages.length];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = RandomStringUtils.random(RandomUtils.nextInt(0, 300), 0, 0x3000, false, false);
+            encryptedMessages[i] = encryptionCore.encrypt(messages[i]);
+            Assert.assertTrue(encryptedMessages[i].startsWith(FormatHelper.FORMAT_SIGNATURE + FormatHelper.SERIALIZED_BLOCK_DELIMITER));
+        }
+
+        InMemoryBlockDictionary blockDictionary = new InMemoryBlockDictionary();
+        blockDictionary.read(new StringReader(dictionaryFile.toString()));
+        // the first block is started by constructor, then 1000 rows, 100 rows per block
+        Assert.assertEquals(10, blockDictionary.size());
+
+        EAHDecryptionCoreV3 decryptionCore = new EAHDecryptionCoreV3(privateKey, blockDictionary);
+        OutputBuffer decrypted = new OutputBuffer();
+        for (int i = 0; i < messages.length; i++) {
+            Assert.assertEquals(messages[i], decryptionCore.decrypt(encryptedMessages[i]));
+
+            byte[] encryptedBytes = encryptedMessages[i].getBytes(FormatHelper.CONVERSION_CHARSET);
+            decrypted.reset();
+            decryptionCore.decrypt(encryptedBytes, 0, encryptedBytes.length, decrypted);
+            Assert.assertEquals(messages[i], decrypted.toString(FormatHelper.CONVERSION_CHARSET));
+        }
+
+        Assert.assertEquals(10, decryptionCore.getAesKeyCacheStatistics().getMisses());
+    }
+
+    /**
+     * Row doesn't carry ECIES part, so it's much shorter than EAHv2 one
+     */
+    @Test
+    public void compactRowTest() throws CryptoInitializationFailed, CryptoCoreFailed {
+        String v2 = new EAHEncryptionCoreV2(publicKey).encrypt("name@domain.com");
+        String v3 = new EAHEncryptionCoreV3(publicKey, new InMemoryBlockDictionary()).encrypt("name@domain.com");
+
+        Assert.assertTrue(v3.length() * 3 < v2.length());
+    }
+
+    /**
+     * Unknown block must be rejected as wrong format
+     */
+    @Test(expected = InvalidInputFormat.class)
+    public void unknownBlockTest() throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        String encrypted = new EAHEncryptionCoreV3(publicKey, new InMemoryBlockDictionary()).encrypt("value");
+        new EAHDecryptionCoreV3(privateKey, new InMemoryBlockDictionary()).decrypt(encrypted);
+    }
+
+    /**
+     * Dictionary entry of the other block must be rejected as wrong format
+     */
+    @Test(expected = InvalidInputFormat.class)
+    public void swappedDictionaryEntryTest() throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat, IOException {
+        String encrypted = new EAHEncryptionCoreV3(publicKey, new InMemoryBlockDictionary()).encrypt("value");
+        InMemoryBlockDictionary otherDictionary = new InMemoryBlockDictionary();
+        String other = new EAHEncryptionCoreV3(publicKey, otherDictionary).encrypt("value");
+
+        InMemoryBlockDictionary swappedDictionary = new InMemoryBlockDictionary();
+        swappedDictionary.put(encrypted.split(":")[2], otherDictionary.get(other.split(":")[2]));
+        new EAHDecryptionCoreV3(privateKey, swappedDictionary).decrypt(encrypted);
+    }
+
+    /**
+     * Mixed v2 and v3 values are decrypted by multi-version core, v3 requires dictionary
+     */
+    @Test
+    public void mixedVersionsTest() throws CryptoInitializationFailed, CryptoCoreFailed, InvalidInputFormat {
+        InMemoryBlockDictionary blockDictionary = new InMemoryBlockDictionary();
+        EAHEncryptionCoreV2 encryptionCoreV2 = new EAHEncryptionCoreV2(publicKey);
+        EAHEncryptionCoreV3 encryptionCoreV3 = new EAHEncryptionCoreV3(publicKey, blockDictionary);
+        EAHMultiVersionDecryptionCore decryptionCore = new EAHMultiVersionDecryptionCore(privateKey,
+                KeyCachePolicy.LRU.<String, SecretKey>create(10), blockDictionary);
+
+        for (int i = 0; i < 100; i++) {
+            String message = RandomStringUtils.randomAlphanumeric(RandomUtils.nextInt(1, 100));
+            String encryptedMessage = i % 2 == 0 ? encryptionCoreV2.encrypt(message) : encryptionCoreV3.encrypt(message);
+
+            Assert.assertTrue(EAHMultiVersionDecryptionCore.isSupported(encryptedMessage));
+            Assert.assertEquals(message, decryptionCore.decrypt(encryptedMessage));
+        }
+
+        try {
+            new EAHMultiVersionDecryptionCore(privateKey).decrypt(encryptionCoreV3.encrypt("value"));
+            Assert.fail("V3 value decrypted without dictionary");
+        } catch (InvalidInputFormat e) {
+            // expected
+        }
+    }
+
+    /**
+     * Broken dictionary file must be rejected
+     */
+    @Test(expected = InvalidResourceFormat.class)
+    public void wrongDictionaryFileTest() throws IOException, InvalidResourceFormat {
+        new InMemoryBlockDictionary().read(new StringReader("AAAA:BBBB:CCCC\n\nbroken line\n"));
+    }
+}
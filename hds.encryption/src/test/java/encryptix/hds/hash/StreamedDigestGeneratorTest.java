@@ -87,6 +87,28 @@ public class StreamedDigestGeneratorTest {
         Assert.assertEquals("a60d6fc9e1193d2974c71a762fb4d9cdb84246564b70cfc4467fb638bd6b33d1b57a3591a503e6769bea24138be3c4b06d3cd2775bd680919b72225aaed92438", sha512.hexDigest("99dc60e12d6ea1b454feb55bbe9a64f3"));
     }
 
+    @Test
+    public void hexDigestByteRangeTest() {
+        byte[] input = "xx1aaabbbyy".getBytes(StreamedDigestGenerator.defaultCharset);
+
+        byte[] hexBytes = new byte[md5.getHexDigestLength() + 3];
+        Assert.assertEquals(32, md5.hexDigest(input, 3, 6, hexBytes, 3));
+        Assert.assertEquals("6547436690a26a399603a7096e876a2d", new String(hexBytes, 3, 32, StreamedDigestGenerator.defaultCharset));
+
+        char[] hexChars = new char[sha1.getHexDigestLength()];
+        Assert.assertEquals(40, sha1.hexDigest(input, 2, 1, hexChars, 0));
+        Assert.assertEquals("356a192b7913b04c54574d18c28d46e6395428ab", new String(hexChars));
+
+        byte[] digest = new byte[sha256.getDigestLength()];
+        Assert.assertEquals(32, sha256.digest(input, 2, 1, digest, 0));
+        Assert.assertArrayEquals(sha256.digest("1".getBytes(StreamedDigestGenerator.defaultCharset)), digest);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void hexDigestSmallBufferTest() {
+        md5.hexDigest(new byte[1], 0, 1, new byte[md5.getHexDigestLength()], 1);
+    }
+
 
     @Test
     public void hexDigestStabilityTest() {
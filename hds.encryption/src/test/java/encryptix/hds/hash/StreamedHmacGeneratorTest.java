@@ -0,0 +1,54 @@
+package encryptix.hds.hash;
+
+import encryptix.hds.exception.CryptoInitializationFailed;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StreamedHmacGeneratorTest {
+
+    static final byte[] KEY = "Jefe".getBytes(StreamedHmacGenerator.defaultCharset);
+
+    static final String MESSAGE = "what do ya want for nothing?";
+
+    /*
+      Expected MACs are RFC 4231 test case 2
+     */
+
+    @Test
+    public void hexMacHappyPathTest() throws CryptoInitializationFailed {
+        Assert.assertEquals("5bdcc146bf60754e6a042426089575c75a003f089d2739839dec58b964ec3843",
+                new StreamedHmacGenerator(HmacAlgorithm.HMAC_SHA256, KEY).hexMac(MESSAGE));
+        Assert.assertEquals("af45d2e376484031617f78d2b58a6b1b9c7ef464f5a01b47e42ec3736322445e8e2240ca5e69e2c78b3239ecfab21649",
+                new StreamedHmacGenerator(HmacAlgorithm.HMAC_SHA384, KEY).hexMac(MESSAGE));
+        Assert.assertEquals("164b7a7bfcf819e2e395fbe73b56e0a387bd64222e831fd610270cd7ea2505549758bf75c05a994a6d034f65f8f0e6fdcaeab1a34d4a6b4b636e070a38bce737",
+                new StreamedHmacGenerator(HmacAlgorithm.HMAC_SHA512, KEY).hexMac(MESSAGE));
+    }
+
+    @Test
+    public void hexMacByteRangeTest() throws CryptoInitializationFailed {
+        StreamedHmacGenerator hmac = new StreamedHmacGenerator(HmacAlgorithm.HMAC_SHA256, KEY);
+        byte[] input = ("xx" + MESSAGE + "yy").getBytes(StreamedHmacGenerator.defaultCharset);
+
+        // Mac is reused, so the same value twice
+        for (int i = 0; i < 2; i++) {
+            byte[] hexBytes = new byte[hmac.getHexMacLength() + 1];
+            Assert.assertEquals(64, hmac.hexMac(input, 2, MESSAGE.length(), hexBytes, 1));
+            Assert.assertEquals("5bdcc146bf60754e6a042426089575c75a003f089d2739839dec58b964ec3843", new String(hexBytes, 1, 64, StreamedHmacGenerator.defaultCharset));
+        }
+
+        char[] hexChars = new char[hmac.getHexMacLength()];
+        Assert.assertEquals(64, hmac.hexMac(input, 2, MESSAGE.length(), hexChars, 0));
+        Assert.assertEquals("5bdcc146bf60754e6a042426089575c75a003f089d2739839dec58b964ec3843", new String(hexChars));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void hexMacSmallBufferTest() throws CryptoInitializationFailed {
+        StreamedHmacGenerator hmac = new StreamedHmacGenerator(HmacAlgorithm.HMAC_SHA256, KEY);
+        hmac.hexMac(new byte[1], 0, 1, new byte[hmac.getHexMacLength() - 1], 0);
+    }
+
+    @Test(expected = CryptoInitializationFailed.class)
+    public void emptyKeyTest() throws CryptoInitializationFailed {
+        new StreamedHmacGenerator(HmacAlgorithm.HMAC_SHA256, new byte[0]);
+    }
+}
@@ -0,0 +1,167 @@
+package encryptix.hds.keymanagement.loader;
+
+import encryptix.hds.exception.CryptoInitializationFailed;
+import encryptix.hds.exception.ResourceNotFound;
+import encryptix.hds.resourcemanagement.loader.StringLoader;
+import encryptix.hds.resourcemanagement.reader.ClasspathResourceReader;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Security;
+
+public class ParsedKeyCacheTest {
+
+    private static final String PUBLIC_KEY = "eckeys/test/47ed2bea86e8f4f9232f0659c1542818_test_public_key.pem";
+    private static final String OTHER_PUBLIC_KEY = "eckeys/test/3ccd72b3ba0e42f75994614603736f99_test_public_key.pem";
+    private static final String ENCRYPTED_PRIVATE_KEY = "eckeys/test/47ed2bea86e8f4f9232f0659c1542818_test_private_key_system_encrypted.pem";
+
+    @BeforeClass
+    public static void initialize() {
+        // Load EC library
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    static String content(String resource) throws Exception {
+        return StringLoader.readString(new ClasspathResourceReader().getResource(resource));
+    }
+
+    /**
+     * Source of the fixed content, counts opens
+     */
+    static class TestKeySource implements ParsedKeyCache.KeySource {
+        String name;
+        String content;
+        int opened = 0;
+
+        TestKeySource(String content) {
+            this("TEXT:key", content);
+        }
+
+        TestKeySource(String name, String content) {
+            this.name = name;
+            this.content = content;
+        }
+
+        @Override
+        public ParsedKeyCache.OpenedSource open() {
+            this.opened++;
+            return this.content == null ? null : new ParsedKeyCache.OpenedSource(this.name, new StringReader(this.content));
+        }
+    }
+
+    @Test
+    public void publicKeyTest() throws Exception {
+        ParsedKeyCache cache = new ParsedKeyCache();
+        TestKeySource source = new TestKeySource(content(PUBLIC_KEY));
+
+        PublicKey publicKey = cache.readPublicKey("key", source, 0);
+        Assert.assertEquals(PublicKeyLoader.readPublicKey(new StringReader(content(PUBLIC_KEY))), publicKey);
+        Assert.assertEquals(1, cache.getMisses());
+
+        // same content - parsed key is re-used, but source is checked every time
+        Assert.assertSame(publicKey, cache.readPublicKey("key", source, 0));
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(2, source.opened);
+
+        // changed content is parsed again
+        source.content = content(OTHER_PUBLIC_KEY);
+        PublicKey otherPublicKey = cache.readPublicKey("key", source, 0);
+        Assert.assertNotEquals(publicKey, otherPublicKey);
+        Assert.assertEquals(2, cache.getMisses());
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void revalidationTest() throws Exception {
+        ParsedKeyCache cache = new ParsedKeyCache();
+        TestKeySource source = new TestKeySource(content(PUBLIC_KEY));
+
+        PublicKey publicKey = cache.readPublicKey("key", source, 60000);
+        source.content = content(OTHER_PUBLIC_KEY);
+
+        // source is not opened within revalidation interval
+        Assert.assertSame(publicKey, cache.readPublicKey("key", source, 60000));
+        Assert.assertEquals(1, source.opened);
+
+        // lookup with other interval checks content, entry is shared
+        Assert.assertNotEquals(publicKey, cache.readPublicKey("key", source, 0));
+        Assert.assertEquals(2, source.opened);
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void resolvedSourceTest() throws Exception {
+        ParsedKeyCache cache = new ParsedKeyCache();
+        TestKeySource source = new TestKeySource("CLASSPATH:key.pem", content(PUBLIC_KEY));
+
+        // lists resolved to the same source share the key
+        PublicKey publicKey = cache.readPublicKey("classpath:key.pem", source, 60000);
+        Assert.assertSame(publicKey, cache.readPublicKey("hdfs:/keys/key.pem, classpath:key.pem", source, 60000));
+        Assert.assertEquals(1, cache.getMisses());
+        Assert.assertEquals(1, cache.size());
+
+        // source of the higher priority appeared is picked up on revalidation
+        source.name = "HDFS:/keys/key.pem";
+        source.content = content(OTHER_PUBLIC_KEY);
+        Assert.assertSame(publicKey, cache.readPublicKey("hdfs:/keys/key.pem, classpath:key.pem", source, 60000));
+        Assert.assertNotEquals(publicKey, cache.readPublicKey("hdfs:/keys/key.pem, classpath:key.pem", source, 0));
+        Assert.assertEquals(2, cache.size());
+
+        // other list is still resolved to the source read before
+        Assert.assertSame(publicKey, cache.readPublicKey("classpath:key.pem", source, 60000));
+        Assert.assertEquals(3, source.opened);
+    }
+
+    @Test
+    public void privateKeyTest() throws Exception {
+        ParsedKeyCache cache = new ParsedKeyCache();
+        TestKeySource source = new TestKeySource(content(ENCRYPTED_PRIVATE_KEY));
+        TestKeySource passwordSource = new TestKeySource("testpwd");
+
+        // neither key nor password is read within revalidation interval
+        PrivateKey privateKey = cache.readPrivateKey("key", source, "password", passwordSource, 60000);
+        Assert.assertSame(privateKey, cache.readPrivateKey("key", source, "password", passwordSource, 60000));
+        Assert.assertEquals(1, source.opened);
+        Assert.assertEquals(1, passwordSource.opened);
+
+        // public and private keys of the same source name are separated
+        Assert.assertNotNull(cache.readPublicKey("key", new TestKeySource(content(PUBLIC_KEY)), 60000));
+        Assert.assertSame(privateKey, cache.readPrivateKey("key", source, "password", passwordSource, 60000));
+        Assert.assertEquals(2, cache.size());
+
+        // other password is never served from cache
+        try {
+            cache.readPrivateKey("key", source, "wrongpassword", new TestKeySource("wrongpassword"), 60000);
+            Assert.fail("Wrong password accepted");
+        } catch (CryptoInitializationFailed e) {
+            // expected
+        }
+        Assert.assertEquals(2, source.opened);
+
+        // changed password is read on revalidation
+        passwordSource.content = "wrongpassword";
+        try {
+            cache.readPrivateKey("key", source, "password", passwordSource, 0);
+            Assert.fail("Wrong password accepted");
+        } catch (CryptoInitializationFailed e) {
+            // expected
+        }
+        Assert.assertEquals(2, passwordSource.opened);
+    }
+
+    @Test(expected = ResourceNotFound.class)
+    public void notFoundTest() throws Exception {
+        new ParsedKeyCache().readPublicKey("key", new TestKeySource(null), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongConfigurationTest() throws Exception {
+        new ParsedKeyCache().readPublicKey("key", new TestKeySource(content(PUBLIC_KEY)), -1);
+    }
+}
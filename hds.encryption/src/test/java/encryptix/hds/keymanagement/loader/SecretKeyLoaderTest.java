@@ -0,0 +1,49 @@
+package encryptix.hds.keymanagement.loader;
+
+import encryptix.hds.exception.InitializationFailed;
+import encryptix.hds.exception.InvalidResourceFormat;
+import encryptix.hds.exception.ResourceNotFound;
+import encryptix.hds.exception.ResourceReadFailed;
+import encryptix.hds.resourcemanagement.reader.ClasspathResourceReader;
+import encryptix.hds.resourcemanagement.reader.ResourceReader;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.StringReader;
+
+public class SecretKeyLoaderTest {
+
+    static ResourceReader resourceReader = new ClasspathResourceReader();
+
+    /**
+     * Load existing key
+     */
+    @Test
+    public void testSecretKeyLoadTest() throws InvalidResourceFormat, ResourceReadFailed, ResourceNotFound, InitializationFailed {
+        Assert.assertEquals(32, SecretKeyLoader.readSecretKey(resourceReader.getResource("hmackeys/test/test_hmac_key.txt")).length);
+    }
+
+    /**
+     * Load non-existing key
+     */
+    @Test(expected = ResourceNotFound.class)
+    public void testSecretKeyLoadFailTest() throws InvalidResourceFormat, ResourceReadFailed, ResourceNotFound, InitializationFailed {
+        SecretKeyLoader.readSecretKey(resourceReader.getResource("keys/not_found.txt"));
+    }
+
+    /**
+     * Weak key
+     */
+    @Test(expected = InvalidResourceFormat.class)
+    public void testShortKeyTest() throws InvalidResourceFormat, ResourceReadFailed, ResourceNotFound {
+        SecretKeyLoader.readSecretKey(new StringReader("c2hvcnQ="));
+    }
+
+    /**
+     * Not base64
+     */
+    @Test(expected = InvalidResourceFormat.class)
+    public void testWrongFormatTest() throws InvalidResourceFormat, ResourceReadFailed, ResourceNotFound {
+        SecretKeyLoader.readSecretKey(new StringReader("%%%% not a key %%%%"));
+    }
+}
@@ -0,0 +1,42 @@
+package encryptix.hds.resourcemanagement;
+
+import encryptix.hds.exception.ResourceNotFound;
+import encryptix.hds.exception.ResourceReadFailed;
+import encryptix.hds.resourcemanagement.loader.StringLoader;
+import encryptix.hds.resourcemanagement.reader.FileResourceReader;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class FileResourceReaderTest {
+
+    @Test
+    public void absolutePathHappyPathTest() throws IOException, ResourceNotFound, ResourceReadFailed {
+        Path file = Files.createTempFile(null, ".txt");
+        Files.write(file, "content".getBytes(StandardCharsets.ISO_8859_1));
+
+        Assert.assertEquals("content", StringLoader.readString(new FileResourceReader().getResource(file.toString())));
+    }
+
+    @Test
+    public void relativePathHappyPathTest() throws IOException, ResourceNotFound, ResourceReadFailed {
+        Path directory = Files.createTempDirectory(null);
+        Files.write(directory.resolve("key.txt"), "content".getBytes(StandardCharsets.ISO_8859_1));
+
+        Assert.assertEquals("content", StringLoader.readString(new FileResourceReader(directory).getResource("key.txt")));
+    }
+
+    @Test(expected = ResourceNotFound.class)
+    public void notFoundTest() throws IOException, ResourceNotFound, ResourceReadFailed {
+        new FileResourceReader(Files.createTempDirectory(null)).getResource("not_found.txt");
+    }
+
+    @Test(expected = ResourceNotFound.class)
+    public void directoryTest() throws IOException, ResourceNotFound, ResourceReadFailed {
+        new FileResourceReader().getResource(Files.createTempDirectory(null).toString());
+    }
+}
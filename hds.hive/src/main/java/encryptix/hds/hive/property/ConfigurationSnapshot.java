@@ -0,0 +1,70 @@
+package encryptix.hds.hive.property;
+
+import org.apache.hadoop.conf.Configuration;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Memoized property values of the Hadoop Configuration (Hive JobConf), shared by all property readers of the same
+ * configuration instance.
+ * <p/>
+ * Configuration.get() does variable expansion on every call, and every UDF instance reads the same properties again.
+ * Snapshot resolves every property once per configuration instance (MapredContext), so repeated lookups are map hits.
+ * Configuration is expected not to be changed after it's provided to UDF, changes made later are not visible.
+ * <p/>
+ * Snapshots are held weakly by configuration instance, so they are dropped with the configuration.
+ * <p/>
+ * Threadsafe implementation
+ */
+public final class ConfigurationSnapshot {
+
+    private static final Map<Configuration, ConfigurationSnapshot> SNAPSHOTS = new WeakHashMap<>();
+
+    // Marker of the property not found, ConcurrentMap doesn't allow null values
+    private static final Object NOT_FOUND = new Object();
+
+    private final ConcurrentMap<String, Object> values = new ConcurrentHashMap<>();
+
+    private ConfigurationSnapshot() {
+    }
+
+    /**
+     * Returns snapshot of the configuration instance, creates it on the first call. Configuration doesn't override
+     * equals(), so snapshots are looked up by instance
+     *
+     * @param configuration Configuration
+     * @return Snapshot of the configuration
+     */
+    public static ConfigurationSnapshot of(Configuration configuration) {
+        synchronized (SNAPSHOTS) {
+            ConfigurationSnapshot snapshot = SNAPSHOTS.get(configuration);
+            if (snapshot == null) {
+                snapshot = new ConfigurationSnapshot();
+                SNAPSHOTS.put(configuration, snapshot);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Finds property value, configuration is read on the first lookup of the property only
+     *
+     * @param configuration Configuration of the snapshot, see of(), snapshot doesn't hold it to be collectable
+     * @param propertyName Property name
+     * @return Value or null, if not found
+     */
+    public String get(Configuration configuration, String propertyName) {
+        Object value = this.values.get(propertyName);
+
+        if (value == null) {
+            String configurationValue = configuration.get(propertyName);
+            value = configurationValue == null ? NOT_FOUND : configurationValue;
+            this.values.putIfAbsent(propertyName, value);
+        }
+
+        return value == NOT_FOUND ? null : (String) value;
+    }
+}
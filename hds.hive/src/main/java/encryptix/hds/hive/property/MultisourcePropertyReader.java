@@ -9,10 +9,17 @@ import org.apache.hadoop.hive.ql.exec.MapredContext;
 import org.apache.hadoop.hive.ql.session.SessionState;
 
 import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.WeakHashMap;
 
 /**
  * Property provider, which is trying to find property with the name given in a different sources
+ * <p/>
+ * Hadoop and Hive configuration lookups are memoized per configuration instance, see ConfigurationSnapshot, and
+ * classpath property file is parsed once per classloader. Hive session variables are read on every lookup, they may be
+ * changed by SET at any moment.
  */
 public class MultisourcePropertyReader {
 
@@ -24,6 +31,13 @@ public class MultisourcePropertyReader {
 
     protected Properties classpathPropertyFileProperties;
 
+    // Snapshots of the configurations, re-created after deserialization
+    private transient ConfigurationSnapshot hadoopConfigurationSnapshot = null;
+    private transient ConfigurationSnapshot hiveConfigurationSnapshot = null;
+
+    // Classpath property files parsed, per classloader. Null value means file is not found or can't be parsed
+    private static final Map<ClassLoader, Map<String, Properties>> CLASSPATH_PROPERTY_FILES = new WeakHashMap<>();
+
     public enum PROPERTY_SOURCE {
         HIVE_SESSION, HADOOP_CONF, HIVE_CONF, SYSTEM, ENV, CLASSPATH_PROPERTY_FILE
     }
@@ -38,6 +52,7 @@ public class MultisourcePropertyReader {
     public void addHiveConfigurationSource(MapredContext hiveConfiguration) {
         log.debug("HiveConfiguration was provided");
         this.hiveConfiguration = hiveConfiguration;
+        this.hiveConfigurationSnapshot = null;
     }
 
     /**
@@ -48,27 +63,58 @@ public class MultisourcePropertyReader {
     public void addHadoopConfigurationSource(Configuration hadoopConfiguration) {
         log.debug("HadoopConfiguration was provided");
         this.hadoopConfiguration = hadoopConfiguration;
+        this.hadoopConfigurationSnapshot = null;
     }
 
     /**
-     * Adds classpath property file
+     * Adds classpath property file. File is parsed once per classloader, readers of the same classloader share
+     * properties parsed
      *
      * @param classpathFileName File name
      * @return Is was found and parsed successfully
      */
-//    @edu.umd.cs.findbugs.annotations.SuppressFBWarnings(value = "REC_CATCH_EXCEPTION", justification = "FindBugs defect on Java7-try-with-resources")
     public boolean addClasspathPropertyFileSource(String classpathFileName) {
         log.debug("ClassPath Property file was provided");
 
-        try (Reader reader = new ClasspathResourceReader(JavaUtils.getClassLoader()).getResource(classpathFileName)) {
+        ClassLoader classLoader = JavaUtils.getClassLoader();
+        synchronized (CLASSPATH_PROPERTY_FILES) {
+            Map<String, Properties> classLoaderFiles = CLASSPATH_PROPERTY_FILES.get(classLoader);
+            if (classLoaderFiles == null) {
+                classLoaderFiles = new HashMap<>();
+                CLASSPATH_PROPERTY_FILES.put(classLoader, classLoaderFiles);
+            }
+
+            if (!classLoaderFiles.containsKey(classpathFileName)) {
+                classLoaderFiles.put(classpathFileName, readClasspathPropertyFile(classLoader, classpathFileName));
+            }
+
+            Properties properties = classLoaderFiles.get(classpathFileName);
+            if (properties == null) {
+                return false;
+            }
+
+            this.classpathPropertyFileProperties = properties;
+            return true;
+        }
+    }
+
+    /**
+     * Parses classpath property file
+     *
+     * @param classLoader ClassLoader to read file from
+     * @param classpathFileName File name
+     * @return Properties or null, if file is not found or can't be parsed
+     */
+//    @edu.umd.cs.findbugs.annotations.SuppressFBWarnings(value = "REC_CATCH_EXCEPTION", justification = "FindBugs defect on Java7-try-with-resources")
+    private static Properties readClasspathPropertyFile(ClassLoader classLoader, String classpathFileName) {
+        try (Reader reader = new ClasspathResourceReader(classLoader).getResource(classpathFileName)) {
             Properties properties = new Properties();
             properties.load(reader);
             // still alive? wow!
-            this.classpathPropertyFileProperties = properties;
-            return true;
+            return properties;
         } catch (Exception e) {
             log.error("Failed to read ClassPath Property file "+ classpathFileName, e);
-            return false;
+            return null;
         }
     }
 
@@ -96,7 +142,17 @@ public class MultisourcePropertyReader {
         if (hadoopConfiguration == null) {
             log.debug("HadoopConfiguration is null when trying to find property " + propertyName + ", falling back to null");
             return null;
-        } else return hadoopConfiguration.get(propertyName);
+        }
+
+        // session configuration is changed by SET, never memoized
+        if (isSessionConfiguration(hadoopConfiguration)) {
+            return hadoopConfiguration.get(propertyName);
+        }
+
+        if (hadoopConfigurationSnapshot == null) {
+            hadoopConfigurationSnapshot = ConfigurationSnapshot.of(hadoopConfiguration);
+        }
+        return hadoopConfigurationSnapshot.get(hadoopConfiguration, propertyName);
     }
 
     /**
@@ -109,7 +165,28 @@ public class MultisourcePropertyReader {
         if (hiveConfiguration == null || hiveConfiguration.getJobConf() == null) {
             log.debug("HiveConfiguration is null when trying to find property " + propertyName + ", falling back to null");
             return null;
-        } else return hiveConfiguration.getJobConf().get(propertyName);
+        }
+
+        // session configuration is changed by SET, never memoized
+        if (isSessionConfiguration(hiveConfiguration.getJobConf())) {
+            return hiveConfiguration.getJobConf().get(propertyName);
+        }
+
+        if (hiveConfigurationSnapshot == null) {
+            hiveConfigurationSnapshot = ConfigurationSnapshot.of(hiveConfiguration.getJobConf());
+        }
+        return hiveConfigurationSnapshot.get(hiveConfiguration.getJobConf(), propertyName);
+    }
+
+    /**
+     * Checks, is configuration the configuration of the current Hive session
+     *
+     * @param configuration Configuration to check
+     * @return true if configuration is the session one
+     */
+    private static boolean isSessionConfiguration(Configuration configuration) {
+        SessionState hiveSessionState = SessionState.get();
+        return hiveSessionState != null && hiveSessionState.getConf() == configuration;
     }
 
     /**
@@ -157,9 +234,13 @@ public class MultisourcePropertyReader {
                 value = readPropertyFromSource(propertyName, propertySource);
 
                 if (value == null) {
-                    log.info("For property " + propertyName + " value was NOT found in the source " + propertySource.name());
+                    if (log.isInfoEnabled()) {
+                        log.info("For property " + propertyName + " value was NOT found in the source " + propertySource.name());
+                    }
                 } else {
-                    log.info("For property " + propertyName + " found value " + value + " in the source " + propertySource.name());
+                    if (log.isInfoEnabled()) {
+                        log.info("For property " + propertyName + " found value " + value + " in the source " + propertySource.name());
+                    }
                     break;
                 }
             } catch (Exception e) {
@@ -167,7 +248,9 @@ public class MultisourcePropertyReader {
             }
         }
 
-        log.debug("Finished search for property " + propertyName + ", value found is " + value);
+        if (log.isDebugEnabled()) {
+            log.debug("Finished search for property " + propertyName + ", value found is " + value);
+        }
         return (value == null && defaultValue != null) ? defaultValue : value;
     }
 
@@ -0,0 +1,105 @@
+package encryptix.hds.hive.resourcemanagement;
+
+import encryptix.hds.eah.v3.AppendingBlockDictionary;
+import encryptix.hds.eah.v3.InMemoryBlockDictionary;
+import encryptix.hds.exception.InvalidResourceFormat;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.util.UUID;
+
+/**
+ * EAHv3 block dictionary stored as a directory of dictionary files on HDFS.
+ * <p/>
+ * Every encryption UDF instance (so every task) writes its own file, named by random UUID, so there are no concurrent
+ * writes to the same file. Decryption reads all the files of the directory.
+ * <p/>
+ * Every new block is synced to the DataNodes (hsync) before rows of the block are written, so the file is readable and
+ * complete up to the last row written, even if the task dies before the file is closed.
+ */
+public class BlockDictionaryStore {
+
+    private static final Log log = LogFactory.getLog(BlockDictionaryStore.class);
+
+    /**
+     * Suffix of dictionary files, other files of the directory are ignored
+     */
+    public static final String DICTIONARY_FILE_SUFFIX = ".ebd";
+
+    /**
+     * Dictionary files are ASCII, base64 and delimiters only
+     */
+    public static final Charset DICTIONARY_CHARSET = encryptix.hds.eah.v3.FormatHelper.SERIALIZED_CHARSET;
+
+    private final FileSystem fileSystem;
+
+    private final Path directory;
+
+    /**
+     * @param fileSystem Filesystem of the dictionary
+     * @param directory Dictionary directory
+     */
+    public BlockDictionaryStore(FileSystem fileSystem, String directory) {
+        this.fileSystem = fileSystem;
+        this.directory = new Path(directory);
+    }
+
+    /**
+     * Creates new dictionary file in the directory
+     *
+     * @return Dictionary, which appends new blocks to the file created and syncs them
+     * @throws IOException If file can't be created
+     */
+    public AppendingBlockDictionary createDictionary() throws IOException {
+        Path dictionaryFile = new Path(this.directory, UUID.randomUUID().toString() + DICTIONARY_FILE_SUFFIX);
+        log.debug("Creating block dictionary file " + dictionaryFile);
+
+        return new SyncedBlockDictionary(this.fileSystem.create(dictionaryFile, false));
+    }
+
+    /**
+     * Dictionary file, synced on every new block
+     */
+    private static class SyncedBlockDictionary extends AppendingBlockDictionary {
+
+        private final FSDataOutputStream outputStream;
+
+        SyncedBlockDictionary(FSDataOutputStream outputStream) {
+            super(new OutputStreamWriter(outputStream, DICTIONARY_CHARSET));
+            this.outputStream = outputStream;
+        }
+
+        @Override
+        protected void sync() throws IOException {
+            this.outputStream.hsync();
+        }
+    }
+
+    /**
+     * Reads all dictionary files of the directory
+     *
+     * @return Dictionary of all blocks found
+     * @throws IOException If directory or file can't be read
+     * @throws InvalidResourceFormat If file is not a dictionary file
+     */
+    public InMemoryBlockDictionary readDictionary() throws IOException, InvalidResourceFormat {
+        InMemoryBlockDictionary blockDictionary = new InMemoryBlockDictionary();
+
+        for (FileStatus fileStatus : this.fileSystem.listStatus(this.directory)) {
+            if (fileStatus.isFile() && fileStatus.getPath().getName().endsWith(DICTIONARY_FILE_SUFFIX)) {
+                blockDictionary.read(new InputStreamReader(this.fileSystem.open(fileStatus.getPath()), DICTIONARY_CHARSET));
+            }
+        }
+
+        log.debug("Read " + blockDictionary.size() + " blocks from block dictionary " + this.directory);
+        return blockDictionary;
+    }
+}
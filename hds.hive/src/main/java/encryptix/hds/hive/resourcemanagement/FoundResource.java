@@ -0,0 +1,37 @@
+package encryptix.hds.hive.resourcemanagement;
+
+import java.io.Reader;
+
+/**
+ * Resource found by ResourceFinder with the source it was read from
+ */
+public final class FoundResource {
+
+    private final String source;
+
+    private final Reader reader;
+
+    /**
+     * @param sourceType Source type, case insensitive
+     * @param sourceValue Source value
+     * @param reader Reader of the resource
+     */
+    FoundResource(String sourceType, String sourceValue, Reader reader) {
+        this.source = sourceType.toUpperCase() + ResourcePathFormatParser.sourceTypePrefixDelimiter + sourceValue;
+        this.reader = reader;
+    }
+
+    /**
+     * @return Source the resource was read from, TYPE:value, the same whatever list it was found in
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @return Reader of the resource
+     */
+    public Reader getReader() {
+        return reader;
+    }
+}
@@ -4,17 +4,46 @@ package encryptix.hds.hive.resourcemanagement;
 import encryptix.hds.exception.InitializationFailed;
 import encryptix.hds.exception.ResourceNotFound;
 import encryptix.hds.exception.ResourceReadFailed;
+import encryptix.hds.hive.resourcemanagement.reader.DistributedCacheResourceReader;
+import encryptix.hds.hive.resourcemanagement.reader.HDFSContentCache;
 import encryptix.hds.hive.resourcemanagement.reader.HDFSResourceReader;
+import encryptix.hds.resourcemanagement.loader.StringLoader;
 import encryptix.hds.resourcemanagement.reader.ClasspathResourceReader;
+import encryptix.hds.resourcemanagement.reader.FileResourceReader;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hive.common.JavaUtils;
+import org.apache.hadoop.hive.ql.session.SessionState;
 import org.apache.hadoop.mapred.JobConf;
 
 import java.io.Reader;
 import java.io.StringReader;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Class for finding the resource from the list
@@ -53,6 +82,45 @@ public class ResourceFinder {
 
     private boolean aggressiveSearchMode = false;
 
+    private long hdfsCacheRevalidationInterval = HDFSContentCache.DEFAULT_REVALIDATION_INTERVAL_MILLISECONDS;
+
+    // HDFS reader of the lookups, re-created on configuration change only. Holds opened filesystem, so it's not
+    // serialized with UDF in the query plan and re-created on the first lookup after deserialization
+    private transient HDFSResourceReader hdfsResourceReader = null;
+
+    /**
+     * Lookup timeout of the parallel lookup mode, milliseconds, 0 means sequential lookup
+     */
+    private long lookupTimeout = 0;
+
+    /**
+     * Period the failed source is skipped for, milliseconds, 0 means negative cache is disabled
+     */
+    private long negativeCacheTtl = 0;
+
+    private static final char SOURCE_KEY_DELIMITER = ':';
+
+    /**
+     * Threads of the JVM-wide parallel lookup executor. Lookups are not interrupted, see getResourceParallel(), so
+     * lookup stuck in HDFS RPC retries holds its thread till retries are over, pool size limits such threads
+     */
+    static final int LOOKUP_THREADS = 8; // package-private for tests
+
+    /**
+     * Source types read on the caller thread in parallel lookup mode, local ones don't block on the network
+     */
+    private static final Set<String> LOCAL_SOURCE_TYPES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("CLASSPATH", "TEXT", "FILE", "DISTCACHE")));
+
+    // Permits of the lookups started or waiting for the thread, one per LOOKUP_THREADS, so lookup never waits
+    // behind the stuck ones
+    private static final Semaphore LOOKUP_PERMITS = new Semaphore(LOOKUP_THREADS);
+
+    // JVM-wide negative cache, source to failure time. Unavailable sources only (timeout, connection failure), so
+    // result doesn't depend on user or configuration of the lookup
+    private static final ConcurrentMap<String, Long> FAILED_SOURCES = new ConcurrentHashMap<>();
+
+    private static ExecutorService lookupExecutor = null;
+
 
     /**
      * Adds Hive Job Configuration
@@ -62,6 +130,7 @@ public class ResourceFinder {
     public void addHiveJobConfiguration(JobConf hiveJobConfiguration) {
         log.debug("HiveConfiguration was provided");
         this.hiveJobConfiguration = hiveJobConfiguration;
+        this.hdfsResourceReader = null;
     }
 
     /**
@@ -72,6 +141,7 @@ public class ResourceFinder {
     public void addHadoopConfigurationSource(Configuration hadoopConfiguration) {
         log.debug("HadoopConfiguration was provided");
         this.hadoopConfiguration = hadoopConfiguration;
+        this.hdfsResourceReader = null;
     }
 
     /**
@@ -84,6 +154,16 @@ public class ResourceFinder {
         return getResource(ResourcePathFormatParser.parseSources(resources));
     }
 
+    /**
+     * Get resource from the list with the source it was read from
+     *
+     * @param resources Resources to read, resource path format
+     * @return Resource found or null, if nothing found or can be opened
+     */
+    public FoundResource findResource(String resources) {
+        return findResource(ResourcePathFormatParser.parseSources(resources));
+    }
+
     /**
      * Force resource finder to use all available ways to find and open resources, including various bypasses
      *
@@ -96,69 +176,453 @@ public class ResourceFinder {
      */
     public void setAggressiveSearchMode(boolean aggressiveSearchMode) {
         this.aggressiveSearchMode = aggressiveSearchMode;
+        this.hdfsResourceReader = null;
     }
 
     public boolean isAggressiveSearchMode() {
         return aggressiveSearchMode;
     }
 
+    /**
+     * Sets revalidation interval of the HDFS resources cached, see HDFSContentCache
+     *
+     * @param hdfsCacheRevalidationInterval Interval the cached content is not re-checked after, milliseconds, 0 means content is checked on every read
+     */
+    public void setHDFSCacheRevalidationInterval(long hdfsCacheRevalidationInterval) {
+        this.hdfsCacheRevalidationInterval = hdfsCacheRevalidationInterval;
+        this.hdfsResourceReader = null;
+    }
+
+    public long getHDFSCacheRevalidationInterval() {
+        return hdfsCacheRevalidationInterval;
+    }
+
+    /**
+     * Enables parallel lookup mode: all sources are probed concurrently, the highest-priority one read within timeout
+     * is returned
+     *
+     * @param lookupTimeout Lookup timeout, milliseconds, 0 means sequential lookup
+     */
+    public void setLookupTimeout(long lookupTimeout) {
+        this.lookupTimeout = lookupTimeout;
+    }
+
+    public long getLookupTimeout() {
+        return lookupTimeout;
+    }
+
+    /**
+     * Enables JVM-wide negative cache: source unavailable (timed out or connection failed) is skipped by all finders
+     * for TTL. Sources not found or not readable (permissions) are not cached, as it depends on user and configuration
+     * of the lookup
+     *
+     * @param negativeCacheTtl Period the failed source is skipped for, milliseconds, 0 means negative cache is disabled
+     */
+    public void setNegativeCacheTtl(long negativeCacheTtl) {
+        this.negativeCacheTtl = negativeCacheTtl;
+    }
+
+    public long getNegativeCacheTtl() {
+        return negativeCacheTtl;
+    }
+
+    /**
+     * Creates HDFS reader with configurations and search mode of this finder
+     *
+     * @return HDFS reader
+     */
+    public HDFSResourceReader createHDFSResourceReader() {
+        HDFSResourceReader hdfsResourceReader = new HDFSResourceReader();
+        hdfsResourceReader.addHadoopConfigurationSource(this.hadoopConfiguration);
+        hdfsResourceReader.addHiveJobConfiguration(this.hiveJobConfiguration);
+        hdfsResourceReader.setFallbackReadHadoopFilesFromFS(aggressiveSearchMode);
+        hdfsResourceReader.setContentCacheRevalidationInterval(hdfsCacheRevalidationInterval);
+        return hdfsResourceReader;
+    }
+
+    /**
+     * Creates distributed cache reader with Hive Job Configuration of this finder
+     *
+     * @return Distributed cache reader
+     */
+    public DistributedCacheResourceReader createDistributedCacheResourceReader() {
+        DistributedCacheResourceReader distributedCacheResourceReader = new DistributedCacheResourceReader();
+        distributedCacheResourceReader.addHiveJobConfiguration(this.hiveJobConfiguration);
+        return distributedCacheResourceReader;
+    }
+
+    /**
+     * @return HDFS reader of the lookups, re-used while configuration is the same, so filesystem is opened once
+     */
+    private HDFSResourceReader getHDFSResourceReader() {
+        if (this.hdfsResourceReader == null) {
+            this.hdfsResourceReader = createHDFSResourceReader();
+        }
+        return this.hdfsResourceReader;
+    }
+
     /**
      * Get resource from the list
      *
      * @param resources Resources to read, map of types and resources names
      * @return Reader or null, if nothing found or can be opened
      */
-    @SuppressWarnings("PMD.EmptyCatchBlock")
-//    @edu.umd.cs.findbugs.annotations.SuppressFBWarnings(value = "DM_CONVERT_CASE", justification = "Default used")
     public Reader getResource(Map<String, String> resources) {
+        FoundResource foundResource = findResource(resources);
+        return foundResource == null ? null : foundResource.getReader();
+    }
 
-        Reader reader = null;
+    /**
+     * Get resource from the list with the source it was read from. Sources unavailable within negative cache TTL are
+     * skipped. In parallel lookup mode remote sources are probed concurrently, see getResourceParallel()
+     *
+     * @param resources Resources to read, map of types and resources names
+     * @return Resource found or null, if nothing found or can be opened
+     */
+    public FoundResource findResource(Map<String, String> resources) {
+
+        if (this.lookupTimeout > 0 && resources.size() > 1) {
+            return getResourceParallel(resources);
+        }
 
         for (Map.Entry<String, String> resourceEntry : resources.entrySet()) {
 
             String sourceType = resourceEntry.getKey();
             String sourceValue = resourceEntry.getValue();
 
-            log.debug("Processing entry " + sourceType + ":" + sourceValue);
-
-            try {
-                // TODO: Implement FS
-                switch (sourceType.toUpperCase()) {
-                    case "CLASSPATH":
-                        // Use ClassLoader from Hive
-                        reader = new ClasspathResourceReader(JavaUtils.getClassLoader()).getResource(sourceValue);
-                        break;
-                    case "TEXT":
-                        reader = new StringReader(sourceValue);
-                        break;
-                    case "HDFS":
-
-                        HDFSResourceReader hdfsResourceReader = new HDFSResourceReader();
-                        hdfsResourceReader.addHadoopConfigurationSource(this.hadoopConfiguration);
-                        hdfsResourceReader.addHiveJobConfiguration(this.hiveJobConfiguration);
-                        hdfsResourceReader.setFallbackReadHadoopFilesFromFS(aggressiveSearchMode);
-
-                        reader = hdfsResourceReader.getResource(sourceValue);
-                        break;
-                    default: log.error("Source entry type "+resourceEntry.getKey().toUpperCase()+" is not known!");
-                }
-            } catch (ResourceNotFound e) {
-                log.error("Source entry "+sourceType+":"+sourceValue+", resource is not found!", e);
-            } catch (InitializationFailed initializationFailed) {
-                log.error("Source entry "+sourceType+":"+sourceValue+", init failed", initializationFailed);
-            } catch (ResourceReadFailed resourceReadFailed) {
-                log.error("Source entry "+sourceType+":"+sourceValue+", read failed", resourceReadFailed);
+            if (isFailureCached(sourceType, sourceValue)) {
+                log.debug("Source entry " + sourceType + ":" + sourceValue + " failed recently, skipping");
+                continue;
             }
 
+            Reader reader = probeResource(sourceType, sourceValue);
+
             // found reader - cancel search
             if (reader != null) {
-                log.debug("Source entry "+sourceType+":"+sourceValue+", no reader found");
-                return reader;
+                return new FoundResource(sourceType, sourceValue, reader);
             }
         }
 
         return null;
     }
 
+    /**
+     * Opens resource on the caller thread, failure is logged. Source unavailable is cached as failed, if negative
+     * cache is enabled
+     *
+     * @param sourceType Source type
+     * @param sourceValue Source value
+     * @return Reader or null, if resource is not found or can't be opened
+     */
+    private Reader probeResource(String sourceType, String sourceValue) {
+        log.debug("Processing entry " + sourceType + ":" + sourceValue);
+
+        Reader reader = null;
+        try {
+            reader = openResource(sourceType, sourceValue);
+        } catch (ResourceNotFound e) {
+            log.error("Source entry "+sourceType+":"+sourceValue+", resource is not found!", e);
+        } catch (InitializationFailed initializationFailed) {
+            log.error("Source entry "+sourceType+":"+sourceValue+", init failed", initializationFailed);
+        } catch (ResourceReadFailed resourceReadFailed) {
+            log.error("Source entry "+sourceType+":"+sourceValue+", read failed", resourceReadFailed);
+            if (isUnavailable(resourceReadFailed)) {
+                cacheFailure(sourceType, sourceValue);
+            }
+        }
+
+        if (reader != null) {
+            log.debug("Source entry "+sourceType+":"+sourceValue+", reader found");
+        }
+        return reader;
+    }
+
+    /**
+     * Probes remote sources concurrently and returns the highest-priority one read within lookup timeout, so slow or
+     * unreachable source (degraded NameNode) doesn't block the lookup. Remote sources are read as a whole, resources
+     * are small (keys, passwords). Local sources (see LOCAL_SOURCE_TYPES) are read on the caller thread in priority
+     * order, so they are found even if all lookup threads are stuck. Remote source is read on the caller thread also,
+     * if all lookup threads are busy, so lookup falls back to sequential one. Sources timed out or unavailable are
+     * cached as failed, if negative cache is enabled.
+     * <p/>
+     * Lookups are cancelled without interruption: HDFS read blocked in RPC retries ignores it, and interrupted
+     * DFSClient/IPC thread may close channels of the filesystem shared by all readers. Lookup over the deadline
+     * completes on its own, executor is bounded, see LOOKUP_THREADS.
+     *
+     * @param resources Resources to read, map of types and resources names, ordered by priority
+     * @return Resource found or null, if nothing found or can be opened within lookup timeout
+     */
+    protected FoundResource getResourceParallel(Map<String, String> resources) {
+        List<Map.Entry<String, String>> sources = new ArrayList<>();
+        // lookup of the source, null if source is read on the caller thread
+        List<SourceLookup> lookups = new ArrayList<>();
+
+        // Thread-bound Hive state of the caller: session (configuration) and classloader (added jars)
+        SessionState sessionState = SessionState.get();
+        ClassLoader classLoader = JavaUtils.getClassLoader();
+
+        for (Map.Entry<String, String> resourceEntry : resources.entrySet()) {
+            String sourceType = resourceEntry.getKey();
+            String sourceValue = resourceEntry.getValue();
+
+            if (isFailureCached(sourceType, sourceValue)) {
+                log.debug("Source entry " + sourceType + ":" + sourceValue + " failed recently, skipping");
+                continue;
+            }
+
+            SourceLookup lookup = null;
+            if (!LOCAL_SOURCE_TYPES.contains(sourceType.toUpperCase())) {
+                if (LOOKUP_PERMITS.tryAcquire()) {
+                    lookup = new SourceLookup(sourceType, sourceValue, sessionState, classLoader);
+                    lookup.start();
+                } else {
+                    log.error("Source entry " + sourceType + ":" + sourceValue + ", all lookup threads are busy, read on the caller thread");
+                }
+            }
+
+            sources.add(resourceEntry);
+            lookups.add(lookup);
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.NANOSECONDS.convert(this.lookupTimeout, TimeUnit.MILLISECONDS);
+        FoundResource foundResource = null;
+
+        for (int i = 0; i < lookups.size(); i++) {
+            String sourceType = sources.get(i).getKey();
+            String sourceValue = sources.get(i).getValue();
+            SourceLookup lookup = lookups.get(i);
+
+            if (foundResource != null) {
+                // lower priority lookup is not needed anymore
+                if (lookup != null) {
+                    lookup.cancel();
+                }
+                continue;
+            }
+
+            if (lookup == null) {
+                Reader reader = probeResource(sourceType, sourceValue);
+                if (reader != null) {
+                    foundResource = new FoundResource(sourceType, sourceValue, reader);
+                }
+                continue;
+            }
+
+            try {
+                String content = lookup.get(Math.max(deadline - System.nanoTime(), 0));
+                if (content != null) {
+                    log.debug("Source entry " + sourceType + ":" + sourceValue + ", reader found");
+                    foundResource = new FoundResource(sourceType, sourceValue, new StringReader(content));
+                }
+            } catch (TimeoutException e) {
+                log.error("Source entry " + sourceType + ":" + sourceValue + ", lookup timed out after " + this.lookupTimeout + " ms");
+                // source is known to be slow only if the lookup was started
+                if (lookup.cancel()) {
+                    cacheFailure(sourceType, sourceValue);
+                }
+            } catch (ExecutionException e) {
+                log.error("Source entry " + sourceType + ":" + sourceValue + ", lookup failed", e.getCause());
+                if (isUnavailable(e.getCause())) {
+                    cacheFailure(sourceType, sourceValue);
+                }
+            } catch (InterruptedException e) {
+                log.error("Source entry " + sourceType + ":" + sourceValue + ", lookup interrupted", e);
+                Thread.currentThread().interrupt();
+                lookup.cancel();
+            }
+        }
+
+        return foundResource;
+    }
+
+    /**
+     * Lookup of the single source on the executor thread, with Hive state of the caller. Holds lookup permit till the
+     * source is read or lookup is cancelled before start
+     */
+    private class SourceLookup implements Callable<String> {
+        private final String sourceType;
+        private final String sourceValue;
+        private final SessionState sessionState;
+        private final ClassLoader classLoader;
+
+        // set by the first of start on the executor thread and cancel, so permit is released once
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        private Future<String> future = null;
+
+        SourceLookup(String sourceType, String sourceValue, SessionState sessionState, ClassLoader classLoader) {
+            this.sourceType = sourceType;
+            this.sourceValue = sourceValue;
+            this.sessionState = sessionState;
+            this.classLoader = classLoader;
+        }
+
+        void start() {
+            this.future = getLookupExecutor().submit(this);
+        }
+
+        String get(long timeoutNanoseconds) throws InterruptedException, ExecutionException, TimeoutException {
+            return this.future.get(timeoutNanoseconds, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Cancels lookup without interruption, lookup not started yet releases its permit
+         *
+         * @return true if the source was probed
+         */
+        boolean cancel() {
+            this.future.cancel(false);
+            if (this.started.compareAndSet(false, true)) {
+                LOOKUP_PERMITS.release();
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public String call() throws Exception {
+            if (!this.started.compareAndSet(false, true)) {
+                return null;
+            }
+
+            Thread thread = Thread.currentThread();
+            ClassLoader threadClassLoader = thread.getContextClassLoader();
+            try {
+                if (this.sessionState != null) {
+                    SessionState.setCurrentSessionState(this.sessionState);
+                }
+                thread.setContextClassLoader(this.classLoader);
+
+                Reader reader = openResource(this.sourceType, this.sourceValue);
+                if (reader == null) {
+                    return null;
+                }
+                try (Reader sourceReader = reader) {
+                    return StringLoader.readString(sourceReader);
+                }
+            } finally {
+                if (this.sessionState != null) {
+                    SessionState.detachSession();
+                }
+                thread.setContextClassLoader(threadClassLoader);
+                LOOKUP_PERMITS.release();
+            }
+        }
+    }
+
+    /**
+     * Opens resource of the type
+     *
+     * @param sourceType Source type, case insensitive
+     * @param sourceValue Source value
+     * @return Reader or null, if type is not known
+     * @throws ResourceNotFound If resource is not found
+     * @throws InitializationFailed If reader can't be initialized
+     * @throws ResourceReadFailed If resource can't be read
+     */
+//    @edu.umd.cs.findbugs.annotations.SuppressFBWarnings(value = "DM_CONVERT_CASE", justification = "Default used")
+    protected Reader openResource(String sourceType, String sourceValue) throws ResourceNotFound, InitializationFailed, ResourceReadFailed {
+        switch (sourceType.toUpperCase()) {
+            case "CLASSPATH":
+                // Use ClassLoader from Hive
+                return new ClasspathResourceReader(JavaUtils.getClassLoader()).getResource(sourceValue);
+            case "TEXT":
+                return new StringReader(sourceValue);
+            case "HDFS":
+                return getHDFSResourceReader().getResource(sourceValue);
+            case "FILE":
+                return new FileResourceReader().getResource(sourceValue);
+            case "DISTCACHE":
+                return createDistributedCacheResourceReader().getResource(sourceValue);
+            default:
+                log.error("Source entry type " + sourceType.toUpperCase() + " is not known!");
+                return null;
+        }
+    }
+
+    /**
+     * Checks, did the source fail within negative cache TTL
+     *
+     * @param sourceType Source type
+     * @param sourceValue Source value
+     * @return true if source should be skipped
+     */
+    private boolean isFailureCached(String sourceType, String sourceValue) {
+        if (this.negativeCacheTtl <= 0) {
+            return false;
+        }
+
+        String cacheKey = sourceType.toUpperCase() + SOURCE_KEY_DELIMITER + sourceValue;
+        Long failureTime = FAILED_SOURCES.get(cacheKey);
+        if (failureTime == null) {
+            return false;
+        }
+
+        if (System.nanoTime() - failureTime > TimeUnit.NANOSECONDS.convert(this.negativeCacheTtl, TimeUnit.MILLISECONDS)) {
+            FAILED_SOURCES.remove(cacheKey, failureTime);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks, is the failure caused by unavailable source (connection refused or timed out, host unknown or not
+     * reachable), so it doesn't depend on user and configuration of the lookup
+     *
+     * @param failure Failure of the lookup
+     * @return true if source is unavailable
+     */
+    private static boolean isUnavailable(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException || cause instanceof SocketTimeoutException
+                    || cause instanceof NoRouteToHostException || cause instanceof UnknownHostException) {
+                return true;
+            }
+        }
+        return false;
+    }
 
+    private void cacheFailure(String sourceType, String sourceValue) {
+        if (this.negativeCacheTtl > 0) {
+            FAILED_SOURCES.put(sourceType.toUpperCase() + SOURCE_KEY_DELIMITER + sourceValue, System.nanoTime());
+        }
+    }
+
+    /**
+     * Removes all sources unavailable from the JVM-wide negative cache
+     */
+    public static void clearFailedSources() {
+        FAILED_SOURCES.clear();
+    }
+
+    /**
+     * @return Lookup threads free, LOOKUP_THREADS if no lookup is running
+     */
+    static int getFreeLookupThreads() { // package-private for tests
+        return LOOKUP_PERMITS.availablePermits();
+    }
+
+    /**
+     * @return JVM-wide executor of parallel lookups, LOOKUP_THREADS daemon threads at most, idle threads are stopped,
+     * created on first use. Queue is bounded by LOOKUP_PERMITS
+     */
+    private static synchronized ExecutorService getLookupExecutor() {
+        if (lookupExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(LOOKUP_THREADS, LOOKUP_THREADS, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger threadNumber = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "hds-resource-lookup-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+            lookupExecutor = executor;
+        }
+        return lookupExecutor;
+    }
 }
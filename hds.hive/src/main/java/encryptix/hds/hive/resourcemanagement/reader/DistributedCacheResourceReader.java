@@ -0,0 +1,94 @@
+package encryptix.hds.hive.resourcemanagement.reader;
+
+import encryptix.hds.exception.ResourceNotFound;
+import encryptix.hds.exception.ResourceReadFailed;
+import encryptix.hds.resourcemanagement.reader.FileResourceReader;
+import encryptix.hds.resourcemanagement.reader.ResourceReader;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapreduce.MRJobConfig;
+
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Distributed cache resource reader, reads files localized by YARN (Hive 'ADD FILE', -files option), so resource is
+ * shipped once per node instead of being read from HDFS by every task.
+ * <p/>
+ * Resource is a file name. YARN links localized files into the task working directory, so file is looked for there
+ * first, then among local cache files of the Hive Job Configuration (MR, MRJobConfig.CACHE_LOCALFILES), if provided.
+ */
+public class DistributedCacheResourceReader extends ResourceReader {
+
+    private static final Log log = LogFactory.getLog(DistributedCacheResourceReader.class);
+
+    /**
+     * Hive Job Configuration, if arrived due to UDF initialization
+     */
+    protected Configuration hiveJobConfiguration = null;
+
+    /**
+     * Adds Hive Job Configuration
+     *
+     * @param hiveJobConfiguration Hive Job Configuration
+     */
+    public void addHiveJobConfiguration(JobConf hiveJobConfiguration) {
+        log.debug("HiveConfiguration was provided");
+        this.hiveJobConfiguration = hiveJobConfiguration;
+    }
+
+    /**
+     * Reads localized file
+     *
+     * @param resource File name, as added to the distributed cache
+     * @return Reader
+     * @throws ResourceNotFound If file is not localized
+     * @throws ResourceReadFailed If file can't be read
+     */
+    @Override
+    public Reader getResource(String resource) throws ResourceNotFound, ResourceReadFailed {
+        FileResourceReader fileResourceReader = new FileResourceReader();
+        fileResourceReader.conversionCharset = this.conversionCharset;
+
+        // link in the working directory, YARN and Tez
+        if (Files.isRegularFile(Paths.get(resource))) {
+            log.debug("Found " + resource + " in working directory");
+            return fileResourceReader.getResource(resource);
+        }
+
+        // local cache files of MR job
+        Path localFile = findLocalCacheFile(resource);
+        if (localFile != null) {
+            log.debug("Found " + resource + " in local cache files, path is " + localFile);
+            return fileResourceReader.getResource(localFile.toUri().getPath());
+        }
+
+        throw new ResourceNotFound("Resource '" + resource + "' wasn't found in distributed cache");
+    }
+
+    /**
+     * Looks for the local cache file with the name in the Hive Job Configuration
+     *
+     * @param name File name
+     * @return Local path or null, if not found
+     */
+    private Path findLocalCacheFile(String name) {
+        if (this.hiveJobConfiguration == null) {
+            return null;
+        }
+
+        String[] localCacheFiles = this.hiveJobConfiguration.getTrimmedStrings(MRJobConfig.CACHE_LOCALFILES);
+        for (String localCacheFile : localCacheFiles) {
+            Path localCacheFilePath = new Path(localCacheFile);
+            if (name.equals(localCacheFilePath.getName())) {
+                return localCacheFilePath;
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,149 @@
+package encryptix.hds.hive.resourcemanagement.reader;
+
+import encryptix.hds.exception.ResourceNotFound;
+import encryptix.hds.exception.ResourceReadFailed;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IOUtils;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JVM-wide cache of the small HDFS resources (keys, passwords), shared by all UDF instances.
+ * <p/>
+ * Every UDF initialization reads the key resource, with thousands of tasks starting at once NameNode gets open() call
+ * per task and initialization for the same tiny file. Cached content is validated by file status (modification time
+ * and length), so cached resource costs one getFileStatus() call instead of open() and read. With revalidation interval
+ * set, file is not checked at all while entry is younger than the interval.
+ * <p/>
+ * Entries are keyed by qualified path, so files of the different clusters never share entries. Files larger than
+ * MAX_CACHED_SIZE are read, but not cached.
+ * <p/>
+ * Threadsafe implementation
+ */
+public final class HDFSContentCache {
+
+    private static final Log log = LogFactory.getLog(HDFSContentCache.class);
+
+    /**
+     * Default revalidation interval, 5 minutes, container lifetime order: task JVM makes one NameNode call per resource
+     * and interval, whatever the number of UDF initializations. Replaced resource (key rotation) is picked up by the
+     * long-living JVMs (HiveServer2) within the interval, set it to 0 to check file status on every read
+     */
+    public static final long DEFAULT_REVALIDATION_INTERVAL_MILLISECONDS = 5 * 60 * 1000L;
+
+    /**
+     * Maximum size of the file cached, bytes
+     */
+    public static final long MAX_CACHED_SIZE = 1024 * 1024;
+
+    private static final HDFSContentCache INSTANCE = new HDFSContentCache();
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @return JVM-wide instance
+     */
+    public static HDFSContentCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Reads file content from cache, if cached content is still valid, or from the filesystem
+     *
+     * @param fileSystem Filesystem of the file
+     * @param path File path
+     * @param revalidationIntervalMilliseconds Interval the file is not re-checked after, milliseconds, 0 means file is checked on every read
+     * @return File content, must not be modified
+     * @throws ResourceNotFound If file doesn't exist
+     * @throws ResourceReadFailed If file can't be read
+     */
+    public byte[] read(FileSystem fileSystem, Path path, long revalidationIntervalMilliseconds) throws ResourceNotFound, ResourceReadFailed {
+        String cacheKey = fileSystem.makeQualified(path).toString();
+        Entry entry = this.entries.get(cacheKey);
+
+        long now = System.nanoTime();
+        if (entry != null && revalidationIntervalMilliseconds > 0 &&
+                now - entry.validationTime <= TimeUnit.NANOSECONDS.convert(revalidationIntervalMilliseconds, TimeUnit.MILLISECONDS)) {
+            return entry.content;
+        }
+
+        FileStatus fileStatus;
+        try {
+            fileStatus = fileSystem.getFileStatus(path);
+        } catch (FileNotFoundException e) {
+            this.entries.remove(cacheKey);
+            throw new ResourceNotFound("File " + path + " is not found", e);
+        } catch (IOException e) {
+            throw new ResourceReadFailed("Failed to get status of " + path, e);
+        }
+
+        if (entry != null && entry.modificationTime == fileStatus.getModificationTime() && entry.content.length == fileStatus.getLen()) {
+            this.entries.replace(cacheKey, entry, new Entry(entry.content, entry.modificationTime, now));
+            return entry.content;
+        }
+
+        if (fileStatus.getLen() > MAX_CACHED_SIZE) {
+            this.entries.remove(cacheKey);
+            return readContent(fileSystem, fileStatus);
+        }
+
+        log.debug("Reading " + cacheKey + " to content cache");
+        byte[] content = readContent(fileSystem, fileStatus);
+        this.entries.put(cacheKey, new Entry(content, fileStatus.getModificationTime(), now));
+        return content;
+    }
+
+    /**
+     * @return Number of files cached
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Removes all entries
+     */
+    public void clear() {
+        this.entries.clear();
+    }
+
+    private static byte[] readContent(FileSystem fileSystem, FileStatus fileStatus) throws ResourceReadFailed {
+        byte[] content = new byte[(int) fileStatus.getLen()];
+
+        try (FSDataInputStream dataInputStream = fileSystem.open(fileStatus.getPath())) {
+            IOUtils.readFully(dataInputStream, content, 0, content.length);
+            // file was appended after the status, read it again on the next call
+            if (dataInputStream.read() >= 0) {
+                throw new IOException("File " + fileStatus.getPath() + " is changed while reading");
+            }
+        } catch (IOException e) {
+            throw new ResourceReadFailed("Failed to read " + fileStatus.getPath() + " from HDFS", e);
+        }
+
+        return content;
+    }
+
+    /**
+     * Cached content with modification time of the file and time of the last check
+     */
+    private static final class Entry {
+        private final byte[] content;
+        private final long modificationTime;
+        private final long validationTime;
+
+        private Entry(byte[] content, long modificationTime, long validationTime) {
+            this.content = content;
+            this.modificationTime = modificationTime;
+            this.validationTime = validationTime;
+        }
+    }
+}
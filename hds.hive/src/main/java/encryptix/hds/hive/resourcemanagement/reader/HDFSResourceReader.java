@@ -9,7 +9,6 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hive.ql.session.SessionState;
@@ -42,6 +41,16 @@ public class HDFSResourceReader extends ResourceReader {
      */
     protected boolean fallbackReadHadoopFilesFromFS = false;
 
+    /**
+     * Interval the cached content is not re-checked after, milliseconds, see HDFSContentCache
+     */
+    protected long contentCacheRevalidationInterval = HDFSContentCache.DEFAULT_REVALIDATION_INTERVAL_MILLISECONDS;
+
+    /**
+     * Filesystem, opened once per reader. Not serialized, re-opened on the first read after deserialization
+     */
+    private transient FileSystem fileSystem = null;
+
     /**
      * Adds Hive Job Configuration
      *
@@ -50,6 +59,7 @@ public class HDFSResourceReader extends ResourceReader {
     public void addHiveJobConfiguration(JobConf hiveJobConfiguration) {
         log.debug("HiveConfiguration was provided");
         this.hiveJobConfiguration = hiveJobConfiguration;
+        this.fileSystem = null;
     }
 
     /**
@@ -60,6 +70,7 @@ public class HDFSResourceReader extends ResourceReader {
     public void addHadoopConfigurationSource(Configuration hadoopConfiguration) {
         log.debug("HadoopConfiguration was provided");
         this.hadoopConfiguration = hadoopConfiguration;
+        this.fileSystem = null;
     }
 
     /**
@@ -69,28 +80,54 @@ public class HDFSResourceReader extends ResourceReader {
      */
     public void setFallbackReadHadoopFilesFromFS(boolean fallbackReadHadoopFilesFromFS) {
         this.fallbackReadHadoopFilesFromFS = fallbackReadHadoopFilesFromFS;
+        this.fileSystem = null;
+    }
+
+    /**
+     * Sets revalidation interval of the cached content, see HDFSContentCache
+     *
+     * @param contentCacheRevalidationInterval Interval the cached content is not re-checked after, milliseconds, 0 means content is checked on every read
+     */
+    public void setContentCacheRevalidationInterval(long contentCacheRevalidationInterval) {
+        this.contentCacheRevalidationInterval = contentCacheRevalidationInterval;
     }
 
+    /**
+     * Reads resource through JVM-wide HDFSContentCache, so unchanged resource costs one file status call
+     */
     @Override
     public Reader getResource(String resourcePath) throws ResourceNotFound, InitializationFailed, ResourceReadFailed {
 
-        FileSystem fileSystem;
+        byte[] content;
         try {
-            fileSystem = FileSystem.get(findConfiguration());
-        } catch (IOException e) {
-            log.error("Can't init HDFS filesystem", e);
-            throw new InitializationFailed("Can't init HDFS filesystem", e);
+            content = HDFSContentCache.getInstance().read(getFileSystem(), new Path(resourcePath), this.contentCacheRevalidationInterval);
+        } catch (ResourceReadFailed e) {
+            log.error("Failed to read " + resourcePath + " from HDFS", e);
+            throw e;
+        }
+
+        return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(content), conversionCharset));
+    }
+
+    /**
+     * Opens HDFS filesystem with configuration found, see findConfiguration(). Filesystem is opened once per reader
+     * and configuration, Hadoop shares filesystem instances of the same URI and user
+     *
+     * @return Filesystem
+     * @throws InitializationFailed If filesystem can't be initialized
+     */
+    public FileSystem getFileSystem() throws InitializationFailed {
+        if (this.fileSystem != null) {
+            return this.fileSystem;
         }
 
-        FSDataInputStream dataInputStream;
         try {
-            dataInputStream = fileSystem.open(new Path(resourcePath));
+            this.fileSystem = FileSystem.get(findConfiguration());
+            return this.fileSystem;
         } catch (IOException e) {
-            log.error("Failed to read " + resourcePath + " from HDFS", e);
-            throw new ResourceReadFailed("Failed to read " + resourcePath + " from HDFS", e);
+            log.error("Can't init HDFS filesystem", e);
+            throw new InitializationFailed("Can't init HDFS filesystem", e);
         }
-
-        return new BufferedReader(new InputStreamReader(dataInputStream, conversionCharset));
     }
 
     /**
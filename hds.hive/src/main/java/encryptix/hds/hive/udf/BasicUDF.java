@@ -1,7 +1,11 @@
 package encryptix.hds.hive.udf;
 
+import encryptix.hds.exception.ResourceNotFound;
+import encryptix.hds.hive.exception.InternalInitException;
 import encryptix.hds.hive.property.MultisourcePropertyReader;
+import encryptix.hds.hive.resourcemanagement.FoundResource;
 import encryptix.hds.hive.resourcemanagement.ResourceFinder;
+import encryptix.hds.keymanagement.loader.ParsedKeyCache;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configurable;
@@ -9,6 +13,11 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hive.ql.exec.MapredContext;
 import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
 import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Security;
 
 public abstract class BasicUDF extends GenericUDF implements Configurable {
 
@@ -18,6 +27,28 @@ public abstract class BasicUDF extends GenericUDF implements Configurable {
 
     public static final String PROPERTY_AGGRESSIVE_SEARCH_MODE = "eah.resource.search.aggressive";
 
+    /**
+     * Interval of the JVM-wide HDFS resource cache, HDFS resources are not re-checked within it, milliseconds, 5 minutes
+     * by default, 0 means resources are checked on every initialization. See HDFSContentCache
+     */
+    public static final String PROPERTY_HDFS_CACHE_REVALIDATION_INTERVAL = "eah.resource.hdfs.cache.revalidation";
+
+    /**
+     * Timeout of the parallel resource lookup, milliseconds, all sources are probed concurrently if set. See ResourceFinder
+     */
+    public static final String PROPERTY_RESOURCE_LOOKUP_TIMEOUT = "eah.resource.lookup.timeout";
+
+    /**
+     * Period the unavailable resource source (timed out, connection failed) is skipped for, milliseconds. See ResourceFinder
+     */
+    public static final String PROPERTY_RESOURCE_NEGATIVE_CACHE_TTL = "eah.resource.lookup.negative.ttl";
+
+    /**
+     * Interval of the JVM-wide parsed key cache, key and password sources are not re-checked within it, milliseconds,
+     * 5 minutes by default, 0 means sources are checked on every initialization. See ParsedKeyCache
+     */
+    public static final String PROPERTY_KEY_CACHE_REVALIDATION_INTERVAL = "eah.key.cache.revalidation";
+
     /**
      * Invocation context
      */
@@ -32,6 +63,9 @@ public abstract class BasicUDF extends GenericUDF implements Configurable {
 
     private ResourceFinder resourceFinder;
 
+    // Parsed key cache revalidation interval, configured to survive serialization and clone
+    private String configurationKeyCacheRevalidationInterval;
+
     /**
      Save MR context, if arrived
       */
@@ -100,6 +134,127 @@ public abstract class BasicUDF extends GenericUDF implements Configurable {
             log.debug("Found aggressive resource search mode property, value is "+resourceAggressiveMode);
             resourceFinder.setAggressiveSearchMode(Boolean.parseBoolean(resourceAggressiveMode));
         }
+
+        Long hdfsCacheRevalidationInterval = findMillisecondsProperty(PROPERTY_HDFS_CACHE_REVALIDATION_INTERVAL);
+        if (hdfsCacheRevalidationInterval != null) {
+            resourceFinder.setHDFSCacheRevalidationInterval(hdfsCacheRevalidationInterval);
+        }
+
+        Long resourceLookupTimeout = findMillisecondsProperty(PROPERTY_RESOURCE_LOOKUP_TIMEOUT);
+        if (resourceLookupTimeout != null) {
+            resourceFinder.setLookupTimeout(resourceLookupTimeout);
+        }
+
+        Long resourceNegativeCacheTtl = findMillisecondsProperty(PROPERTY_RESOURCE_NEGATIVE_CACHE_TTL);
+        if (resourceNegativeCacheTtl != null) {
+            resourceFinder.setNegativeCacheTtl(resourceNegativeCacheTtl);
+        }
+
+        this.configurationKeyCacheRevalidationInterval = this.propertyReader.findProperty(PROPERTY_KEY_CACHE_REVALIDATION_INTERVAL,
+                String.valueOf(ParsedKeyCache.DEFAULT_REVALIDATION_INTERVAL_MILLISECONDS));
+    }
+
+    /**
+     * Reads milliseconds property of the resource finder
+     *
+     * @param name Property name
+     * @return Property value or null, if not found or wrong
+     */
+    private Long findMillisecondsProperty(String name) {
+        String value = this.propertyReader.findProperty(name);
+        if (value == null) {
+            return null;
+        }
+
+        log.debug("Found " + name + " property, value is " + value);
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            log.error("Wrong " + name + " property value " + value + ", default is used", e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads public key through the JVM-wide parsed key cache, so PEM is parsed once per JVM, not once per initialization
+     *
+     * @param publicKeySource Public key source, resource path format
+     * @return Public key
+     * @throws InternalInitException If key is not found or not parsed
+     */
+    protected PublicKey readPublicKey(String publicKeySource) throws InternalInitException {
+        long revalidationInterval = getKeyCacheRevalidationInterval();
+        try {
+            return getParsedKeyCache().readPublicKey(publicKeySource, createKeySource(publicKeySource), revalidationInterval);
+        } catch (ResourceNotFound e) {
+            throw new InternalInitException("Failed to find and open public key while initialization from " + publicKeySource + ". Check configuration.", e);
+        } catch (Exception e) {
+            throw new InternalInitException("Failed to read public key while initialization. Check configuration.", e);
+        }
+    }
+
+    /**
+     * Reads private key through the JVM-wide parsed key cache, with password, if configured. Password is read with the
+     * key and cached as fingerprint for the same revalidation interval, so key is never served from cache for other
+     * password
+     *
+     * @param privateKeySource Private key source, resource path format
+     * @param passwordSource Private key password source, resource path format, may be null
+     * @return Private key
+     * @throws InternalInitException If key is not found or not parsed
+     */
+    protected PrivateKey readPrivateKey(String privateKeySource, String passwordSource) throws InternalInitException {
+        long revalidationInterval = getKeyCacheRevalidationInterval();
+        try {
+            return getParsedKeyCache().readPrivateKey(privateKeySource, createKeySource(privateKeySource),
+                    passwordSource, createKeySource(passwordSource), revalidationInterval);
+        } catch (ResourceNotFound e) {
+            throw new InternalInitException("Failed to find and open private key while initialization from " + privateKeySource + ". Check configuration.", e);
+        } catch (Exception e) {
+            throw new InternalInitException("Failed to read private key while initialization. Check configuration.", e);
+        }
+    }
+
+    /**
+     * Creates key source of the parsed key cache, resolved by the resource finder of this UDF
+     *
+     * @param resources Resources to read, resource path format
+     * @return Key source
+     */
+    private ParsedKeyCache.KeySource createKeySource(final String resources) {
+        return new ParsedKeyCache.KeySource() {
+            @Override
+            public ParsedKeyCache.OpenedSource open() {
+                FoundResource foundResource = getResourceFinder().findResource(resources);
+                return foundResource == null ? null : new ParsedKeyCache.OpenedSource(foundResource.getSource(), foundResource.getReader());
+            }
+        };
+    }
+
+    /**
+     * @return JVM-wide parsed key cache
+     */
+    private static ParsedKeyCache getParsedKeyCache() {
+        // Load EC library
+        Security.addProvider(new BouncyCastleProvider());
+
+        return ParsedKeyCache.getInstance();
+    }
+
+    /**
+     * @return Parsed key cache revalidation interval of this UDF, milliseconds
+     * @throws InternalInitException If configuration is wrong
+     */
+    private long getKeyCacheRevalidationInterval() throws InternalInitException {
+        try {
+            long revalidationInterval = Long.parseLong(this.configurationKeyCacheRevalidationInterval);
+            if (revalidationInterval < 0) {
+                throw new InternalInitException("Parsed key cache revalidation interval must not be negative, but it is " + revalidationInterval + ". Check configuration.");
+            }
+            return revalidationInterval;
+        } catch (NumberFormatException e) {
+            throw new InternalInitException("Wrong parsed key cache revalidation interval " + this.configurationKeyCacheRevalidationInterval + ". Check configuration.", e);
+        }
     }
 
     @Override
@@ -125,6 +280,10 @@ public abstract class BasicUDF extends GenericUDF implements Configurable {
         super.copyToNewInstance(newInstance);
         BasicUDF other = (BasicUDF) newInstance;
         other.resourceFinder.setAggressiveSearchMode(this.resourceFinder.isAggressiveSearchMode());
+        other.resourceFinder.setHDFSCacheRevalidationInterval(this.resourceFinder.getHDFSCacheRevalidationInterval());
+        other.resourceFinder.setLookupTimeout(this.resourceFinder.getLookupTimeout());
+        other.resourceFinder.setNegativeCacheTtl(this.resourceFinder.getNegativeCacheTtl());
+        other.configurationKeyCacheRevalidationInterval = this.configurationKeyCacheRevalidationInterval;
     }
 
 
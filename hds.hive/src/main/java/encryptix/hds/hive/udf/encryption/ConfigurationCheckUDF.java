@@ -7,8 +7,10 @@ import encryptix.hds.encryption.Version;
 import encryptix.hds.exception.CryptoInitializationFailed;
 import encryptix.hds.hive.property.MultisourcePropertyReader;
 import encryptix.hds.hive.udf.BasicUDF;
+import encryptix.hds.hive.udf.encryption.deterministic.BasicSIVUDF;
 import encryptix.hds.hive.udf.encryption.hybrid.fast.EAHDecryptUDF;
 import encryptix.hds.hive.udf.encryption.hybrid.fast.EAHEncryptUDF;
+import encryptix.hds.hive.udf.hmac.BasicHmacUDF;
 import encryptix.hds.hive.udf.utils.TextReport;
 import encryptix.hds.keymanagement.loader.PrivateKeyLoader;
 import encryptix.hds.keymanagement.loader.PublicKeyLoader;
@@ -75,7 +77,20 @@ public class ConfigurationCheckUDF extends BasicUDF {
         textReport.addHeader("Properties optional");
         examineProperty(EAHDecryptUDF.PROPERTY_PRIVATE_KEY_PASSWORD_SOURCE);
         examineProperty(EAHDecryptUDF.PROPERTY_ON_WRONG_KEY_FALLBACK_ENABLED);
+        examineProperty(EAHEncryptUDF.PROPERTY_BLOCK_PREGENERATION_ENABLED);
+        examineProperty(EAHEncryptUDF.PROPERTY_FORMAT_VERSION);
+        examineProperty(EAHEncryptUDF.PROPERTY_BLOCK_DICTIONARY_TARGET);
+        examineProperty(EAHDecryptUDF.PROPERTY_BLOCK_DICTIONARY_SOURCE);
+        examineProperty(EAHDecryptUDF.PROPERTY_KEY_CACHE_POLICY);
+        examineProperty(EAHDecryptUDF.PROPERTY_KEY_CACHE_CAPACITY);
+        examineProperty(EAHDecryptUDF.PROPERTY_SHARED_KEY_CACHE_ENABLED);
+        examineProperty(EAHDecryptUDF.PROPERTY_SHARED_KEY_CACHE_CAPACITY);
+        examineProperty(EAHDecryptUDF.PROPERTY_SHARED_KEY_CACHE_TTL);
+        examineProperty(BasicHmacUDF.PROPERTY_KEY_SOURCE);
+        examineProperty(BasicSIVUDF.PROPERTY_KEY_SOURCE);
         examineProperty(BasicUDF.PROPERTY_AGGRESSIVE_SEARCH_MODE);
+        examineProperty(BasicUDF.PROPERTY_HDFS_CACHE_REVALIDATION_INTERVAL);
+        examineProperty(BasicUDF.PROPERTY_KEY_CACHE_REVALIDATION_INTERVAL);
 
         textReport.addHeader("Emulate initialization");
         // Load EC library
@@ -0,0 +1,213 @@
+package encryptix.hds.hive.udf.encryption.deterministic;
+
+import encryptix.hds.eah.OutputBuffer;
+import encryptix.hds.eah.siv.FormatHelper;
+import encryptix.hds.exception.CryptoInitializationFailed;
+import encryptix.hds.hive.exception.InternalInitException;
+import encryptix.hds.hive.udf.BasicUDF;
+import encryptix.hds.hive.udf.utils.UDFArgumentUtils;
+import encryptix.hds.keymanagement.loader.SecretKeyLoader;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentLengthException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.ConstantObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorConverter;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.WritableStringObjectInspector;
+import org.apache.hadoop.io.Text;
+
+import java.io.Reader;
+import java.security.GeneralSecurityException;
+
+/**
+ * Base UDF of deterministic EAH format, see EAHEncryptionCoreSIV.
+ * <p/>
+ * First argument is a value, optional second argument is a constant column name: key of the column is derived from
+ * the master key configured, so equal values of different columns have different ciphertexts. Both sides of a join
+ * must use the same column name.
+ * <p/>
+ * NOT threadsafe implementation, 'cause Hive uses every instance in a single thread
+ */
+public abstract class BasicSIVUDF extends BasicUDF {
+
+    private static final Log log = LogFactory.getLog(BasicSIVUDF.class);
+
+    /**
+     * Master key source, base64 key of at least 16 bytes, see SecretKeyLoader
+     */
+    public static final String PROPERTY_KEY_SOURCE = "eah.deterministic.key.source";
+
+    /*
+      Our UDF can be initialized few times on different stages (query compile, MR init), on later stages SessionState
+      may be unavailable. Also UDF can be serialized/de-serialized and cloned. So we need to take care about proper
+      initialization and save state.
+     */
+    // Do we need initial configuration
+    protected boolean configurationLookupRequired = true;
+
+    // Key resource configured to survive multiple inits, serialization and clone
+    protected String configurationKeySource = null;
+
+    protected transient PrimitiveObjectInspectorConverter.StringConverter stringConverter;
+    protected transient GenericUDFUtils.StringHelper stringHelper;
+
+    // Writable string input is processed from Text bytes to Text bytes, no java.lang.String on the way
+    private transient WritableStringObjectInspector textInspector;
+    private transient OutputBuffer outputBuffer;
+    private transient Text result;
+
+    protected BasicSIVUDF(String udfFunctionName) {
+        super(udfFunctionName);
+    }
+
+    @Override
+    public ObjectInspector initialize(ObjectInspector[] arguments) throws UDFArgumentException {
+        // check arguments count
+        if (arguments.length != 1 && arguments.length != 2) {
+            throw new UDFArgumentLengthException("Function requires one or two arguments, value and optional column name");
+        }
+
+        // check argument category and type
+        if (!UDFArgumentUtils.isPrimitiveCategory(arguments[0], PrimitiveObjectInspector.PrimitiveCategory.STRING)) {
+            throw new UDFArgumentTypeException(0, "Function takes only string as value for now");
+        }
+
+        String column = "";
+        if (arguments.length == 2) {
+            if (!(arguments[1] instanceof ConstantObjectInspector) ||
+                    !UDFArgumentUtils.isPrimitiveCategory(arguments[1], PrimitiveObjectInspector.PrimitiveCategory.STRING)) {
+                throw new UDFArgumentTypeException(1, "Column name must be a constant string");
+            }
+            Object constant = ((ConstantObjectInspector) arguments[1]).getWritableConstantValue();
+            column = constant == null ? "" : constant.toString();
+        }
+
+        // Load properties in a way compatible with serialization and multiple initializations while working on a cluster
+        readConfiguration();
+
+        // still here?! Well, let's init cryptographic core
+        try {
+            initCryptographicCore(FormatHelper.deriveColumnKey(readMasterKey(), column));
+        } catch (InternalInitException e) {
+            throw new UDFArgumentException(e);
+        } catch (GeneralSecurityException | CryptoInitializationFailed e) {
+            throw new UDFArgumentException(new InternalInitException("Crypto core initialization failed", e));
+        }
+
+        // init helpers
+        this.stringConverter = new PrimitiveObjectInspectorConverter.StringConverter((PrimitiveObjectInspector) arguments[0]);
+        this.stringHelper = new GenericUDFUtils.StringHelper(PrimitiveObjectInspector.PrimitiveCategory.STRING);
+
+        if (arguments[0] instanceof WritableStringObjectInspector) {
+            this.textInspector = (WritableStringObjectInspector) arguments[0];
+            this.outputBuffer = new OutputBuffer();
+            this.result = new Text();
+        } else {
+            this.textInspector = null;
+        }
+
+        // send return type
+        return PrimitiveObjectInspectorFactory.writableStringObjectInspector;
+    }
+
+    protected void readConfiguration() {
+        // if configuration already initialized - return
+        if (!this.configurationLookupRequired) {
+            log.debug("Configuration is already read, skipping");
+            return;
+        }
+
+        // read key source
+        if (this.configurationKeySource == null) {
+            this.configurationKeySource = getPropertyReader().findProperty(PROPERTY_KEY_SOURCE);
+        }
+
+        log.debug("Finished reading configuration, state is key: " + this.configurationKeySource);
+
+        // key is the only field, if it was read - we don't need to update configuration anymore
+        if (this.configurationKeySource != null) {
+            log.debug("Switching configurationLookupRequired off");
+            this.configurationLookupRequired = false;
+        }
+    }
+
+    /**
+     * Reads master key from the source configured
+     *
+     * @return Master key
+     * @throws InternalInitException If key is not found or not parsed
+     */
+    protected byte[] readMasterKey() throws InternalInitException {
+        if (this.configurationKeySource == null) {
+            throw new InternalInitException("Deterministic encryption key source is not configured, property " + PROPERTY_KEY_SOURCE + ". Check configuration.");
+        }
+
+        Reader keyResourceReader = getResourceFinder().getResource(this.configurationKeySource);
+        if (keyResourceReader == null) {
+            throw new InternalInitException("Failed to find and open deterministic encryption key while initialization from " + this.configurationKeySource + ". Check configuration.");
+        }
+
+        try {
+            return SecretKeyLoader.readSecretKey(keyResourceReader);
+        } catch (Exception e) {
+            throw new InternalInitException("Failed to read deterministic encryption key while initialization. Check configuration.", e);
+        }
+    }
+
+    /**
+     * @param columnKey AES-SIV key of the column
+     * @throws CryptoInitializationFailed If core initialization failed
+     */
+    protected abstract void initCryptographicCore(byte[] columnKey) throws CryptoInitializationFailed;
+
+    /**
+     * @param value Value
+     * @return Processed value
+     * @throws HiveException If processing failed
+     */
+    protected abstract String process(String value) throws HiveException;
+
+    /**
+     * Processes UTF-8 bytes, no java.lang.String on the way
+     *
+     * @param value UTF-8 bytes
+     * @param offset Value offset
+     * @param length Value length
+     * @param output Buffer to append processed value to
+     * @throws HiveException If processing failed
+     */
+    protected abstract void process(byte[] value, int offset, int length, OutputBuffer output) throws HiveException;
+
+    @Override
+    public Object evaluate(DeferredObject[] arguments) throws HiveException {
+
+        // null in - null out
+        if (arguments[0] == null || arguments[0].get() == null) {
+            return null;
+        }
+
+        if (this.textInspector != null) {
+            Text value = this.textInspector.getPrimitiveWritableObject(arguments[0].get());
+            this.outputBuffer.reset();
+            process(value.getBytes(), 0, value.getLength(), this.outputBuffer);
+            this.result.set(this.outputBuffer.getData(), 0, this.outputBuffer.getLength());
+            return this.result;
+        }
+
+        return this.stringHelper.setReturnValue(process((String) this.stringConverter.convert(arguments[0].get())));
+    }
+
+    @Override
+    public void copyToNewInstance(Object newInstance) throws UDFArgumentException {
+        super.copyToNewInstance(newInstance);
+        BasicSIVUDF other = (BasicSIVUDF) newInstance;
+        other.configurationLookupRequired = this.configurationLookupRequired;
+        other.configurationKeySource = this.configurationKeySource;
+    }
+}
@@ -0,0 +1,60 @@
+package encryptix.hds.hive.udf.encryption.deterministic;
+
+import encryptix.hds.eah.OutputBuffer;
+import encryptix.hds.eah.siv.EAHDecryptionCoreSIV;
+import encryptix.hds.exception.CryptoCoreFailed;
+import encryptix.hds.exception.CryptoInitializationFailed;
+import encryptix.hds.exception.InvalidInputFormat;
+import encryptix.hds.hive.exception.InternalException;
+import encryptix.hds.hive.exception.WrongDataFormatException;
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+
+/**
+ * This is UDF for decryption of deterministic EAH format, column name must be the same as on encryption
+ * <p/>
+ * NOT threadsafe implementation, 'cause Hive uses every instance in a single thread
+ *
+ * @see EAHDecryptionCoreSIV
+ * @see EAHDeterministicEncryptUDF
+ */
+@Description(
+        name = "eahd_decrypt",
+        value = "_FUNC_(x[, column]) - returns decrypted with the system's secret key of the column value",
+        extended = "Example:\n  > SELECT _FUNC_('eah:d1:Ps0E2J0F....', 'customer_id') FROM src LIMIT 1;\n  decrypted_value_string"
+)
+public class EAHDeterministicDecryptUDF extends BasicSIVUDF {
+
+    private transient EAHDecryptionCoreSIV decryptionCore;
+
+    public EAHDeterministicDecryptUDF() {
+        super("eahd_decrypt");
+    }
+
+    @Override
+    protected void initCryptographicCore(byte[] columnKey) throws CryptoInitializationFailed {
+        this.decryptionCore = new EAHDecryptionCoreSIV(columnKey);
+    }
+
+    @Override
+    protected String process(String value) throws HiveException {
+        try {
+            return this.decryptionCore.decrypt(value);
+        } catch (CryptoCoreFailed cryptoCoreFailed) {
+            throw new InternalException("Crypto core failed on decryption", cryptoCoreFailed);
+        } catch (InvalidInputFormat invalidInputFormat) {
+            throw new WrongDataFormatException(invalidInputFormat.getMessage());
+        }
+    }
+
+    @Override
+    protected void process(byte[] value, int offset, int length, OutputBuffer output) throws HiveException {
+        try {
+            this.decryptionCore.decrypt(value, offset, length, output);
+        } catch (CryptoCoreFailed cryptoCoreFailed) {
+            throw new InternalException("Crypto core failed on decryption", cryptoCoreFailed);
+        } catch (InvalidInputFormat invalidInputFormat) {
+            throw new WrongDataFormatException(invalidInputFormat.getMessage());
+        }
+    }
+}
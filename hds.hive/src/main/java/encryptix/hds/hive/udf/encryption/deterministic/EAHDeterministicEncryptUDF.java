@@ -0,0 +1,44 @@
+package encryptix.hds.hive.udf.encryption.deterministic;
+
+import encryptix.hds.eah.OutputBuffer;
+import encryptix.hds.eah.siv.EAHEncryptionCoreSIV;
+import encryptix.hds.exception.CryptoInitializationFailed;
+import org.apache.hadoop.hive.ql.exec.Description;
+
+/**
+ * This is UDF for deterministic encryption by AES-SIV, same value and column give the same ciphertext, so encrypted
+ * columns may be joined and grouped without decryption. Use it for join keys only, equal values are visible as equal.
+ * <p/>
+ * NOT threadsafe implementation, 'cause Hive uses every instance in a single thread
+ *
+ * @see EAHEncryptionCoreSIV
+ * @see EAHDeterministicDecryptUDF
+ */
+@Description(
+        name = "eahd_encrypt",
+        value = "_FUNC_(x[, column]) - returns deterministically encrypted with the system's secret key of the column value",
+        extended = "Example:\n  > SELECT _FUNC_('value', 'customer_id') FROM src LIMIT 1;\n  eah:d1:Ps0E2J0F...."
+)
+public class EAHDeterministicEncryptUDF extends BasicSIVUDF {
+
+    private transient EAHEncryptionCoreSIV encryptionCore;
+
+    public EAHDeterministicEncryptUDF() {
+        super("eahd_encrypt");
+    }
+
+    @Override
+    protected void initCryptographicCore(byte[] columnKey) throws CryptoInitializationFailed {
+        this.encryptionCore = new EAHEncryptionCoreSIV(columnKey);
+    }
+
+    @Override
+    protected String process(String value) {
+        return this.encryptionCore.encrypt(value);
+    }
+
+    @Override
+    protected void process(byte[] value, int offset, int length, OutputBuffer output) {
+        this.encryptionCore.encrypt(value, offset, length, output);
+    }
+}
@@ -0,0 +1,96 @@
+package encryptix.hds.hive.udf.encryption.hybrid.fast;
+
+import encryptix.hds.eah.EAHEncryptionCore;
+import encryptix.hds.eah.v3.AppendingBlockDictionary;
+import encryptix.hds.exception.InitializationFailed;
+import encryptix.hds.hive.exception.InternalInitException;
+import encryptix.hds.hive.resourcemanagement.BlockDictionaryStore;
+import encryptix.hds.hive.resourcemanagement.ResourceFinder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.security.PublicKey;
+
+/**
+ * Encryption core of EAHEncryptUDF and EAHRecryptUDF, created on the first value encrypted for format version 3.
+ * <p/>
+ * EAHv3 core registers its first block on creation, so block dictionary file would be created by every UDF
+ * initialization, including query compile and UDF copies, which never encrypt a row. Cores of other versions have
+ * nothing to write and are created at once, so configuration errors are reported on initialization.
+ * <p/>
+ * NOT threadsafe implementation, 'cause Hive uses every UDF instance in a single thread
+ */
+class DeferredEncryptionCore implements Closeable {
+
+    private final ResourceFinder resourceFinder;
+    private final PublicKey publicKey;
+    private final String formatVersion;
+    private final boolean blockPregenerationEnabled;
+    private final String blockDictionaryTarget;
+
+    private EAHEncryptionCore encryptionCore;
+    private AppendingBlockDictionary blockDictionary;
+
+    /**
+     * @param resourceFinder Resource finder with Hadoop configuration
+     * @param publicKey Public key for asymmetric part
+     * @param formatVersion Output format version, "1", "2" or "3"
+     * @param blockPregenerationEnabled Prepare the next block in background, V1 only
+     * @param blockDictionaryTarget HDFS directory of the block dictionary, V3 only
+     * @throws InternalInitException If configuration is wrong or core initialization failed
+     */
+    DeferredEncryptionCore(ResourceFinder resourceFinder, PublicKey publicKey, String formatVersion, boolean blockPregenerationEnabled, String blockDictionaryTarget) throws InternalInitException {
+        this.resourceFinder = resourceFinder;
+        this.publicKey = publicKey;
+        this.formatVersion = formatVersion;
+        this.blockPregenerationEnabled = blockPregenerationEnabled;
+        this.blockDictionaryTarget = blockDictionaryTarget;
+
+        if (!isBlockDictionaryRequired()) {
+            this.encryptionCore = EAHEncryptUDF.createEncryptionCore(publicKey, formatVersion, blockPregenerationEnabled, null);
+        } else if (blockDictionaryTarget == null) {
+            throw new InternalInitException("Block dictionary directory is required for output format version " + formatVersion + ". Check configuration.");
+        }
+    }
+
+    /**
+     * Returns encryption core, creates it with block dictionary file on the first call for format version 3
+     *
+     * @return Encryption core
+     * @throws InternalInitException If file can't be created or core initialization failed
+     */
+    EAHEncryptionCore get() throws InternalInitException {
+        if (this.encryptionCore == null) {
+            // file is kept if core initialization fails, so retry doesn't leave it open
+            if (this.blockDictionary == null) {
+                try {
+                    this.blockDictionary = new BlockDictionaryStore(this.resourceFinder.createHDFSResourceReader().getFileSystem(), this.blockDictionaryTarget).createDictionary();
+                } catch (InitializationFailed | IOException e) {
+                    throw new InternalInitException("Failed to create block dictionary file in " + this.blockDictionaryTarget + ". Check configuration.", e);
+                }
+            }
+
+            this.encryptionCore = EAHEncryptUDF.createEncryptionCore(this.publicKey, this.formatVersion, this.blockPregenerationEnabled, this.blockDictionary);
+        }
+
+        return this.encryptionCore;
+    }
+
+    private boolean isBlockDictionaryRequired() {
+        return String.valueOf(encryptix.hds.eah.v3.FormatHelper.VERSION).equals(this.formatVersion);
+    }
+
+    /**
+     * Closes block dictionary file, if created. Blocks registered later go to the new file
+     *
+     * @throws IOException If close failed
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.blockDictionary != null) {
+            this.blockDictionary.close();
+            this.blockDictionary = null;
+            this.encryptionCore = null;
+        }
+    }
+}
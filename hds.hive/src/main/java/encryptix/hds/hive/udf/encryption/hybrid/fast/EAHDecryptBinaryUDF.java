@@ -0,0 +1,128 @@
+package encryptix.hds.hive.udf.encryption.hybrid.fast;
+
+import encryptix.hds.eah.EAHBinaryDecryptionCore;
+import encryptix.hds.eah.OutputBuffer;
+import encryptix.hds.eah.v2.BinaryFormatHelper;
+import encryptix.hds.eah.v2.EAHBinaryDecryptionCoreV2;
+import encryptix.hds.exception.CryptoCoreFailed;
+import encryptix.hds.exception.CryptoInitializationFailed;
+import encryptix.hds.exception.InvalidInputFormat;
+import encryptix.hds.hive.exception.InternalException;
+import encryptix.hds.hive.exception.InternalInitException;
+import encryptix.hds.hive.exception.WrongDataFormatException;
+import encryptix.hds.hive.udf.utils.UDFArgumentUtils;
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentLengthException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.UDFType;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.BinaryObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.Text;
+
+import javax.crypto.BadPaddingException;
+import java.security.PrivateKey;
+
+/**
+ * Decryption UDF for BINARY columns encrypted by eah_encrypt_binary, same keys and configuration as eah_decrypt.
+ * <p/>
+ * Binary input can't be returned as a string, so with on wrong key fallback enabled NULL is returned for the values
+ * encrypted with other key.
+ * <p/>
+ * NOT threadsafe implementation, 'cause Hive uses every instance in a single thread
+ *
+ * @see EAHEncryptBinaryUDF
+ */
+@UDFType(deterministic = false)
+@Description(
+        name = "eah_decrypt_binary",
+        value = "_FUNC_(x) - returns decrypted with the system's private key binary value",
+        extended = "Example:\n  > SELECT _FUNC_(encrypted_email) FROM dst LIMIT 1;\n  decrypted_value_string"
+)
+public class EAHDecryptBinaryUDF extends EAHDecryptUDF {
+
+    private transient EAHBinaryDecryptionCore binaryDecryptionCore;
+    private transient BinaryObjectInspector binaryInspector;
+    private transient OutputBuffer textOutputBuffer;
+    private transient Text textResult;
+
+    public EAHDecryptBinaryUDF() {
+        super("eah_decrypt_binary");
+    }
+
+    @Override
+    public ObjectInspector initialize(ObjectInspector[] arguments) throws UDFArgumentException {
+        // check arguments count
+        if (arguments.length != 1) {
+            throw new UDFArgumentLengthException("Function requires one argument");
+        }
+
+        // check argument category and type
+        if (!UDFArgumentUtils.isPrimitiveCategory(arguments[0], PrimitiveObjectInspector.PrimitiveCategory.BINARY)) {
+            throw new UDFArgumentTypeException(0, "Function takes only binary as value for decryption");
+        }
+
+        // Load properties in a way compatible with serialization and multiple initializations while working on a cluster
+        readConfiguration();
+
+        try {
+            initCryptographicCore();
+        } catch (InternalInitException e) {
+            throw new UDFArgumentException(e);
+        }
+
+        this.binaryInspector = (BinaryObjectInspector) arguments[0];
+        this.textOutputBuffer = new OutputBuffer();
+        this.textResult = new Text();
+
+        // send return type
+        return PrimitiveObjectInspectorFactory.writableStringObjectInspector;
+    }
+
+    @Override
+    protected void initCryptographicCore() throws InternalInitException {
+        PrivateKey privateKey = readPrivateKey();
+
+        try {
+            this.binaryDecryptionCore = new EAHBinaryDecryptionCoreV2(privateKey, createAesKeyCache(privateKey));
+        } catch (CryptoInitializationFailed e) {
+            throw new InternalInitException("Crypto core initialization failed", e);
+        }
+    }
+
+    @Override
+    public Object evaluate(DeferredObject[] arguments) throws HiveException {
+
+        // null in - null out
+        if (arguments[0] == null || arguments[0].get() == null) {
+            return null;
+        }
+
+        BytesWritable value = this.binaryInspector.getPrimitiveWritableObject(arguments[0].get());
+
+        if (!BinaryFormatHelper.hasSignature(value.getBytes(), 0, value.getLength())) {
+            throw new WrongDataFormatException("Binary envelope version is not recognized, value of " + value.getLength() + " bytes");
+        }
+
+        this.textOutputBuffer.reset();
+        try {
+            this.binaryDecryptionCore.decrypt(value.getBytes(), 0, value.getLength(), this.textOutputBuffer);
+        } catch (CryptoInitializationFailed cryptoInitializationFailed) {
+            throw new InternalInitException("Crypto core failed on internal re-initialization", cryptoInitializationFailed);
+        } catch (CryptoCoreFailed cryptoCoreFailed) {
+            // if fallback enabled and wrong key - NULL, binary input is not a string
+            if (fallbackToInputOnWrongKey && cryptoCoreFailed.getCause() instanceof BadPaddingException) {
+                return null;
+            } else throw new InternalException("Crypto core failed on decryption", cryptoCoreFailed);
+        } catch (InvalidInputFormat invalidInputFormat) {
+            throw new WrongDataFormatException("Binary envelope is not parsed properly, value of " + value.getLength() + " bytes");
+        }
+
+        this.textResult.set(this.textOutputBuffer.getData(), 0, this.textOutputBuffer.getLength());
+        return this.textResult;
+    }
+}
@@ -1,18 +1,25 @@
 package encryptix.hds.hive.udf.encryption.hybrid.fast;
 
 import encryptix.hds.eah.EAHDecryptionCore;
+import encryptix.hds.eah.EAHMultiVersionDecryptionCore;
+import encryptix.hds.eah.OutputBuffer;
+import encryptix.hds.eah.cache.KeyCache;
+import encryptix.hds.eah.cache.KeyCachePolicy;
+import encryptix.hds.eah.cache.SharedKeyCache;
 import encryptix.hds.eah.v1.EAHDecryptionCoreV1;
-import encryptix.hds.eah.v1.FormatHelper;
+import encryptix.hds.eah.v3.InMemoryBlockDictionary;
 import encryptix.hds.exception.CryptoCoreFailed;
 import encryptix.hds.exception.CryptoInitializationFailed;
+import encryptix.hds.exception.InitializationFailed;
 import encryptix.hds.exception.InvalidInputFormat;
+import encryptix.hds.exception.InvalidResourceFormat;
 import encryptix.hds.hive.exception.InternalException;
 import encryptix.hds.hive.exception.InternalInitException;
 import encryptix.hds.hive.exception.WrongDataFormatException;
+import encryptix.hds.hive.resourcemanagement.BlockDictionaryStore;
+import encryptix.hds.hive.resourcemanagement.ResourceFinder;
 import encryptix.hds.hive.udf.BasicUDF;
 import encryptix.hds.hive.udf.utils.UDFArgumentUtils;
-import encryptix.hds.keymanagement.loader.PrivateKeyLoader;
-import encryptix.hds.resourcemanagement.loader.StringLoader;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hive.ql.exec.Description;
@@ -26,11 +33,12 @@ import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorConverter;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.WritableStringObjectInspector;
+import org.apache.hadoop.io.Text;
 
 import javax.crypto.BadPaddingException;
+import javax.crypto.SecretKey;
 import java.io.IOException;
-import java.io.Reader;
 import java.security.*;
 
 /**
@@ -59,6 +67,21 @@ public class EAHDecryptUDF extends BasicUDF {
 
     public static final String PROPERTY_PRIVATE_KEY_PASSWORD_SOURCE = "eah.decrypt.key.private.password.source";
 
+    public static final String PROPERTY_KEY_CACHE_POLICY = "eah.decrypt.cache.policy";
+
+    public static final String PROPERTY_KEY_CACHE_CAPACITY = "eah.decrypt.cache.capacity";
+
+    public static final String PROPERTY_SHARED_KEY_CACHE_ENABLED = "eah.decrypt.cache.shared";
+
+    public static final String PROPERTY_SHARED_KEY_CACHE_CAPACITY = "eah.decrypt.cache.shared.capacity";
+
+    public static final String PROPERTY_SHARED_KEY_CACHE_TTL = "eah.decrypt.cache.shared.ttl";
+
+    /**
+     * HDFS directory of the block dictionary, optional, required for format version 3 values only
+     */
+    public static final String PROPERTY_BLOCK_DICTIONARY_SOURCE = "eah.decrypt.dictionary.source";
+
     /*
       Our UDF can be initialized few times on different stages (query compile, MR init), on later stages SessionState
       may be unavailable. Also UDF can be serialized/de-serialized and cloned. So we need to take care about proper
@@ -77,15 +100,36 @@ public class EAHDecryptUDF extends BasicUDF {
     private String configurationFallbackToInputOnWrongKey = null;
 
     // Fallback mode, return input if key is wrong
-    private boolean fallbackToInputOnWrongKey = false;
+    protected boolean fallbackToInputOnWrongKey = false;
+
+    // Key cache policy and capacity, configured to survive multiple inits, serialization and clone
+    private String configurationKeyCachePolicy = null;
+    private String configurationKeyCacheCapacity = null;
+
+    // JVM-wide key cache mode, capacity and TTL, configured to survive multiple inits, serialization and clone
+    private String configurationSharedKeyCache = null;
+    private String configurationSharedKeyCacheCapacity = null;
+    private String configurationSharedKeyCacheTtl = null;
+
+    // Block dictionary directory of format version 3, configured to survive multiple inits, serialization and clone
+    private String configurationBlockDictionarySource = null;
 
 //    @edu.umd.cs.findbugs.annotations.SuppressFBWarnings(value = "UWF_FIELD_NOT_INITIALIZED_IN_CONSTRUCTOR", justification = "Initialized in UDF initialize()")
     private transient EAHDecryptionCore decryptionCore;
     private transient PrimitiveObjectInspectorConverter.StringConverter stringConverter;
     private transient GenericUDFUtils.StringHelper stringHelper;
 
+    // Writable string input is decrypted from Text bytes to Text bytes, no java.lang.String on the way
+    private transient WritableStringObjectInspector textInspector;
+    private transient OutputBuffer outputBuffer;
+    private transient Text result;
+
     public EAHDecryptUDF() {
-        super("eah_decrypt");
+        this("eah_decrypt");
+    }
+
+    protected EAHDecryptUDF(String udfFunctionName) {
+        super(udfFunctionName);
     }
 
     @SuppressWarnings("CPD-START")
@@ -116,11 +160,19 @@ public class EAHDecryptUDF extends BasicUDF {
         this.stringConverter = new PrimitiveObjectInspectorConverter.StringConverter((PrimitiveObjectInspector) arguments[0]);
         this.stringHelper = new GenericUDFUtils.StringHelper(PrimitiveObjectInspector.PrimitiveCategory.STRING);
 
+        if (arguments[0] instanceof WritableStringObjectInspector) {
+            this.textInspector = (WritableStringObjectInspector) arguments[0];
+            this.outputBuffer = new OutputBuffer();
+            this.result = new Text();
+        } else {
+            this.textInspector = null;
+        }
+
         // send return type
         return PrimitiveObjectInspectorFactory.writableStringObjectInspector;
     }
 
-    private void readConfiguration() {
+    protected void readConfiguration() {
 
         log.debug("Started reading configuration, initial state is " +
                 "key: " + this.configurationPrivateKeySource +
@@ -150,10 +202,27 @@ public class EAHDecryptUDF extends BasicUDF {
             this.fallbackToInputOnWrongKey = Boolean.parseBoolean(this.configurationFallbackToInputOnWrongKey);
         }
 
+        // read key caches
+        if (this.configurationSharedKeyCache == null) {
+            this.configurationKeyCachePolicy = getPropertyReader().findProperty(PROPERTY_KEY_CACHE_POLICY, EAHDecryptionCoreV1.AES_KEY_CACHE_POLICY.name());
+            this.configurationKeyCacheCapacity = getPropertyReader().findProperty(PROPERTY_KEY_CACHE_CAPACITY, String.valueOf(EAHDecryptionCoreV1.AES_KEY_CACHE_SIZE));
+            this.configurationSharedKeyCache = getPropertyReader().findProperty(PROPERTY_SHARED_KEY_CACHE_ENABLED, "false");
+            this.configurationSharedKeyCacheCapacity = getPropertyReader().findProperty(PROPERTY_SHARED_KEY_CACHE_CAPACITY, String.valueOf(SharedKeyCache.DEFAULT_CAPACITY));
+            this.configurationSharedKeyCacheTtl = getPropertyReader().findProperty(PROPERTY_SHARED_KEY_CACHE_TTL, String.valueOf(SharedKeyCache.DEFAULT_TTL_MILLISECONDS));
+        }
+
+        // read block dictionary directory
+        if (this.configurationBlockDictionarySource == null) {
+            this.configurationBlockDictionarySource = getPropertyReader().findProperty(PROPERTY_BLOCK_DICTIONARY_SOURCE);
+        }
+
         log.debug("Finished reading configuration, state is " +
                 "key: " + this.configurationPrivateKeySource +
                 ", password: " + this.configurationPrivateKeyPasswordSource +
-                ", fallback: " + this.configurationFallbackToInputOnWrongKey
+                ", fallback: " + this.configurationFallbackToInputOnWrongKey +
+                ", key cache: " + this.configurationKeyCachePolicy + "/" + this.configurationKeyCacheCapacity +
+                ", shared key cache: " + this.configurationSharedKeyCache +
+                ", block dictionary: " + this.configurationBlockDictionarySource
         );
 
         // private key is the only mandatory field, if it was read - we don't need to update configuration anymore
@@ -164,40 +233,91 @@ public class EAHDecryptUDF extends BasicUDF {
     }
 
     protected void initCryptographicCore() throws InternalInitException {
-        // Load EC library
-        Security.addProvider(new BouncyCastleProvider());
+        PrivateKey privateKey = readPrivateKey();
 
-        // Get key resource
-        Reader privateKeyResourceReader = getResourceFinder().getResource(this.configurationPrivateKeySource);
-        if (privateKeyResourceReader == null) {
-            throw new InternalInitException("Failed to find and open private key while initialization from " + this.configurationPrivateKeySource + ". Check configuration.");
+        // Init encryption core
+        try {
+            this.decryptionCore = new EAHMultiVersionDecryptionCore(privateKey, createAesKeyCache(privateKey),
+                    readBlockDictionary(getResourceFinder(), this.configurationBlockDictionarySource));
+        } catch (CryptoInitializationFailed e) {
+            throw new InternalInitException("Crypto core initialization failed", e);
         }
+    }
+
+    /**
+     * Reads private key from the source configured, with password, if configured
+     *
+     * @return Private key
+     * @throws InternalInitException If key is not found or not parsed
+     */
+    protected PrivateKey readPrivateKey() throws InternalInitException {
+        return readPrivateKey(this.configurationPrivateKeySource, this.configurationPrivateKeyPasswordSource);
+    }
 
-        // Get password resource
-        Reader keyPasswordResource = getResourceFinder().getResource(this.configurationPrivateKeyPasswordSource);
-        // Read password
-        String keyPassword = null;
-        if (keyPasswordResource != null) {
+    /**
+     * Creates L2 cache of AES keys with the cache configuration of this UDF
+     *
+     * @param privateKey Private key of the decryption core
+     * @return L2 cache of AES keys
+     * @throws InternalInitException If configuration is wrong
+     */
+    protected KeyCache<String, SecretKey> createAesKeyCache(PrivateKey privateKey) throws InternalInitException {
+        return createAesKeyCache(privateKey,
+                this.configurationKeyCachePolicy, this.configurationKeyCacheCapacity,
+                this.configurationSharedKeyCache, this.configurationSharedKeyCacheCapacity, this.configurationSharedKeyCacheTtl);
+    }
+
+    /**
+     * Creates L2 cache of AES keys for the decryption core: view of the JVM-wide key cache, if enabled, or core-owned
+     * cache with policy and capacity configured
+     *
+     * @param privateKey Private key of the decryption core
+     * @param policy Key cache policy, see KeyCachePolicy
+     * @param capacity Key cache capacity, entries
+     * @param shared Is shared key cache enabled, boolean
+     * @param sharedCapacity Shared key cache capacity, entries
+     * @param sharedTtl Shared key cache TTL, milliseconds
+     * @return L2 cache of AES keys
+     * @throws InternalInitException If configuration is wrong
+     */
+    static KeyCache<String, SecretKey> createAesKeyCache(PrivateKey privateKey, String policy, String capacity,
+                                                         String shared, String sharedCapacity, String sharedTtl) throws InternalInitException {
+        if (!Boolean.parseBoolean(shared)) {
             try {
-                keyPassword = StringLoader.readString(keyPasswordResource);
-            } catch (IOException e) {
-                throw new InternalInitException("Failed to read private key password while initialization from the source configured " + this.configurationPrivateKeyPasswordSource + ". Check configuration", e);
+                return KeyCachePolicy.fromName(policy).create(Integer.parseInt(capacity));
+            } catch (IllegalArgumentException e) {
+                throw new InternalInitException("Wrong key cache configuration, policy " + policy + ", capacity " + capacity + ". Check configuration.", e);
             }
         }
 
-        // Read Private Key
-        PrivateKey privateKey;
+        SharedKeyCache sharedKeyCache = SharedKeyCache.getInstance();
         try {
-            privateKey = PrivateKeyLoader.readPrivateKey(privateKeyResourceReader, keyPassword);
-        } catch (Exception e) {
-            throw new InternalInitException("Failed to read private key while initialization. Check configuration.", e);
+            sharedKeyCache.configure(Integer.parseInt(sharedCapacity), Long.parseLong(sharedTtl));
+            return sharedKeyCache.forKey(SharedKeyCache.fingerprint(privateKey));
+        } catch (IllegalArgumentException e) {
+            throw new InternalInitException("Wrong shared key cache configuration, capacity " + sharedCapacity + ", TTL " + sharedTtl + ". Check configuration.", e);
+        } catch (CryptoInitializationFailed e) {
+            throw new InternalInitException("Failed to create private key fingerprint for shared key cache", e);
+        }
+    }
+
+    /**
+     * Reads block dictionary of format version 3, if configured. Shared with EAHRecryptUDF
+     *
+     * @param resourceFinder Resource finder with Hadoop configuration
+     * @param blockDictionarySource HDFS directory of the block dictionary
+     * @return Block dictionary or null, if not configured
+     * @throws InternalInitException If dictionary can't be read
+     */
+    static InMemoryBlockDictionary readBlockDictionary(ResourceFinder resourceFinder, String blockDictionarySource) throws InternalInitException {
+        if (blockDictionarySource == null) {
+            return null;
         }
 
-        // Init encryption core
         try {
-            this.decryptionCore = new EAHDecryptionCoreV1(privateKey);
-        } catch (CryptoInitializationFailed e) {
-            throw new InternalInitException("Crypto core initialization failed", e);
+            return new BlockDictionaryStore(resourceFinder.createHDFSResourceReader().getFileSystem(), blockDictionarySource).readDictionary();
+        } catch (InitializationFailed | IOException | InvalidResourceFormat e) {
+            throw new InternalInitException("Failed to read block dictionary from " + blockDictionarySource + ". Check configuration.", e);
         }
     }
 
@@ -210,10 +330,14 @@ public class EAHDecryptUDF extends BasicUDF {
             return null;
         }
 
+        if (this.textInspector != null) {
+            return evaluate(this.textInspector.getPrimitiveWritableObject(arguments[0].get()));
+        }
+
         String value = (String) this.stringConverter.convert(arguments[0].get());
 
         // I'm pretty sure that direct string compare will be faster than parse version, decode and run switch for few versions
-        if (value.startsWith(FormatHelper.FORMAT_SIGNATURE)) {
+        if (EAHMultiVersionDecryptionCore.isSupported(value)) {
             try {
                 return this.stringHelper.setReturnValue(this.decryptionCore.decrypt(value));
             } catch (CryptoInitializationFailed cryptoInitializationFailed) {
@@ -231,6 +355,55 @@ public class EAHDecryptUDF extends BasicUDF {
             throw new WrongDataFormatException("Format signature is not recognized or version is not supported for value " + value);
     }
 
+    /**
+     * Decrypts writable string, bytes to bytes
+     *
+     * @param value Value to decrypt
+     * @return Decrypted value, Text is reused
+     * @throws HiveException
+     */
+    private Text evaluate(Text value) throws HiveException {
+        this.outputBuffer.reset();
+        if (decrypt(value.getBytes(), 0, value.getLength(), this.outputBuffer)) {
+            this.result.set(this.outputBuffer.getData(), 0, this.outputBuffer.getLength());
+        } else {
+            this.result.set(value);
+        }
+
+        return this.result;
+    }
+
+    /**
+     * Decrypts UTF-8 bytes, no java.lang.String on the way
+     *
+     * @param value UTF-8 bytes of EAH string
+     * @param offset Value offset
+     * @param length Value length
+     * @param output Buffer to append decrypted value to
+     * @return false if value is encrypted with other key and fallback to input is enabled, output must be discarded then
+     * @throws HiveException If format is wrong or decryption failed
+     */
+    private boolean decrypt(byte[] value, int offset, int length, OutputBuffer output) throws HiveException {
+
+        if (!EAHMultiVersionDecryptionCore.isSupported(value, offset, length)) {
+            throw new WrongDataFormatException("Format signature is not recognized or version is not supported for value " + new String(value, offset, length, encryptix.hds.eah.v1.FormatHelper.CONVERSION_CHARSET));
+        }
+
+        try {
+            this.decryptionCore.decrypt(value, offset, length, output);
+            return true;
+        } catch (CryptoInitializationFailed cryptoInitializationFailed) {
+            throw new InternalInitException("Crypto core failed on internal re-initialization", cryptoInitializationFailed);
+        } catch (CryptoCoreFailed cryptoCoreFailed) {
+            // if fallback enabled and wrong padding - fallback
+            if (fallbackToInputOnWrongKey && cryptoCoreFailed.getCause() instanceof BadPaddingException) {
+                return false;
+            } else throw new InternalException("Crypto core failed on decryption", cryptoCoreFailed);
+        } catch (InvalidInputFormat invalidInputFormat) {
+            throw new WrongDataFormatException("Format is not parsed properly for value " + new String(value, offset, length, encryptix.hds.eah.v1.FormatHelper.CONVERSION_CHARSET));
+        }
+    }
+
     @Override
     public void copyToNewInstance(Object newInstance) throws UDFArgumentException {
         super.copyToNewInstance(newInstance);
@@ -240,6 +413,12 @@ public class EAHDecryptUDF extends BasicUDF {
         other.configurationPrivateKeyPasswordSource = this.configurationPrivateKeyPasswordSource;
         other.configurationFallbackToInputOnWrongKey = this.configurationFallbackToInputOnWrongKey;
         other.fallbackToInputOnWrongKey = this.fallbackToInputOnWrongKey;
+        other.configurationKeyCachePolicy = this.configurationKeyCachePolicy;
+        other.configurationKeyCacheCapacity = this.configurationKeyCacheCapacity;
+        other.configurationSharedKeyCache = this.configurationSharedKeyCache;
+        other.configurationSharedKeyCacheCapacity = this.configurationSharedKeyCacheCapacity;
+        other.configurationSharedKeyCacheTtl = this.configurationSharedKeyCacheTtl;
+        other.configurationBlockDictionarySource = this.configurationBlockDictionarySource;
     }
 
 }
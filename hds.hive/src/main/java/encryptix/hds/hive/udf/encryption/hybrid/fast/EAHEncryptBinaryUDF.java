@@ -0,0 +1,111 @@
+package encryptix.hds.hive.udf.encryption.hybrid.fast;
+
+import encryptix.hds.eah.EAHBinaryEncryptionCore;
+import encryptix.hds.eah.OutputBuffer;
+import encryptix.hds.eah.v2.EAHBinaryEncryptionCoreV2;
+import encryptix.hds.exception.CryptoCoreFailed;
+import encryptix.hds.exception.CryptoInitializationFailed;
+import encryptix.hds.hive.exception.InternalException;
+import encryptix.hds.hive.exception.InternalInitException;
+import encryptix.hds.hive.udf.utils.UDFArgumentUtils;
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentLengthException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.UDFType;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorConverter;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.Text;
+
+/**
+ * Encryption UDF for BINARY columns: same keys and configuration as eah_encrypt, but the output is binary EAHv2
+ * envelope (see encryptix.hds.eah.v2.BinaryFormatHelper), without base64 and delimiters. Output format version
+ * property is ignored, binary envelope exists for V2 only.
+ * <p/>
+ * NOT threadsafe implementation, 'cause Hive uses every instance in a single thread
+ *
+ * @see EAHDecryptBinaryUDF
+ */
+@UDFType(deterministic = false)
+@Description(
+        name = "eah_encrypt_binary",
+        value = "_FUNC_(x) - returns encrypted with the system's public key value as binary",
+        extended = "Example:\n  > INSERT INTO TABLE dst SELECT _FUNC_(email) FROM src;"
+)
+public class EAHEncryptBinaryUDF extends EAHEncryptUDF {
+
+    private transient EAHBinaryEncryptionCore binaryEncryptionCore;
+    private transient PrimitiveObjectInspectorConverter.TextConverter textConverter;
+    private transient OutputBuffer binaryOutputBuffer;
+    private transient BytesWritable binaryResult;
+
+    public EAHEncryptBinaryUDF() {
+        super("eah_encrypt_binary");
+    }
+
+    @Override
+    public ObjectInspector initialize(ObjectInspector[] arguments) throws UDFArgumentException {
+        // check arguments count
+        if (arguments.length != 1) {
+            throw new UDFArgumentLengthException("Function requires one arguments, data to encrypt");
+        }
+
+        // check argument category and type
+        if (!UDFArgumentUtils.isPrimitiveCategory(arguments[0], PrimitiveObjectInspector.PrimitiveCategory.STRING)) {
+            throw new UDFArgumentTypeException(0, "Function takes only string as value for encryption for now");
+        }
+
+        // Load properties in a way compatible with serialization and multiple initializations while working on a cluster
+        readConfiguration();
+
+        try {
+            initCryptographicCore();
+        } catch (InternalInitException e) {
+            throw new UDFArgumentException(e);
+        }
+
+        // any string is encrypted from Text bytes, writable string is passed as is
+        this.textConverter = new PrimitiveObjectInspectorConverter.TextConverter((PrimitiveObjectInspector) arguments[0]);
+        this.binaryOutputBuffer = new OutputBuffer();
+        this.binaryResult = new BytesWritable();
+
+        // send return type
+        return PrimitiveObjectInspectorFactory.writableBinaryObjectInspector;
+    }
+
+    @Override
+    protected void initCryptographicCore() throws InternalInitException {
+        try {
+            this.binaryEncryptionCore = new EAHBinaryEncryptionCoreV2(readPublicKey());
+        } catch (CryptoInitializationFailed e) {
+            throw new InternalInitException("Crypto core initialization failed", e);
+        }
+    }
+
+    @Override
+    public Object evaluate(DeferredObject[] arguments) throws HiveException {
+
+        // null in - null out
+        if (arguments[0] == null || arguments[0].get() == null) {
+            return null;
+        }
+
+        Text value = this.textConverter.convert(arguments[0].get());
+
+        this.binaryOutputBuffer.reset();
+        try {
+            this.binaryEncryptionCore.encrypt(value.getBytes(), 0, value.getLength(), this.binaryOutputBuffer);
+        } catch (CryptoInitializationFailed cryptoInitializationFailed) {
+            throw new InternalInitException("Crypto core failed on internal re-initialization", cryptoInitializationFailed);
+        } catch (CryptoCoreFailed cryptoCoreFailed) {
+            throw new InternalException("Crypto core failed on encryption", cryptoCoreFailed);
+        }
+
+        this.binaryResult.set(this.binaryOutputBuffer.getData(), 0, this.binaryOutputBuffer.getLength());
+        return this.binaryResult;
+    }
+}
@@ -1,12 +1,15 @@
 package encryptix.hds.hive.udf.encryption.hybrid.fast;
 
 import encryptix.hds.eah.EAHEncryptionCore;
+import encryptix.hds.eah.OutputBuffer;
 import encryptix.hds.eah.v1.EAHEncryptionCoreV1;
+import encryptix.hds.eah.v2.EAHEncryptionCoreV2;
+import encryptix.hds.eah.v3.BlockDictionary;
+import encryptix.hds.eah.v3.EAHEncryptionCoreV3;
 import encryptix.hds.hive.exception.InternalException;
 import encryptix.hds.hive.exception.InternalInitException;
 import encryptix.hds.hive.udf.BasicUDF;
 import encryptix.hds.hive.udf.utils.UDFArgumentUtils;
-import encryptix.hds.keymanagement.loader.PublicKeyLoader;
 import encryptix.hds.exception.CryptoCoreFailed;
 import encryptix.hds.exception.CryptoInitializationFailed;
 import org.apache.commons.logging.Log;
@@ -22,9 +25,10 @@ import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorConverter;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.WritableStringObjectInspector;
+import org.apache.hadoop.io.Text;
 
-import java.io.Reader;
+import java.io.IOException;
 import java.security.*;
 
 @UDFType(deterministic = false)
@@ -39,6 +43,20 @@ public class EAHEncryptUDF extends BasicUDF {
 
     public static final String PROPERTY_PUBLIC_KEY_SOURCE = "eah.encrypt.key.public.source";
 
+    public static final String PROPERTY_BLOCK_PREGENERATION_ENABLED = "eah.encrypt.block.pregeneration";
+
+    public static final String PROPERTY_FORMAT_VERSION = "eah.encrypt.format.version";
+
+    /**
+     * HDFS directory of the block dictionary, required for format version 3. Every UDF instance writes its own file
+     */
+    public static final String PROPERTY_BLOCK_DICTIONARY_TARGET = "eah.encrypt.dictionary.target";
+
+    /**
+     * Output format version by default. V1 is kept as default for compatibility with readers of older versions
+     */
+    public static final String DEFAULT_FORMAT_VERSION = String.valueOf(encryptix.hds.eah.v1.FormatHelper.VERSION);
+
     /*
       Our UDF can be initialized few times on different stages (query compile, MR init), on later stages SessionState
       may be unavailable. Also UDF can be serialized/de-serialized and cloned. So we need to take care about proper
@@ -50,13 +68,32 @@ public class EAHEncryptUDF extends BasicUDF {
     // Key resource configured to survive multiple inits, serialization and clone
     protected String configurationPublicKeySource = null;
 
+    // Block pre-generation mode, configured to survive multiple inits, serialization and clone
+    private String configurationBlockPregeneration = null;
+    private boolean blockPregenerationEnabled = false;
+
+    // Output format version, configured to survive multiple inits, serialization and clone
+    private String configurationFormatVersion = null;
+
+    // Block dictionary directory of format version 3, configured to survive multiple inits, serialization and clone
+    private String configurationBlockDictionaryTarget = null;
+
 //    @edu.umd.cs.findbugs.annotations.SuppressFBWarnings(value = "UWF_FIELD_NOT_INITIALIZED_IN_CONSTRUCTOR", justification = "Initialized in UDF initialize()")
-    private transient EAHEncryptionCore encryptionCore;
+    private transient DeferredEncryptionCore encryptionCore;
     private transient PrimitiveObjectInspectorConverter.StringConverter stringConverter;
     private transient GenericUDFUtils.StringHelper stringHelper;
 
+    // Writable string input is encrypted from Text bytes to Text bytes, no java.lang.String on the way
+    private transient WritableStringObjectInspector textInspector;
+    private transient OutputBuffer outputBuffer;
+    private transient Text result;
+
     public EAHEncryptUDF() {
-        super("eah_encrypt");
+        this("eah_encrypt");
+    }
+
+    protected EAHEncryptUDF(String udfFunctionName) {
+        super(udfFunctionName);
     }
 
     // TODO: Support not only strings
@@ -88,11 +125,19 @@ public class EAHEncryptUDF extends BasicUDF {
         this.stringConverter = new PrimitiveObjectInspectorConverter.StringConverter((PrimitiveObjectInspector) arguments[0]);
         this.stringHelper = new GenericUDFUtils.StringHelper(PrimitiveObjectInspector.PrimitiveCategory.STRING);
 
+        if (arguments[0] instanceof WritableStringObjectInspector) {
+            this.textInspector = (WritableStringObjectInspector) arguments[0];
+            this.outputBuffer = new OutputBuffer();
+            this.result = new Text();
+        } else {
+            this.textInspector = null;
+        }
+
         // send return type
         return PrimitiveObjectInspectorFactory.writableStringObjectInspector;
     }
 
-    private void readConfiguration() {
+    protected void readConfiguration() {
 
         log.debug("Started reading configuration, initial state is key: " + this.configurationPublicKeySource);
 
@@ -107,7 +152,26 @@ public class EAHEncryptUDF extends BasicUDF {
             this.configurationPublicKeySource = getPropertyReader().findProperty(PROPERTY_PUBLIC_KEY_SOURCE);
         }
 
-        log.debug("Finished reading configuration, state is key: " + this.configurationPublicKeySource);
+        // read block pre-generation mode
+        if (this.configurationBlockPregeneration == null) {
+            this.configurationBlockPregeneration = getPropertyReader().findProperty(PROPERTY_BLOCK_PREGENERATION_ENABLED, "false");
+            this.blockPregenerationEnabled = Boolean.parseBoolean(this.configurationBlockPregeneration);
+        }
+
+        // read output format version
+        if (this.configurationFormatVersion == null) {
+            this.configurationFormatVersion = getPropertyReader().findProperty(PROPERTY_FORMAT_VERSION, DEFAULT_FORMAT_VERSION);
+        }
+
+        // read block dictionary directory
+        if (this.configurationBlockDictionaryTarget == null) {
+            this.configurationBlockDictionaryTarget = getPropertyReader().findProperty(PROPERTY_BLOCK_DICTIONARY_TARGET);
+        }
+
+        log.debug("Finished reading configuration, state is key: " + this.configurationPublicKeySource +
+                ", block pre-generation: " + this.configurationBlockPregeneration +
+                ", format version: " + this.configurationFormatVersion +
+                ", block dictionary: " + this.configurationBlockDictionaryTarget);
 
         // public key is the only mandatory field, if it was read - we don't need to update configuration anymore
         if (this.configurationPublicKeySource != null) {
@@ -123,29 +187,56 @@ public class EAHEncryptUDF extends BasicUDF {
      */
     // On this step we can use any conversions etc., cause this is one-time init.
     protected void initCryptographicCore() throws InternalInitException {
-        // Load EC library
-        Security.addProvider(new BouncyCastleProvider());
-
-        // Get public key resource
-        Reader publicKeyResourceReader = getResourceFinder().getResource(this.configurationPublicKeySource);
-        if (publicKeyResourceReader == null) {
-            throw new InternalInitException("Failed to find and open public key while initialization from " + this.configurationPublicKeySource + ". Check configuration.");
-        }
+        PublicKey publicKey = readPublicKey();
 
-        // Read Public Key
-        PublicKey publicKey;
+        // file of the previous initialization is complete, all blocks are synced
         try {
-            publicKey = PublicKeyLoader.readPublicKey(publicKeyResourceReader);
-        } catch (Exception e) {
-            throw new InternalInitException("Failed to read public key while initialization. Check configuration.", e);
+            close();
+        } catch (IOException e) {
+            throw new InternalInitException("Failed to close block dictionary file", e);
         }
 
-        // Init encryption core
+        // Init encryption core, V3 core and its block dictionary file are created on the first value encrypted
+        this.encryptionCore = new DeferredEncryptionCore(getResourceFinder(), publicKey, this.configurationFormatVersion, this.blockPregenerationEnabled, this.configurationBlockDictionaryTarget);
+    }
+
+    /**
+     * Reads public key from the source configured
+     *
+     * @return Public key
+     * @throws InternalInitException If key is not found or not parsed
+     */
+    protected PublicKey readPublicKey() throws InternalInitException {
+        return readPublicKey(this.configurationPublicKeySource);
+    }
+
+    /**
+     * Creates encryption core of the format version configured, see DeferredEncryptionCore
+     *
+     * @param publicKey Public key for asymmetric part
+     * @param formatVersion Output format version, "1", "2" or "3"
+     * @param blockPregenerationEnabled Prepare the next block in background, V1 only
+     * @param blockDictionary Block dictionary, V3 only
+     * @return Encryption core
+     * @throws InternalInitException If configuration is wrong or core initialization failed
+     */
+    static EAHEncryptionCore createEncryptionCore(PublicKey publicKey, String formatVersion, boolean blockPregenerationEnabled, BlockDictionary blockDictionary) throws InternalInitException {
         try {
-            this.encryptionCore = new EAHEncryptionCoreV1(publicKey);
+            if (String.valueOf(encryptix.hds.eah.v1.FormatHelper.VERSION).equals(formatVersion)) {
+                return new EAHEncryptionCoreV1(publicKey,
+                        EAHEncryptionCoreV1.DEFAULT_MIN_BLOCK_SIZE, EAHEncryptionCoreV1.DEFAULT_MAX_BLOCK_SIZE,
+                        EAHEncryptionCoreV1.DEFAULT_MAX_BLOCK_LIFETIME, EAHEncryptionCoreV1.DEFAULT_AES_KEY_SIZE,
+                        blockPregenerationEnabled);
+            } else if (String.valueOf(encryptix.hds.eah.v2.FormatHelper.VERSION).equals(formatVersion)) {
+                return new EAHEncryptionCoreV2(publicKey);
+            } else if (String.valueOf(encryptix.hds.eah.v3.FormatHelper.VERSION).equals(formatVersion) && blockDictionary != null) {
+                return new EAHEncryptionCoreV3(publicKey, blockDictionary);
+            }
         } catch (CryptoInitializationFailed e) {
             throw new InternalInitException("Crypto core initialization failed", e);
         }
+
+        throw new InternalInitException("Unsupported output format version " + formatVersion + ". Check configuration.");
     }
 
     @SuppressWarnings("CPD-END")
@@ -157,10 +248,17 @@ public class EAHEncryptUDF extends BasicUDF {
             return null;
         }
 
-        String value = (String) this.stringConverter.convert(arguments[0].get());
+        if (this.textInspector != null) {
+            Text value = this.textInspector.getPrimitiveWritableObject(arguments[0].get());
+            this.outputBuffer.reset();
+            encrypt(value.getBytes(), 0, value.getLength(), this.outputBuffer);
+            this.result.set(this.outputBuffer.getData(), 0, this.outputBuffer.getLength());
+            return this.result;
+        }
 
         try {
-            return this.stringHelper.setReturnValue(this.encryptionCore.encrypt(value));
+            String value = (String) this.stringConverter.convert(arguments[0].get());
+            return this.stringHelper.setReturnValue(this.encryptionCore.get().encrypt(value));
         } catch (CryptoInitializationFailed cryptoInitializationFailed) {
             throw new InternalInitException("Crypto core failed on internal re-initialization", cryptoInitializationFailed);
         } catch (CryptoCoreFailed cryptoCoreFailed) {
@@ -168,12 +266,42 @@ public class EAHEncryptUDF extends BasicUDF {
         }
     }
 
+    /**
+     * Encrypts UTF-8 bytes, no java.lang.String on the way
+     *
+     * @param value UTF-8 bytes
+     * @param offset Value offset
+     * @param length Value length
+     * @param output Buffer to append encrypted value to
+     * @throws HiveException If encryption failed
+     */
+    private void encrypt(byte[] value, int offset, int length, OutputBuffer output) throws HiveException {
+        try {
+            this.encryptionCore.get().encrypt(value, offset, length, output);
+        } catch (CryptoInitializationFailed cryptoInitializationFailed) {
+            throw new InternalInitException("Crypto core failed on internal re-initialization", cryptoInitializationFailed);
+        } catch (CryptoCoreFailed cryptoCoreFailed) {
+            throw new InternalException("Crypto core failed on encryption", cryptoCoreFailed);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.encryptionCore != null) {
+            this.encryptionCore.close();
+        }
+    }
+
     @Override
     public void copyToNewInstance(Object newInstance) throws UDFArgumentException {
         super.copyToNewInstance(newInstance);
         EAHEncryptUDF other = (EAHEncryptUDF) newInstance;
         other.configurationLookupRequired = this.configurationLookupRequired;
         other.configurationPublicKeySource = this.configurationPublicKeySource;
+        other.configurationBlockPregeneration = this.configurationBlockPregeneration;
+        other.blockPregenerationEnabled = this.blockPregenerationEnabled;
+        other.configurationFormatVersion = this.configurationFormatVersion;
+        other.configurationBlockDictionaryTarget = this.configurationBlockDictionaryTarget;
     }
 
 }
@@ -1,10 +1,10 @@
 package encryptix.hds.hive.udf.encryption.hybrid.fast;
 
 import encryptix.hds.eah.EAHDecryptionCore;
-import encryptix.hds.eah.EAHEncryptionCore;
+import encryptix.hds.eah.EAHMultiVersionDecryptionCore;
+import encryptix.hds.eah.OutputBuffer;
+import encryptix.hds.eah.cache.SharedKeyCache;
 import encryptix.hds.eah.v1.EAHDecryptionCoreV1;
-import encryptix.hds.eah.v1.EAHEncryptionCoreV1;
-import encryptix.hds.eah.v1.FormatHelper;
 import encryptix.hds.exception.CryptoCoreFailed;
 import encryptix.hds.exception.CryptoInitializationFailed;
 import encryptix.hds.exception.InvalidInputFormat;
@@ -13,9 +13,6 @@ import encryptix.hds.hive.exception.InternalInitException;
 import encryptix.hds.hive.exception.WrongDataFormatException;
 import encryptix.hds.hive.udf.BasicUDF;
 import encryptix.hds.hive.udf.utils.UDFArgumentUtils;
-import encryptix.hds.keymanagement.loader.PrivateKeyLoader;
-import encryptix.hds.keymanagement.loader.PublicKeyLoader;
-import encryptix.hds.resourcemanagement.loader.StringLoader;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hive.ql.exec.Description;
@@ -29,13 +26,12 @@ import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorConverter;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.WritableStringObjectInspector;
+import org.apache.hadoop.io.Text;
 
 import java.io.IOException;
-import java.io.Reader;
 import java.security.PrivateKey;
 import java.security.PublicKey;
-import java.security.Security;
 
 /**
  * This is UDF for encryption by hybrid schema with ECIES and AES. Re-crypts data
@@ -74,14 +70,39 @@ public class EAHRecryptUDF extends BasicUDF {
     // Key resource configured to survive multiple inits, serialization and clone
     protected String configurationPublicKeySource = null;
 
+    // Block pre-generation mode, configured to survive multiple inits, serialization and clone
+    private String configurationBlockPregeneration = null;
+    private boolean blockPregenerationEnabled = false;
+
+    // Output format version, configured to survive multiple inits, serialization and clone
+    private String configurationFormatVersion = null;
+
+    // Key cache policy and capacity, configured to survive multiple inits, serialization and clone
+    private String configurationKeyCachePolicy = null;
+    private String configurationKeyCacheCapacity = null;
+
+    // JVM-wide key cache mode, capacity and TTL, configured to survive multiple inits, serialization and clone
+    private String configurationSharedKeyCache = null;
+    private String configurationSharedKeyCacheCapacity = null;
+    private String configurationSharedKeyCacheTtl = null;
+
+    // Block dictionary directories of format version 3, configured to survive multiple inits, serialization and clone
+    private String configurationBlockDictionarySource = null;
+    private String configurationBlockDictionaryTarget = null;
 
 //    @edu.umd.cs.findbugs.annotations.SuppressFBWarnings(value = "UWF_FIELD_NOT_INITIALIZED_IN_CONSTRUCTOR", justification = "Initialized in UDF initialize()")
     private transient EAHDecryptionCore decryptionCore;
 //    @edu.umd.cs.findbugs.annotations.SuppressFBWarnings(value = "UWF_FIELD_NOT_INITIALIZED_IN_CONSTRUCTOR", justification = "Initialized in UDF initialize()")
-    private transient EAHEncryptionCore encryptionCore;
+    private transient DeferredEncryptionCore encryptionCore;
     private transient PrimitiveObjectInspectorConverter.StringConverter stringConverter;
     private transient GenericUDFUtils.StringHelper stringHelper;
 
+    // Writable string input is re-crypted from Text bytes to Text bytes, no java.lang.String on the way
+    private transient WritableStringObjectInspector textInspector;
+    private transient OutputBuffer decryptedBuffer;
+    private transient OutputBuffer outputBuffer;
+    private transient Text result;
+
     public EAHRecryptUDF() {
         super("eah_recrypt");
     }
@@ -114,6 +135,15 @@ public class EAHRecryptUDF extends BasicUDF {
         this.stringConverter = new PrimitiveObjectInspectorConverter.StringConverter((PrimitiveObjectInspector) arguments[0]);
         this.stringHelper = new GenericUDFUtils.StringHelper(PrimitiveObjectInspector.PrimitiveCategory.STRING);
 
+        if (arguments[0] instanceof WritableStringObjectInspector) {
+            this.textInspector = (WritableStringObjectInspector) arguments[0];
+            this.decryptedBuffer = new OutputBuffer();
+            this.outputBuffer = new OutputBuffer();
+            this.result = new Text();
+        } else {
+            this.textInspector = null;
+        }
+
         // send return type
         return PrimitiveObjectInspectorFactory.writableStringObjectInspector;
     }
@@ -147,10 +177,43 @@ public class EAHRecryptUDF extends BasicUDF {
             this.configurationPublicKeySource = getPropertyReader().findProperty(EAHEncryptUDF.PROPERTY_PUBLIC_KEY_SOURCE);
         }
 
+        // read block pre-generation mode
+        if (this.configurationBlockPregeneration == null) {
+            this.configurationBlockPregeneration = getPropertyReader().findProperty(EAHEncryptUDF.PROPERTY_BLOCK_PREGENERATION_ENABLED, "false");
+            this.blockPregenerationEnabled = Boolean.parseBoolean(this.configurationBlockPregeneration);
+        }
+
+        // read output format version
+        if (this.configurationFormatVersion == null) {
+            this.configurationFormatVersion = getPropertyReader().findProperty(EAHEncryptUDF.PROPERTY_FORMAT_VERSION, EAHEncryptUDF.DEFAULT_FORMAT_VERSION);
+        }
+
+        // read key caches
+        if (this.configurationSharedKeyCache == null) {
+            this.configurationKeyCachePolicy = getPropertyReader().findProperty(EAHDecryptUDF.PROPERTY_KEY_CACHE_POLICY, EAHDecryptionCoreV1.AES_KEY_CACHE_POLICY.name());
+            this.configurationKeyCacheCapacity = getPropertyReader().findProperty(EAHDecryptUDF.PROPERTY_KEY_CACHE_CAPACITY, String.valueOf(EAHDecryptionCoreV1.AES_KEY_CACHE_SIZE));
+            this.configurationSharedKeyCache = getPropertyReader().findProperty(EAHDecryptUDF.PROPERTY_SHARED_KEY_CACHE_ENABLED, "false");
+            this.configurationSharedKeyCacheCapacity = getPropertyReader().findProperty(EAHDecryptUDF.PROPERTY_SHARED_KEY_CACHE_CAPACITY, String.valueOf(SharedKeyCache.DEFAULT_CAPACITY));
+            this.configurationSharedKeyCacheTtl = getPropertyReader().findProperty(EAHDecryptUDF.PROPERTY_SHARED_KEY_CACHE_TTL, String.valueOf(SharedKeyCache.DEFAULT_TTL_MILLISECONDS));
+        }
+
+        // read block dictionary directories
+        if (this.configurationBlockDictionarySource == null) {
+            this.configurationBlockDictionarySource = getPropertyReader().findProperty(EAHDecryptUDF.PROPERTY_BLOCK_DICTIONARY_SOURCE);
+        }
+        if (this.configurationBlockDictionaryTarget == null) {
+            this.configurationBlockDictionaryTarget = getPropertyReader().findProperty(EAHEncryptUDF.PROPERTY_BLOCK_DICTIONARY_TARGET);
+        }
+
         log.debug("Finished reading configuration, state is " +
                 "private key: " + this.configurationPrivateKeySource +
                 ", password: " + this.configurationPrivateKeyPasswordSource +
-                ", public key: " + this.configurationPublicKeySource
+                ", public key: " + this.configurationPublicKeySource +
+                ", block pre-generation: " + this.configurationBlockPregeneration +
+                ", format version: " + this.configurationFormatVersion +
+                ", key cache: " + this.configurationKeyCachePolicy + "/" + this.configurationKeyCacheCapacity +
+                ", shared key cache: " + this.configurationSharedKeyCache +
+                ", block dictionary: " + this.configurationBlockDictionarySource + " -> " + this.configurationBlockDictionaryTarget
         );
 
         // private key is the only mandatory field, if it was read - we don't need to update configuration anymore
@@ -161,57 +224,28 @@ public class EAHRecryptUDF extends BasicUDF {
     }
 
     protected void initCryptographicCore() throws InternalInitException {
-        // Load EC library
-        Security.addProvider(new BouncyCastleProvider());
+        PrivateKey privateKey = readPrivateKey(this.configurationPrivateKeySource, this.configurationPrivateKeyPasswordSource);
+        PublicKey publicKey = readPublicKey(this.configurationPublicKeySource);
 
-        // Get private key resource
-        Reader privateKeyResourceReader = getResourceFinder().getResource(this.configurationPrivateKeySource);
-        if (privateKeyResourceReader == null) {
-            throw new InternalInitException("Failed to find and open private key while initialization from " + this.configurationPrivateKeySource + ". Check configuration.");
-        }
-
-        // Get private key password resource
-        Reader keyPasswordResource = getResourceFinder().getResource(this.configurationPrivateKeyPasswordSource);
-
-        // Get public key resource
-        Reader publicKeyResourceReader = getResourceFinder().getResource(this.configurationPublicKeySource);
-        if (publicKeyResourceReader == null) {
-            throw new InternalInitException("Failed to find and open public key while initialization from " + this.configurationPublicKeySource + ". Check configuration.");
-        }
-
-        // Read password
-        String keyPassword = null;
-        if (keyPasswordResource != null) {
-            try {
-                keyPassword = StringLoader.readString(keyPasswordResource);
-            } catch (IOException e) {
-                throw new InternalInitException("Failed to read private key password while initialization from the source configured " + this.configurationPrivateKeyPasswordSource + ". Check configuration", e);
-            }
-        }
-
-        // Read Private Key
-        PrivateKey privateKey;
+        // Init encryption core
         try {
-            privateKey = PrivateKeyLoader.readPrivateKey(privateKeyResourceReader, keyPassword);
-        } catch (Exception e) {
-            throw new InternalInitException("Failed to read private key while initialization. Check configuration.", e);
+            this.decryptionCore = new EAHMultiVersionDecryptionCore(privateKey, EAHDecryptUDF.createAesKeyCache(privateKey,
+                    this.configurationKeyCachePolicy, this.configurationKeyCacheCapacity,
+                    this.configurationSharedKeyCache, this.configurationSharedKeyCacheCapacity, this.configurationSharedKeyCacheTtl),
+                    EAHDecryptUDF.readBlockDictionary(getResourceFinder(), this.configurationBlockDictionarySource));
+        } catch (CryptoInitializationFailed e) {
+            throw new InternalInitException("Crypto core initialization failed", e);
         }
 
-        // Read Public Key
-        PublicKey publicKey;
+        // file of the previous initialization is complete, all blocks are synced
         try {
-            publicKey = PublicKeyLoader.readPublicKey(publicKeyResourceReader);
-        } catch (Exception e) {
-            throw new InternalInitException("Failed to read public key while initialization. Check configuration.", e);
+            close();
+        } catch (IOException e) {
+            throw new InternalInitException("Failed to close block dictionary file", e);
         }
 
-        // Init encryption core
-        try {
-            this.decryptionCore = new EAHDecryptionCoreV1(privateKey);
-            this.encryptionCore = new EAHEncryptionCoreV1(publicKey);
-        } catch (CryptoInitializationFailed e) {
-            throw new InternalInitException("Crypto core initialization failed", e);
-        }
+        // V3 core and its block dictionary file are created on the first value re-crypted
+        this.encryptionCore = new DeferredEncryptionCore(getResourceFinder(), publicKey, this.configurationFormatVersion, this.blockPregenerationEnabled, this.configurationBlockDictionaryTarget);
     }
 
     @SuppressWarnings("CPD-END")
@@ -223,11 +257,15 @@ public class EAHRecryptUDF extends BasicUDF {
             return null;
         }
 
+        if (this.textInspector != null) {
+            return evaluate(this.textInspector.getPrimitiveWritableObject(arguments[0].get()));
+        }
+
         String value = (String) this.stringConverter.convert(arguments[0].get());
 
         String decryptedValue;
         // I'm pretty sure that direct string compare will be faster than parse version, decode and run switch for few versions
-        if (value.startsWith(FormatHelper.FORMAT_SIGNATURE)) {
+        if (EAHMultiVersionDecryptionCore.isSupported(value)) {
             try {
                 decryptedValue = this.decryptionCore.decrypt(value);
             } catch (CryptoInitializationFailed cryptoInitializationFailed) {
@@ -240,7 +278,7 @@ public class EAHRecryptUDF extends BasicUDF {
             }
 
             try {
-                return this.stringHelper.setReturnValue(this.encryptionCore.encrypt(decryptedValue));
+                return this.stringHelper.setReturnValue(this.encryptionCore.get().encrypt(decryptedValue));
             } catch (CryptoInitializationFailed cryptoInitializationFailed) {
                 throw new InternalInitException("Encryption: Crypto core failed on internal re-initialization", cryptoInitializationFailed);
             } catch (CryptoCoreFailed cryptoCoreFailed) {
@@ -251,6 +289,62 @@ public class EAHRecryptUDF extends BasicUDF {
             throw new WrongDataFormatException("Format signature is not recognized or version is not supported for value " + value);
     }
 
+    /**
+     * Re-crypts writable string, bytes to bytes
+     *
+     * @param value Value to re-crypt
+     * @return Re-crypted value, Text is reused
+     * @throws HiveException
+     */
+    private Text evaluate(Text value) throws HiveException {
+        this.outputBuffer.reset();
+        recrypt(value.getBytes(), 0, value.getLength(), this.outputBuffer);
+        this.result.set(this.outputBuffer.getData(), 0, this.outputBuffer.getLength());
+        return this.result;
+    }
+
+    /**
+     * Re-crypts UTF-8 bytes, no java.lang.String on the way
+     *
+     * @param value UTF-8 bytes of EAH string
+     * @param offset Value offset
+     * @param length Value length
+     * @param output Buffer to append re-crypted value to
+     * @throws HiveException If format is wrong, decryption or encryption failed
+     */
+    private void recrypt(byte[] value, int offset, int length, OutputBuffer output) throws HiveException {
+
+        if (!EAHMultiVersionDecryptionCore.isSupported(value, offset, length)) {
+            throw new WrongDataFormatException("Format signature is not recognized or version is not supported for value " + new String(value, offset, length, encryptix.hds.eah.v1.FormatHelper.CONVERSION_CHARSET));
+        }
+
+        this.decryptedBuffer.reset();
+        try {
+            this.decryptionCore.decrypt(value, offset, length, this.decryptedBuffer);
+        } catch (CryptoInitializationFailed cryptoInitializationFailed) {
+            throw new InternalInitException("Decryption: Crypto core failed on internal re-initialization", cryptoInitializationFailed);
+        } catch (CryptoCoreFailed cryptoCoreFailed) {
+            throw new InternalException("Decryption: Crypto core failed on decryption", cryptoCoreFailed);
+        } catch (InvalidInputFormat invalidInputFormat) {
+            throw new WrongDataFormatException("Decryption: Format is not parsed properly for value " + new String(value, offset, length, encryptix.hds.eah.v1.FormatHelper.CONVERSION_CHARSET));
+        }
+
+        try {
+            this.encryptionCore.get().encrypt(this.decryptedBuffer.getData(), 0, this.decryptedBuffer.getLength(), output);
+        } catch (CryptoInitializationFailed cryptoInitializationFailed) {
+            throw new InternalInitException("Encryption: Crypto core failed on internal re-initialization", cryptoInitializationFailed);
+        } catch (CryptoCoreFailed cryptoCoreFailed) {
+            throw new InternalException("Encryption: Crypto core failed on encryption", cryptoCoreFailed);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.encryptionCore != null) {
+            this.encryptionCore.close();
+        }
+    }
+
     @Override
     public void copyToNewInstance(Object newInstance) throws UDFArgumentException {
         super.copyToNewInstance(newInstance);
@@ -259,6 +353,16 @@ public class EAHRecryptUDF extends BasicUDF {
         other.configurationPrivateKeySource = this.configurationPrivateKeySource;
         other.configurationPrivateKeyPasswordSource = this.configurationPrivateKeyPasswordSource;
         other.configurationPublicKeySource = this.configurationPublicKeySource;
+        other.configurationBlockPregeneration = this.configurationBlockPregeneration;
+        other.blockPregenerationEnabled = this.blockPregenerationEnabled;
+        other.configurationFormatVersion = this.configurationFormatVersion;
+        other.configurationKeyCachePolicy = this.configurationKeyCachePolicy;
+        other.configurationKeyCacheCapacity = this.configurationKeyCacheCapacity;
+        other.configurationSharedKeyCache = this.configurationSharedKeyCache;
+        other.configurationSharedKeyCacheCapacity = this.configurationSharedKeyCacheCapacity;
+        other.configurationSharedKeyCacheTtl = this.configurationSharedKeyCacheTtl;
+        other.configurationBlockDictionarySource = this.configurationBlockDictionarySource;
+        other.configurationBlockDictionaryTarget = this.configurationBlockDictionaryTarget;
     }
 
 }
@@ -5,6 +5,13 @@ import encryptix.hds.hash.DigestAlgorithm;
 import encryptix.hds.hash.StreamedDigestGenerator;
 import encryptix.hds.hive.exception.InternalInitException;
 import encryptix.hds.hive.udf.BasicTextUDF;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.WritableStringObjectInspector;
+import org.apache.hadoop.io.Text;
+
+import java.nio.charset.Charset;
 
 // TODO : Javadoc
 // TODO : VectorExpression
@@ -14,9 +21,19 @@ import encryptix.hds.hive.udf.BasicTextUDF;
  */
 public abstract class BasicHashUDF extends BasicTextUDF {
 
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
     protected transient StreamedDigestGenerator digestGenerator;
     protected transient boolean caseInsensitive = false;
 
+    // Lower-cases value for case insensitive hashing, null for case sensitive
+    private transient LowerCaseBuffer lowerCaseBuffer;
+    private transient byte[] hexBuffer;
+
+    // Writable string input is hashed from Text bytes to reused Text, no java.lang.String on the way
+    private transient WritableStringObjectInspector textInspector;
+    private transient Text result;
+
     public BasicHashUDF(String udfFunctionName, DigestAlgorithm digestAlgorithm) throws InternalInitException {
         super(udfFunctionName);
         try {
@@ -24,17 +41,70 @@ public abstract class BasicHashUDF extends BasicTextUDF {
         } catch (CryptoInitializationFailed e) {
             throw new InternalInitException("Failed to init digest algorith "+digestAlgorithm.getAlgorithmName(), e);
         }
+        this.hexBuffer = new byte[this.digestGenerator.getHexDigestLength()];
     }
 
     public BasicHashUDF(String udfFunctionName, DigestAlgorithm digestAlgorithm, boolean caseInsensitive) throws InternalInitException {
         this(udfFunctionName, digestAlgorithm);
         this.caseInsensitive = caseInsensitive;
+        this.lowerCaseBuffer = caseInsensitive ? new LowerCaseBuffer() : null;
+    }
+
+    @Override
+    public ObjectInspector initialize(ObjectInspector[] arguments) throws UDFArgumentException {
+        ObjectInspector resultInspector = super.initialize(arguments);
+
+        if (arguments[0] instanceof WritableStringObjectInspector) {
+            this.textInspector = (WritableStringObjectInspector) arguments[0];
+            this.result = new Text();
+        } else {
+            this.textInspector = null;
+        }
+
+        return resultInspector;
+    }
+
+    @Override
+    public Object evaluate(DeferredObject[] arguments) throws HiveException {
+        if (this.textInspector == null || arguments[0] == null || arguments[0].get() == null) {
+            return super.evaluate(arguments);
+        }
+
+        Text value = this.textInspector.getPrimitiveWritableObject(arguments[0].get());
+        int hexLength = hexDigest(this.digestGenerator, this.lowerCaseBuffer, value.getBytes(), 0, value.getLength(), this.hexBuffer);
+        this.result.set(this.hexBuffer, 0, hexLength);
+        return this.result;
     }
 
     @Override
-//    @edu.umd.cs.findbugs.annotations.SuppressFBWarnings(value = "DM_CONVERT_CASE", justification = "We are using default locale as well as Hive itself in Lower() function, see org.apache.hadoop.hive.ql.udf.generic.GenericUDFLower")
     protected String processValue(String value) {
+        if (this.lowerCaseBuffer == null) {
+            return digestGenerator.hexDigest(value);
+        }
+
         // Yes, we are using default locale as well as Hive itself in Lower() function, see org.apache.hadoop.hive.ql.udf.generic.GenericUDFLower
-        return digestGenerator.hexDigest(caseInsensitive ? value.toLowerCase(): value);
+        int length = this.lowerCaseBuffer.lowerCase(value);
+        int hexLength = this.digestGenerator.hexDigest(this.lowerCaseBuffer.getData(), 0, length, this.hexBuffer, 0);
+        return new String(this.hexBuffer, 0, hexLength, UTF8);
+    }
+
+    /**
+     * Hex digest of UTF-8 bytes, same as processValue() of the String
+     *
+     * @param digestGenerator Digest generator
+     * @param lowerCaseBuffer Lower-cases value before hashing, null for case sensitive hashing
+     * @param value UTF-8 bytes
+     * @param offset Value offset
+     * @param length Value length
+     * @param hexOutput Buffer to write hex digest to
+     * @return Hex digest length
+     */
+    static int hexDigest(StreamedDigestGenerator digestGenerator, LowerCaseBuffer lowerCaseBuffer, byte[] value, int offset, int length, byte[] hexOutput) {
+        if (lowerCaseBuffer != null) {
+            int lowerCaseLength = lowerCaseBuffer.lowerCase(value, offset, length);
+            return digestGenerator.hexDigest(lowerCaseBuffer.getData(), 0, lowerCaseLength, hexOutput, 0);
+        }
+
+        return digestGenerator.hexDigest(value, offset, length, hexOutput, 0);
     }
 }
@@ -0,0 +1,107 @@
+package encryptix.hds.hive.udf.hash;
+
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+/**
+ * Lower-cases value to UTF-8 bytes, exactly the same as String.toLowerCase() with default locale, as Hive's Lower()
+ * does.
+ * <p/>
+ * ASCII values, most of emails and identifiers, are lower-cased byte by byte to the scratch buffer reused from value
+ * to value, no String copy and no locale lookup. Full Unicode lower-casing is used on the first non-ASCII symbol only.
+ * Turkish and Azerbaijani locales lower-case ASCII 'I' to dotless i, so fast path is disabled for them. Locale is
+ * checked on creation.
+ * <p/>
+ * NOT threadsafe implementation, 'cause Hive uses every instance in a single thread
+ */
+final class LowerCaseBuffer {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int INITIAL_SIZE = 256;
+
+    private final boolean asciiFastPath;
+
+    private byte[] scratch = new byte[INITIAL_SIZE];
+
+    // Lower-cased value, scratch buffer or result of full Unicode lower-casing
+    private byte[] data;
+
+    LowerCaseBuffer() {
+        String language = Locale.getDefault().getLanguage();
+        this.asciiFastPath = !"tr".equals(language) && !"az".equals(language);
+    }
+
+    /**
+     * Lower-cases UTF-8 bytes
+     *
+     * @param value UTF-8 bytes
+     * @param offset Value offset
+     * @param length Value length
+     * @return Length of the lower-cased value, see getData()
+     */
+    int lowerCase(byte[] value, int offset, int length) {
+        if (this.asciiFastPath) {
+            byte[] buffer = ensureCapacity(length);
+
+            int i = 0;
+            while (i < length && value[offset + i] >= 0) {
+                byte b = value[offset + i];
+                buffer[i++] = b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+            }
+
+            if (i == length) {
+                this.data = buffer;
+                return length;
+            }
+        }
+
+        return setData(new String(value, offset, length, UTF8));
+    }
+
+    /**
+     * Lower-cases String to UTF-8 bytes
+     *
+     * @param value Value
+     * @return Length of the lower-cased value, see getData()
+     */
+    int lowerCase(String value) {
+        if (this.asciiFastPath) {
+            int length = value.length();
+            byte[] buffer = ensureCapacity(length);
+
+            int i = 0;
+            while (i < length && value.charAt(i) < 0x80) {
+                char c = value.charAt(i);
+                buffer[i++] = (byte) (c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c);
+            }
+
+            if (i == length) {
+                this.data = buffer;
+                return length;
+            }
+        }
+
+        return setData(value);
+    }
+
+    /**
+     * @return Lower-cased value of the last call, valid until the next call
+     */
+    byte[] getData() {
+        return this.data;
+    }
+
+    // default locale, same as String.toLowerCase() and Hive's Lower()
+    private int setData(String value) {
+        this.data = value.toLowerCase().getBytes(UTF8);
+        return this.data.length;
+    }
+
+    private byte[] ensureCapacity(int length) {
+        if (this.scratch.length < length) {
+            this.scratch = new byte[Math.max(length, this.scratch.length * 2)];
+        }
+        return this.scratch;
+    }
+}
@@ -0,0 +1,153 @@
+package encryptix.hds.hive.udf.hmac;
+
+import encryptix.hds.exception.CryptoInitializationFailed;
+import encryptix.hds.hash.HmacAlgorithm;
+import encryptix.hds.hash.StreamedHmacGenerator;
+import encryptix.hds.hive.exception.InternalInitException;
+import encryptix.hds.hive.udf.BasicTextUDF;
+import encryptix.hds.keymanagement.loader.SecretKeyLoader;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.WritableStringObjectInspector;
+import org.apache.hadoop.io.Text;
+
+import java.io.Reader;
+
+/**
+ * Base UDF of keyed hashing (HMAC). Secret key is loaded from the source configured, same way as EAH keys, see
+ * SecretKeyLoader for the key format. Mac is initialized with the key once per instance and reused from row to row.
+ * <p/>
+ * Unlike plain hash UDFs, low-entropy values (phone numbers, ids) can't be reversed by brute force without the key,
+ * so output is good for pseudonymized join keys. Same key gives the same output, so tables hashed with the same key
+ * may be joined.
+ * <p/>
+ * NOT threadsafe implementation, 'cause Hive uses every instance in a single thread
+ */
+public abstract class BasicHmacUDF extends BasicTextUDF {
+
+    private static final Log log = LogFactory.getLog(BasicHmacUDF.class);
+
+    public static final String PROPERTY_KEY_SOURCE = "hmac.key.source";
+
+    /*
+      Our UDF can be initialized few times on different stages (query compile, MR init), on later stages SessionState
+      may be unavailable. Also UDF can be serialized/de-serialized and cloned. So we need to take care about proper
+      initialization and save state.
+     */
+    // Do we need initial configuration
+    protected boolean configurationLookupRequired = true;
+
+    // Key resource configured to survive multiple inits, serialization and clone
+    protected String configurationKeySource = null;
+
+    protected transient HmacAlgorithm hmacAlgorithm;
+
+    private transient StreamedHmacGenerator hmacGenerator;
+    private transient byte[] hexBuffer;
+
+    // Writable string input is hashed from Text bytes to reused Text, no java.lang.String on the way
+    private transient WritableStringObjectInspector textInspector;
+    private transient Text result;
+
+    public BasicHmacUDF(String udfFunctionName, HmacAlgorithm hmacAlgorithm) {
+        super(udfFunctionName);
+        this.hmacAlgorithm = hmacAlgorithm;
+    }
+
+    @Override
+    public ObjectInspector initialize(ObjectInspector[] arguments) throws UDFArgumentException {
+        ObjectInspector resultInspector = super.initialize(arguments);
+
+        // Load properties in a way compatible with serialization and multiple initializations while working on a cluster
+        readConfiguration();
+
+        try {
+            this.hmacGenerator = new StreamedHmacGenerator(this.hmacAlgorithm, readKey());
+        } catch (InternalInitException e) {
+            throw new UDFArgumentException(e);
+        } catch (CryptoInitializationFailed e) {
+            throw new UDFArgumentException(new InternalInitException("Failed to init HMAC algorithm " + this.hmacAlgorithm.getAlgorithmName(), e));
+        }
+        this.hexBuffer = new byte[this.hmacGenerator.getHexMacLength()];
+
+        if (arguments[0] instanceof WritableStringObjectInspector) {
+            this.textInspector = (WritableStringObjectInspector) arguments[0];
+            this.result = new Text();
+        } else {
+            this.textInspector = null;
+        }
+
+        return resultInspector;
+    }
+
+    private void readConfiguration() {
+        // if configuration already initialized - return
+        if (!this.configurationLookupRequired) {
+            log.debug("Configuration is already read, skipping");
+            return;
+        }
+
+        // read key source
+        if (this.configurationKeySource == null) {
+            this.configurationKeySource = getPropertyReader().findProperty(PROPERTY_KEY_SOURCE);
+        }
+
+        log.debug("Finished reading configuration, state is key: " + this.configurationKeySource);
+
+        // key is the only field, if it was read - we don't need to update configuration anymore
+        if (this.configurationKeySource != null) {
+            log.debug("Switching configurationLookupRequired off");
+            this.configurationLookupRequired = false;
+        }
+    }
+
+    /**
+     * Reads secret key from the source configured
+     *
+     * @return Key bytes
+     * @throws InternalInitException If key is not found or not parsed
+     */
+    protected byte[] readKey() throws InternalInitException {
+        if (this.configurationKeySource == null) {
+            throw new InternalInitException("HMAC key source is not configured, property " + PROPERTY_KEY_SOURCE + ". Check configuration.");
+        }
+
+        Reader keyResourceReader = getResourceFinder().getResource(this.configurationKeySource);
+        if (keyResourceReader == null) {
+            throw new InternalInitException("Failed to find and open HMAC key while initialization from " + this.configurationKeySource + ". Check configuration.");
+        }
+
+        try {
+            return SecretKeyLoader.readSecretKey(keyResourceReader);
+        } catch (Exception e) {
+            throw new InternalInitException("Failed to read HMAC key while initialization. Check configuration.", e);
+        }
+    }
+
+    @Override
+    public Object evaluate(DeferredObject[] arguments) throws HiveException {
+        if (this.textInspector == null || arguments[0] == null || arguments[0].get() == null) {
+            return super.evaluate(arguments);
+        }
+
+        Text value = this.textInspector.getPrimitiveWritableObject(arguments[0].get());
+        this.result.set(this.hexBuffer, 0, this.hmacGenerator.hexMac(value.getBytes(), 0, value.getLength(), this.hexBuffer, 0));
+        return this.result;
+    }
+
+    @Override
+    protected String processValue(String value) {
+        return this.hmacGenerator.hexMac(value);
+    }
+
+    @Override
+    public void copyToNewInstance(Object newInstance) throws UDFArgumentException {
+        super.copyToNewInstance(newInstance);
+        BasicHmacUDF other = (BasicHmacUDF) newInstance;
+        other.configurationLookupRequired = this.configurationLookupRequired;
+        other.configurationKeySource = this.configurationKeySource;
+    }
+}
@@ -0,0 +1,19 @@
+package encryptix.hds.hive.udf.hmac;
+
+import encryptix.hds.hash.HmacAlgorithm;
+import org.apache.hadoop.hive.ql.exec.Description;
+
+/**
+ * HMAC-SHA256 of the value with the secret key configured, see BasicHmacUDF
+ */
+@Description(
+        name = "hmac_sha256",
+        value = "_FUNC_(x) - returns the HMAC-SHA256 of the value with the system's secret key",
+        extended = "Example:\n  > SELECT _FUNC_('value') FROM src LIMIT 1;\n  hex HMAC string"
+)
+public class HmacSHA256UDF extends BasicHmacUDF {
+
+    public HmacSHA256UDF() {
+        super("hmac_sha256", HmacAlgorithm.HMAC_SHA256);
+    }
+}
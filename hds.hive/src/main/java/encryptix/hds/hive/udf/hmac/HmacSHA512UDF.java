@@ -0,0 +1,19 @@
+package encryptix.hds.hive.udf.hmac;
+
+import encryptix.hds.hash.HmacAlgorithm;
+import org.apache.hadoop.hive.ql.exec.Description;
+
+/**
+ * HMAC-SHA512 of the value with the secret key configured, see BasicHmacUDF
+ */
+@Description(
+        name = "hmac_sha512",
+        value = "_FUNC_(x) - returns the HMAC-SHA512 of the value with the system's secret key",
+        extended = "Example:\n  > SELECT _FUNC_('value') FROM src LIMIT 1;\n  hex HMAC string"
+)
+public class HmacSHA512UDF extends BasicHmacUDF {
+
+    public HmacSHA512UDF() {
+        super("hmac_sha512", HmacAlgorithm.HMAC_SHA512);
+    }
+}
@@ -1,5 +1,6 @@
 package encryptix.hds.hive.property;
 
+import org.apache.hadoop.conf.Configuration;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -75,5 +76,44 @@ public class MultisourcePropertyReaderTest {
         Assert.assertNull(propertyReader.readClassPathPropertyFile("property1"));
     }
 
+    @Test
+    public void testFileParsedOnce() {
+        MultisourcePropertyReader propertyReader = new MultisourcePropertyReader();
+        MultisourcePropertyReader otherPropertyReader = new MultisourcePropertyReader();
+
+        Assert.assertTrue(propertyReader.addClasspathPropertyFileSource("test.properties"));
+        Assert.assertTrue(otherPropertyReader.addClasspathPropertyFileSource("test.properties"));
+        Assert.assertSame(propertyReader.classpathPropertyFileProperties, otherPropertyReader.classpathPropertyFileProperties);
+
+        // not found is remembered also
+        Assert.assertFalse(otherPropertyReader.addClasspathPropertyFileSource("nodfound.properties"));
+        Assert.assertFalse(otherPropertyReader.addClasspathPropertyFileSource("nodfound.properties"));
+        Assert.assertEquals("value1", otherPropertyReader.readClassPathPropertyFile("property1"));
+    }
 
+    @Test
+    public void testConfigurationSnapshot() {
+        Configuration configuration = new Configuration(false);
+        configuration.set("snapshot.base", "value");
+        configuration.set("snapshot.property", "${snapshot.base}1");
+
+        MultisourcePropertyReader propertyReader = new MultisourcePropertyReader();
+        propertyReader.addHadoopConfigurationSource(configuration);
+        Assert.assertEquals("value1", propertyReader.readHadoopConfigurationProperty("snapshot.property"));
+        Assert.assertNull(propertyReader.readHadoopConfigurationProperty("snapshot.missing"));
+
+        // resolved once per configuration instance, shared by readers
+        configuration.set("snapshot.property", "value2");
+        configuration.set("snapshot.missing", "value3");
+        MultisourcePropertyReader otherPropertyReader = new MultisourcePropertyReader();
+        otherPropertyReader.addHadoopConfigurationSource(configuration);
+        Assert.assertEquals("value1", otherPropertyReader.readHadoopConfigurationProperty("snapshot.property"));
+        Assert.assertNull(otherPropertyReader.readHadoopConfigurationProperty("snapshot.missing"));
+
+        // other configuration instance has own snapshot
+        Configuration otherConfiguration = new Configuration(configuration);
+        otherPropertyReader.addHadoopConfigurationSource(otherConfiguration);
+        Assert.assertEquals("value2", otherPropertyReader.readHadoopConfigurationProperty("snapshot.property"));
+        Assert.assertEquals("value3", otherPropertyReader.readHadoopConfigurationProperty("snapshot.missing"));
+    }
 }
@@ -0,0 +1,46 @@
+package encryptix.hds.hive.resourcemanagement;
+
+import encryptix.hds.eah.v3.AppendingBlockDictionary;
+import encryptix.hds.eah.v3.InMemoryBlockDictionary;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.RawLocalFileSystem;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+
+public class BlockDictionaryStoreTest {
+
+    /**
+     * Checksummed local file system buffers data till close, raw one is synced like HDFS
+     *
+     * @return New file system handle
+     */
+    private static FileSystem newFileSystem() throws IOException {
+        FileSystem fileSystem = new RawLocalFileSystem();
+        fileSystem.initialize(URI.create("file:///"), new Configuration());
+        return fileSystem;
+    }
+
+    @Test
+    public void syncedBeforeCloseTest() throws Exception {
+        String directory = Files.createTempDirectory(null).toString();
+
+        AppendingBlockDictionary blockDictionary = new BlockDictionaryStore(newFileSystem(), directory).createDictionary();
+        try {
+            blockDictionary.put("block1", "ecies1:salt1");
+            blockDictionary.put("block2", "ecies2:salt2");
+
+            // blocks are visible through other file system handle before close
+            InMemoryBlockDictionary readDictionary = new BlockDictionaryStore(newFileSystem(), directory).readDictionary();
+            Assert.assertEquals(2, readDictionary.size());
+            Assert.assertEquals("ecies1:salt1", readDictionary.get("block1"));
+            Assert.assertEquals("ecies2:salt2", readDictionary.get("block2"));
+        } finally {
+            blockDictionary.close();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package encryptix.hds.hive.resourcemanagement;
+
+import encryptix.hds.exception.InitializationFailed;
+import encryptix.hds.exception.ResourceNotFound;
+import encryptix.hds.exception.ResourceReadFailed;
+import encryptix.hds.resourcemanagement.loader.StringLoader;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.ConnectException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ResourceFinderTest {
+
+    private static final String KEY_RESOURCE = "eckeys/test/47ed2bea86e8f4f9232f0659c1542818_test_private_key_system_password.txt";
+
+    // released after each test, so lookup threads are free for the next one
+    private static CountDownLatch unblocked = new CountDownLatch(1);
+
+    /**
+     * Finder with "slow" source type, which blocks for a value milliseconds, "blocked" source type, which blocks till
+     * the test is over, "down" source type, which fails to connect, and counter of opens
+     */
+    static class TestResourceFinder extends ResourceFinder {
+        final AtomicInteger opened = new AtomicInteger();
+
+        @Override
+        protected Reader openResource(String sourceType, String sourceValue) throws ResourceNotFound, InitializationFailed, ResourceReadFailed {
+            this.opened.incrementAndGet();
+            if ("slow".equals(sourceType)) {
+                try {
+                    Thread.sleep(Long.parseLong(sourceValue));
+                } catch (InterruptedException e) {
+                    throw new ResourceReadFailed(e);
+                }
+                return super.openResource("text", "slow");
+            }
+            if ("blocked".equals(sourceType)) {
+                try {
+                    unblocked.await(60, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new ResourceReadFailed(e);
+                }
+                return super.openResource("text", "blocked");
+            }
+            if ("down".equals(sourceType)) {
+                throw new ResourceReadFailed("Source " + sourceValue + " is down", new ConnectException("Connection refused"));
+            }
+            return super.openResource(sourceType, sourceValue);
+        }
+    }
+
+    @After
+    public void clear() throws InterruptedException {
+        ResourceFinder.clearFailedSources();
+
+        unblocked.countDown();
+        for (int i = 0; i < 1000 && ResourceFinder.getFreeLookupThreads() < ResourceFinder.LOOKUP_THREADS; i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(ResourceFinder.LOOKUP_THREADS, ResourceFinder.getFreeLookupThreads());
+        unblocked = new CountDownLatch(1);
+    }
+
+    private static String read(Reader reader) throws IOException {
+        return reader == null ? null : StringLoader.readString(reader);
+    }
+
+    @Test
+    public void sequentialLookupTest() throws IOException {
+        ResourceFinder resourceFinder = new ResourceFinder();
+
+        Assert.assertEquals("testpwd", read(resourceFinder.getResource("file:not_found.txt, classpath:" + KEY_RESOURCE + ", text:other")));
+        Assert.assertEquals("first", read(resourceFinder.getResource("text:first, classpath:" + KEY_RESOURCE)));
+        Assert.assertNull(resourceFinder.getResource("classpath:not_found.txt, unknown:value"));
+
+        // source found is reported the same for all lists
+        Assert.assertEquals("CLASSPATH:" + KEY_RESOURCE, resourceFinder.findResource("file:not_found.txt, classpath:" + KEY_RESOURCE).getSource());
+        Assert.assertEquals("CLASSPATH:" + KEY_RESOURCE, resourceFinder.findResource("Classpath:" + KEY_RESOURCE + ", text:other").getSource());
+    }
+
+    @Test
+    public void parallelLookupTest() throws IOException {
+        ResourceFinder resourceFinder = new ResourceFinder();
+        resourceFinder.setLookupTimeout(10000);
+
+        // the highest-priority source found wins
+        Assert.assertEquals("testpwd", read(resourceFinder.getResource("file:not_found.txt, classpath:" + KEY_RESOURCE + ", text:other")));
+        Assert.assertEquals("first", read(resourceFinder.getResource("text:first, classpath:" + KEY_RESOURCE)));
+        Assert.assertNull(resourceFinder.getResource("classpath:not_found.txt, unknown:value"));
+
+        // source found is reported the same for all lists
+        Assert.assertEquals("CLASSPATH:" + KEY_RESOURCE, resourceFinder.findResource("file:not_found.txt, classpath:" + KEY_RESOURCE).getSource());
+        Assert.assertEquals("CLASSPATH:" + KEY_RESOURCE, resourceFinder.findResource("Classpath:" + KEY_RESOURCE + ", text:other").getSource());
+    }
+
+    @Test
+    public void parallelLookupTimeoutTest() throws IOException {
+        TestResourceFinder resourceFinder = new TestResourceFinder();
+        resourceFinder.setLookupTimeout(200);
+
+        // slow source within timeout is still preferred
+        Assert.assertEquals("slow", read(resourceFinder.getResource("slow:50, text:fallback")));
+
+        // slow source over timeout is skipped
+        long start = System.currentTimeMillis();
+        Assert.assertEquals("fallback", read(resourceFinder.getResource("blocked:source, text:fallback")));
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    @Test
+    public void fullLookupPoolTest() throws IOException {
+        TestResourceFinder resourceFinder = new TestResourceFinder();
+        resourceFinder.setLookupTimeout(100);
+        resourceFinder.setNegativeCacheTtl(60000);
+
+        // stuck sources hold all lookup threads
+        for (int i = 0; i < ResourceFinder.LOOKUP_THREADS; i++) {
+            Assert.assertEquals("fallback", read(resourceFinder.getResource("blocked:source" + i + ", text:fallback")));
+        }
+        Assert.assertEquals(0, ResourceFinder.getFreeLookupThreads());
+
+        // local sources are read on the caller thread, so they are still found
+        Assert.assertEquals("fallback", read(resourceFinder.getResource("text:fallback, blocked:other")));
+        Assert.assertEquals("testpwd", read(resourceFinder.getResource("file:not_found.txt, classpath:" + KEY_RESOURCE)));
+
+        // remote source is read on the caller thread also, lookup is sequential
+        Assert.assertEquals("slow", read(resourceFinder.getResource("slow:10, text:fallback")));
+        Assert.assertEquals("fallback", read(resourceFinder.getResource("down:server, text:fallback")));
+
+        // timed out source is cached as failed, local fallback is not
+        int opened = resourceFinder.opened.get();
+        Assert.assertEquals("fallback", read(resourceFinder.getResource("blocked:source0, text:fallback")));
+        Assert.assertEquals(opened + 1, resourceFinder.opened.get());
+    }
+
+    @Test
+    public void negativeCacheTest() throws IOException {
+        TestResourceFinder resourceFinder = new TestResourceFinder();
+        resourceFinder.setNegativeCacheTtl(60000);
+
+        Assert.assertEquals("fallback", read(resourceFinder.getResource("down:server, text:fallback")));
+        Assert.assertEquals(2, resourceFinder.opened.get());
+
+        // unavailable source is skipped by other finders also
+        TestResourceFinder otherResourceFinder = new TestResourceFinder();
+        otherResourceFinder.setNegativeCacheTtl(60000);
+        Assert.assertEquals("fallback", read(otherResourceFinder.getResource("down:server, text:fallback")));
+        Assert.assertEquals(1, otherResourceFinder.opened.get());
+
+        // finder with negative cache disabled ignores it
+        TestResourceFinder uncachedResourceFinder = new TestResourceFinder();
+        Assert.assertEquals("fallback", read(uncachedResourceFinder.getResource("down:server, text:fallback")));
+        Assert.assertEquals(2, uncachedResourceFinder.opened.get());
+    }
+
+    @Test
+    public void negativeCacheNotFoundTest() throws IOException {
+        TestResourceFinder resourceFinder = new TestResourceFinder();
+        resourceFinder.setNegativeCacheTtl(60000);
+
+        // resource not found depends on user and configuration of the lookup, so it's probed again
+        Assert.assertEquals("fallback", read(resourceFinder.getResource("classpath:not_found.txt, text:fallback")));
+        Assert.assertEquals("fallback", read(resourceFinder.getResource("classpath:not_found.txt, text:fallback")));
+        Assert.assertEquals(4, resourceFinder.opened.get());
+    }
+
+    @Test
+    public void parallelNegativeCacheTest() throws IOException {
+        TestResourceFinder resourceFinder = new TestResourceFinder();
+        resourceFinder.setLookupTimeout(100);
+        resourceFinder.setNegativeCacheTtl(60000);
+
+        Assert.assertEquals("fallback", read(resourceFinder.getResource("blocked:source, text:fallback")));
+
+        // timed out source is not probed again within TTL
+        long start = System.currentTimeMillis();
+        Assert.assertEquals("fallback", read(resourceFinder.getResource("blocked:source, text:fallback")));
+        Assert.assertEquals(3, resourceFinder.opened.get());
+        Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+    }
+}
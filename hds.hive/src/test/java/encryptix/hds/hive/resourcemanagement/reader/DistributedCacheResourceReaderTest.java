@@ -0,0 +1,52 @@
+package encryptix.hds.hive.resourcemanagement.reader;
+
+import encryptix.hds.exception.ResourceNotFound;
+import encryptix.hds.hive.resourcemanagement.ResourceFinder;
+import encryptix.hds.resourcemanagement.loader.StringLoader;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapreduce.MRJobConfig;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class DistributedCacheResourceReaderTest {
+
+    private Path createLocalizedFile(String name, String content) throws Exception {
+        Path file = Files.createTempDirectory(null).resolve(name);
+        Files.write(file, content.getBytes(StandardCharsets.ISO_8859_1));
+        return file;
+    }
+
+    @Test
+    public void localCacheFilesTest() throws Exception {
+        Path file = createLocalizedFile("distcache_test_key.txt", "content");
+
+        JobConf jobConf = new JobConf();
+        jobConf.set(MRJobConfig.CACHE_LOCALFILES, "file:" + file.getParent().resolve("other.txt") + ",file:" + file);
+
+        DistributedCacheResourceReader reader = new DistributedCacheResourceReader();
+        reader.addHiveJobConfiguration(jobConf);
+        Assert.assertEquals("content", StringLoader.readString(reader.getResource("distcache_test_key.txt")));
+
+        // same through resource finder
+        ResourceFinder resourceFinder = new ResourceFinder();
+        resourceFinder.addHiveJobConfiguration(jobConf);
+        Assert.assertEquals("content", StringLoader.readString(resourceFinder.getResource("distcache:distcache_test_key.txt")));
+    }
+
+    @Test(expected = ResourceNotFound.class)
+    public void notFoundTest() throws Exception {
+        new DistributedCacheResourceReader().getResource("distcache_not_found.txt");
+    }
+
+    @Test
+    public void fileSourceTest() throws Exception {
+        Path file = createLocalizedFile("file_test_key.txt", "content");
+
+        ResourceFinder resourceFinder = new ResourceFinder();
+        Assert.assertEquals("content", StringLoader.readString(resourceFinder.getResource("file:not_found.txt, file:" + file)));
+    }
+}
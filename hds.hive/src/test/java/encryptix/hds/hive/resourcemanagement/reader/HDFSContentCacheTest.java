@@ -0,0 +1,137 @@
+package encryptix.hds.hive.resourcemanagement.reader;
+
+import encryptix.hds.exception.ResourceNotFound;
+import encryptix.hds.hive.resourcemanagement.ResourceFinder;
+import encryptix.hds.resourcemanagement.loader.StringLoader;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class HDFSContentCacheTest {
+
+    /**
+     * Local file system counting status calls of the caller, local open() checks status on its own
+     */
+    private static class StatusCountingFileSystem extends RawLocalFileSystem {
+        private int statusCalls = 0;
+        private boolean opening = false;
+
+        @Override
+        public FileStatus getFileStatus(Path path) throws IOException {
+            if (!this.opening) {
+                this.statusCalls++;
+            }
+            return super.getFileStatus(path);
+        }
+
+        @Override
+        public FSDataInputStream open(Path path, int bufferSize) throws IOException {
+            this.opening = true;
+            try {
+                return super.open(path, bufferSize);
+            } finally {
+                this.opening = false;
+            }
+        }
+    }
+
+    private FileSystem fileSystem;
+
+    private Path file;
+
+    @Before
+    public void initialize() throws Exception {
+        this.fileSystem = FileSystem.getLocal(new Configuration());
+        this.file = new Path(Files.createTempDirectory(null).toString(), "key.txt");
+        HDFSContentCache.getInstance().clear();
+    }
+
+    private void write(String content, long modificationTime) throws Exception {
+        try (FSDataOutputStream outputStream = this.fileSystem.create(this.file, true)) {
+            outputStream.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        this.fileSystem.setTimes(this.file, modificationTime, -1);
+    }
+
+    private String read(long revalidationInterval) throws Exception {
+        return new String(HDFSContentCache.getInstance().read(this.fileSystem, this.file, revalidationInterval), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void validationTest() throws Exception {
+        write("first", 100000);
+        Assert.assertEquals("first", read(0));
+        Assert.assertEquals(1, HDFSContentCache.getInstance().size());
+
+        // same status - cached content
+        byte[] cached = HDFSContentCache.getInstance().read(this.fileSystem, this.file, 0);
+        Assert.assertSame(cached, HDFSContentCache.getInstance().read(this.fileSystem, this.file, 0));
+
+        // same length, other modification time
+        write("other", 200000);
+        Assert.assertEquals("other", read(0));
+
+        // same modification time, other length
+        write("changed", 200000);
+        Assert.assertEquals("changed", read(0));
+    }
+
+    @Test
+    public void revalidationIntervalTest() throws Exception {
+        write("first", 100000);
+        Assert.assertEquals("first", read(60000));
+
+        // file is not checked within interval
+        write("second", 200000);
+        Assert.assertEquals("first", read(60000));
+        Assert.assertEquals("second", read(0));
+    }
+
+    @Test
+    public void defaultRevalidationIntervalTest() throws Exception {
+        write("first", 100000);
+
+        StatusCountingFileSystem countingFileSystem = new StatusCountingFileSystem();
+        countingFileSystem.initialize(URI.create("file:///"), new Configuration());
+
+        // UDF initializations of the container within default interval cost one status call
+        for (int i = 0; i < 100; i++) {
+            byte[] content = HDFSContentCache.getInstance().read(countingFileSystem, this.file, HDFSContentCache.DEFAULT_REVALIDATION_INTERVAL_MILLISECONDS);
+            Assert.assertEquals("first", new String(content, StandardCharsets.UTF_8));
+        }
+        Assert.assertEquals(1, countingFileSystem.statusCalls);
+
+        Assert.assertTrue(HDFSContentCache.DEFAULT_REVALIDATION_INTERVAL_MILLISECONDS > 0);
+        Assert.assertEquals(HDFSContentCache.DEFAULT_REVALIDATION_INTERVAL_MILLISECONDS, new ResourceFinder().getHDFSCacheRevalidationInterval());
+    }
+
+    @Test(expected = ResourceNotFound.class)
+    public void notFoundTest() throws Exception {
+        HDFSContentCache.getInstance().read(this.fileSystem, new Path(this.file.getParent(), "not_found.txt"), 0);
+    }
+
+    @Test
+    public void readerTest() throws Exception {
+        write("content", 100000);
+
+        HDFSResourceReader hdfsResourceReader = new HDFSResourceReader();
+        hdfsResourceReader.addHadoopConfigurationSource(this.fileSystem.getConf());
+        String resourcePath = this.fileSystem.makeQualified(this.file).toString();
+
+        Assert.assertEquals("content", StringLoader.readString(hdfsResourceReader.getResource(resourcePath)));
+        Assert.assertEquals("content", StringLoader.readString(hdfsResourceReader.getResource(resourcePath)));
+        Assert.assertSame(hdfsResourceReader.getFileSystem(), hdfsResourceReader.getFileSystem());
+    }
+}
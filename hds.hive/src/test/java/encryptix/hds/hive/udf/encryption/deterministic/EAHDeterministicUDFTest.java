@@ -0,0 +1,107 @@
+package encryptix.hds.hive.udf.encryption.deterministic;
+
+import encryptix.hds.eah.siv.FormatHelper;
+import encryptix.hds.hive.exception.InternalException;
+import encryptix.hds.hive.exception.WrongDataFormatException;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.commons.lang3.RandomUtils;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Deterministic encryption UDFs with the test master key of hds.hive.udf.properties
+ */
+public class EAHDeterministicUDFTest {
+
+    static ObjectInspector column(String name) {
+        return PrimitiveObjectInspectorFactory.getPrimitiveWritableConstantObjectInspector(TypeInfoFactory.stringTypeInfo, new Text(name));
+    }
+
+    static String evaluate(GenericUDF udf, Object value) throws HiveException {
+        Object result = udf.evaluate(new GenericUDF.DeferredObject[]{new GenericUDF.DeferredJavaObject(value)});
+        return result == null ? null : result.toString();
+    }
+
+    @Test
+    public void happyPathTest() throws HiveException {
+        EAHDeterministicEncryptUDF javaEncryptUDF = new EAHDeterministicEncryptUDF();
+        javaEncryptUDF.initialize(new ObjectInspector[]{PrimitiveObjectInspectorFactory.javaStringObjectInspector, column("customer_id")});
+        EAHDeterministicEncryptUDF writableEncryptUDF = new EAHDeterministicEncryptUDF();
+        writableEncryptUDF.initialize(new ObjectInspector[]{PrimitiveObjectInspectorFactory.writableStringObjectInspector, column("customer_id")});
+        EAHDeterministicEncryptUDF otherColumnEncryptUDF = new EAHDeterministicEncryptUDF();
+        otherColumnEncryptUDF.initialize(new ObjectInspector[]{PrimitiveObjectInspectorFactory.javaStringObjectInspector, column("order_id")});
+
+        EAHDeterministicDecryptUDF javaDecryptUDF = new EAHDeterministicDecryptUDF();
+        javaDecryptUDF.initialize(new ObjectInspector[]{PrimitiveObjectInspectorFactory.javaStringObjectInspector, column("customer_id")});
+        EAHDeterministicDecryptUDF writableDecryptUDF = new EAHDeterministicDecryptUDF();
+        writableDecryptUDF.initialize(new ObjectInspector[]{PrimitiveObjectInspectorFactory.writableStringObjectInspector, column("customer_id")});
+
+        for (int i = 0; i < 1000; i++) {
+            String value = RandomStringUtils.random(RandomUtils.nextInt(0, 100));
+
+            String encrypted = evaluate(javaEncryptUDF, value);
+            Assert.assertTrue(encrypted.startsWith(FormatHelper.FORMAT_SIGNATURE));
+            Assert.assertEquals(encrypted, evaluate(writableEncryptUDF, new Text(value)));
+            Assert.assertNotEquals(encrypted, evaluate(otherColumnEncryptUDF, value));
+
+            Assert.assertEquals(value, evaluate(javaDecryptUDF, encrypted));
+            Assert.assertEquals(value, evaluate(writableDecryptUDF, new Text(encrypted)));
+        }
+
+        Assert.assertNull(evaluate(javaEncryptUDF, null));
+        Assert.assertNull(evaluate(writableDecryptUDF, null));
+    }
+
+    @Test
+    public void noColumnTest() throws HiveException {
+        EAHDeterministicEncryptUDF encryptUDF = new EAHDeterministicEncryptUDF();
+        encryptUDF.initialize(new ObjectInspector[]{PrimitiveObjectInspectorFactory.javaStringObjectInspector});
+        EAHDeterministicDecryptUDF decryptUDF = new EAHDeterministicDecryptUDF();
+        decryptUDF.initialize(new ObjectInspector[]{PrimitiveObjectInspectorFactory.javaStringObjectInspector});
+
+        Assert.assertEquals("value", evaluate(decryptUDF, evaluate(encryptUDF, "value")));
+    }
+
+    @Test(expected = InternalException.class)
+    public void wrongColumnTest() throws HiveException {
+        EAHDeterministicEncryptUDF encryptUDF = new EAHDeterministicEncryptUDF();
+        encryptUDF.initialize(new ObjectInspector[]{PrimitiveObjectInspectorFactory.javaStringObjectInspector, column("customer_id")});
+        EAHDeterministicDecryptUDF decryptUDF = new EAHDeterministicDecryptUDF();
+        decryptUDF.initialize(new ObjectInspector[]{PrimitiveObjectInspectorFactory.javaStringObjectInspector, column("order_id")});
+
+        evaluate(decryptUDF, evaluate(encryptUDF, "value"));
+    }
+
+    @Test(expected = WrongDataFormatException.class)
+    public void wrongFormatTest() throws HiveException {
+        EAHDeterministicDecryptUDF decryptUDF = new EAHDeterministicDecryptUDF();
+        decryptUDF.initialize(new ObjectInspector[]{PrimitiveObjectInspectorFactory.writableStringObjectInspector});
+
+        evaluate(decryptUDF, new Text("eah:1:not_deterministic"));
+    }
+
+    @Test(expected = UDFArgumentTypeException.class)
+    public void nonConstantColumnTest() throws UDFArgumentException {
+        new EAHDeterministicEncryptUDF().initialize(new ObjectInspector[]{PrimitiveObjectInspectorFactory.javaStringObjectInspector,
+                PrimitiveObjectInspectorFactory.javaStringObjectInspector});
+    }
+
+    @Test
+    public void copyToNewInstanceTest() throws UDFArgumentException {
+        EAHDeterministicEncryptUDF udf = new EAHDeterministicEncryptUDF();
+        udf.initialize(new ObjectInspector[]{PrimitiveObjectInspectorFactory.javaStringObjectInspector});
+
+        EAHDeterministicEncryptUDF copy = new EAHDeterministicEncryptUDF();
+        udf.copyToNewInstance(copy);
+        Assert.assertEquals(udf.configurationKeySource, copy.configurationKeySource);
+        Assert.assertFalse(copy.configurationLookupRequired);
+    }
+}
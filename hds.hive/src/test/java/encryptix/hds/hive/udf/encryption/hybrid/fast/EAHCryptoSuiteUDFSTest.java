@@ -1,6 +1,7 @@
 package encryptix.hds.hive.udf.encryption.hybrid.fast;
 
 import encryptix.hds.hive.exception.InternalInitException;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.commons.lang3.RandomUtils;
 import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
@@ -9,10 +10,15 @@ import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.WritableStringObjectInspector;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.Text;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -78,5 +84,140 @@ public class EAHCryptoSuiteUDFSTest {
         }
     }
 
+    @Test
+    public void writableStabilityTest() throws HiveException {
+        ObjectInspector[] writableInputObjectInspector = {PrimitiveObjectInspectorFactory.writableStringObjectInspector};
+
+        EAHEncryptUDF writableEncryptUDF = new EAHEncryptUDF();
+        EAHRecryptUDF writableRecryptUDF = new EAHRecryptUDF();
+        EAHDecryptUDF writableDecryptUDF = new EAHDecryptUDF();
+        writableEncryptUDF.initialize(writableInputObjectInspector);
+        writableRecryptUDF.initialize(writableInputObjectInspector);
+        writableDecryptUDF.initialize(writableInputObjectInspector);
+
+        for (int i = 0; i < 1000; i++) {
+            String testMessage = RandomStringUtils.random(RandomUtils.nextInt(1, 500));
+
+            Text encrypted = (Text) writableEncryptUDF.evaluate(new GenericUDF.DeferredObject[]{new GenericUDF.DeferredJavaObject(new Text(testMessage))});
+            Text recrypted = (Text) writableRecryptUDF.evaluate(new GenericUDF.DeferredObject[]{new GenericUDF.DeferredJavaObject(new Text(encrypted))});
+            Text decrypted = (Text) writableDecryptUDF.evaluate(new GenericUDF.DeferredObject[]{new GenericUDF.DeferredJavaObject(new Text(recrypted))});
+
+            Assert.assertEquals(new Text(testMessage), decrypted);
+            // writable and Java string inputs must be compatible
+            Assert.assertEquals(new Text(testMessage).toString(), decryptUdfEvaluate(encrypted.toString()));
+        }
+    }
+
+    @Test
+    public void mixedVersionsTest() throws HiveException {
+        EAHEncryptUDF encryptV2UDF = new EAHEncryptUDF();
+        EAHRecryptUDF recryptV2UDF = new EAHRecryptUDF();
+        System.setProperty(EAHEncryptUDF.PROPERTY_FORMAT_VERSION, "2");
+        try {
+            encryptV2UDF.initialize(inputObjectInspector);
+            recryptV2UDF.initialize(inputObjectInspector);
+        } finally {
+            System.clearProperty(EAHEncryptUDF.PROPERTY_FORMAT_VERSION);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            String testMessage = RandomStringUtils.randomAlphanumeric(RandomUtils.nextInt(1, 500));
+
+            String encryptedV1 = encryptUdfEvaluate(testMessage);
+            String encryptedV2 = encryptV2UDF.evaluate(new GenericUDF.DeferredObject[]{new GenericUDF.DeferredJavaObject(testMessage)}).toString();
+            String recryptedV2 = recryptV2UDF.evaluate(new GenericUDF.DeferredObject[]{new GenericUDF.DeferredJavaObject(encryptedV1)}).toString();
+
+            Assert.assertTrue(encryptedV1.startsWith("eah:1:"));
+            Assert.assertTrue(encryptedV2.startsWith("eah:2:"));
+            Assert.assertTrue(recryptedV2.startsWith("eah:2:"));
+
+            // same decryption UDF for all versions
+            Assert.assertEquals(testMessage, decryptUdfEvaluate(encryptedV1));
+            Assert.assertEquals(testMessage, decryptUdfEvaluate(encryptedV2));
+            Assert.assertEquals(testMessage, decryptUdfEvaluate(recryptedV2));
+        }
+    }
+
+    @Test
+    public void binaryEnvelopeTest() throws HiveException {
+        EAHEncryptBinaryUDF encryptBinaryUDF = new EAHEncryptBinaryUDF();
+        EAHDecryptBinaryUDF decryptBinaryUDF = new EAHDecryptBinaryUDF();
+        Assert.assertEquals(PrimitiveObjectInspectorFactory.writableBinaryObjectInspector, encryptBinaryUDF.initialize(inputObjectInspector));
+        decryptBinaryUDF.initialize(new ObjectInspector[]{PrimitiveObjectInspectorFactory.writableBinaryObjectInspector});
+
+        for (int i = 0; i < 1000; i++) {
+            String testMessage = RandomStringUtils.randomAlphanumeric(RandomUtils.nextInt(1, 500));
+
+            BytesWritable encrypted = (BytesWritable) encryptBinaryUDF.evaluate(new GenericUDF.DeferredObject[]{new GenericUDF.DeferredJavaObject(testMessage)});
+            Assert.assertTrue(encrypted.getLength() < encryptUdfEvaluate(testMessage).length());
+
+            Text decrypted = (Text) decryptBinaryUDF.evaluate(new GenericUDF.DeferredObject[]{new GenericUDF.DeferredJavaObject(new BytesWritable(encrypted.copyBytes()))});
+            Assert.assertEquals(testMessage, decrypted.toString());
+        }
+
+        Assert.assertNull(decryptBinaryUDF.evaluate(new GenericUDF.DeferredObject[]{new GenericUDF.DeferredJavaObject(null)}));
+    }
+
+    @Test(expected = UDFArgumentException.class)
+    public void binaryDecryptStringArgumentTest() throws HiveException {
+        new EAHDecryptBinaryUDF().initialize(inputObjectInspector);
+    }
+
+    @Test
+    public void blockDictionaryTest() throws HiveException, IOException {
+        File dictionaryDirectory = Files.createTempDirectory("eah-dictionary").toFile();
+        EAHEncryptUDF encryptV3UDF = new EAHEncryptUDF();
+        EAHDecryptUDF decryptV3UDF = new EAHDecryptUDF();
+        System.setProperty(EAHEncryptUDF.PROPERTY_FORMAT_VERSION, "3");
+        System.setProperty(EAHEncryptUDF.PROPERTY_BLOCK_DICTIONARY_TARGET, dictionaryDirectory.getPath());
+        System.setProperty(EAHDecryptUDF.PROPERTY_BLOCK_DICTIONARY_SOURCE, dictionaryDirectory.getPath());
+        try {
+            // initializations without rows (query compile, UDF copies) create no dictionary files
+            encryptV3UDF.initialize(inputObjectInspector);
+            encryptV3UDF.initialize(inputObjectInspector);
+            Assert.assertEquals(0, FileUtils.listFiles(dictionaryDirectory, new String[]{"ebd"}, false).size());
+
+            List<String> testMessages = new ArrayList<>();
+            List<String> encryptedMessages = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                testMessages.add(RandomStringUtils.randomAlphanumeric(RandomUtils.nextInt(1, 500)));
+                encryptedMessages.add(encryptV3UDF.evaluate(new GenericUDF.DeferredObject[]{new GenericUDF.DeferredJavaObject(testMessages.get(i))}).toString());
+                Assert.assertTrue(encryptedMessages.get(i).startsWith("eah:3:"));
+            }
+            encryptV3UDF.close();
+            Assert.assertEquals(1, FileUtils.listFiles(dictionaryDirectory, new String[]{"ebd"}, false).size());
+
+            // dictionary is read on initialization
+            decryptV3UDF.initialize(inputObjectInspector);
+            for (int i = 0; i < testMessages.size(); i++) {
+                Assert.assertEquals(testMessages.get(i), decryptV3UDF.evaluate(new GenericUDF.DeferredObject[]{new GenericUDF.DeferredJavaObject(encryptedMessages.get(i))}).toString());
+            }
+        } finally {
+            System.clearProperty(EAHEncryptUDF.PROPERTY_FORMAT_VERSION);
+            System.clearProperty(EAHEncryptUDF.PROPERTY_BLOCK_DICTIONARY_TARGET);
+            System.clearProperty(EAHDecryptUDF.PROPERTY_BLOCK_DICTIONARY_SOURCE);
+            FileUtils.deleteQuietly(dictionaryDirectory);
+        }
+    }
+
+    @Test(expected = UDFArgumentException.class)
+    public void blockDictionaryNotConfiguredTest() throws HiveException {
+        System.setProperty(EAHEncryptUDF.PROPERTY_FORMAT_VERSION, "3");
+        try {
+            new EAHEncryptUDF().initialize(inputObjectInspector);
+        } finally {
+            System.clearProperty(EAHEncryptUDF.PROPERTY_FORMAT_VERSION);
+        }
+    }
+
+    @Test(expected = UDFArgumentException.class)
+    public void unsupportedVersionTest() throws HiveException {
+        System.setProperty(EAHEncryptUDF.PROPERTY_FORMAT_VERSION, "9");
+        try {
+            new EAHEncryptUDF().initialize(inputObjectInspector);
+        } finally {
+            System.clearProperty(EAHEncryptUDF.PROPERTY_FORMAT_VERSION);
+        }
+    }
 
 }
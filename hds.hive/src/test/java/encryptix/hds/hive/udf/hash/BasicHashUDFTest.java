@@ -0,0 +1,61 @@
+package encryptix.hds.hive.udf.hash;
+
+import encryptix.hds.hive.exception.InternalInitException;
+import encryptix.hds.hive.udf.hash.caseinsensitive.SHA256HashCaseInsensitiveUDF;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.commons.lang3.RandomUtils;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Writable string input is hashed from Text bytes and must return exactly the same as Java string input
+ */
+public class BasicHashUDFTest {
+
+    static void assertWritableSameAsJava(BasicHashUDF javaUDF, BasicHashUDF writableUDF) throws HiveException {
+        javaUDF.initialize(new ObjectInspector[]{PrimitiveObjectInspectorFactory.javaStringObjectInspector});
+        writableUDF.initialize(new ObjectInspector[]{PrimitiveObjectInspectorFactory.writableStringObjectInspector});
+
+        Object previousResult = null;
+        for (int i = 0; i < 1000; i++) {
+            String value = i % 2 == 0 ? RandomStringUtils.randomAlphanumeric(RandomUtils.nextInt(0, 100)) : RandomStringUtils.random(RandomUtils.nextInt(0, 100));
+
+            Object expected = javaUDF.evaluate(new GenericUDF.DeferredObject[]{new GenericUDF.DeferredJavaObject(value)});
+            Object result = writableUDF.evaluate(new GenericUDF.DeferredObject[]{new GenericUDF.DeferredJavaObject(new Text(value))});
+            Assert.assertEquals(expected.toString(), result.toString());
+
+            // result is reused from row to row
+            if (previousResult != null) {
+                Assert.assertSame(previousResult, result);
+            }
+            previousResult = result;
+        }
+
+        Assert.assertNull(writableUDF.evaluate(new GenericUDF.DeferredObject[]{new GenericUDF.DeferredJavaObject(null)}));
+    }
+
+    @Test
+    public void caseSensitiveTest() throws HiveException {
+        assertWritableSameAsJava(new MD5HashUDF(), new MD5HashUDF());
+        assertWritableSameAsJava(new SHA512HashUDF(), new SHA512HashUDF());
+    }
+
+    @Test
+    public void caseInsensitiveTest() throws HiveException {
+        assertWritableSameAsJava(new SHA256HashCaseInsensitiveUDF(), new SHA256HashCaseInsensitiveUDF());
+    }
+
+    @Test
+    public void happyPathTest() throws InternalInitException, HiveException {
+        MD5HashUDF udf = new MD5HashUDF();
+        udf.initialize(new ObjectInspector[]{PrimitiveObjectInspectorFactory.writableStringObjectInspector});
+
+        Object result = udf.evaluate(new GenericUDF.DeferredObject[]{new GenericUDF.DeferredJavaObject(new Text("aaabbb"))});
+        Assert.assertEquals("6547436690a26a399603a7096e876a2d", result.toString());
+    }
+}
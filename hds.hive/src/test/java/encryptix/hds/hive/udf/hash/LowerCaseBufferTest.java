@@ -0,0 +1,67 @@
+package encryptix.hds.hive.udf.hash;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+/**
+ * Lower-cased bytes must be exactly the same as String.toLowerCase() with default locale
+ */
+public class LowerCaseBufferTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    static void assertSameAsToLowerCase(LowerCaseBuffer buffer, String value) {
+        byte[] expected = value.toLowerCase().getBytes(UTF8);
+
+        // bytes with offset
+        byte[] bytes = ("xx" + value).getBytes(UTF8);
+        int length = buffer.lowerCase(bytes, 2, bytes.length - 2);
+        Assert.assertEquals(value, new String(expected, UTF8), new String(buffer.getData(), 0, length, UTF8));
+
+        length = buffer.lowerCase(value);
+        Assert.assertEquals(value, new String(expected, UTF8), new String(buffer.getData(), 0, length, UTF8));
+    }
+
+    @Test
+    public void happyPathTest() {
+        LowerCaseBuffer buffer = new LowerCaseBuffer();
+
+        assertSameAsToLowerCase(buffer, "");
+        assertSameAsToLowerCase(buffer, "Name.Surname@Domain.COM");
+        assertSameAsToLowerCase(buffer, "@[]^_`{|}~AZaz09");
+        // non-ASCII, including lower-casing with length change
+        assertSameAsToLowerCase(buffer, "Name\u00c4@Domain.COM");
+        assertSameAsToLowerCase(buffer, "NAME\u0130NAME");
+        assertSameAsToLowerCase(buffer, "\u0418\u041c\u042f@DOMAIN");
+        // longer than initial buffer
+        assertSameAsToLowerCase(buffer, RandomStringUtils.randomAlphanumeric(1000));
+    }
+
+    @Test
+    public void randomTest() {
+        LowerCaseBuffer buffer = new LowerCaseBuffer();
+
+        for (int i = 0; i < 1000; i++) {
+            assertSameAsToLowerCase(buffer, i % 2 == 0 ? RandomStringUtils.randomAscii(RandomUtils.nextInt(0, 300)) : RandomStringUtils.random(RandomUtils.nextInt(0, 300)));
+        }
+    }
+
+    @Test
+    public void turkishLocaleTest() {
+        Locale defaultLocale = Locale.getDefault();
+        try {
+            Locale.setDefault(new Locale("tr", "TR"));
+            LowerCaseBuffer buffer = new LowerCaseBuffer();
+
+            // dotless i, not ASCII
+            assertSameAsToLowerCase(buffer, "TITLE");
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+}
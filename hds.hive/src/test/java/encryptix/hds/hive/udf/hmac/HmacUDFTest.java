@@ -0,0 +1,78 @@
+package encryptix.hds.hive.udf.hmac;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.commons.lang3.RandomUtils;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * HMAC UDFs with the test key of hds.hive.udf.properties
+ */
+public class HmacUDFTest {
+
+    static String evaluate(BasicHmacUDF udf, Object value) throws HiveException {
+        Object result = udf.evaluate(new GenericUDF.DeferredObject[]{new GenericUDF.DeferredJavaObject(value)});
+        return result == null ? null : result.toString();
+    }
+
+    /*
+      Expected MAC was generated with python hmac module and the test key
+     */
+    @Test
+    public void happyPathTest() throws HiveException {
+        BasicHmacUDF javaUDF = new HmacSHA256UDF();
+        javaUDF.initialize(new ObjectInspector[]{PrimitiveObjectInspectorFactory.javaStringObjectInspector});
+        BasicHmacUDF writableUDF = new HmacSHA256UDF();
+        writableUDF.initialize(new ObjectInspector[]{PrimitiveObjectInspectorFactory.writableStringObjectInspector});
+
+        Assert.assertEquals("4907f3e99ba86ec7fa3b57b329240c89b359e4ef492e7ef3d766a558ab349f64", evaluate(javaUDF, "1"));
+        Assert.assertEquals("4907f3e99ba86ec7fa3b57b329240c89b359e4ef492e7ef3d766a558ab349f64", evaluate(writableUDF, new Text("1")));
+        Assert.assertEquals("12e81dda1e5588f85462dfeb0e5c961db4e0753c19d9fb04f52886f09f042345", evaluate(writableUDF, new Text("+380501234567")));
+        Assert.assertNull(evaluate(javaUDF, null));
+        Assert.assertNull(evaluate(writableUDF, null));
+    }
+
+    @Test
+    public void writableSameAsJavaTest() throws HiveException {
+        BasicHmacUDF[][] udfs = {
+                {new HmacSHA256UDF(), new HmacSHA256UDF()},
+                {new HmacSHA384UDF(), new HmacSHA384UDF()},
+                {new HmacSHA512UDF(), new HmacSHA512UDF()}
+        };
+
+        for (BasicHmacUDF[] pair : udfs) {
+            pair[0].initialize(new ObjectInspector[]{PrimitiveObjectInspectorFactory.javaStringObjectInspector});
+            pair[1].initialize(new ObjectInspector[]{PrimitiveObjectInspectorFactory.writableStringObjectInspector});
+
+            for (int i = 0; i < 1000; i++) {
+                String value = RandomStringUtils.random(RandomUtils.nextInt(0, 100));
+                Assert.assertEquals(evaluate(pair[0], value), evaluate(pair[1], new Text(value)));
+            }
+        }
+    }
+
+    @Test
+    public void copyToNewInstanceTest() throws HiveException {
+        BasicHmacUDF udf = new HmacSHA256UDF();
+        udf.initialize(new ObjectInspector[]{PrimitiveObjectInspectorFactory.javaStringObjectInspector});
+
+        BasicHmacUDF copy = new HmacSHA256UDF();
+        udf.copyToNewInstance(copy);
+        Assert.assertEquals(udf.configurationKeySource, copy.configurationKeySource);
+        Assert.assertFalse(copy.configurationLookupRequired);
+    }
+
+    @Test(expected = UDFArgumentException.class)
+    public void keyNotFoundTest() throws UDFArgumentException {
+        BasicHmacUDF udf = new HmacSHA256UDF();
+        udf.configurationKeySource = "classpath:hmackeys/test/not_found.txt";
+        udf.configurationLookupRequired = false;
+        udf.initialize(new ObjectInspector[]{PrimitiveObjectInspectorFactory.javaStringObjectInspector});
+    }
+}